@@ -0,0 +1,61 @@
+package ch.unisg.ics.interactions.wot.td.bindings.http;
+
+import ch.unisg.ics.interactions.wot.td.schemas.ArraySchema;
+import ch.unisg.ics.interactions.wot.td.schemas.NumberSchema;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpStatus;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time needed (and, with the gc profiler, the memory allocated) to read a telemetry
+ * payload (an array of numbers) from an HTTP response: as a list of boxed numbers, and as an array
+ * of <code>double</code>s decoded from the payload bytes.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TDHttpResponseBenchmark {
+
+  /**
+   * Number of values in the payload
+   */
+  @Param({"16", "1024"})
+  public int valueCount;
+
+  private final ArraySchema schema = new ArraySchema.Builder()
+    .addItem(new NumberSchema.Builder().build())
+    .build();
+
+  private SimpleHttpResponse response;
+
+  @Setup
+  public void setUp() {
+    StringBuilder json = new StringBuilder("[");
+    for (int i = 0; i < valueCount; i++) {
+      json.append(i == 0 ? "" : ",");
+      // Mixes integers and numbers with a fraction, as sensors report them
+      json.append(i % 3 == 0 ? String.valueOf(i) : String.valueOf(20 + i * 0.125));
+    }
+    json.append("]");
+
+    response = SimpleHttpResponse.create(HttpStatus.SC_OK);
+    response.setBody(json.toString(), ContentType.APPLICATION_JSON);
+  }
+
+  @Benchmark
+  public List<Object> boxedArray() {
+    return new TDHttpResponse(response, null).getPayloadAsArray(schema);
+  }
+
+  @Benchmark
+  public double[] primitiveArray() {
+    return new TDHttpResponse(response, null).getPayloadAsDoubleArray(schema);
+  }
+}
@@ -0,0 +1,71 @@
+package ch.unisg.ics.interactions.wot.td.clients;
+
+import ch.unisg.ics.interactions.wot.td.schemas.DataSchema;
+import ch.unisg.ics.interactions.wot.td.schemas.IntegerSchema;
+import ch.unisg.ics.interactions.wot.td.schemas.NumberSchema;
+import ch.unisg.ics.interactions.wot.td.schemas.StringSchema;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time needed to expand URI templates with different numbers of path and query
+ * variables.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UriTemplateBenchmark {
+
+  @Param({"1", "4", "16"})
+  public int variableCount;
+
+  private String expression;
+  private UriTemplate template;
+  private Map<String, DataSchema> uriVariables;
+  private Map<String, Object> values;
+
+  @Setup
+  public void setUp() {
+    StringBuilder path = new StringBuilder("http://example.org/things");
+    StringBuilder query = new StringBuilder("{?");
+
+    uriVariables = new HashMap<>();
+    values = new HashMap<>();
+
+    for (int i = 0; i < variableCount; i++) {
+      String pathVariable = "p" + i;
+      path.append("/{").append(pathVariable).append("}");
+      uriVariables.put(pathVariable, new StringSchema.Builder().build());
+      values.put(pathVariable, "segment" + i);
+
+      String queryVariable = "q" + i;
+      query.append(i > 0 ? "," : "").append(queryVariable);
+      if (i % 2 == 0) {
+        uriVariables.put(queryVariable, new IntegerSchema.Builder().build());
+        values.put(queryVariable, i);
+      } else {
+        uriVariables.put(queryVariable, new NumberSchema.Builder().build());
+        values.put(queryVariable, i + 0.5);
+      }
+    }
+
+    expression = path.append("/items").append(query).append("}").toString();
+    template = new UriTemplate(expression);
+  }
+
+  @Benchmark
+  public UriTemplate parse() {
+    return new UriTemplate(expression);
+  }
+
+  @Benchmark
+  public String createUri() {
+    return template.createUri(uriVariables, values);
+  }
+}
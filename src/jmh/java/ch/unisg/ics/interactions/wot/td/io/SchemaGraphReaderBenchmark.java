@@ -0,0 +1,43 @@
+package ch.unisg.ics.interactions.wot.td.io;
+
+import ch.unisg.ics.interactions.wot.td.schemas.DataSchema;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.util.ModelBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time needed to read data schemas of different depths from an RDF model.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SchemaGraphReaderBenchmark {
+
+  @Param({"1", "4", "8"})
+  public int schemaDepth;
+
+  private Resource schemaId;
+  private Model model;
+
+  @Setup
+  public void setUp() {
+    schemaId = SimpleValueFactory.getInstance().createBNode();
+
+    ModelBuilder builder = new ModelBuilder();
+    SchemaGraphWriter.write(builder, schemaId, SyntheticTDs.nestedSchema(schemaDepth));
+    model = builder.build();
+  }
+
+  @Benchmark
+  public Optional<DataSchema> readDataSchema() {
+    return SchemaGraphReader.readDataSchema(schemaId, model);
+  }
+}
@@ -0,0 +1,189 @@
+package ch.unisg.ics.interactions.wot.td.io;
+
+import ch.unisg.ics.interactions.wot.td.ThingDescription;
+import ch.unisg.ics.interactions.wot.td.ThingDescription.TDFormat;
+import ch.unisg.ics.interactions.wot.td.affordances.ActionAffordance;
+import ch.unisg.ics.interactions.wot.td.affordances.Form;
+import ch.unisg.ics.interactions.wot.td.affordances.InteractionAffordance;
+import ch.unisg.ics.interactions.wot.td.affordances.PropertyAffordance;
+import ch.unisg.ics.interactions.wot.td.schemas.*;
+import org.eclipse.rdf4j.rio.RDFFormat;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Generates synthetic TDs of configurable size for the benchmarks. The affordances of a sample TD
+ * (by default, <code>samples/forkliftRobot.ttl</code>, which can be changed with the
+ * <code>wot.benchmarks.sample</code> system property) are replicated until the requested number of
+ * affordances is reached, and their schemas are nested in object schemas up to the requested depth.
+ */
+public final class SyntheticTDs {
+  public static final String SAMPLE_PROPERTY = "wot.benchmarks.sample";
+  public static final String DEFAULT_SAMPLE = "samples/forkliftRobot.ttl";
+
+  private static final String EX = "http://example.org/#";
+
+  private SyntheticTDs() { }
+
+  /**
+   * Reads the sample TD used as a template for synthetic TDs.
+   *
+   * @return the sample TD
+   */
+  public static ThingDescription readSample() {
+    String path = System.getProperty(SAMPLE_PROPERTY, DEFAULT_SAMPLE);
+
+    try {
+      return TDGraphReader.readFromFile(TDFormat.RDF_TURTLE, Paths.get(path).toString());
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not read sample TD from " + path + " (the benchmarks "
+        + "should be run from the project directory, or set -D" + SAMPLE_PROPERTY + ")", e);
+    }
+  }
+
+  /**
+   * Generates a TD with the given number of affordances, where each data schema of the sample TD
+   * is nested in the given number of object schemas.
+   *
+   * @param affordanceCount the number of affordances
+   * @param schemaDepth the number of object schemas wrapping each data schema
+   * @return the synthetic TD
+   */
+  public static ThingDescription generate(int affordanceCount, int schemaDepth) {
+    ThingDescription sample = readSample();
+
+    List<InteractionAffordance> templates = new ArrayList<>();
+    templates.addAll(sample.getProperties());
+    templates.addAll(sample.getActions());
+
+    ThingDescription.Builder builder = new ThingDescription.Builder(sample.getTitle())
+      .addThingURI(sample.getThingURI().orElse("http://example.org/thing"))
+      .addSemanticTypes(sample.getSemanticTypes())
+      .addSecuritySchemes(sample.getSecurityDefinitions());
+
+    for (int i = 0; i < affordanceCount; i++) {
+      InteractionAffordance template = templates.get(i % templates.size());
+      String name = template.getName() + i;
+      List<Form> forms = copyForms(template.getForms(), i);
+
+      if (template instanceof PropertyAffordance) {
+        PropertyAffordance property = (PropertyAffordance) template;
+        builder.addProperty(new PropertyAffordance.Builder(name, forms)
+          .addSemanticTypes(property.getSemanticTypes())
+          .addDataSchema(nest(property.getDataSchema(), schemaDepth))
+          .build());
+      } else {
+        ActionAffordance action = (ActionAffordance) template;
+        ActionAffordance.Builder actionBuilder = new ActionAffordance.Builder(name, forms)
+          .addSemanticTypes(action.getSemanticTypes());
+
+        if (action.getInputSchema().isPresent()) {
+          actionBuilder.addInputSchema(nest(action.getInputSchema().get(), schemaDepth));
+        }
+
+        builder.addAction(actionBuilder.build());
+      }
+    }
+
+    return builder.build();
+  }
+
+  /**
+   * Serializes a TD in the given format.
+   *
+   * @param td the TD to serialize
+   * @param format the format of the representation
+   * @return the TD representation
+   */
+  public static String serialize(ThingDescription td, TDFormat format) {
+    RDFFormat rdfFormat = (format == TDFormat.RDF_TURTLE) ? RDFFormat.TURTLE : RDFFormat.JSONLD;
+    return ReadWriteUtils.writeToString(rdfFormat, TDGraphWriter.toModel(td));
+  }
+
+  /**
+   * Generates a schema with the given number of nested object schemas: the innermost schema is an
+   * array of 3 numbers, and each object schema has a nested value, a timestamp, and a label.
+   *
+   * @param depth the number of nested object schemas
+   * @return the schema
+   */
+  public static DataSchema nestedSchema(int depth) {
+    DataSchema coordinates = new ArraySchema.Builder()
+      .addSemanticType(EX + "3DCoordinates")
+      .addItem(new NumberSchema.Builder().build())
+      .addMinItems(3)
+      .addMaxItems(3)
+      .build();
+
+    return nest(coordinates, depth);
+  }
+
+  /**
+   * Generates a value that conforms to a schema.
+   *
+   * @param schema the schema of the value
+   * @param semanticKeys if true, the properties of object values are keyed by their first semantic
+   * type (if any), as expected by <code>ObjectSchema.instantiate</code>
+   * @return the value (a map, a list, a string, a number, a boolean, or null)
+   */
+  public static Object sampleValue(DataSchema schema, boolean semanticKeys) {
+    switch (schema.getDatatype()) {
+      case DataSchema.OBJECT:
+        Map<String, Object> object = new HashMap<>();
+        for (Map.Entry<String, DataSchema> property : ((ObjectSchema) schema).getProperties().entrySet()) {
+          Set<String> types = property.getValue().getSemanticTypes();
+          String key = (semanticKeys && !types.isEmpty()) ? types.iterator().next() : property.getKey();
+          object.put(key, sampleValue(property.getValue(), semanticKeys));
+        }
+        return object;
+      case DataSchema.ARRAY:
+        ArraySchema arraySchema = (ArraySchema) schema;
+        List<Object> array = new ArrayList<>();
+        if (!arraySchema.getItems().isEmpty()) {
+          for (int i = 0; i < arraySchema.getMinItems().orElse(3); i++) {
+            array.add(sampleValue(arraySchema.getItems().get(0), semanticKeys));
+          }
+        }
+        return array;
+      case DataSchema.STRING:
+        return "label";
+      case DataSchema.NUMBER:
+        return 1.5;
+      case DataSchema.INTEGER:
+        return 1605000000L;
+      case DataSchema.BOOLEAN:
+        return true;
+      default:
+        return null;
+    }
+  }
+
+  private static DataSchema nest(DataSchema schema, int depth) {
+    for (int level = 1; level <= depth; level++) {
+      schema = new ObjectSchema.Builder()
+        .addSemanticType(EX + "Level" + level)
+        .addProperty("value", schema)
+        .addProperty("timestamp", new IntegerSchema.Builder()
+          .addSemanticType(EX + "Timestamp")
+          .build())
+        .addProperty("label", new StringSchema.Builder().build())
+        .addRequiredProperties("value", "timestamp")
+        .build();
+    }
+
+    return schema;
+  }
+
+  private static List<Form> copyForms(List<Form> forms, int index) {
+    List<Form> copies = new ArrayList<>();
+
+    for (Form form : forms) {
+      copies.add(new Form.Builder(form.getTarget() + "/" + index, form).build());
+    }
+
+    return copies;
+  }
+}
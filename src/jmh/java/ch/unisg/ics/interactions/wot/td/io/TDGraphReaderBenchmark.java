@@ -0,0 +1,41 @@
+package ch.unisg.ics.interactions.wot.td.io;
+
+import ch.unisg.ics.interactions.wot.td.ThingDescription;
+import ch.unisg.ics.interactions.wot.td.ThingDescription.TDFormat;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time needed to read TDs of different sizes from Turtle and JSON-LD representations.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TDGraphReaderBenchmark {
+
+  @Param({"RDF_TURTLE", "RDF_JSONLD"})
+  public TDFormat format;
+
+  @Param({"5", "50", "500"})
+  public int affordanceCount;
+
+  @Param({"0", "3"})
+  public int schemaDepth;
+
+  private String representation;
+
+  @Setup
+  public void setUp() {
+    ThingDescription td = SyntheticTDs.generate(affordanceCount, schemaDepth);
+    representation = SyntheticTDs.serialize(td, format);
+  }
+
+  @Benchmark
+  public ThingDescription readFromString() {
+    return TDGraphReader.readFromString(format, representation);
+  }
+}
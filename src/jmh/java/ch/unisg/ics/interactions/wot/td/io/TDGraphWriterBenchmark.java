@@ -0,0 +1,43 @@
+package ch.unisg.ics.interactions.wot.td.io;
+
+import ch.unisg.ics.interactions.wot.td.ThingDescription;
+import org.eclipse.rdf4j.model.Model;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time needed to write TDs of different sizes, both to an RDF model and to a Turtle
+ * representation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TDGraphWriterBenchmark {
+
+  @Param({"5", "50", "500"})
+  public int affordanceCount;
+
+  @Param({"0", "3"})
+  public int schemaDepth;
+
+  private ThingDescription td;
+
+  @Setup
+  public void setUp() {
+    td = SyntheticTDs.generate(affordanceCount, schemaDepth);
+  }
+
+  @Benchmark
+  public Model toModel() {
+    return TDGraphWriter.toModel(td);
+  }
+
+  @Benchmark
+  public String writeTurtle() {
+    return TDGraphWriter.write(td);
+  }
+}
@@ -0,0 +1,44 @@
+package ch.unisg.ics.interactions.wot.td.io;
+
+import ch.unisg.ics.interactions.wot.td.ThingDescription;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time needed to write and read binary snapshots of TDs of different sizes, to be
+ * compared with {@link TDGraphReaderBenchmark} and {@link TDGraphWriterBenchmark}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TDSnapshotBenchmark {
+
+  @Param({"5", "50", "500"})
+  public int affordanceCount;
+
+  @Param({"0", "3"})
+  public int schemaDepth;
+
+  private ThingDescription td;
+  private byte[] snapshot;
+
+  @Setup
+  public void setUp() {
+    td = SyntheticTDs.generate(affordanceCount, schemaDepth);
+    snapshot = TDSnapshotWriter.write(td);
+  }
+
+  @Benchmark
+  public byte[] write() {
+    return TDSnapshotWriter.write(td);
+  }
+
+  @Benchmark
+  public ThingDescription read() {
+    return TDSnapshotReader.read(snapshot);
+  }
+}
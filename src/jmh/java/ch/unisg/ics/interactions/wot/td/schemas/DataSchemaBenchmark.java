@@ -0,0 +1,47 @@
+package ch.unisg.ics.interactions.wot.td.schemas;
+
+import ch.unisg.ics.interactions.wot.td.io.SyntheticTDs;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time needed to parse JSON payloads and to instantiate semantic payloads with object
+ * schemas of different depths.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DataSchemaBenchmark {
+
+  @Param({"1", "4", "8"})
+  public int schemaDepth;
+
+  private ObjectSchema schema;
+  private JsonElement payload;
+  private Map<String, Object> semanticValues;
+
+  @Setup
+  @SuppressWarnings("unchecked")
+  public void setUp() {
+    schema = (ObjectSchema) SyntheticTDs.nestedSchema(schemaDepth);
+    payload = new Gson().toJsonTree(SyntheticTDs.sampleValue(schema, false));
+    semanticValues = (Map<String, Object>) SyntheticTDs.sampleValue(schema, true);
+  }
+
+  @Benchmark
+  public Object parseJson() {
+    return schema.parseJson(payload);
+  }
+
+  @Benchmark
+  public Map<String, Object> instantiate() {
+    return schema.instantiate(semanticValues);
+  }
+}
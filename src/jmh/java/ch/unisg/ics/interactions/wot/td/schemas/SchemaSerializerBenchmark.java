@@ -0,0 +1,82 @@
+package ch.unisg.ics.interactions.wot.td.schemas;
+
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time needed (and, with the gc profiler, the memory allocated) to encode the payload
+ * of a property write: with a new Gson instance per payload (as the protocol bindings used to do),
+ * with a shared Gson instance, and with the serializer compiled from the schema of the payload.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SchemaSerializerBenchmark {
+
+  /**
+   * Number of samples in the payload
+   */
+  @Param({"1", "16", "256"})
+  public int sampleCount;
+
+  private final Gson gson = new Gson();
+
+  private ObjectSchema schema;
+  private Map<String, Object> payload;
+
+  @Setup
+  public void setUp() {
+    ObjectSchema sampleSchema = new ObjectSchema.Builder()
+      .addProperty("timestamp", new IntegerSchema.Builder().build())
+      .addProperty("value", new NumberSchema.Builder().build())
+      .addProperty("unit", new StringSchema.Builder().build())
+      .addProperty("valid", new BooleanSchema.Builder().build())
+      .build();
+
+    schema = new ObjectSchema.Builder()
+      .addProperty("device", new StringSchema.Builder().build())
+      .addProperty("sequence", new IntegerSchema.Builder().build())
+      .addProperty("samples", new ArraySchema.Builder().addItem(sampleSchema).build())
+      .build();
+
+    List<Object> samples = new ArrayList<>();
+    for (int i = 0; i < sampleCount; i++) {
+      Map<String, Object> sample = new HashMap<>();
+      sample.put("timestamp", 1700000000000L + i);
+      sample.put("value", 20 + i * 0.125);
+      sample.put("unit", "Cel");
+      sample.put("valid", i % 7 != 0);
+      samples.add(sample);
+    }
+
+    payload = new HashMap<>();
+    payload.put("device", "urn:dev:ops:32473-thermometer-1");
+    payload.put("sequence", 42L);
+    payload.put("samples", samples);
+  }
+
+  @Benchmark
+  public byte[] gsonPerPayload() {
+    return new Gson().toJson(payload).getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  public byte[] sharedGson() {
+    return gson.toJson(payload).getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  public byte[] compiledSerializer() {
+    return schema.getSerializer().toByteArray(payload);
+  }
+}
@@ -0,0 +1,273 @@
+package ch.unisg.ics.interactions.wot.td;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * A 128-bit digest of the content of a TD element (e.g. a <code>ThingDescription</code>, an
+ * interaction affordance, a form, or a data schema). Two elements with equal content have equal
+ * fingerprints, such that fingerprints can be compared to detect changes without comparing (or
+ * re-serializing) the elements themselves. Fingerprints are computed with a
+ * <code>Fingerprint.Builder</code>.
+ * <p>
+ * Fingerprints do not depend on the order of elements in unordered collections (e.g. sets of semantic
+ * types), but do depend on the order of elements in ordered collections (e.g. lists of forms).
+ */
+public final class Fingerprint {
+  private static final String ALGORITHM = "SHA-256";
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private final long high;
+  private final long low;
+
+  private Fingerprint(long high, long low) {
+    this.high = high;
+    this.low = low;
+  }
+
+  public long getHighBits() {
+    return high;
+  }
+
+  public long getLowBits() {
+    return low;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (!(o instanceof Fingerprint)) return false;
+
+    Fingerprint other = (Fingerprint) o;
+    return high == other.high && low == other.low;
+  }
+
+  @Override
+  public int hashCode() {
+    return (int) (low ^ (low >>> 32));
+  }
+
+  /**
+   * Returns the fingerprint as a string of 32 hexadecimal digits.
+   *
+   * @return the hexadecimal representation of the fingerprint
+   */
+  @Override
+  public String toString() {
+    char[] chars = new char[32];
+    for (int i = 0; i < 16; i++) {
+      chars[i] = HEX[(int) (high >>> (60 - 4 * i)) & 0xf];
+      chars[16 + i] = HEX[(int) (low >>> (60 - 4 * i)) & 0xf];
+    }
+    return new String(chars);
+  }
+
+  /**
+   * Helper class used to compute a <code>Fingerprint</code>. Every value is added together with its
+   * length (or size), such that different sequences of values always produce different inputs to
+   * the digest.
+   * <p>
+   * Implements a fluent API.
+   */
+  public static final class Builder {
+    private static final byte ABSENT = 0;
+    private static final byte PRESENT = 1;
+
+    private final MessageDigest digest;
+
+    public Builder() {
+      try {
+        this.digest = MessageDigest.getInstance(ALGORITHM);
+      } catch (NoSuchAlgorithmException e) {
+        throw new IllegalStateException(ALGORITHM + " is not supported by this JVM.", e);
+      }
+    }
+
+    public Builder add(String value) {
+      if (value == null) {
+        digest.update(ABSENT);
+      } else {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        digest.update(PRESENT);
+        addInt(bytes.length);
+        digest.update(bytes);
+      }
+      return this;
+    }
+
+    public Builder add(boolean value) {
+      digest.update(value ? PRESENT : ABSENT);
+      return this;
+    }
+
+    public Builder add(long value) {
+      for (int i = 56; i >= 0; i -= 8) {
+        digest.update((byte) (value >>> i));
+      }
+      return this;
+    }
+
+    public Builder add(Fingerprint fingerprint) {
+      add(fingerprint.high);
+      add(fingerprint.low);
+      return this;
+    }
+
+    /**
+     * Adds an optional value, which is converted to a string if present.
+     *
+     * @param value the optional value
+     * @return this <code>Builder</code>
+     */
+    public Builder add(Optional<?> value) {
+      if (value.isPresent()) {
+        digest.update(PRESENT);
+        add(String.valueOf(value.get()));
+      } else {
+        digest.update(ABSENT);
+      }
+      return this;
+    }
+
+    /**
+     * Adds the fingerprint of an optional element.
+     *
+     * @param value the optional element
+     * @return this <code>Builder</code>
+     */
+    public Builder addFingerprint(Optional<? extends Fingerprinted> value) {
+      if (value.isPresent()) {
+        digest.update(PRESENT);
+        add(value.get().getFingerprint());
+      } else {
+        digest.update(ABSENT);
+      }
+      return this;
+    }
+
+    /**
+     * Adds an unordered collection of values, which are converted to strings.
+     *
+     * @param values the values
+     * @return this <code>Builder</code>
+     */
+    public Builder addUnordered(Collection<?> values) {
+      List<String> sorted = new ArrayList<>(values.size());
+      for (Object value : values) {
+        sorted.add(String.valueOf(value));
+      }
+      Collections.sort(sorted);
+
+      addInt(sorted.size());
+      for (String value : sorted) {
+        add(value);
+      }
+      return this;
+    }
+
+    /**
+     * Adds an unordered collection of elements, identified by their fingerprints.
+     *
+     * @param elements the elements
+     * @return this <code>Builder</code>
+     */
+    public Builder addFingerprintsUnordered(Collection<? extends Fingerprinted> elements) {
+      List<Fingerprint> sorted = new ArrayList<>(elements.size());
+      for (Fingerprinted element : elements) {
+        sorted.add(element.getFingerprint());
+      }
+      sorted.sort(Comparator.comparingLong((Fingerprint f) -> f.high).thenComparingLong(f -> f.low));
+
+      addInt(sorted.size());
+      for (Fingerprint fingerprint : sorted) {
+        add(fingerprint);
+      }
+      return this;
+    }
+
+    /**
+     * Adds an ordered list of elements, identified by their fingerprints.
+     *
+     * @param elements the elements
+     * @return this <code>Builder</code>
+     */
+    public Builder addFingerprints(List<? extends Fingerprinted> elements) {
+      addInt(elements.size());
+      for (Fingerprinted element : elements) {
+        add(element.getFingerprint());
+      }
+      return this;
+    }
+
+    /**
+     * Adds a map of named elements. Entries are added in the order of their keys.
+     *
+     * @param elements the named elements
+     * @return this <code>Builder</code>
+     */
+    public Builder addFingerprints(Map<String, ? extends Fingerprinted> elements) {
+      addInt(elements.size());
+      for (Map.Entry<String, ? extends Fingerprinted> entry : new TreeMap<>(elements).entrySet()) {
+        add(entry.getKey());
+        add(entry.getValue().getFingerprint());
+      }
+      return this;
+    }
+
+    /**
+     * Adds a map of values, which are converted to strings (the values of collections are sorted).
+     * Entries are added in the order of their keys.
+     *
+     * @param values the map of values
+     * @return this <code>Builder</code>
+     */
+    public Builder addValues(Map<String, ?> values) {
+      addInt(values.size());
+      for (Map.Entry<String, ?> entry : new TreeMap<>(values).entrySet()) {
+        add(entry.getKey());
+
+        if (entry.getValue() instanceof Collection) {
+          addUnordered((Collection<?>) entry.getValue());
+        } else {
+          add(String.valueOf(entry.getValue()));
+        }
+      }
+      return this;
+    }
+
+    public Fingerprint build() {
+      byte[] bytes = digest.digest();
+
+      long high = 0;
+      long low = 0;
+      for (int i = 0; i < 8; i++) {
+        high = (high << 8) | (bytes[i] & 0xff);
+        low = (low << 8) | (bytes[8 + i] & 0xff);
+      }
+
+      return new Fingerprint(high, low);
+    }
+
+    private void addInt(int value) {
+      digest.update((byte) (value >>> 24));
+      digest.update((byte) (value >>> 16));
+      digest.update((byte) (value >>> 8));
+      digest.update((byte) value);
+    }
+  }
+
+  /**
+   * Implemented by TD elements that can be identified by a <code>Fingerprint</code>.
+   */
+  public interface Fingerprinted {
+
+    /**
+     * Gets the fingerprint of this element, which is computed from its content.
+     *
+     * @return the fingerprint
+     */
+    Fingerprint getFingerprint();
+  }
+}
@@ -22,8 +22,12 @@ import java.util.stream.Collectors;
  * <p>
  * The current version does not yet implement all the core vocabulary terms defined by the
  * W3C Recommendation.
+ * <p>
+ * Two TDs are equal if they have the same content, regardless of the order of their interaction
+ * affordances. The content of a TD is summarized by its {@link Fingerprint}, which is computed once
+ * at construction time and can be used to detect changes cheaply.
  */
-public class ThingDescription {
+public class ThingDescription implements Fingerprint.Fingerprinted {
   private final String title;
   private final Set<SecurityScheme> security;
   private final Map<String, SecurityScheme> securityDefinitions;
@@ -38,6 +42,8 @@ public class ThingDescription {
 
   private final Optional<Model> graph;
 
+  private final Fingerprint fingerprint;
+
   protected ThingDescription(String title, Set<SecurityScheme> security, Map<String,
     SecurityScheme> securityDefinitions, Optional<String> uri, Set<String> types, Optional<String> baseURI,
                              List<PropertyAffordance> properties, List<ActionAffordance> actions,
@@ -71,6 +77,8 @@ public class ThingDescription {
     this.events = events;
 
     this.graph = graph;
+
+    this.fingerprint = computeFingerprint();
   }
 
   public String getTitle() {
@@ -324,6 +332,58 @@ public class ThingDescription {
     return graph;
   }
 
+  /**
+   * Gets the fingerprint of this TD. The additional metadata provided via the RDF graph of the TD
+   * (see {@link #getGraph()}) is not part of the fingerprint.
+   *
+   * @return the fingerprint of the TD
+   */
+  @Override
+  public Fingerprint getFingerprint() {
+    return fingerprint;
+  }
+
+  /**
+   * Two TDs are equal if they have the same content. The additional metadata provided via the RDF
+   * graph of the TD is not compared.
+   */
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+
+    ThingDescription other = (ThingDescription) o;
+    return fingerprint.equals(other.fingerprint)
+      && title.equals(other.title)
+      && uri.equals(other.uri)
+      && baseURI.equals(other.baseURI)
+      && types.equals(other.types)
+      && security.equals(other.security)
+      && securityDefinitions.equals(other.securityDefinitions)
+      && new HashSet<>(properties).equals(new HashSet<>(other.properties))
+      && new HashSet<>(actions).equals(new HashSet<>(other.actions))
+      && new HashSet<>(events).equals(new HashSet<>(other.events));
+  }
+
+  @Override
+  public int hashCode() {
+    return fingerprint.hashCode();
+  }
+
+  private Fingerprint computeFingerprint() {
+    return new Fingerprint.Builder()
+      .add(title)
+      .add(uri)
+      .add(baseURI)
+      .addUnordered(types)
+      .addFingerprintsUnordered(security)
+      .addFingerprints(securityDefinitions)
+      .addFingerprintsUnordered(properties)
+      .addFingerprintsUnordered(actions)
+      .addFingerprintsUnordered(events)
+      .build();
+  }
+
   /**
    * Supported serialization formats -- currently only RDF serialization formats, namely Turtle and
    * JSON-LD 1.0. The version of JSON-LD currently supported is the one provided by RDF4J.
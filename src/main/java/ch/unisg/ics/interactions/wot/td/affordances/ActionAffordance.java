@@ -1,5 +1,6 @@
 package ch.unisg.ics.interactions.wot.td.affordances;
 
+import ch.unisg.ics.interactions.wot.td.Fingerprint;
 import ch.unisg.ics.interactions.wot.td.schemas.DataSchema;
 import ch.unisg.ics.interactions.wot.td.vocabularies.TD;
 
@@ -35,6 +36,25 @@ public class ActionAffordance extends InteractionAffordance {
     return output;
   }
 
+  @Override
+  protected void addToFingerprint(Fingerprint.Builder builder) {
+    super.addToFingerprint(builder);
+    builder.addFingerprint(input).addFingerprint(output);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!super.equals(o)) return false;
+
+    ActionAffordance other = (ActionAffordance) o;
+    return input.equals(other.input) && output.equals(other.output);
+  }
+
+  @Override
+  public int hashCode() {
+    return super.hashCode();
+  }
+
   public static class Builder
     extends InteractionAffordance.Builder<ActionAffordance, ActionAffordance.Builder> {
 
@@ -1,5 +1,6 @@
 package ch.unisg.ics.interactions.wot.td.affordances;
 
+import ch.unisg.ics.interactions.wot.td.Fingerprint;
 import ch.unisg.ics.interactions.wot.td.schemas.DataSchema;
 import ch.unisg.ics.interactions.wot.td.vocabularies.TD;
 
@@ -30,6 +31,26 @@ public class EventAffordance extends InteractionAffordance {
     return cancellation;
   }
 
+  @Override
+  protected void addToFingerprint(Fingerprint.Builder builder) {
+    super.addToFingerprint(builder);
+    builder.addFingerprint(subscription).addFingerprint(notification).addFingerprint(cancellation);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!super.equals(o)) return false;
+
+    EventAffordance other = (EventAffordance) o;
+    return subscription.equals(other.subscription) && notification.equals(other.notification)
+      && cancellation.equals(other.cancellation);
+  }
+
+  @Override
+  public int hashCode() {
+    return super.hashCode();
+  }
+
   public static class Builder
     extends InteractionAffordance.Builder<EventAffordance, EventAffordance.Builder> {
 
@@ -1,11 +1,12 @@
 package ch.unisg.ics.interactions.wot.td.affordances;
 
+import ch.unisg.ics.interactions.wot.td.Fingerprint;
 import ch.unisg.ics.interactions.wot.td.bindings.BindingNotFoundException;
 import ch.unisg.ics.interactions.wot.td.bindings.ProtocolBindings;
 
 import java.util.*;
 
-public class Form {
+public class Form implements Fingerprint.Fingerprinted {
 
   private final String target;
   private final String contentType;
@@ -14,6 +15,8 @@ public class Form {
   private final Map<String, Object> additionalProperties = new HashMap<>();
   private Optional<String> methodName;
 
+  private volatile Fingerprint fingerprint;
+
   private Form(String href, Optional<String> methodName, String mediaType, Set<String> operationTypes,
                Optional<String> subProtocol) {
     this.methodName = methodName;
@@ -36,6 +39,7 @@ public class Form {
   // Package-level access, used for setting affordance-specific default values after instantiation
   void setMethodName(String methodName) {
     this.methodName = Optional.of(methodName);
+    this.fingerprint = null;
   }
 
   public Optional<String> getMethodName(String operationType) {
@@ -126,6 +130,49 @@ public class Form {
   // Package-level access, used for setting affordance-specific default values after instantiation
   void addOperationType(String operationType) {
     this.operationTypes.add(operationType);
+    this.fingerprint = null;
+  }
+
+  /**
+   * Gets the fingerprint of this form, which is computed from its content on first access.
+   *
+   * @return the fingerprint of the form
+   */
+  @Override
+  public Fingerprint getFingerprint() {
+    Fingerprint f = fingerprint;
+    if (f == null) {
+      f = new Fingerprint.Builder()
+        .add(target)
+        .add(contentType)
+        .addUnordered(operationTypes)
+        .add(subProtocol)
+        .add(methodName)
+        .addValues(additionalProperties)
+        .build();
+      fingerprint = f;
+    }
+    return f;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+
+    Form other = (Form) o;
+    return getFingerprint().equals(other.getFingerprint())
+      && target.equals(other.target)
+      && contentType.equals(other.contentType)
+      && operationTypes.equals(other.operationTypes)
+      && subProtocol.equals(other.subProtocol)
+      && methodName.equals(other.methodName)
+      && additionalProperties.equals(other.additionalProperties);
+  }
+
+  @Override
+  public int hashCode() {
+    return getFingerprint().hashCode();
   }
 
   public static class Builder {
@@ -1,5 +1,6 @@
 package ch.unisg.ics.interactions.wot.td.affordances;
 
+import ch.unisg.ics.interactions.wot.td.Fingerprint;
 import ch.unisg.ics.interactions.wot.td.io.InvalidTDException;
 import ch.unisg.ics.interactions.wot.td.schemas.DataSchema;
 
@@ -11,7 +12,7 @@ import java.util.stream.Collectors;
  *
  * @author Andrei Ciortea
  */
-public class InteractionAffordance {
+public class InteractionAffordance implements Fingerprint.Fingerprinted {
   public static final String PROPERTY = "property";
   public static final String EVENT = "event";
   public static final String ACTION = "action";
@@ -23,6 +24,8 @@ public class InteractionAffordance {
 
   protected Optional<Map<String, DataSchema>> uriVariables;
 
+  private volatile Fingerprint fingerprint;
+
   protected InteractionAffordance(String name, Optional<String> title, List<String> types,
                                   List<Form> forms, Optional<Map<String,DataSchema>> uriVariables) {
     if (name == null) {
@@ -130,6 +133,58 @@ public class InteractionAffordance {
     return true;
   }
 
+  /**
+   * Gets the fingerprint of this affordance, which is computed from its content (including forms and
+   * data schemas) on first access.
+   *
+   * @return the fingerprint of the affordance
+   */
+  @Override
+  public Fingerprint getFingerprint() {
+    Fingerprint f = fingerprint;
+    if (f == null) {
+      Fingerprint.Builder builder = new Fingerprint.Builder();
+      addToFingerprint(builder);
+      f = builder.build();
+      fingerprint = f;
+    }
+    return f;
+  }
+
+  /**
+   * Adds the content of this affordance to a fingerprint. Subclasses should override this method
+   * to add their own fields (and call the super method).
+   *
+   * @param builder the fingerprint builder
+   */
+  protected void addToFingerprint(Fingerprint.Builder builder) {
+    builder.add(getClass().getSimpleName())
+      .add(name)
+      .add(title)
+      .addUnordered(types)
+      .addFingerprints(forms)
+      .addFingerprints(uriVariables.orElse(Collections.emptyMap()));
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+
+    InteractionAffordance other = (InteractionAffordance) o;
+    return getFingerprint().equals(other.getFingerprint())
+      && name.equals(other.name)
+      && title.equals(other.title)
+      && new HashSet<>(types).equals(new HashSet<>(other.types))
+      && forms.equals(other.forms)
+      && uriVariables.equals(other.uriVariables);
+  }
+
+  @Override
+  public int hashCode() {
+    return getFingerprint().hashCode();
+  }
+
   /**
    * Abstract builder for interaction affordances.
    */
@@ -1,5 +1,6 @@
 package ch.unisg.ics.interactions.wot.td.affordances;
 
+import ch.unisg.ics.interactions.wot.td.Fingerprint;
 import ch.unisg.ics.interactions.wot.td.schemas.DataSchema;
 import ch.unisg.ics.interactions.wot.td.vocabularies.TD;
 
@@ -24,6 +25,25 @@ public class PropertyAffordance extends InteractionAffordance {
     return observable;
   }
 
+  @Override
+  protected void addToFingerprint(Fingerprint.Builder builder) {
+    super.addToFingerprint(builder);
+    builder.add(schema.getFingerprint()).add(observable);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!super.equals(o)) return false;
+
+    PropertyAffordance other = (PropertyAffordance) o;
+    return schema.equals(other.schema) && observable == other.observable;
+  }
+
+  @Override
+  public int hashCode() {
+    return super.hashCode();
+  }
+
   public static class Builder
       extends InteractionAffordance.Builder<PropertyAffordance, PropertyAffordance.Builder> {
 
@@ -1,29 +1,55 @@
 package ch.unisg.ics.interactions.wot.td.bindings;
 
 import ch.unisg.ics.interactions.wot.td.affordances.Form;
+import ch.unisg.ics.interactions.wot.td.metrics.Metrics;
+import ch.unisg.ics.interactions.wot.td.metrics.OperationKey;
+import ch.unisg.ics.interactions.wot.td.metrics.OperationMetrics;
+import ch.unisg.ics.interactions.wot.td.metrics.PhaseTimings;
+import ch.unisg.ics.interactions.wot.td.metrics.PhaseTimings.Phase;
 import ch.unisg.ics.interactions.wot.td.schemas.DataSchema;
+import ch.unisg.ics.interactions.wot.td.schemas.SchemaSerializer;
+import ch.unisg.ics.interactions.wot.td.vocabularies.TD;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.ToNumberPolicy;
 
 import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.BlockingDeque;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Implementation of basic operation features, including:
  * <ul>
  *   <li>validation of JSON payload</li>
  *   <li>management of asynchronous calls and blocking calls</li>
+ *   <li>response deadlines, enforced by a shared timer that aborts the exchange on expiry</li>
+ *   <li>instrumentation of the operation lifecycle (see {@link OperationMetrics})</li>
  * </ul>
  */
 public abstract class BaseOperation implements Operation {
+  private final static Logger LOGGER = Logger.getLogger(BaseOperation.class.getCanonicalName());
 
   /**
-   * Default value for {@link BaseOperation#timeout}
+   * Default value for {@link BaseOperation#timeoutNanos} (in seconds)
    */
   public static final long DEFAULT_TIMEOUT = 60l;
 
+  /**
+   * Timer shared by all operations to expire response deadlines
+   */
+  private static final HashedWheelTimer DEADLINE_TIMER = new HashedWheelTimer();
+
+  private static final Gson ENCODED_PAYLOAD_READER = new GsonBuilder()
+    .setObjectToNumberStrategy(ToNumberPolicy.LONG_OR_DOUBLE)
+    .create();
+
   /**
    * Form from which the operation was built.
    */
@@ -46,14 +72,62 @@ public abstract class BaseOperation implements Operation {
   private Collection<ResponseCallback> callbacks = new LinkedList<>();
 
   /**
-   * Response timeout (in seconds): after request was sent,
-   * the Thing has {@code timeout} seconds to send a response
+   * Response timeout (in nanoseconds): after request was sent,
+   * the Thing has {@code timeoutNanos} to send a response
+   */
+  private volatile long timeoutNanos = TimeUnit.SECONDS.toNanos(DEFAULT_TIMEOUT);
+
+  /**
+   * Metrics notified of the operation lifecycle (registered when the operation was created)
+   */
+  private final OperationMetrics metrics;
+
+  /**
+   * Key of the operation for metrics, computed from the form if no labels are set
+   */
+  private volatile OperationKey metricsKey;
+
+  /**
+   * Time at which the request was sent (as given by {@link System#nanoTime()})
    */
-  private long timeout = DEFAULT_TIMEOUT;
+  private volatile long requestSentAt;
+
+  // States of the first response of an exchange
+  private static final int IDLE = 0;
+  private static final int AWAITING = 1;
+  private static final int RESPONDED = 2;
+  // The wait for the first notification of a subscription timed out, notifications are delivered
+  private static final int TIMED_OUT = 3;
+  // The deadline expired, later responses and errors are dropped
+  private static final int EXPIRED = 4;
+
+  /**
+   * State of the first response: set to {@link #AWAITING} when the request is sent, and left only
+   * once, either on the first response or error (by a binding thread) or on timeout (by the timer
+   * or a blocked caller), so that exactly one of them is delivered
+   */
+  private final AtomicInteger state = new AtomicInteger(IDLE);
+
+  /**
+   * Deadline of the first response (as given by {@link System#nanoTime()}), set when the request
+   * is sent if a timeout is set
+   */
+  private volatile long deadline;
+
+  /**
+   * Expiry of the deadline on the shared timer, if armed
+   */
+  private volatile HashedWheelTimer.Timeout deadlineTimeout;
+
+  /**
+   * Timestamps of the phases of the exchange, recorded by the protocol binding
+   */
+  private final PhaseTimings phaseTimings = new PhaseTimings();
 
   public BaseOperation(Form form, String operationType) {
     this.form = form;
     this.operationType = operationType;
+    this.metrics = Metrics.getOperationMetrics();
   }
 
   @Override
@@ -72,7 +146,70 @@ public abstract class BaseOperation implements Operation {
    * @param timeout timeout (in seconds). A timeout of 0s is equivalent to no timeout.
    */
   public void setTimeout(long timeout) {
-    this.timeout = timeout;
+    setTimeout(timeout, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Set timeout between request and (first) response. When the request is sent, a deadline is
+   * armed on a timer shared by all operations (except for subscriptions to events or property
+   * changes): if no response is received before the deadline,
+   * the exchange is aborted (see {@link #abort()}), a blocked {@link #getResponse()} throws a
+   * {@link NoResponseException}, and registered callbacks are notified of an error.
+   *
+   * @param timeout timeout. A timeout of 0 is equivalent to no timeout.
+   * @param unit time unit of the timeout
+   */
+  public void setTimeout(long timeout, TimeUnit unit) {
+    if (timeout < 0) {
+      throw new IllegalArgumentException("The timeout must not be negative: " + timeout);
+    }
+
+    this.timeoutNanos = unit.toNanos(timeout);
+  }
+
+  /**
+   * Return the timeout between request and (first) response.
+   *
+   * @param unit time unit of the result
+   * @return the timeout (0 if there is no timeout)
+   */
+  public long getTimeout(TimeUnit unit) {
+    return unit.convert(timeoutNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Set the Thing and affordance names under which metrics of this operation are recorded
+   * (by default, the authority and the path of the form's target).
+   *
+   * @param thing name of the Thing (e.g. its title or URI)
+   * @param affordance name of the affordance
+   */
+  public void setMetricsLabels(String thing, String affordance) {
+    this.metricsKey = getMetricsKey().withLabels(thing, affordance);
+  }
+
+  /**
+   * Return the key under which metrics of this operation are recorded.
+   *
+   * @return the operation key
+   */
+  public OperationKey getMetricsKey() {
+    if (metricsKey == null) {
+      metricsKey = OperationKey.forForm(form, operationType);
+    }
+
+    return metricsKey;
+  }
+
+  /**
+   * Return the timestamps of the phases of the exchange initiated by {@link #sendRequest()}.
+   * Protocol bindings record the phases they can observe (see {@link PhaseTimings}). Phases are
+   * only recorded if metrics are enabled when the operation is created.
+   *
+   * @return the phase timings
+   */
+  public PhaseTimings getPhaseTimings() {
+    return phaseTimings;
   }
 
   /**
@@ -90,7 +227,11 @@ public abstract class BaseOperation implements Operation {
       throw new IllegalArgumentException(msg);
     }
 
-    setJSONPayload(payload);
+    if (payload instanceof Map || payload instanceof List) {
+      setSerializedPayload(schema.getSerializer(), payload);
+    } else {
+      setJSONPayload(payload);
+    }
   }
 
   /**
@@ -112,12 +253,29 @@ public abstract class BaseOperation implements Operation {
 
   /**
    * Use a semaphore ({@link BlockingDeque} of size 1) to implement
-   * the expected behavior of {@link Operation#getResponse()}.
+   * the expected behavior of {@link Operation#getResponse()}. If a deadline was armed when the
+   * request was sent, the call waits until the deadline (the shared timer then releases the
+   * semaphore), otherwise it waits for the timeout.
    */
   @Override
   public Response getResponse() throws NoResponseException {
     try {
-      Optional<Response> r = timeout > 0 ? lastResponse.poll(timeout, TimeUnit.SECONDS) : lastResponse.take();
+      Optional<Response> r;
+
+      if (timeoutNanos <= 0) {
+        r = lastResponse.take();
+      } else if (deadlineTimeout != null) {
+        // Wait for the timer to expire the deadline, with a grace period of two ticks
+        long grace = DEADLINE_TIMER.getTickDuration(TimeUnit.NANOSECONDS) * 2;
+        long wait = deadline - System.nanoTime() + grace;
+        r = lastResponse.poll(Math.max(0, wait), TimeUnit.NANOSECONDS);
+      } else {
+        r = lastResponse.poll(timeoutNanos, TimeUnit.NANOSECONDS);
+      }
+
+      if (r == null) {
+        expire(false);
+      }
 
       if (r != null && r.isPresent()) return r.get();
       else throw new NoResponseException();
@@ -147,6 +305,14 @@ public abstract class BaseOperation implements Operation {
     return builder.toString();
   }
 
+  /**
+   * Abort the network exchange of the operation and free its resources. Called when the deadline
+   * of the first response expires. Protocol bindings that can cancel an exchange should override
+   * this method (by default, the exchange keeps running and its outcome is dropped).
+   */
+  protected void abort() {
+  }
+
   /**
    * Return a binding-dependent encapsulation of the payload for the request initiating the operation.
    * <i>This method is used in <code>toString()</code></i>.
@@ -202,6 +368,33 @@ public abstract class BaseOperation implements Operation {
     else throw new IllegalArgumentException(String.format("Given payload type isn't supported: %s", payload.getClass()));
   }
 
+  /**
+   * Fill out the form with a payload that is already encoded as JSON (in UTF-8), e.g. by a
+   * generated client. No schema validation is performed on the payload. Protocol bindings that
+   * send JSON payloads as bytes should override this method; by default, the payload is decoded
+   * and set with {@link BaseOperation#setJSONPayload(Object)}.
+   *
+   * @param json the UTF-8 encoding of a JSON value
+   */
+  public void setEncodedPayload(byte[] json) {
+    Object payload = ENCODED_PAYLOAD_READER.fromJson(new String(json, StandardCharsets.UTF_8),
+      Object.class);
+    setJSONPayload(payload);
+  }
+
+  /**
+   * Set an object or array payload, given the serializer compiled from its schema (see
+   * {@link DataSchema#getSerializer()}). Protocol bindings that send JSON payloads as bytes should
+   * override this method; by default, the payload is set with
+   * {@link BaseOperation#setJSONPayload(Object)}.
+   *
+   * @param serializer the serializer of the payload
+   * @param payload an object ({@link Map}) or array ({@link List}) payload
+   */
+  protected void setSerializedPayload(SchemaSerializer serializer, Object payload) {
+    setJSONPayload(payload);
+  }
+
   protected abstract void setObjectPayload(Map<String, Object> payload);
 
   protected abstract void setArrayPayload(List<Object> payload);
@@ -214,12 +407,64 @@ public abstract class BaseOperation implements Operation {
 
   protected abstract void setNumberPayload(Double payload);
 
+  /**
+   * Start recording phase timings (if metrics are enabled), notify metrics that the request was
+   * sent, and arm the deadline of the first response. Protocol bindings should call this method
+   * when the request is handed over to the network.
+   *
+   * @param payloadSize size of the request payload (in bytes), or a negative value if unknown
+   */
+  protected void onRequestSent(long payloadSize) {
+    // Phases are only recorded for metrics: marks of the bindings are no-ops otherwise
+    if (metrics.isEnabled()) {
+      phaseTimings.start();
+      requestSentAt = System.nanoTime();
+      metrics.onRequestSent(getMetricsKey(), payloadSize);
+    }
+
+    cancelDeadline();
+    state.set(AWAITING);
+
+    long timeout = timeoutNanos;
+    if (timeout > 0 && hasDeadline()) {
+      deadline = System.nanoTime() + timeout;
+      deadlineTimeout = DEADLINE_TIMER.newTimeout(() -> expire(true), timeout, TimeUnit.NANOSECONDS);
+    }
+  }
+
   /**
    * Pass the input response to the semaphore and notify registered callbacks.
    *
    * @param r a response received by the Thing during the operation
    */
   protected void onResponse(Response r) {
+    onResponse(r, -1);
+  }
+
+  /**
+   * Pass the input response to the semaphore and notify registered callbacks and metrics.
+   *
+   * @param r a response received by the Thing during the operation
+   * @param payloadSize size of the response payload (in bytes), or a negative value if unknown
+   */
+  protected void onResponse(Response r, long payloadSize) {
+    boolean first = state.compareAndSet(AWAITING, RESPONDED);
+    if (first) {
+      cancelDeadline();
+    } else if (state.get() == EXPIRED) {
+      return;
+    }
+
+    if (metrics.isEnabled()) {
+      if (first) {
+        metrics.onFirstResponse(getMetricsKey(), r.getStatus(), System.nanoTime() - requestSentAt,
+          payloadSize);
+        metrics.onTimings(getMetricsKey(), phaseTimings);
+      } else {
+        metrics.onNotification(getMetricsKey(), r.getStatus(), payloadSize);
+      }
+    }
+
     lastResponse.clear();
 
     lastResponse.push(Optional.of(r));
@@ -230,10 +475,83 @@ public abstract class BaseOperation implements Operation {
    * Pass an empty value to the semaphore and notify registered callbacks of an error.
    */
   protected void onError() {
+    boolean first = state.compareAndSet(AWAITING, RESPONDED);
+    if (first) {
+      cancelDeadline();
+    } else if (state.get() == EXPIRED) {
+      return;
+    }
+
+    if (metrics.isEnabled()) {
+      if (first) {
+        phaseTimings.mark(Phase.FAILED);
+        metrics.onError(getMetricsKey(), System.nanoTime() - requestSentAt);
+        metrics.onTimings(getMetricsKey(), phaseTimings);
+      } else {
+        metrics.onError(getMetricsKey(), -1);
+      }
+    }
+
     lastResponse.clear();
 
     lastResponse.push(Optional.empty());
     callbacks.forEach(cb -> cb.onError());
   }
 
+  /**
+   * Expire the deadline of the first response, if no response or error was received: the exchange
+   * is aborted and the timeout is recorded.
+   *
+   * @param notify true if a blocked caller should be notified (i.e. if the deadline expired on the
+   *               timer)
+   */
+  private void expire(boolean notify) {
+    // Once the state left AWAITING, it cannot become EXPIRED: a response or error that loses the
+    // race against the deadline is dropped, and a response that wins it cancels the deadline
+    if (!state.compareAndSet(AWAITING, hasDeadline() ? EXPIRED : TIMED_OUT)) {
+      return;
+    }
+
+    if (metrics.isEnabled()) {
+      phaseTimings.mark(Phase.TIMED_OUT);
+      metrics.onTimeout(getMetricsKey(), System.nanoTime() - requestSentAt);
+      metrics.onTimings(getMetricsKey(), phaseTimings);
+    }
+
+    if (!hasDeadline()) {
+      // Subscriptions outlive a caller that gives up waiting for the first notification
+      return;
+    }
+
+    cancelDeadline();
+
+    try {
+      abort();
+    } catch (RuntimeException e) {
+      LOGGER.log(Level.WARNING, "Could not abort the exchange of an expired operation", e);
+    }
+
+    if (notify) {
+      lastResponse.clear();
+      lastResponse.push(Optional.empty());
+    }
+
+    callbacks.forEach(cb -> cb.onError());
+  }
+
+  /**
+   * Subscriptions (to events or property changes) may wait indefinitely for a first notification:
+   * their timeout only bounds blocking calls to {@link #getResponse()}.
+   */
+  private boolean hasDeadline() {
+    return !TD.observeProperty.equals(operationType) && !TD.subscribeEvent.equals(operationType);
+  }
+
+  private void cancelDeadline() {
+    HashedWheelTimer.Timeout timeout = deadlineTimeout;
+    if (timeout != null) {
+      timeout.cancel();
+    }
+  }
+
 }
@@ -1,7 +1,14 @@
 package ch.unisg.ics.interactions.wot.td.bindings;
 
 import ch.unisg.ics.interactions.wot.td.affordances.Link;
-
+import ch.unisg.ics.interactions.wot.td.metrics.PhaseTimings;
+import ch.unisg.ics.interactions.wot.td.schemas.ArraySchema;
+import ch.unisg.ics.interactions.wot.td.schemas.DataSchema;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -18,6 +25,80 @@ public abstract class BaseResponse implements Response {
     return operation;
   }
 
+  @Override
+  public Optional<PhaseTimings> getPhaseTimings() {
+    if (operation instanceof BaseOperation) {
+      PhaseTimings timings = ((BaseOperation) operation).getPhaseTimings();
+      return timings.isStarted() ? Optional.of(timings) : Optional.empty();
+    }
+
+    return Optional.empty();
+  }
+
+  /**
+   * Gets the payload of the response as a <code>double</code>, decoded directly from the encoded
+   * payload.
+   *
+   * @return the number
+   * @throws NoSuchElementException if the response has no encoded payload
+   * @throws IllegalArgumentException if the payload is not a JSON number
+   */
+  public double getPayloadAsDoubleValue() {
+    return NumericPayloadDecoder.decodeDouble(getEncodedPayloadOrThrow());
+  }
+
+  /**
+   * Gets the payload of the response as a <code>long</code>, decoded directly from the encoded
+   * payload.
+   *
+   * @return the integer
+   * @throws NoSuchElementException if the response has no encoded payload
+   * @throws IllegalArgumentException if the payload is not a JSON integer
+   */
+  public long getPayloadAsLongValue() {
+    return NumericPayloadDecoder.decodeLong(getEncodedPayloadOrThrow());
+  }
+
+  /**
+   * Gets the payload of the response as an array of <code>double</code>s that conforms to a given
+   * <code>ArraySchema</code>. The numbers are decoded directly from the encoded payload, without
+   * boxing them into a list.
+   *
+   * @param schema schema of the array, the items of which must be numbers or integers
+   * @return the numbers
+   * @throws NoSuchElementException if the response has no encoded payload
+   * @throws IllegalArgumentException if the schema does not describe an array of numbers, or if the
+   * payload does not conform to the schema
+   */
+  public double[] getPayloadAsDoubleArray(ArraySchema schema) {
+    checkItems(schema, DataSchema.NUMBER, DataSchema.INTEGER);
+
+    double[] values = NumericPayloadDecoder.decodeDoubleArray(getEncodedPayloadOrThrow());
+    checkSize(schema, values.length);
+
+    return values;
+  }
+
+  /**
+   * Gets the payload of the response as an array of <code>long</code>s that conforms to a given
+   * <code>ArraySchema</code>. The integers are decoded directly from the encoded payload, without
+   * boxing them into a list.
+   *
+   * @param schema schema of the array, the items of which must be integers
+   * @return the integers
+   * @throws NoSuchElementException if the response has no encoded payload
+   * @throws IllegalArgumentException if the schema does not describe an array of integers, or if
+   * the payload does not conform to the schema
+   */
+  public long[] getPayloadAsLongArray(ArraySchema schema) {
+    checkItems(schema, DataSchema.INTEGER);
+
+    long[] values = NumericPayloadDecoder.decodeLongArray(getEncodedPayloadOrThrow());
+    checkSize(schema, values.length);
+
+    return values;
+  }
+
   @Override
   public String toString() {
     StringBuilder builder = new StringBuilder();
@@ -46,6 +127,34 @@ public abstract class BaseResponse implements Response {
     return builder.toString();
   }
 
+  private byte[] getEncodedPayloadOrThrow() {
+    return getEncodedPayload()
+      .orElseThrow(() -> new NoSuchElementException("The response has no payload"));
+  }
+
+  private static void checkItems(ArraySchema schema, String... datatypes) {
+    List<String> allowed = Arrays.asList(datatypes);
+
+    for (DataSchema item : schema.getItems()) {
+      if (!allowed.contains(item.getDatatype())) {
+        throw new IllegalArgumentException("The items of the array must be of type "
+          + String.join(" or ", datatypes) + ", found " + item.getDatatype());
+      }
+    }
+  }
+
+  private static void checkSize(ArraySchema schema, int size) {
+    if (schema.getMinItems().isPresent() && size < schema.getMinItems().get()) {
+      throw new IllegalArgumentException("The array has " + size + " items, expected at least "
+        + schema.getMinItems().get());
+    }
+
+    if (schema.getMaxItems().isPresent() && size > schema.getMaxItems().get()) {
+      throw new IllegalArgumentException("The array has " + size + " items, expected at most "
+        + schema.getMaxItems().get());
+    }
+  }
+
   private String getOneLineString(Object obj) {
     Pattern p = Pattern.compile("([^\\r\\n]*)\\r?\\n");
     Matcher m = p.matcher(obj.toString());
@@ -0,0 +1,264 @@
+package ch.unisg.ics.interactions.wot.td.bindings;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A timer for large numbers of timeouts (e.g. polls, response deadlines) that runs on a single
+ * thread. Timeouts are hashed into the buckets of a wheel that advances by one bucket per tick, so
+ * that scheduling and cancelling a timeout take constant time. Timeouts expire up to one tick late:
+ * the tick duration trades precision for overhead.
+ * <p>
+ * Tasks run on the thread of the timer and must not block: long-running tasks should be handed over
+ * to an executor (or send asynchronous requests).
+ */
+public class HashedWheelTimer implements AutoCloseable {
+  private final static Logger LOGGER = Logger.getLogger(HashedWheelTimer.class.getCanonicalName());
+
+  public static final long DEFAULT_TICK_MILLIS = 10;
+  public static final int DEFAULT_WHEEL_SIZE = 512;
+
+  private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+  private final long tickNanos;
+  private final int mask;
+  private final List<List<Timeout>> wheel;
+  private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+  private final AtomicLong pendingCount = new AtomicLong();
+  private final Thread worker;
+  private final CountDownLatch started = new CountDownLatch(1);
+
+  private volatile long startTime;
+  private volatile boolean stopped;
+  private long tick;
+
+  /**
+   * Creates a timer with a tick of {@link #DEFAULT_TICK_MILLIS} ms and
+   * {@link #DEFAULT_WHEEL_SIZE} buckets.
+   */
+  public HashedWheelTimer() {
+    this(DEFAULT_TICK_MILLIS, TimeUnit.MILLISECONDS, DEFAULT_WHEEL_SIZE);
+  }
+
+  /**
+   * Creates a timer. Its thread is started when the first timeout is scheduled.
+   *
+   * @param tickDuration the duration of a tick
+   * @param unit the time unit of the tick duration
+   * @param wheelSize the number of buckets in the wheel (rounded up to a power of 2)
+   */
+  public HashedWheelTimer(long tickDuration, TimeUnit unit, int wheelSize) {
+    if (tickDuration <= 0 || wheelSize <= 0) {
+      throw new IllegalArgumentException("The tick duration and the wheel size must be positive.");
+    }
+
+    this.tickNanos = unit.toNanos(tickDuration);
+
+    int size = Integer.highestOneBit(wheelSize);
+    if (size < wheelSize) {
+      size <<= 1;
+    }
+
+    this.mask = size - 1;
+    this.wheel = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      wheel.add(new ArrayList<>());
+    }
+
+    this.worker = new Thread(this::run, "wot-td-timer-" + INSTANCES.incrementAndGet());
+    this.worker.setDaemon(true);
+  }
+
+  /**
+   * Schedules a task.
+   *
+   * @param task the task to run
+   * @param delay the delay before the task runs
+   * @param unit the time unit of the delay
+   * @return a handle to cancel the task
+   * @throws IllegalStateException if the timer was stopped
+   */
+  public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+    if (stopped) {
+      throw new IllegalStateException("The timer was stopped.");
+    }
+
+    start();
+
+    Timeout timeout = new Timeout(task, System.nanoTime() - startTime + Math.max(0, unit.toNanos(delay)));
+    pendingCount.incrementAndGet();
+    pending.add(timeout);
+
+    return timeout;
+  }
+
+  /**
+   * Gets the number of timeouts that are scheduled and neither expired nor cancelled.
+   *
+   * @return the number of pending timeouts
+   */
+  public long getPendingTimeouts() {
+    return pendingCount.get();
+  }
+
+  public long getTickDuration(TimeUnit unit) {
+    return unit.convert(tickNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Stops the timer: pending timeouts never expire.
+   */
+  public void stop() {
+    stopped = true;
+
+    if (worker.isAlive()) {
+      LockSupport.unpark(worker);
+    }
+  }
+
+  @Override
+  public void close() {
+    stop();
+  }
+
+  private void start() {
+    if (worker.getState() == Thread.State.NEW) {
+      synchronized (worker) {
+        if (worker.getState() == Thread.State.NEW) {
+          worker.start();
+        }
+      }
+    }
+
+    try {
+      started.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void run() {
+    startTime = System.nanoTime();
+    started.countDown();
+
+    while (!stopped) {
+      long deadline = waitForNextTick();
+      if (stopped) {
+        break;
+      }
+
+      transferPending();
+      expire(wheel.get((int) (tick & mask)), deadline);
+      tick++;
+    }
+  }
+
+  private long waitForNextTick() {
+    long deadline = tickNanos * (tick + 1);
+
+    while (!stopped) {
+      long sleepNanos = deadline - (System.nanoTime() - startTime);
+      if (sleepNanos <= 0) {
+        break;
+      }
+      LockSupport.parkNanos(this, sleepNanos);
+    }
+
+    return deadline;
+  }
+
+  private void transferPending() {
+    Timeout timeout;
+
+    while ((timeout = pending.poll()) != null) {
+      if (timeout.state.get() != Timeout.PENDING) {
+        continue;
+      }
+
+      long ticks = timeout.deadline / tickNanos;
+      timeout.remainingRounds = (ticks - tick) / wheel.size();
+      wheel.get((int) (Math.max(ticks, tick) & mask)).add(timeout);
+    }
+  }
+
+  private void expire(List<Timeout> bucket, long deadline) {
+    Iterator<Timeout> iterator = bucket.iterator();
+
+    while (iterator.hasNext()) {
+      Timeout timeout = iterator.next();
+
+      if (timeout.state.get() != Timeout.PENDING) {
+        iterator.remove();
+      } else if (timeout.remainingRounds <= 0 && timeout.deadline <= deadline) {
+        iterator.remove();
+        timeout.expire();
+      } else {
+        timeout.remainingRounds--;
+      }
+    }
+  }
+
+  /**
+   * A handle on a scheduled task.
+   */
+  public final class Timeout {
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    private final Runnable task;
+    private final long deadline;
+    private final AtomicInteger state = new AtomicInteger(PENDING);
+    private long remainingRounds;
+
+    private Timeout(Runnable task, long deadline) {
+      this.task = task;
+      this.deadline = deadline;
+    }
+
+    /**
+     * Cancels the task if it has not run yet.
+     *
+     * @return true if the task was cancelled, false if it already ran or was cancelled
+     */
+    public boolean cancel() {
+      if (state.compareAndSet(PENDING, CANCELLED)) {
+        pendingCount.decrementAndGet();
+        return true;
+      }
+      return false;
+    }
+
+    public boolean isCancelled() {
+      return state.get() == CANCELLED;
+    }
+
+    public boolean isExpired() {
+      return state.get() == EXPIRED;
+    }
+
+    private void expire() {
+      if (!state.compareAndSet(PENDING, EXPIRED)) {
+        return;
+      }
+
+      pendingCount.decrementAndGet();
+
+      try {
+        task.run();
+      } catch (Throwable t) {
+        LOGGER.log(Level.WARNING, "Timer task failed", t);
+      }
+    }
+  }
+}
@@ -14,6 +14,10 @@ public class NoResponseException extends IOException {
     super();
   }
 
+  public NoResponseException(String message) {
+    super(message);
+  }
+
   public NoResponseException(Throwable cause) {
     super(cause);
   }
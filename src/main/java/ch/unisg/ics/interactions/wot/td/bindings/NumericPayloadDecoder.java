@@ -0,0 +1,218 @@
+package ch.unisg.ics.interactions.wot.td.bindings;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Decoder of JSON numbers and arrays of JSON numbers that reads the encoded payload of a response
+ * directly into primitive values, without building a JSON tree or boxing the numbers.
+ */
+final class NumericPayloadDecoder {
+  // Integers with up to 15 digits are exact as doubles, and integers with up to 18 digits fit in a long
+  private static final int MAX_EXACT_DOUBLE_DIGITS = 15;
+  private static final int MAX_LONG_DIGITS = 18;
+
+  private final byte[] bytes;
+  private int pos;
+
+  private NumericPayloadDecoder(byte[] bytes) {
+    this.bytes = bytes;
+    this.pos = 0;
+  }
+
+  static double decodeDouble(byte[] bytes) {
+    NumericPayloadDecoder decoder = new NumericPayloadDecoder(bytes);
+    double value = decoder.nextDouble();
+    decoder.expectEnd();
+    return value;
+  }
+
+  static long decodeLong(byte[] bytes) {
+    NumericPayloadDecoder decoder = new NumericPayloadDecoder(bytes);
+    long value = decoder.nextLong();
+    decoder.expectEnd();
+    return value;
+  }
+
+  static double[] decodeDoubleArray(byte[] bytes) {
+    NumericPayloadDecoder decoder = new NumericPayloadDecoder(bytes);
+    double[] values = new double[16];
+    int size = 0;
+
+    if (decoder.beginArray()) {
+      do {
+        if (size == values.length) {
+          values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = decoder.nextDouble();
+      } while (decoder.hasNextItem());
+    }
+    decoder.expectEnd();
+
+    return Arrays.copyOf(values, size);
+  }
+
+  static long[] decodeLongArray(byte[] bytes) {
+    NumericPayloadDecoder decoder = new NumericPayloadDecoder(bytes);
+    long[] values = new long[16];
+    int size = 0;
+
+    if (decoder.beginArray()) {
+      do {
+        if (size == values.length) {
+          values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = decoder.nextLong();
+      } while (decoder.hasNextItem());
+    }
+    decoder.expectEnd();
+
+    return Arrays.copyOf(values, size);
+  }
+
+  /**
+   * Reads the start of an array.
+   *
+   * @return true if the array is not empty
+   */
+  private boolean beginArray() {
+    skipWhitespace();
+    expect('[');
+    skipWhitespace();
+
+    if (pos < bytes.length && bytes[pos] == ']') {
+      pos++;
+      return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * Reads the separator after an item of an array.
+   *
+   * @return true if there is another item, false if the array ended
+   */
+  private boolean hasNextItem() {
+    skipWhitespace();
+
+    if (pos < bytes.length && bytes[pos] == ',') {
+      pos++;
+      return true;
+    }
+
+    expect(']');
+    return false;
+  }
+
+  private double nextDouble() {
+    skipWhitespace();
+
+    int start = pos;
+    long value = nextInteger();
+
+    if (pos - start - (bytes[start] == '-' ? 1 : 0) <= MAX_EXACT_DOUBLE_DIGITS && !isFraction()) {
+      return value;
+    }
+
+    pos = start;
+    return Double.parseDouble(nextToken());
+  }
+
+  private long nextLong() {
+    skipWhitespace();
+
+    int start = pos;
+    long value = nextInteger();
+
+    if (pos - start - (bytes[start] == '-' ? 1 : 0) <= MAX_LONG_DIGITS && !isFraction()) {
+      return value;
+    }
+
+    pos = start;
+    String token = nextToken();
+
+    try {
+      return Long.parseLong(token);
+    } catch (NumberFormatException e) {
+      // Integral values may be written with a fraction or an exponent (e.g. 1.0 or 1e3)
+      double d = Double.parseDouble(token);
+      if (d != Math.rint(d) || d < Long.MIN_VALUE || d >= 0x1p63) {
+        throw new IllegalArgumentException(token + " is not an integer", e);
+      }
+      return (long) d;
+    }
+  }
+
+  /**
+   * Reads the integer part of a number. Only the value of integer parts with up to 18 digits is
+   * correct, but the position is always moved past the integer part.
+   */
+  private long nextInteger() {
+    boolean negative = pos < bytes.length && bytes[pos] == '-';
+    if (negative) {
+      pos++;
+    }
+
+    int start = pos;
+    long value = 0;
+
+    while (pos < bytes.length && bytes[pos] >= '0' && bytes[pos] <= '9') {
+      value = value * 10 + (bytes[pos++] - '0');
+    }
+
+    if (pos == start) {
+      throw new IllegalArgumentException("Expected a number at offset " + start);
+    }
+
+    return negative ? -value : value;
+  }
+
+  private boolean isFraction() {
+    return pos < bytes.length && (bytes[pos] == '.' || bytes[pos] == 'e' || bytes[pos] == 'E');
+  }
+
+  private String nextToken() {
+    int start = pos;
+
+    while (pos < bytes.length && isNumberByte(bytes[pos])) {
+      pos++;
+    }
+
+    String token = new String(bytes, start, pos - start, StandardCharsets.US_ASCII);
+
+    try {
+      Double.parseDouble(token);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(token + " is not a number", e);
+    }
+
+    return token;
+  }
+
+  private void expect(char c) {
+    if (pos >= bytes.length || bytes[pos] != c) {
+      throw new IllegalArgumentException("Expected '" + c + "' at offset " + pos);
+    }
+    pos++;
+  }
+
+  private void expectEnd() {
+    skipWhitespace();
+
+    if (pos < bytes.length) {
+      throw new IllegalArgumentException("Unexpected content at offset " + pos);
+    }
+  }
+
+  private void skipWhitespace() {
+    while (pos < bytes.length && (bytes[pos] == ' ' || bytes[pos] == '\t' || bytes[pos] == '\n'
+        || bytes[pos] == '\r')) {
+      pos++;
+    }
+  }
+
+  private static boolean isNumberByte(byte b) {
+    return (b >= '0' && b <= '9') || b == '-' || b == '+' || b == '.' || b == 'e' || b == 'E';
+  }
+}
@@ -3,6 +3,8 @@ package ch.unisg.ics.interactions.wot.td.bindings;
 import ch.unisg.ics.interactions.wot.td.affordances.Form;
 import ch.unisg.ics.interactions.wot.td.bindings.coap.TDCoapBinding;
 import ch.unisg.ics.interactions.wot.td.bindings.http.TDHttpBinding;
+import ch.unisg.ics.interactions.wot.td.bindings.mqtt.TDMqttBinding;
+import ch.unisg.ics.interactions.wot.td.bindings.ws.TDWebSocketBinding;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -24,6 +26,9 @@ public class ProtocolBindings {
 
     ProtocolBindings.registerBinding(coapBindingClass);
     ProtocolBindings.registerBinding(coapBindingClass);
+
+    ProtocolBindings.registerBinding(TDWebSocketBinding.class.getName());
+    ProtocolBindings.registerBinding(TDMqttBinding.class.getName());
   }
 
   public static ProtocolBinding getBinding(Form form) throws BindingNotFoundException {
@@ -1,7 +1,9 @@
 package ch.unisg.ics.interactions.wot.td.bindings;
 
 import ch.unisg.ics.interactions.wot.td.affordances.Link;
+import ch.unisg.ics.interactions.wot.td.metrics.PhaseTimings;
 
+import java.time.Duration;
 import java.util.Collection;
 import java.util.Optional;
 
@@ -22,4 +24,36 @@ public interface Response {
 
   Collection<Link> getLinks();
 
+  /**
+   * Return the timestamps of the phases of the exchange that produced this response (e.g. DNS
+   * lookup, handshake, time to first byte), if recorded by the protocol binding.
+   *
+   * @return the phase timings of the exchange, if any
+   */
+  default Optional<PhaseTimings> getPhaseTimings() {
+    return Optional.empty();
+  }
+
+  /**
+   * Return the delay after which the Thing asked to be contacted again, if the response carries a
+   * back-off signal (e.g. an HTTP <code>Retry-After</code> header, or the <code>Max-Age</code> of a
+   * CoAP 5.03 response).
+   *
+   * @return the requested delay, if any
+   */
+  default Optional<Duration> getRetryAfter() {
+    return Optional.empty();
+  }
+
+  /**
+   * Return the payload of the response as received (e.g. the UTF-8 encoding of a JSON value), if
+   * the protocol binding keeps it. Consumers that decode payloads themselves (e.g. with a streaming
+   * parser) can use it instead of {@link #getPayload()}.
+   *
+   * @return the encoded payload, if any
+   */
+  default Optional<byte[]> getEncodedPayload() {
+    return Optional.empty();
+  }
+
 }
@@ -0,0 +1,22 @@
+package ch.unisg.ics.interactions.wot.td.bindings.coap;
+
+import java.io.IOException;
+
+/**
+ * Consumer of the payload of a CoAP response that is transferred block by block
+ * (<a href="https://www.rfc-editor.org/rfc/rfc7959">RFC 7959</a>). Blocks are passed in order,
+ * one at a time: the next block is requested once the handler returns.
+ */
+@FunctionalInterface
+public interface TDCoapBlockHandler {
+
+  /**
+   * Called for each block of the payload.
+   *
+   * @param block the content of the block
+   * @param offset the position of the block in the payload (in bytes)
+   * @param last true if the block is the last block of the payload
+   * @throws IOException to abort the transfer (the operation then fails)
+   */
+  void onBlock(byte[] block, long offset, boolean last) throws IOException;
+}
@@ -0,0 +1,397 @@
+package ch.unisg.ics.interactions.wot.td.bindings.coap;
+
+import org.eclipse.californium.core.coap.BlockOption;
+import org.eclipse.californium.core.coap.CoAP;
+import org.eclipse.californium.core.coap.CoAP.ResponseCode;
+import org.eclipse.californium.core.coap.MessageObserver;
+import org.eclipse.californium.core.coap.MessageObserverAdapter;
+import org.eclipse.californium.core.coap.OptionSet;
+import org.eclipse.californium.core.coap.Request;
+import org.eclipse.californium.core.coap.Response;
+import org.eclipse.californium.core.network.CoapEndpoint;
+import org.eclipse.californium.core.network.CoapStackFactory;
+import org.eclipse.californium.core.network.Endpoint;
+import org.eclipse.californium.core.network.config.NetworkConfig;
+import org.eclipse.californium.core.network.stack.AbstractLayer;
+import org.eclipse.californium.core.network.stack.CoapUdpStack;
+import org.eclipse.californium.core.network.stack.Layer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Block-wise transfer (<a href="https://www.rfc-editor.org/rfc/rfc7959">RFC 7959</a>) of the
+ * payloads of a {@link TDCoapOperation}, driven by the client so that large payloads (e.g. firmware
+ * images, log dumps) are transferred in constant memory: the request payload is read from an
+ * <code>InputStream</code> one block at a time (<code>Block1</code>), and the blocks of the response
+ * payload are passed to a {@link TDCoapBlockHandler} as they are received (<code>Block2</code>).
+ * <p>
+ * Californium reassembles block-wise transfers by default, up to a maximum body size. Block-wise
+ * transfers must therefore be sent on an endpoint that leaves block options to the application
+ * (see {@link #createEndpoint(NetworkConfig)}).
+ * <p>
+ * The first block of a request payload is read by the thread that sends the request. The next
+ * blocks are read on a daemon thread of the transfer, so that streams that block (e.g. pipes) do
+ * not hold the threads on which the endpoint handles responses.
+ */
+public class TDCoapBlockwiseTransfer {
+  private final static Logger LOGGER = Logger.getLogger(TDCoapBlockwiseTransfer.class.getCanonicalName());
+
+  /**
+   * Default block size (in bytes)
+   */
+  public static final int DEFAULT_BLOCK_SIZE = 512;
+
+  /**
+   * Stack factory for endpoints whose stack has no block-wise layer
+   */
+  private static final CoapStackFactory STACK_FACTORY = (protocol, config, outbox, argument) -> {
+    if (CoAP.isTcpProtocol(protocol)) {
+      throw new IllegalArgumentException("Block-wise transfers are only driven by the client over UDP.");
+    }
+
+    return new CoapUdpStack(config, outbox) {
+      @Override
+      protected Layer createBlockwiseLayer(NetworkConfig config) {
+        return new AbstractLayer() { };
+      }
+    };
+  };
+
+  private static final AtomicInteger READERS = new AtomicInteger();
+
+  /**
+   * Threads on which the next blocks of request payloads are read
+   */
+  private static final ExecutorService BLOCK_READER = Executors.newCachedThreadPool(runnable -> {
+    Thread thread = new Thread(runnable, "wot-td-coap-block-reader-" + READERS.incrementAndGet());
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private static Endpoint defaultEndpoint;
+
+  /**
+   * Receiver of the outcome of a transfer.
+   */
+  interface Listener {
+
+    /**
+     * Called when the exchange completed with a response from the server (possibly an error).
+     *
+     * @param response the last response of the exchange, with the reassembled payload if no block
+     *                 handler was set (and an empty payload otherwise)
+     * @param payloadSize the size of the response payload (in bytes)
+     */
+    void onComplete(Response response, long payloadSize);
+
+    void onFailure();
+  }
+
+  private final Request template;
+  private final Endpoint endpoint;
+  private final PushbackInputStream source;
+  private final Optional<TDCoapBlockHandler> sink;
+  private final Listener listener;
+  private final MessageObserver firstRequestObserver;
+
+  private int szx;
+  private long sent = 0;
+  private long received = 0;
+  private byte[] etag;
+  private ByteArrayOutputStream body;
+
+  private volatile Request pending;
+  private volatile boolean cancelled = false;
+
+  TDCoapBlockwiseTransfer(Request template, Endpoint endpoint, Optional<InputStream> source,
+      Optional<TDCoapBlockHandler> sink, int blockSize, MessageObserver firstRequestObserver,
+      Listener listener) {
+    this.template = template;
+    this.endpoint = endpoint;
+    this.source = source.map(in -> new PushbackInputStream(in, 1)).orElse(null);
+    this.sink = sink;
+    this.szx = BlockOption.size2Szx(checkBlockSize(blockSize));
+    this.firstRequestObserver = firstRequestObserver;
+    this.listener = listener;
+  }
+
+  /**
+   * Creates an endpoint on which the application controls block-wise transfers.
+   *
+   * @param config the configuration of the endpoint
+   * @return the endpoint (not started)
+   */
+  public static CoapEndpoint createEndpoint(NetworkConfig config) {
+    return new CoapEndpoint.Builder()
+      .setNetworkConfig(config)
+      .setCoapStackFactory(STACK_FACTORY)
+      .build();
+  }
+
+  /**
+   * Checks that a block size is valid: block sizes are powers of 2 between 16 and 1024 bytes.
+   *
+   * @param blockSize the block size (in bytes)
+   * @return the block size
+   * @throws IllegalArgumentException if the block size is not valid
+   */
+  public static int checkBlockSize(int blockSize) {
+    if (blockSize < 16 || blockSize > 1024 || Integer.bitCount(blockSize) != 1) {
+      throw new IllegalArgumentException("The block size must be a power of 2 between 16 and 1024 bytes: "
+        + blockSize);
+    }
+
+    return blockSize;
+  }
+
+  static synchronized Endpoint getDefaultEndpoint() {
+    if (defaultEndpoint == null) {
+      defaultEndpoint = createEndpoint(NetworkConfig.getStandard());
+    }
+
+    return defaultEndpoint;
+  }
+
+  void start() throws IOException {
+    if (!endpoint.isStarted()) {
+      endpoint.start();
+    }
+
+    if (source != null) {
+      sendBlock1(0);
+    } else {
+      Request request = newRequest();
+      request.setPayload(template.getPayload());
+      request.getOptions().setBlock2(szx, false, 0);
+      send(request);
+    }
+  }
+
+  /**
+   * Cancels the transfer: the pending request is cancelled and no further block is requested.
+   */
+  void cancel() {
+    cancelled = true;
+
+    Request request = pending;
+    if (request != null) {
+      request.cancel();
+    }
+  }
+
+  private void sendBlock1(int num) {
+    byte[] block = new byte[BlockOption.szx2Size(szx)];
+    boolean more;
+    int length;
+
+    try {
+      length = readBlock(block);
+      int next = source.read();
+      more = next >= 0;
+      if (more) {
+        source.unread(next);
+      }
+    } catch (IOException e) {
+      LOGGER.log(Level.WARNING, "Could not read the request payload", e);
+      listener.onFailure();
+      return;
+    }
+
+    Request request = newRequest();
+    request.setPayload(length == block.length ? block : Arrays.copyOf(block, length));
+    request.getOptions().setBlock1(szx, more, num);
+    send(request);
+  }
+
+  private void onBlock1Response(Request request, Response response) {
+    BlockOption block1 = request.getOptions().getBlock1();
+
+    if (!block1.isM() || response.getCode().codeClass != 2) {
+      // The last block was sent, or the server rejected the request
+      sent += request.getPayloadSize();
+      onResponse(response);
+      return;
+    }
+
+    if (response.getCode() != ResponseCode.CONTINUE) {
+      LOGGER.log(Level.WARNING, "The server does not support block-wise requests: " + template.getURI());
+      listener.onFailure();
+      return;
+    }
+
+    sent += request.getPayloadSize();
+
+    // The server may ask for smaller blocks
+    BlockOption ack = response.getOptions().getBlock1();
+    if (ack != null && ack.getSzx() < szx) {
+      szx = ack.getSzx();
+    }
+
+    int num = (int) (sent / BlockOption.szx2Size(szx));
+    BLOCK_READER.execute(() -> {
+      if (cancelled) {
+        return;
+      }
+
+      try {
+        sendBlock1(num);
+      } catch (RuntimeException e) {
+        LOGGER.log(Level.WARNING, "Could not send the request payload", e);
+        listener.onFailure();
+      }
+    });
+  }
+
+  private void onResponse(Response response) {
+    BlockOption block2 = response.getOptions().getBlock2();
+    byte[] payload = response.getPayload() == null ? new byte[0] : response.getPayload();
+
+    if (response.getCode().codeClass != 2) {
+      // Error responses are passed on as they are (e.g. with a diagnostic payload)
+      listener.onComplete(response, response.getPayloadSize());
+      return;
+    }
+
+    if (block2 == null) {
+      deliver(payload, 0, true);
+      complete(response);
+      return;
+    }
+
+    if (block2.getOffset() != received) {
+      LOGGER.log(Level.WARNING, "Unexpected block of the response payload: " + block2);
+      listener.onFailure();
+      return;
+    }
+
+    if (!checkETag(response)) {
+      LOGGER.log(Level.WARNING, "The resource changed during the transfer: " + template.getURI());
+      listener.onFailure();
+      return;
+    }
+
+    if (!deliver(payload, block2.getOffset(), !block2.isM())) {
+      return;
+    }
+
+    if (!block2.isM()) {
+      complete(response);
+      return;
+    }
+
+    // Blocks can be requested with a smaller size than the one chosen by the server
+    szx = Math.min(szx, block2.getSzx());
+
+    Request request = newRequest();
+    request.getOptions().setBlock2(szx, false, (int) (received / BlockOption.szx2Size(szx)));
+    send(request);
+  }
+
+  private boolean deliver(byte[] block, long offset, boolean last) {
+    received = offset + block.length;
+
+    if (!sink.isPresent()) {
+      if (body == null) {
+        body = new ByteArrayOutputStream();
+      }
+      body.write(block, 0, block.length);
+      return true;
+    }
+
+    try {
+      sink.get().onBlock(block, offset, last);
+      return true;
+    } catch (IOException e) {
+      LOGGER.log(Level.WARNING, "The block handler aborted the transfer", e);
+      listener.onFailure();
+      return false;
+    }
+  }
+
+  private void complete(Response response) {
+    response.getOptions().removeBlock2();
+    response.setPayload(body == null ? null : body.toByteArray());
+    listener.onComplete(response, received);
+  }
+
+  private boolean checkETag(Response response) {
+    List<byte[]> etags = response.getOptions().getETags();
+    byte[] current = etags.isEmpty() ? null : etags.get(0);
+
+    if (received == 0) {
+      etag = current;
+      return true;
+    }
+
+    return Arrays.equals(etag, current);
+  }
+
+  private Request newRequest() {
+    Request request = new Request(template.getCode(), template.getType());
+    request.setDestinationContext(template.getDestinationContext());
+    request.setOptions(new OptionSet(template.getOptions()));
+    request.getOptions().removeObserve();
+
+    return request;
+  }
+
+  private void send(Request request) {
+    // Checked after the request is published, so that a concurrent cancellation sees it
+    pending = request;
+    if (cancelled) {
+      return;
+    }
+
+    if (firstRequestObserver != null && sent == 0 && received == 0) {
+      request.addMessageObserver(firstRequestObserver);
+    }
+
+    request.addMessageObserver(new MessageObserverAdapter() {
+      @Override
+      public void onResponse(Response response) {
+        try {
+          if (request.getOptions().hasBlock1()) {
+            onBlock1Response(request, response);
+          } else {
+            TDCoapBlockwiseTransfer.this.onResponse(response);
+          }
+        } catch (RuntimeException e) {
+          LOGGER.log(Level.WARNING, "Could not handle the response: " + response, e);
+          listener.onFailure();
+        }
+      }
+
+      @Override
+      protected void failed() {
+        listener.onFailure();
+      }
+    });
+
+    endpoint.sendRequest(request);
+  }
+
+  private int readBlock(byte[] block) throws IOException {
+    int length = 0;
+
+    while (length < block.length) {
+      int n = source.read(block, length, block.length - length);
+      if (n < 0) {
+        break;
+      }
+      length += n;
+    }
+
+    return length;
+  }
+}
@@ -0,0 +1,56 @@
+package ch.unisg.ics.interactions.wot.td.bindings.coap;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Orders the notifications of an observe relation as specified in RFC 7641 (Section 3.4): a
+ * notification is fresh if its sequence number is greater than the sequence number of the last
+ * notification (modulo 2<sup>24</sup>), or if it was received more than 128 s after the last
+ * notification.
+ */
+final class TDCoapNotificationOrder {
+  private static final int HALF_SEQUENCE_SPACE = 1 << 23;
+  private static final long FRESHNESS_NANOS = TimeUnit.SECONDS.toNanos(128);
+
+  private boolean empty = true;
+  private int lastSequence;
+  private long lastReceivedAt;
+
+  /**
+   * Checks if a notification is fresh, and if so, records it as the last notification.
+   *
+   * @param sequence the value of the Observe option of the notification
+   * @param receivedAt the time at which the notification was received (in nanoseconds)
+   * @return true if the notification is fresh, false if it is stale or reordered
+   */
+  synchronized boolean accept(int sequence, long receivedAt) {
+    boolean fresh = empty
+      || (lastSequence < sequence && sequence - lastSequence < HALF_SEQUENCE_SPACE)
+      || (lastSequence > sequence && lastSequence - sequence > HALF_SEQUENCE_SPACE)
+      || receivedAt - lastReceivedAt > FRESHNESS_NANOS;
+
+    if (fresh) {
+      empty = false;
+      lastSequence = sequence;
+      lastReceivedAt = receivedAt;
+    }
+
+    return fresh;
+  }
+
+  /**
+   * Forgets the last notification, e.g. when the relation is re-registered: the response to the
+   * registration is always fresh, since the Thing may have restarted its sequence numbers.
+   */
+  synchronized void reset() {
+    empty = true;
+  }
+
+  synchronized boolean isEmpty() {
+    return empty;
+  }
+
+  synchronized int getLastSequence() {
+    return lastSequence;
+  }
+}
@@ -2,16 +2,24 @@ package ch.unisg.ics.interactions.wot.td.bindings.coap;
 
 import ch.unisg.ics.interactions.wot.td.affordances.Form;
 import ch.unisg.ics.interactions.wot.td.bindings.BaseOperation;
+import ch.unisg.ics.interactions.wot.td.metrics.PhaseTimings.Phase;
+import ch.unisg.ics.interactions.wot.td.schemas.SchemaSerializer;
 import ch.unisg.ics.interactions.wot.td.vocabularies.COV;
 import ch.unisg.ics.interactions.wot.td.vocabularies.TD;
-import com.google.gson.Gson;
 import org.eclipse.californium.core.CoapClient;
 import org.eclipse.californium.core.CoapHandler;
 import org.eclipse.californium.core.CoapResponse;
 import org.eclipse.californium.core.coap.CoAP;
 import org.eclipse.californium.core.coap.MediaTypeRegistry;
+import org.eclipse.californium.core.coap.MessageObserverAdapter;
 import org.eclipse.californium.core.coap.Request;
+import org.eclipse.californium.core.coap.Response;
+import org.eclipse.californium.core.network.Endpoint;
+import org.eclipse.californium.elements.EndpointContext;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -31,7 +39,11 @@ public class TDCoapOperation extends BaseOperation {
 
     @Override
     public void onLoad(CoapResponse response) {
-      TDCoapOperation.this.onResponse(new TDCoapResponse(response.advanced(), TDCoapOperation.this));
+      getPhaseTimings().mark(Phase.RESPONSE_RECEIVED);
+      TDCoapResponse r = new TDCoapResponse(response.advanced(), TDCoapOperation.this);
+      getPhaseTimings().mark(Phase.PAYLOAD_DECODED);
+
+      TDCoapOperation.this.onResponse(r, response.advanced().getPayloadSize());
     }
 
     @Override
@@ -42,6 +54,43 @@ public class TDCoapOperation extends BaseOperation {
 
   }
 
+  /**
+   * Records the phases of the exchange reported by Californium, including retransmissions of
+   * confirmable requests and DTLS handshakes.
+   */
+  private class TDCoapPhaseObserver extends MessageObserverAdapter {
+
+    @Override
+    public void onConnecting() {
+      getPhaseTimings().mark(Phase.CONNECTING);
+      getPhaseTimings().mark(Phase.HANDSHAKE_STARTED);
+    }
+
+    @Override
+    public void onDtlsRetransmission(int flight) {
+      getPhaseTimings().mark(Phase.HANDSHAKE_RETRANSMITTED);
+    }
+
+    @Override
+    public void onContextEstablished(EndpointContext endpointContext) {
+      if (getPhaseTimings().isStarted()
+          && getPhaseTimings().getOffset(Phase.HANDSHAKE_STARTED).isPresent()
+          && !getPhaseTimings().getOffset(Phase.HANDSHAKE_COMPLETED).isPresent()) {
+        getPhaseTimings().mark(Phase.HANDSHAKE_COMPLETED);
+      }
+    }
+
+    @Override
+    public void onSent(boolean retransmission) {
+      getPhaseTimings().mark(retransmission ? Phase.REQUEST_RETRANSMITTED : Phase.REQUEST_SENT);
+    }
+
+    @Override
+    public void onAcknowledgement() {
+      getPhaseTimings().mark(Phase.ACKNOWLEDGED);
+    }
+  }
+
   private final Request request;
 
   private final List<CoapClient> executors = new ArrayList<>();
@@ -51,6 +100,12 @@ public class TDCoapOperation extends BaseOperation {
 
   private final String target;
 
+  private Optional<InputStream> payloadStream = Optional.empty();
+  private Optional<TDCoapBlockHandler> blockHandler = Optional.empty();
+  private int blockSize = TDCoapBlockwiseTransfer.DEFAULT_BLOCK_SIZE;
+  private Optional<Endpoint> blockwiseEndpoint = Optional.empty();
+  private volatile Optional<TDCoapBlockwiseTransfer> transfer = Optional.empty();
+
   public TDCoapOperation(Form form, String operationType) {
     super(form, operationType);
 
@@ -77,15 +132,75 @@ public class TDCoapOperation extends BaseOperation {
       }
     }
     this.request.getOptions().setContentFormat(MediaTypeRegistry.parse(form.getContentType()));
+    this.request.addMessageObserver(new TDCoapPhaseObserver());
   }
 
   public String getTarget() {
     return target;
   }
 
+  /**
+   * Sets the payload of the request as a stream, which is sent block by block (see
+   * {@link TDCoapBlockwiseTransfer}). The stream is read when the request is sent, and is not closed.
+   * Blocks after the first one are read on a thread of the transfer, so the stream may block.
+   *
+   * @param payload the stream of the payload
+   */
+  public void setPayloadStream(InputStream payload) {
+    this.payloadStream = Optional.of(payload);
+  }
+
+  /**
+   * Sets a handler to which the payload of the response is passed block by block, instead of being
+   * held by the response (see {@link TDCoapBlockwiseTransfer}). Responses passed to callbacks then
+   * have an empty payload.
+   *
+   * @param handler the handler of the blocks of the response payload
+   */
+  public void setResponseBlockHandler(TDCoapBlockHandler handler) {
+    this.blockHandler = Optional.of(handler);
+  }
+
+  /**
+   * Writes the payload of the response to a stream as its blocks are received (see
+   * {@link #setResponseBlockHandler(TDCoapBlockHandler)}). The stream is not closed.
+   *
+   * @param out the stream to which the response payload is written
+   */
+  public void setResponseStream(OutputStream out) {
+    setResponseBlockHandler((block, offset, last) -> out.write(block));
+  }
+
+  /**
+   * Sets the size of the blocks of block-wise transfers (by default,
+   * {@value TDCoapBlockwiseTransfer#DEFAULT_BLOCK_SIZE} bytes). Servers may ask for smaller blocks.
+   *
+   * @param blockSize the block size (in bytes): a power of 2 between 16 and 1024
+   */
+  public void setBlockSize(int blockSize) {
+    this.blockSize = TDCoapBlockwiseTransfer.checkBlockSize(blockSize);
+  }
+
+  /**
+   * Sets the endpoint on which block-wise transfers are sent (by default, an endpoint shared by all
+   * operations). The endpoint must leave block options to the application, see
+   * {@link TDCoapBlockwiseTransfer#createEndpoint(org.eclipse.californium.core.network.config.NetworkConfig)}.
+   *
+   * @param endpoint the endpoint
+   */
+  public void setBlockwiseEndpoint(Endpoint endpoint) {
+    this.blockwiseEndpoint = Optional.of(endpoint);
+  }
+
   @Override
-  public void sendRequest() {
+  public void sendRequest() throws IOException {
+    if (payloadStream.isPresent() || blockHandler.isPresent()) {
+      sendBlockwise();
+      return;
+    }
+
     CoapClient client = new CoapClient();
+    onRequestSent(request.getPayloadSize());
     client.advanced(handler, request);
     addExecutor(client);
   }
@@ -104,6 +219,17 @@ public class TDCoapOperation extends BaseOperation {
     }
   }
 
+  /**
+   * Cancels the pending exchange (or block-wise transfer) and shuts the executors of the
+   * operation down.
+   */
+  @Override
+  protected void abort() {
+    request.cancel();
+    transfer.ifPresent(TDCoapBlockwiseTransfer::cancel);
+    shutdownExecutors();
+  }
+
   public TDCoapOperation addOption(String key, String value) {
     // TODO Support CoAP options e.g. for observation flag
     return null;
@@ -136,14 +262,22 @@ public class TDCoapOperation extends BaseOperation {
 
   @Override
   protected void setObjectPayload(Map<String, Object> payload) {
-    String body = new Gson().toJson(payload);
-    request.setPayload(body);
+    setSerializedPayload(SchemaSerializer.generic(), payload);
   }
 
   @Override
   protected void setArrayPayload(List<Object> payload) {
-    String body = new Gson().toJson(payload);
-    request.setPayload(body);
+    setSerializedPayload(SchemaSerializer.generic(), payload);
+  }
+
+  @Override
+  protected void setSerializedPayload(SchemaSerializer serializer, Object payload) {
+    setEncodedPayload(serializer.toByteArray(payload));
+  }
+
+  @Override
+  public void setEncodedPayload(byte[] json) {
+    request.setPayload(json);
   }
 
   public String getPayloadAsString() {
@@ -173,6 +307,30 @@ public class TDCoapOperation extends BaseOperation {
     return this.request;
   }
 
+  private void sendBlockwise() throws IOException {
+    TDCoapBlockwiseTransfer current = new TDCoapBlockwiseTransfer(request,
+      blockwiseEndpoint.orElseGet(TDCoapBlockwiseTransfer::getDefaultEndpoint), payloadStream,
+      blockHandler, blockSize, new TDCoapPhaseObserver(), new TDCoapBlockwiseTransfer.Listener() {
+        @Override
+        public void onComplete(Response response, long payloadSize) {
+          getPhaseTimings().mark(Phase.RESPONSE_RECEIVED);
+          TDCoapResponse r = new TDCoapResponse(response, TDCoapOperation.this);
+          getPhaseTimings().mark(Phase.PAYLOAD_DECODED);
+
+          TDCoapOperation.this.onResponse(r, payloadSize);
+        }
+
+        @Override
+        public void onFailure() {
+          TDCoapOperation.this.onError();
+        }
+      });
+
+    transfer = Optional.of(current);
+    onRequestSent(payloadStream.isPresent() ? -1 : request.getPayloadSize());
+    current.start();
+  }
+
   // TODO expose CoapObserveRelation if cov:observe declared in form
 
   private void addExecutor(CoapClient client) {
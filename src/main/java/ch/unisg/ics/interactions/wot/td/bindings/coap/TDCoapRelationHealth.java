@@ -0,0 +1,108 @@
+package ch.unisg.ics.interactions.wot.td.bindings.coap;
+
+import ch.unisg.ics.interactions.wot.td.affordances.Form;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A snapshot of the health of an observe relation maintained by a
+ * {@link TDCoapSubscriptionManager}.
+ */
+public class TDCoapRelationHealth {
+
+  public enum State {
+    /** The registration was sent, and no notification was received yet. */
+    REGISTERING,
+    /** Notifications are received within their Max-Age. */
+    ACTIVE,
+    /** No notification was received within the Max-Age, and the relation was re-registered. */
+    REREGISTERING,
+    /** The relation failed, or could not be re-registered. */
+    FAILED,
+    /** The relation was canceled because it has no subscribers left. */
+    CANCELED
+  }
+
+  private final Form form;
+  private final State state;
+  private final int subscriberCount;
+  private final long notificationCount;
+  private final long staleNotificationCount;
+  private final long reregistrationCount;
+  private final Optional<Integer> lastSequenceNumber;
+  private final Optional<Long> timeSinceLastNotificationNanos;
+
+  TDCoapRelationHealth(Form form, State state, int subscriberCount, long notificationCount,
+      long staleNotificationCount, long reregistrationCount, Optional<Integer> lastSequenceNumber,
+      Optional<Long> timeSinceLastNotificationNanos) {
+    this.form = form;
+    this.state = state;
+    this.subscriberCount = subscriberCount;
+    this.notificationCount = notificationCount;
+    this.staleNotificationCount = staleNotificationCount;
+    this.reregistrationCount = reregistrationCount;
+    this.lastSequenceNumber = lastSequenceNumber;
+    this.timeSinceLastNotificationNanos = timeSinceLastNotificationNanos;
+  }
+
+  public Form getForm() {
+    return form;
+  }
+
+  public State getState() {
+    return state;
+  }
+
+  public int getSubscriberCount() {
+    return subscriberCount;
+  }
+
+  /**
+   * Gets the number of fresh notifications delivered to the subscribers.
+   *
+   * @return the number of notifications
+   */
+  public long getNotificationCount() {
+    return notificationCount;
+  }
+
+  /**
+   * Gets the number of stale or reordered notifications, which are dropped.
+   *
+   * @return the number of stale notifications
+   */
+  public long getStaleNotificationCount() {
+    return staleNotificationCount;
+  }
+
+  public long getReregistrationCount() {
+    return reregistrationCount;
+  }
+
+  /**
+   * Gets the Observe sequence number of the last fresh notification.
+   *
+   * @return the sequence number, if any notification was received
+   */
+  public Optional<Integer> getLastSequenceNumber() {
+    return lastSequenceNumber;
+  }
+
+  /**
+   * Gets the time elapsed since the last fresh notification.
+   *
+   * @param unit the time unit of the result
+   * @return the elapsed time, if any notification was received
+   */
+  public Optional<Long> getTimeSinceLastNotification(TimeUnit unit) {
+    return timeSinceLastNotificationNanos.map(nanos -> unit.convert(nanos, TimeUnit.NANOSECONDS));
+  }
+
+  @Override
+  public String toString() {
+    return "[TDCoapRelationHealth] Target: " + form.getTarget() + ", State: " + state
+      + ", Subscribers: " + subscriberCount + ", Notifications: " + notificationCount
+      + ", Stale: " + staleNotificationCount + ", Re-registrations: " + reregistrationCount;
+  }
+}
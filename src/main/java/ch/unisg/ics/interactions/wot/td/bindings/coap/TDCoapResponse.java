@@ -9,10 +9,12 @@ import ch.unisg.ics.interactions.wot.td.schemas.ObjectSchema;
 import com.google.gson.Gson;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonParser;
+import org.eclipse.californium.core.coap.CoAP.ResponseCode;
 import org.eclipse.californium.core.coap.Option;
 import org.eclipse.californium.core.coap.OptionNumberRegistry;
 import org.eclipse.californium.core.coap.Response;
 
+import java.time.Duration;
 import java.util.*;
 import java.util.logging.Logger;
 
@@ -22,6 +24,11 @@ import java.util.logging.Logger;
  * deserialized based on a <code>DataSchema</code> from a given <code>ThingDescription</code>.
  */
 public class TDCoapResponse extends BaseResponse {
+  /**
+   * Default value of the <code>Max-Age</code> option (in seconds)
+   */
+  public static final long DEFAULT_MAX_AGE = 60;
+
   private final static Logger LOGGER = Logger.getLogger(TDCoapResponse.class.getCanonicalName());
 
   private final Response response;
@@ -58,6 +65,30 @@ public class TDCoapResponse extends BaseResponse {
     return response.getCode().name();
   }
 
+  /**
+   * Gets the value of the <code>Max-Age</code> option of the response.
+   *
+   * @return the maximum age in seconds (60 if the option is absent)
+   */
+  public long getMaxAge() {
+    return response.getOptions().getMaxAge();
+  }
+
+  /**
+   * Gets the delay after which a 5.03 (Service Unavailable) request can be retried, given by the
+   * <code>Max-Age</code> option of the response.
+   *
+   * @return the requested delay, if any
+   */
+  @Override
+  public Optional<Duration> getRetryAfter() {
+    if (response.getCode() != ResponseCode.SERVICE_UNAVAILABLE) {
+      return Optional.empty();
+    }
+
+    return Optional.of(Duration.ofSeconds(getMaxAge()));
+  }
+
   @Override
   public ResponseStatus getStatus() {
     switch (response.getCode().codeClass) {
@@ -73,6 +104,11 @@ public class TDCoapResponse extends BaseResponse {
     else return Optional.empty();
   }
 
+  @Override
+  public Optional<byte[]> getEncodedPayload() {
+    return payload.isPresent() ? Optional.of(response.getPayload()) : Optional.empty();
+  }
+
   @Override
   public Collection<Link> getLinks() {
     Set<Link> links = new HashSet<>();
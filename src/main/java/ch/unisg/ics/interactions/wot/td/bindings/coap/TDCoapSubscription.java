@@ -0,0 +1,69 @@
+package ch.unisg.ics.interactions.wot.td.bindings.coap;
+
+import ch.unisg.ics.interactions.wot.td.affordances.Form;
+import ch.unisg.ics.interactions.wot.td.bindings.ResponseCallback;
+
+import java.util.Optional;
+
+/**
+ * A local subscription to an observe relation shared through a {@link TDCoapSubscriptionManager}.
+ * Cancelling the subscription only cancels the observe relation if it has no other subscribers.
+ */
+public class TDCoapSubscription {
+
+  private final TDCoapSubscriptionManager manager;
+
+  private final TDCoapSubscriptionManager.SharedObservation observation;
+
+  private final ResponseCallback callback;
+
+  private volatile boolean canceled = false;
+
+  TDCoapSubscription(TDCoapSubscriptionManager manager,
+      TDCoapSubscriptionManager.SharedObservation observation, ResponseCallback callback) {
+    this.manager = manager;
+    this.observation = observation;
+    this.callback = callback;
+  }
+
+  public Form getForm() {
+    return observation.getForm();
+  }
+
+  /**
+   * Gets the latest notification of the shared observe relation, without contacting the Thing.
+   *
+   * @return the latest notification, if any was received
+   */
+  public Optional<TDCoapResponse> getLatest() {
+    return observation.getLatest();
+  }
+
+  /**
+   * Checks if the subscription has been canceled.
+   *
+   * @return true is the subscription is canceled.
+   */
+  public boolean isCanceled() {
+    return canceled;
+  }
+
+  /**
+   * Cancels the subscription. The observe relation is proactively canceled when its last
+   * subscription is canceled.
+   */
+  public void cancel() {
+    if (!canceled) {
+      canceled = true;
+      manager.unsubscribe(this);
+    }
+  }
+
+  TDCoapSubscriptionManager.SharedObservation getObservation() {
+    return observation;
+  }
+
+  ResponseCallback getCallback() {
+    return callback;
+  }
+}
@@ -0,0 +1,590 @@
+package ch.unisg.ics.interactions.wot.td.bindings.coap;
+
+import ch.unisg.ics.interactions.wot.td.affordances.Form;
+import ch.unisg.ics.interactions.wot.td.bindings.HashedWheelTimer;
+import ch.unisg.ics.interactions.wot.td.bindings.ResponseCallback;
+import ch.unisg.ics.interactions.wot.td.bindings.coap.TDCoapRelationHealth.State;
+import ch.unisg.ics.interactions.wot.td.metrics.Metrics;
+import ch.unisg.ics.interactions.wot.td.metrics.OperationKey;
+import ch.unisg.ics.interactions.wot.td.metrics.OperationMetrics;
+import ch.unisg.ics.interactions.wot.td.vocabularies.TD;
+import org.eclipse.californium.core.CoapClient;
+import org.eclipse.californium.core.CoapHandler;
+import org.eclipse.californium.core.CoapObserveRelation;
+import org.eclipse.californium.core.CoapResponse;
+import org.eclipse.californium.core.coap.Request;
+import org.eclipse.californium.core.network.Endpoint;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Shares CoAP observe relations among local subscribers: the manager maintains a single observe
+ * relation per target and content format, fans the notifications out to all subscribers, and
+ * cancels the relation when its last subscriber unsubscribes. The latest notification of each
+ * relation is kept, so that it can be read without a network round-trip.
+ * <p>
+ * The lifecycle of the relations is driven by a single {@link HashedWheelTimer}: a relation that
+ * receives no notification within the Max-Age of the last notification (plus a back-off, see
+ * {@link Builder#setReregistrationBackoff(long, TimeUnit)}) is re-registered, e.g. because the
+ * Thing rebooted and forgot its observers. Notifications are ordered with their Observe sequence
+ * numbers as specified in RFC 7641, and stale or reordered notifications are dropped. The health
+ * of each relation is reported by {@link #getHealth()}.
+ * <p>
+ * If a relation fails (e.g. the Thing rejects the registration, or the relation could not be
+ * re-registered), its subscribers are notified with {@link ResponseCallback#onError()} and the
+ * relation is forgotten: the next subscription to the same target registers a new relation.
+ */
+public class TDCoapSubscriptionManager implements AutoCloseable {
+  private final static Logger LOGGER = Logger.getLogger(TDCoapSubscriptionManager.class.getCanonicalName());
+
+  private final CoapClient client;
+
+  private final HashedWheelTimer timer;
+
+  private final boolean ownsTimer;
+
+  private final long reregistrationBackoffNanos;
+
+  private final long maxNotificationGapNanos;
+
+  private final int maxReregistrations;
+
+  private final Map<String, SharedObservation> observations = new HashMap<>();
+
+  /**
+   * Creates a manager that uses the default CoAP endpoint.
+   */
+  public TDCoapSubscriptionManager() {
+    this(new Builder());
+  }
+
+  /**
+   * Creates a manager that uses the given CoAP endpoint (e.g. a secure endpoint).
+   *
+   * @param endpoint the CoAP endpoint
+   */
+  public TDCoapSubscriptionManager(Endpoint endpoint) {
+    this(new Builder().setEndpoint(endpoint));
+  }
+
+  private TDCoapSubscriptionManager(Builder builder) {
+    this.client = new CoapClient();
+    builder.endpoint.ifPresent(client::setEndpoint);
+    this.ownsTimer = !builder.timer.isPresent();
+    this.timer = builder.timer.orElseGet(() -> new HashedWheelTimer(100, TimeUnit.MILLISECONDS,
+      HashedWheelTimer.DEFAULT_WHEEL_SIZE));
+    this.reregistrationBackoffNanos = builder.reregistrationBackoffNanos;
+    this.maxNotificationGapNanos = builder.maxNotificationGapNanos;
+    this.maxReregistrations = builder.maxReregistrations;
+  }
+
+  /**
+   * Subscribes to the notifications of an observable resource. A new observe relation is only
+   * registered if no relation exists for the target and content format of the form. Subscribers
+   * of an existing relation are first called with its latest notification (if any).
+   *
+   * @param form the form of the <code>observeProperty</code> operation
+   * @param callback the callback notified of the notifications
+   * @return the subscription
+   */
+  public TDCoapSubscription subscribe(Form form, ResponseCallback callback) {
+    String key = getKey(form);
+
+    while (true) {
+      SharedObservation observation;
+      TDCoapSubscription subscription = null;
+
+      synchronized (this) {
+        observation = observations.get(key);
+
+        if (observation == null) {
+          observation = new SharedObservation(key, form);
+          observations.put(key, observation);
+          subscription = new TDCoapSubscription(this, observation, callback);
+          observation.subscriptions.add(subscription);
+        }
+      }
+
+      if (subscription != null) {
+        observation.register();
+        return subscription;
+      }
+
+      // Notifications are held back while the subscriber joins the relation, so that it receives
+      // the latest notification and the next ones once each and in order
+      synchronized (observation.deliveryLock) {
+        synchronized (this) {
+          if (observations.get(key) != observation) {
+            // The relation failed or was canceled in the meantime
+            continue;
+          }
+
+          subscription = new TDCoapSubscription(this, observation, callback);
+          observation.subscriptions.add(subscription);
+        }
+
+        observation.getLatest().ifPresent(callback::onResponse);
+      }
+
+      return subscription;
+    }
+  }
+
+  /**
+   * Gets the latest notification received for the target and content format of a form, without
+   * contacting the Thing.
+   *
+   * @param form the form of the <code>observeProperty</code> operation
+   * @return the latest notification, if the resource is observed and sent a notification
+   */
+  public Optional<TDCoapResponse> getLatest(Form form) {
+    SharedObservation observation;
+
+    synchronized (this) {
+      observation = observations.get(getKey(form));
+    }
+
+    return observation == null ? Optional.empty() : observation.getLatest();
+  }
+
+  /**
+   * Gets the number of observe relations maintained by the manager.
+   *
+   * @return the number of observe relations
+   */
+  public synchronized int getObservationCount() {
+    return observations.size();
+  }
+
+  /**
+   * Gets the number of local subscribers to the observe relation of a form.
+   *
+   * @param form the form of the <code>observeProperty</code> operation
+   * @return the number of subscribers (0 if the resource is not observed)
+   */
+  public synchronized int getSubscriberCount(Form form) {
+    SharedObservation observation = observations.get(getKey(form));
+    return observation == null ? 0 : observation.subscriptions.size();
+  }
+
+  /**
+   * Gets the health of all the observe relations maintained by the manager.
+   *
+   * @return the health of the observe relations
+   */
+  public List<TDCoapRelationHealth> getHealth() {
+    List<SharedObservation> current;
+
+    synchronized (this) {
+      current = new ArrayList<>(observations.values());
+    }
+
+    List<TDCoapRelationHealth> health = new ArrayList<>();
+    for (SharedObservation observation : current) {
+      health.add(observation.getHealth());
+    }
+
+    return health;
+  }
+
+  /**
+   * Gets the health of the observe relation of a form.
+   *
+   * @param form the form of the <code>observeProperty</code> operation
+   * @return the health of the relation, if the resource is observed
+   */
+  public Optional<TDCoapRelationHealth> getHealth(Form form) {
+    SharedObservation observation;
+
+    synchronized (this) {
+      observation = observations.get(getKey(form));
+    }
+
+    return observation == null ? Optional.empty() : Optional.of(observation.getHealth());
+  }
+
+  /**
+   * Cancels all observe relations, shuts down the CoAP client of the manager, and stops its timer
+   * (unless the timer was provided to the builder).
+   */
+  @Override
+  public void close() {
+    List<SharedObservation> canceled;
+
+    synchronized (this) {
+      canceled = new ArrayList<>(observations.values());
+      observations.clear();
+    }
+
+    canceled.forEach(SharedObservation::cancel);
+    client.shutdown();
+
+    if (ownsTimer) {
+      timer.stop();
+    }
+  }
+
+  void unsubscribe(TDCoapSubscription subscription) {
+    SharedObservation observation = subscription.getObservation();
+    boolean last = false;
+
+    synchronized (this) {
+      observation.subscriptions.remove(subscription);
+
+      if (observation.subscriptions.isEmpty() && observations.get(observation.key) == observation) {
+        observations.remove(observation.key);
+        last = true;
+      }
+    }
+
+    if (last) {
+      observation.cancel();
+    }
+  }
+
+  private static String getKey(Form form) {
+    return form.getTarget() + " " + form.getContentType();
+  }
+
+  /**
+   * An observe relation shared by the subscriptions to the same target and content format.
+   */
+  final class SharedObservation implements CoapHandler {
+    private final String key;
+    private final Form form;
+    private final TDCoapOperation operation;
+    private final OperationKey metricsKey;
+    private final List<TDCoapSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final TDCoapNotificationOrder order = new TDCoapNotificationOrder();
+
+    /**
+     * Held while notifications are passed on to the subscribers, and while a subscriber joins
+     */
+    private final Object deliveryLock = new Object();
+
+    private volatile CoapObserveRelation relation;
+    private volatile TDCoapResponse latest;
+    private volatile boolean canceled = false;
+
+    // Guarded by the lock of the observation
+    private State state = State.REGISTERING;
+    private long lastActivityAt;
+    private long lastNotificationAt;
+    private long windowNanos;
+    private int consecutiveReregistrations;
+    private long notificationCount;
+    private long staleNotificationCount;
+    private long reregistrationCount;
+    private HashedWheelTimer.Timeout watchdog;
+    private long watchdogAt;
+
+    SharedObservation(String key, Form form) {
+      this.key = key;
+      this.form = form;
+      // The operation is not sent: it builds the request and is referenced by the notifications
+      this.operation = new TDCoapOperation(form, TD.observeProperty);
+      this.metricsKey = OperationKey.forForm(form, TD.observeProperty);
+    }
+
+    Form getForm() {
+      return form;
+    }
+
+    Optional<TDCoapResponse> getLatest() {
+      return Optional.ofNullable(latest);
+    }
+
+    void register() {
+      Request request = operation.getRequest();
+      if (!request.getOptions().hasObserve()) {
+        request.setObserve();
+      }
+
+      synchronized (this) {
+        lastActivityAt = System.nanoTime();
+        windowNanos = getWindow(TDCoapResponse.DEFAULT_MAX_AGE);
+        scheduleWatchdog(windowNanos);
+      }
+
+      relation = client.observe(request, this);
+
+      if (canceled) {
+        relation.proactiveCancel();
+      }
+    }
+
+    void cancel() {
+      canceled = true;
+
+      synchronized (this) {
+        if (state != State.FAILED) {
+          state = State.CANCELED;
+        }
+        if (watchdog != null) {
+          watchdog.cancel();
+        }
+      }
+
+      CoapObserveRelation r = relation;
+      if (r != null && !r.isCanceled()) {
+        r.proactiveCancel();
+      }
+    }
+
+    synchronized TDCoapRelationHealth getHealth() {
+      return new TDCoapRelationHealth(form, state, subscriptions.size(), notificationCount,
+        staleNotificationCount, reregistrationCount,
+        order.isEmpty() ? Optional.empty() : Optional.of(order.getLastSequence()),
+        notificationCount == 0 ? Optional.empty() : Optional.of(System.nanoTime() - lastNotificationAt));
+    }
+
+    @Override
+    public void onLoad(CoapResponse response) {
+      synchronized (deliveryLock) {
+        deliver(response);
+      }
+    }
+
+    private void deliver(CoapResponse response) {
+      if (canceled) {
+        return;
+      }
+
+      long now = System.nanoTime();
+      Integer sequence = response.advanced().getOptions().getObserve();
+      TDCoapResponse notification = new TDCoapResponse(response.advanced(), operation);
+
+      // A response that is not successful ends the relation (RFC 7641, Section 3.2)
+      boolean ended = !response.isSuccess();
+
+      synchronized (this) {
+        if (sequence != null && !order.accept(sequence, now)) {
+          staleNotificationCount++;
+          LOGGER.fine("Dropping stale notification " + sequence + " from " + key);
+          return;
+        }
+
+        if (ended) {
+          notificationCount++;
+        } else {
+          updateActivity(notification, now);
+        }
+      }
+
+      if (!ended) {
+        latest = notification;
+      }
+
+      OperationMetrics metrics = Metrics.getOperationMetrics();
+      if (metrics.isEnabled()) {
+        metrics.onNotification(metricsKey, notification.getStatus(),
+          response.advanced().getPayloadSize());
+      }
+
+      for (TDCoapSubscription subscription : subscriptions) {
+        try {
+          subscription.getCallback().onResponse(notification);
+        } catch (RuntimeException e) {
+          LOGGER.log(Level.WARNING, "Subscriber failed to handle notification from " + key, e);
+        }
+      }
+
+      if (ended) {
+        LOGGER.fine("Observe relation ended by " + notification.getStatus() + ": " + key);
+        fail();
+      }
+    }
+
+    /**
+     * Records a successful notification and moves the watchdog forward. Must be called with the
+     * lock of the observation held.
+     */
+    private void updateActivity(TDCoapResponse notification, long now) {
+      state = State.ACTIVE;
+      lastActivityAt = now;
+      lastNotificationAt = now;
+      windowNanos = getWindow(notification.getMaxAge());
+      consecutiveReregistrations = 0;
+      notificationCount++;
+
+      // The watchdog is only moved forward: it is rescheduled lazily when it expires early
+      if (watchdog == null || now + windowNanos - watchdogAt < 0) {
+        if (watchdog != null) {
+          watchdog.cancel();
+        }
+        scheduleWatchdog(windowNanos);
+      }
+    }
+
+    @Override
+    public void onError() {
+      fail();
+    }
+
+    private void fail() {
+      List<TDCoapSubscription> failed;
+
+      synchronized (TDCoapSubscriptionManager.this) {
+        if (observations.get(key) == this) {
+          observations.remove(key);
+        }
+        failed = new ArrayList<>(subscriptions);
+      }
+
+      synchronized (this) {
+        if (canceled) {
+          return;
+        }
+
+        canceled = true;
+        state = State.FAILED;
+        if (watchdog != null) {
+          watchdog.cancel();
+        }
+      }
+
+      LOGGER.info("Observe relation failed: " + key);
+
+      CoapObserveRelation r = relation;
+      if (r != null && !r.isCanceled()) {
+        r.reactiveCancel();
+      }
+
+      for (TDCoapSubscription subscription : failed) {
+        subscription.getCallback().onError();
+      }
+    }
+
+    /**
+     * Checks the relation: if no notification was received within the window, the relation is
+     * re-registered, or failed after too many re-registrations.
+     */
+    private void checkActivity() {
+      boolean reregister = false;
+      boolean failed = false;
+
+      synchronized (this) {
+        watchdog = null;
+
+        if (canceled) {
+          return;
+        }
+
+        long idle = System.nanoTime() - lastActivityAt;
+
+        if (idle < windowNanos) {
+          scheduleWatchdog(windowNanos - idle);
+        } else if (consecutiveReregistrations >= maxReregistrations) {
+          failed = true;
+        } else {
+          consecutiveReregistrations++;
+          reregistrationCount++;
+          state = State.REREGISTERING;
+          order.reset();
+          lastActivityAt = System.nanoTime();
+          scheduleWatchdog(windowNanos);
+          reregister = true;
+        }
+      }
+
+      if (failed) {
+        fail();
+      } else if (reregister) {
+        LOGGER.fine("No notification within " + TimeUnit.NANOSECONDS.toMillis(windowNanos)
+          + " ms, re-registering: " + key);
+        CoapObserveRelation r = relation;
+        if (r != null) {
+          r.reregister();
+        }
+      }
+    }
+
+    private void scheduleWatchdog(long delayNanos) {
+      watchdogAt = System.nanoTime() + delayNanos;
+      watchdog = timer.newTimeout(this::checkActivity, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private long getWindow(long maxAgeSeconds) {
+      long window = TimeUnit.SECONDS.toNanos(maxAgeSeconds) + reregistrationBackoffNanos;
+      return maxNotificationGapNanos > 0 ? Math.min(window, maxNotificationGapNanos) : window;
+    }
+  }
+
+  public static class Builder {
+    private Optional<Endpoint> endpoint = Optional.empty();
+    private Optional<HashedWheelTimer> timer = Optional.empty();
+    private long reregistrationBackoffNanos = TimeUnit.SECONDS.toNanos(2);
+    private long maxNotificationGapNanos = 0;
+    private int maxReregistrations = 3;
+
+    /**
+     * Sets the CoAP endpoint used by the manager (e.g. a secure endpoint). By default, the default
+     * endpoint of Californium is used.
+     *
+     * @param endpoint the CoAP endpoint
+     * @return this builder
+     */
+    public Builder setEndpoint(Endpoint endpoint) {
+      this.endpoint = Optional.of(endpoint);
+      return this;
+    }
+
+    /**
+     * Sets the timer that drives re-registrations. By default, the manager creates its own timer,
+     * which is stopped when the manager is closed.
+     *
+     * @param timer the timer
+     * @return this builder
+     */
+    public Builder setTimer(HashedWheelTimer timer) {
+      this.timer = Optional.of(timer);
+      return this;
+    }
+
+    /**
+     * Sets the time to wait after the Max-Age of the last notification before re-registering (2 s
+     * by default), so that the Thing has time to send a fresh notification.
+     *
+     * @param backoff the re-registration back-off
+     * @param unit the time unit of the back-off
+     * @return this builder
+     */
+    public Builder setReregistrationBackoff(long backoff, TimeUnit unit) {
+      this.reregistrationBackoffNanos = unit.toNanos(backoff);
+      return this;
+    }
+
+    /**
+     * Sets the maximum time without notification after which a relation is re-registered, even if
+     * the Max-Age of the last notification has not elapsed (no maximum by default).
+     *
+     * @param gap the maximum notification gap (0 for no maximum)
+     * @param unit the time unit of the gap
+     * @return this builder
+     */
+    public Builder setMaxNotificationGap(long gap, TimeUnit unit) {
+      this.maxNotificationGapNanos = unit.toNanos(gap);
+      return this;
+    }
+
+    /**
+     * Sets the number of consecutive re-registrations without notification after which a relation
+     * fails (3 by default).
+     *
+     * @param maxReregistrations the maximum number of re-registrations
+     * @return this builder
+     */
+    public Builder setMaxReregistrations(int maxReregistrations) {
+      this.maxReregistrations = maxReregistrations;
+      return this;
+    }
+
+    public TDCoapSubscriptionManager build() {
+      return new TDCoapSubscriptionManager(this);
+    }
+  }
+}
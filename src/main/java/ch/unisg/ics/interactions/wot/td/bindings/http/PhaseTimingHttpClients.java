@@ -0,0 +1,170 @@
+package ch.unisg.ics.interactions.wot.td.bindings.http;
+
+import ch.unisg.ics.interactions.wot.td.metrics.PhaseTimings;
+import ch.unisg.ics.interactions.wot.td.metrics.PhaseTimings.Phase;
+import org.apache.hc.client5.http.DnsResolver;
+import org.apache.hc.client5.http.SystemDefaultDnsResolver;
+import org.apache.hc.client5.http.async.AsyncExecCallback;
+import org.apache.hc.client5.http.async.AsyncExecChain;
+import org.apache.hc.client5.http.async.AsyncExecChainHandler;
+import org.apache.hc.client5.http.impl.ChainElement;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.ssl.DefaultClientTlsStrategy;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.nio.AsyncDataConsumer;
+import org.apache.hc.core5.http.nio.AsyncEntityProducer;
+import org.apache.hc.core5.http.nio.ssl.TlsStrategy;
+import org.apache.hc.core5.net.NamedEndpoint;
+import org.apache.hc.core5.reactor.ssl.TransportSecurityLayer;
+import org.apache.hc.core5.util.Timeout;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.SocketAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Creates HTTP clients that record the phases of their exchanges in a {@link PhaseTimings}: the DNS
+ * resolver and the TLS strategy of the connection manager are wrapped, and an interceptor placed
+ * before the transport (i.e. after the connection is established) records when the request is sent
+ * and when the response head is received.
+ */
+final class PhaseTimingHttpClients {
+  private static final String TIMING_INTERCEPTOR = "phase-timing";
+
+  static CloseableHttpAsyncClient create(PhaseTimings timings) {
+    return HttpAsyncClients.custom()
+      .setConnectionManager(PoolingAsyncClientConnectionManagerBuilder.create()
+        .setDnsResolver(new TimedDnsResolver(timings))
+        .setTlsStrategy(new TimedTlsStrategy(DefaultClientTlsStrategy.getDefault(), timings))
+        .build())
+      .addExecInterceptorBefore(ChainElement.MAIN_TRANSPORT.name(), TIMING_INTERCEPTOR,
+        new TimedExecHandler(timings))
+      .build();
+  }
+
+  private static final class TimedDnsResolver implements DnsResolver {
+    private final PhaseTimings timings;
+
+    TimedDnsResolver(PhaseTimings timings) {
+      this.timings = timings;
+    }
+
+    @Override
+    public InetAddress[] resolve(String host) throws UnknownHostException {
+      timings.mark(Phase.DNS_LOOKUP_STARTED);
+      try {
+        return SystemDefaultDnsResolver.INSTANCE.resolve(host);
+      } finally {
+        timings.mark(Phase.DNS_LOOKUP_COMPLETED);
+      }
+    }
+
+    @Override
+    public String resolveCanonicalHostname(String host) throws UnknownHostException {
+      return SystemDefaultDnsResolver.INSTANCE.resolveCanonicalHostname(host);
+    }
+  }
+
+  private static final class TimedTlsStrategy implements TlsStrategy {
+    private final TlsStrategy delegate;
+    private final PhaseTimings timings;
+
+    TimedTlsStrategy(TlsStrategy delegate, PhaseTimings timings) {
+      this.delegate = delegate;
+      this.timings = timings;
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public boolean upgrade(TransportSecurityLayer tlsSession, HttpHost host,
+        SocketAddress localAddress, SocketAddress remoteAddress, Object attachment,
+        Timeout handshakeTimeout) {
+      timings.mark(Phase.HANDSHAKE_STARTED);
+      return delegate.upgrade(tlsSession, host, localAddress, remoteAddress, attachment,
+        handshakeTimeout);
+    }
+
+    @Override
+    public void upgrade(TransportSecurityLayer tlsSession, NamedEndpoint endpoint,
+        Object attachment, Timeout handshakeTimeout,
+        FutureCallback<TransportSecurityLayer> callback) {
+      timings.mark(Phase.HANDSHAKE_STARTED);
+      delegate.upgrade(tlsSession, endpoint, attachment, handshakeTimeout,
+        new FutureCallback<TransportSecurityLayer>() {
+
+          @Override
+          public void completed(TransportSecurityLayer result) {
+            timings.mark(Phase.HANDSHAKE_COMPLETED);
+            if (callback != null) {
+              callback.completed(result);
+            }
+          }
+
+          @Override
+          public void failed(Exception ex) {
+            if (callback != null) {
+              callback.failed(ex);
+            }
+          }
+
+          @Override
+          public void cancelled() {
+            if (callback != null) {
+              callback.cancelled();
+            }
+          }
+        });
+    }
+  }
+
+  private static final class TimedExecHandler implements AsyncExecChainHandler {
+    private final PhaseTimings timings;
+
+    TimedExecHandler(PhaseTimings timings) {
+      this.timings = timings;
+    }
+
+    @Override
+    public void execute(HttpRequest request, AsyncEntityProducer entityProducer,
+        AsyncExecChain.Scope scope, AsyncExecChain chain, AsyncExecCallback callback)
+        throws HttpException, IOException {
+      timings.mark(Phase.REQUEST_SENT);
+
+      chain.proceed(request, entityProducer, scope, new AsyncExecCallback() {
+
+        @Override
+        public AsyncDataConsumer handleResponse(HttpResponse response, EntityDetails entityDetails)
+            throws HttpException, IOException {
+          timings.mark(Phase.RESPONSE_HEADERS_RECEIVED);
+          return callback.handleResponse(response, entityDetails);
+        }
+
+        @Override
+        public void handleInformationResponse(HttpResponse response)
+            throws HttpException, IOException {
+          callback.handleInformationResponse(response);
+        }
+
+        @Override
+        public void completed() {
+          callback.completed();
+        }
+
+        @Override
+        public void failed(Exception cause) {
+          callback.failed(cause);
+        }
+      });
+    }
+  }
+
+  private PhaseTimingHttpClients() { }
+}
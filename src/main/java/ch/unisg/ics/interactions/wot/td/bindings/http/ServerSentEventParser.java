@@ -0,0 +1,154 @@
+package ch.unisg.ics.interactions.wot.td.bindings.http;
+
+import java.nio.CharBuffer;
+import java.util.Optional;
+
+/**
+ * Incremental parser of a <code>text/event-stream</code>, as defined in the
+ * <a href="https://html.spec.whatwg.org/multipage/server-sent-events.html">HTML Living Standard</a>.
+ * The stream is fed in chunks of arbitrary size: only the line and the event being parsed are
+ * buffered.
+ */
+final class ServerSentEventParser {
+
+  interface Listener {
+
+    /**
+     * Called when an event is dispatched.
+     *
+     * @param type the type of the event (<code>event</code> field), if any
+     * @param id the last event ID of the stream, if any
+     * @param data the data of the event (<code>data</code> fields, joined by line feeds)
+     */
+    void onEvent(Optional<String> type, Optional<String> id, String data);
+
+    /**
+     * Called when the server sets the reconnection time (<code>retry</code> field).
+     *
+     * @param millis the reconnection time (in milliseconds)
+     */
+    default void onRetry(long millis) { }
+  }
+
+  private final Listener listener;
+
+  private final StringBuilder line = new StringBuilder();
+  private final StringBuilder data = new StringBuilder();
+  private boolean hasData = false;
+  private Optional<String> type = Optional.empty();
+  private Optional<String> lastEventId = Optional.empty();
+  private boolean skipLineFeed = false;
+
+  ServerSentEventParser(Listener listener) {
+    this(listener, Optional.empty());
+  }
+
+  /**
+   * @param listener the listener of the events
+   * @param lastEventId the last event ID received on a previous connection, if any
+   */
+  ServerSentEventParser(Listener listener, Optional<String> lastEventId) {
+    this.listener = listener;
+    this.lastEventId = lastEventId;
+  }
+
+  void feed(CharSequence chunk) {
+    feed(CharBuffer.wrap(chunk));
+  }
+
+  void feed(CharBuffer chunk) {
+    while (chunk.hasRemaining()) {
+      char c = chunk.get();
+
+      if (skipLineFeed) {
+        skipLineFeed = false;
+        if (c == '\n') {
+          continue;
+        }
+      }
+
+      if (c == '\r') {
+        skipLineFeed = true;
+        processLine();
+      } else if (c == '\n') {
+        processLine();
+      } else {
+        line.append(c);
+      }
+    }
+  }
+
+  Optional<String> getLastEventId() {
+    return lastEventId;
+  }
+
+  private void processLine() {
+    if (line.length() == 0) {
+      dispatch();
+      return;
+    }
+
+    if (line.charAt(0) == ':') {
+      // Comment, e.g. to keep the connection alive
+      line.setLength(0);
+      return;
+    }
+
+    int colon = line.indexOf(":");
+    String field;
+    String value;
+
+    if (colon < 0) {
+      field = line.toString();
+      value = "";
+    } else {
+      field = line.substring(0, colon);
+      int start = colon + 1;
+      if (start < line.length() && line.charAt(start) == ' ') {
+        start++;
+      }
+      value = line.substring(start);
+    }
+
+    line.setLength(0);
+
+    switch (field) {
+      case "event":
+        type = Optional.of(value);
+        break;
+      case "data":
+        if (hasData) {
+          data.append('\n');
+        }
+        data.append(value);
+        hasData = true;
+        break;
+      case "id":
+        if (value.indexOf('\0') < 0) {
+          lastEventId = value.isEmpty() ? Optional.empty() : Optional.of(value);
+        }
+        break;
+      case "retry":
+        if (!value.isEmpty() && value.chars().allMatch(Character::isDigit)) {
+          try {
+            listener.onRetry(Long.parseLong(value));
+          } catch (NumberFormatException e) {
+            // Ignore reconnection times that do not fit in a long
+          }
+        }
+        break;
+      default:
+        // Unknown fields are ignored
+    }
+  }
+
+  private void dispatch() {
+    if (hasData) {
+      listener.onEvent(type.filter(t -> !t.isEmpty()), lastEventId, data.toString());
+    }
+
+    data.setLength(0);
+    hasData = false;
+    type = Optional.empty();
+  }
+}
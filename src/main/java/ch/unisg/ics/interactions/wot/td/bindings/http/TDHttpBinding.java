@@ -10,17 +10,32 @@ import java.util.*;
 /**
  * Binding that supports the HTTP Basic Profile, as defined in the
  * <a href="https://w3c.github.io/wot-profile/#http-basic-profile">WoT Profiles</a> specification.
+ * Properties are observed and events are subscribed to via Server-Sent Events by default, or via
+ * long-polling (see the subprotocols defined in the
+ * <a href="https://w3c.github.io/wot-binding-templates/bindings/protocols/http/">HTTP Binding Template</a>).
  *
  * TODO readallproperties, writemultipleproperties, queryallactions
  */
 public class TDHttpBinding extends BaseProtocolBinding {
 
+  /**
+   * Subprotocol for Server-Sent Events
+   */
+  public final static String SSE_SUBPROTOCOL = "sse";
+
+  /**
+   * Subprotocol for long-polling
+   */
+  public final static String LONGPOLL_SUBPROTOCOL = "longpoll";
+
   private final static String HTTP_PROTOCOL = "HTTP";
 
   private final static Collection<String> SUPPORTED_SCHEMES = new HashSet<>();
 
   private final static Map<String, String> DEFAULT_METHODS = new HashMap<>();
 
+  private final static Map<String, String> DEFAULT_SUBPROTOCOLS = new HashMap<>();
+
   static {
     SUPPORTED_SCHEMES.add("http");
     SUPPORTED_SCHEMES.add("https");
@@ -30,6 +45,11 @@ public class TDHttpBinding extends BaseProtocolBinding {
     DEFAULT_METHODS.put(TD.invokeAction, "POST");
     DEFAULT_METHODS.put(TD.queryAction, "GET");
     DEFAULT_METHODS.put(TD.cancelAction, "DELETE");
+    DEFAULT_METHODS.put(TD.observeProperty, "GET");
+    DEFAULT_METHODS.put(TD.subscribeEvent, "GET");
+
+    DEFAULT_SUBPROTOCOLS.put(TD.observeProperty, SSE_SUBPROTOCOL);
+    DEFAULT_SUBPROTOCOLS.put(TD.subscribeEvent, SSE_SUBPROTOCOL);
   }
 
   @Override
@@ -50,7 +70,8 @@ public class TDHttpBinding extends BaseProtocolBinding {
 
   @Override
   public Optional<String> getDefaultSubProtocol(String operationType) {
-    return Optional.empty();
+    if (DEFAULT_SUBPROTOCOLS.containsKey(operationType)) return Optional.of(DEFAULT_SUBPROTOCOLS.get(operationType));
+    else return Optional.empty();
   }
 
   @Override
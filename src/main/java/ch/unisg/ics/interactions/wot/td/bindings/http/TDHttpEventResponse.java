@@ -0,0 +1,43 @@
+package ch.unisg.ics.interactions.wot.td.bindings.http;
+
+import ch.unisg.ics.interactions.wot.td.bindings.Operation;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+
+import java.util.Optional;
+
+/**
+ * Wrapper for an event received when performing a {@link TDHttpOperation} that subscribes to an
+ * event or observes a property via Server-Sent Events or long-polling. The payload of the response
+ * is the data of the event, and its status and headers are those of the HTTP response that
+ * delivered the event.
+ */
+public class TDHttpEventResponse extends TDHttpResponse {
+  private final Optional<String> eventType;
+  private final Optional<String> eventId;
+
+  public TDHttpEventResponse(SimpleHttpResponse response, Operation op, Optional<String> eventType,
+      Optional<String> eventId) {
+    super(response, op);
+
+    this.eventType = eventType;
+    this.eventId = eventId;
+  }
+
+  /**
+   * Gets the type of the event (the <code>event</code> field of a Server-Sent Event).
+   *
+   * @return the event type, if any
+   */
+  public Optional<String> getEventType() {
+    return eventType;
+  }
+
+  /**
+   * Gets the ID of the event (the last <code>id</code> field of the stream of Server-Sent Events).
+   *
+   * @return the event ID, if any
+   */
+  public Optional<String> getEventId() {
+    return eventId;
+  }
+}
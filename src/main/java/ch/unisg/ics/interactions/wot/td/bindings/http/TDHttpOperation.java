@@ -2,39 +2,71 @@ package ch.unisg.ics.interactions.wot.td.bindings.http;
 
 import ch.unisg.ics.interactions.wot.td.affordances.Form;
 import ch.unisg.ics.interactions.wot.td.bindings.BaseOperation;
+import ch.unisg.ics.interactions.wot.td.bindings.HashedWheelTimer;
+import ch.unisg.ics.interactions.wot.td.metrics.PhaseTimings.Phase;
+import ch.unisg.ics.interactions.wot.td.schemas.SchemaSerializer;
 import ch.unisg.ics.interactions.wot.td.security.APIKeySecurityScheme;
 import ch.unisg.ics.interactions.wot.td.security.TokenBasedSecurityScheme.TokenLocation;
-import com.google.gson.Gson;
+import ch.unisg.ics.interactions.wot.td.vocabularies.TD;
+import org.apache.hc.client5.http.async.methods.AbstractCharResponseConsumer;
+import org.apache.hc.client5.http.async.methods.SimpleBody;
 import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
 import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestProducer;
 import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
-import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
 import org.apache.hc.core5.concurrent.FutureCallback;
 import org.apache.hc.core5.http.ContentType;
 import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.HttpStatus;
 import org.apache.hc.core5.io.CloseMode;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Wrapper for constructing and executing an HTTP request based on a given <code>ThingDescription</code>.
  * When constructing the request, clients can set payloads that conform to a <code>DataSchema</code>.
+ * <p>
+ * Operations of type <code>observeProperty</code> and <code>subscribeEvent</code> with the
+ * {@value TDHttpBinding#SSE_SUBPROTOCOL} or {@value TDHttpBinding#LONGPOLL_SUBPROTOCOL} subprotocol
+ * deliver each event as a {@link TDHttpEventResponse} to the registered callbacks, until the
+ * operation is cancelled (see {@link #cancel()}). Callbacks are called on the I/O thread of the
+ * client and must not block.
  */
 public class TDHttpOperation extends BaseOperation {
   private final static Logger LOGGER = Logger.getLogger(TDHttpOperation.class.getCanonicalName());
 
+  /**
+   * Default delay (in milliseconds) before reconnecting to a stream of Server-Sent Events closed by
+   * the server, unless the server sets another delay
+   */
+  public static final long DEFAULT_SSE_RETRY_MILLIS = 3000;
+
+  private static final ContentType EVENT_STREAM = ContentType.create("text/event-stream");
+
+  private static final HashedWheelTimer RECONNECT_TIMER = new HashedWheelTimer(100, TimeUnit.MILLISECONDS, 64);
+
   private final class TDHttpHandler implements FutureCallback<SimpleHttpResponse> {
 
     @Override
     public void completed(SimpleHttpResponse r) {
-      onResponse(new TDHttpResponse(r, TDHttpOperation.this));
+      getPhaseTimings().mark(Phase.RESPONSE_RECEIVED);
+      byte[] body = r.getBodyBytes();
+      TDHttpResponse response = new TDHttpResponse(r, TDHttpOperation.this);
+      getPhaseTimings().mark(Phase.PAYLOAD_DECODED);
+
+      onResponse(response, body == null ? 0 : body.length);
       client.close(CloseMode.GRACEFUL);
     }
 
@@ -51,6 +83,139 @@ public class TDHttpOperation extends BaseOperation {
 
   }
 
+  /**
+   * Consumes a stream of Server-Sent Events incrementally: each event is passed on as a response as
+   * soon as it is complete, and only the event being received is buffered. Responses that are not
+   * event streams (e.g. errors) are passed on whole.
+   */
+  private final class TDEventStreamConsumer extends AbstractCharResponseConsumer<Void> {
+    private HttpResponse head;
+    private ServerSentEventParser parser;
+    private StringBuilder body;
+
+    @Override
+    protected void start(HttpResponse response, ContentType contentType) {
+      this.head = response;
+
+      if (response.getCode() == HttpStatus.SC_OK && contentType != null
+          && EVENT_STREAM.isSameMimeType(contentType)) {
+        // Event streams are always encoded in UTF-8
+        setCharset(StandardCharsets.UTF_8);
+        this.parser = new ServerSentEventParser(new ServerSentEventParser.Listener() {
+          @Override
+          public void onEvent(Optional<String> type, Optional<String> id, String data) {
+            lastEventId = id;
+            onEventReceived(head, data, type, id);
+          }
+
+          @Override
+          public void onRetry(long millis) {
+            retryMillis = millis;
+          }
+        }, lastEventId);
+      } else {
+        this.body = new StringBuilder();
+      }
+    }
+
+    @Override
+    protected int capacityIncrement() {
+      return Integer.MAX_VALUE;
+    }
+
+    @Override
+    protected void data(CharBuffer src, boolean endOfStream) {
+      if (parser != null) {
+        parser.feed(src);
+      } else {
+        body.append(src);
+      }
+    }
+
+    @Override
+    protected Void buildResult() {
+      return null;
+    }
+
+    @Override
+    public void releaseResources() { }
+  }
+
+  private final class TDEventStreamHandler implements FutureCallback<Void> {
+    private final TDEventStreamConsumer consumer;
+
+    TDEventStreamHandler(TDEventStreamConsumer consumer) {
+      this.consumer = consumer;
+    }
+
+    @Override
+    public void completed(Void result) {
+      if (cancelled) {
+        return;
+      }
+
+      if (consumer.parser == null) {
+        // Not an event stream: the response is passed on and the server is not contacted again
+        SimpleHttpResponse response = SimpleHttpResponse.create(consumer.head.getCode(),
+          consumer.body == null ? "" : consumer.body.toString());
+        response.setHeaders(consumer.head.getHeaders());
+        onResponse(new TDHttpResponse(response, TDHttpOperation.this));
+        return;
+      }
+
+      // The server closed the stream: reconnect after the reconnection time
+      RECONNECT_TIMER.newTimeout(TDHttpOperation.this::openEventStream, retryMillis,
+        TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void failed(Exception ex) {
+      if (!cancelled) {
+        LOGGER.log(Level.WARNING, "The stream of events failed: " + target, ex);
+        onError();
+      }
+    }
+
+    @Override
+    public void cancelled() { }
+  }
+
+  private final class TDLongPollHandler implements FutureCallback<SimpleHttpResponse> {
+
+    @Override
+    public void completed(SimpleHttpResponse r) {
+      if (cancelled) {
+        return;
+      }
+
+      int code = r.getCode();
+
+      if (code == HttpStatus.SC_NO_CONTENT || code == HttpStatus.SC_REQUEST_TIMEOUT
+          || code == HttpStatus.SC_GATEWAY_TIMEOUT) {
+        // The server held the request without an event: poll again
+        poll();
+      } else if (code >= 200 && code < 300) {
+        onEventReceived(r, r.getBodyText(), Optional.empty(), Optional.empty());
+        poll();
+      } else {
+        // Error responses are passed on and end the subscription, as with event streams (even with
+        // a Retry-After header: resuming is left to the caller, e.g. a ResilientOperation)
+        onResponse(new TDHttpResponse(r, TDHttpOperation.this));
+      }
+    }
+
+    @Override
+    public void failed(Exception ex) {
+      if (!cancelled) {
+        LOGGER.log(Level.WARNING, "Long-polling failed: " + target, ex);
+        onError();
+      }
+    }
+
+    @Override
+    public void cancelled() { }
+  }
+
   private final String target;
 
   private final TDHttpHandler handler;
@@ -58,12 +223,19 @@ public class TDHttpOperation extends BaseOperation {
 
   private CloseableHttpAsyncClient client;
 
+  private final Optional<String> subProtocol;
+
+  private volatile boolean cancelled = false;
+  private volatile Future<?> exchange;
+  private volatile Optional<String> lastEventId = Optional.empty();
+  private volatile long retryMillis = DEFAULT_SSE_RETRY_MILLIS;
+
   public TDHttpOperation(Form form, String operationType) {
     super(form, operationType);
 
     this.target = form.getTarget();
     this.handler = new TDHttpHandler();
-    this.client = HttpAsyncClients.createDefault();
+    this.client = PhaseTimingHttpClients.create(getPhaseTimings());
 
     this.client.start();
 
@@ -77,6 +249,12 @@ public class TDHttpOperation extends BaseOperation {
     }
 
     this.request.setHeader(HttpHeaders.CONTENT_TYPE, form.getContentType());
+
+    if (operationType.equals(TD.observeProperty) || operationType.equals(TD.subscribeEvent)) {
+      this.subProtocol = form.getSubProtocol(operationType);
+    } else {
+      this.subProtocol = Optional.empty();
+    }
   }
 
   public String getTarget() {
@@ -85,7 +263,42 @@ public class TDHttpOperation extends BaseOperation {
 
   @Override
   public void sendRequest() throws IOException {
-    client.execute(request, handler);
+    byte[] body = request.getBodyBytes();
+    onRequestSent(body == null ? 0 : body.length);
+
+    if (subProtocol.filter(TDHttpBinding.SSE_SUBPROTOCOL::equals).isPresent()) {
+      openEventStream();
+    } else if (subProtocol.filter(TDHttpBinding.LONGPOLL_SUBPROTOCOL::equals).isPresent()) {
+      poll();
+    } else {
+      exchange = client.execute(request, handler);
+    }
+  }
+
+  /**
+   * Cancels the operation: a pending request is aborted, and streams of events are closed.
+   */
+  public void cancel() {
+    cancelled = true;
+
+    Future<?> current = exchange;
+    if (current != null) {
+      current.cancel(true);
+    }
+
+    client.close(CloseMode.GRACEFUL);
+  }
+
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  /**
+   * Cancels the exchange and closes the connections of the operation.
+   */
+  @Override
+  protected void abort() {
+    cancel();
   }
 
   public TDHttpOperation setAPIKey(APIKeySecurityScheme scheme, String token) {
@@ -130,17 +343,35 @@ public class TDHttpOperation extends BaseOperation {
 
   @Override
   protected void setObjectPayload(Map<String, Object> payload) {
-    String body = new Gson().toJson(payload);
-    request.setBody(body, ContentType.create(form.getContentType()));
+    setSerializedPayload(SchemaSerializer.generic(), payload);
   }
 
   @Override
   protected void setArrayPayload(List<Object> payload) {
-    String body = new Gson().toJson(payload);
-    request.setBody(body, ContentType.create(form.getContentType()));
+    setSerializedPayload(SchemaSerializer.generic(), payload);
+  }
+
+  @Override
+  protected void setSerializedPayload(SchemaSerializer serializer, Object payload) {
+    setEncodedPayload(serializer.toByteArray(payload));
+  }
+
+  /**
+   * Sets the UTF-8 encoding of the JSON payload as body, so that the client does not encode it again.
+   */
+  @Override
+  public void setEncodedPayload(byte[] json) {
+    request.setBody(json, ContentType.create(form.getContentType()));
   }
 
   public String getPayloadAsString() {
+    SimpleBody body = request.getBody();
+
+    if (body != null && body.isBytes()) {
+      // JSON payloads are encoded in UTF-8
+      return new String(body.getBodyBytes(), StandardCharsets.UTF_8);
+    }
+
     return request.getBodyText();
   }
 
@@ -156,8 +387,8 @@ public class TDHttpOperation extends BaseOperation {
         builder.append(", " + header.getName() + ": " + header.getValue());
       }
 
-      if (request.getBodyText() != null) {
-        builder.append(", Payload: " + request.getBodyText());
+      if (request.getBody() != null) {
+        builder.append(", Payload: " + getPayloadAsString());
       }
     } catch (UnsupportedOperationException | URISyntaxException e) {
       LOGGER.log(Level.WARNING, e.getMessage());
@@ -170,4 +401,43 @@ public class TDHttpOperation extends BaseOperation {
     return this.request;
   }
 
+  private void openEventStream() {
+    if (cancelled) {
+      return;
+    }
+
+    request.setHeader(HttpHeaders.ACCEPT, EVENT_STREAM.getMimeType());
+    request.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+    if (lastEventId.isPresent()) {
+      request.setHeader("Last-Event-ID", lastEventId.get());
+    }
+
+    TDEventStreamConsumer consumer = new TDEventStreamConsumer();
+    exchange = client.execute(SimpleRequestProducer.create(request), consumer,
+      new TDEventStreamHandler(consumer));
+  }
+
+  private void poll() {
+    if (cancelled) {
+      return;
+    }
+
+    // Successive polls reuse the persistent connection of the client
+    exchange = client.execute(request, new TDLongPollHandler());
+  }
+
+  private void onEventReceived(HttpResponse head, String data, Optional<String> type,
+      Optional<String> id) {
+    getPhaseTimings().mark(Phase.RESPONSE_RECEIVED);
+
+    SimpleHttpResponse event = new SimpleHttpResponse(head.getCode());
+    event.setHeaders(head.getHeaders());
+    event.setBody(data, ContentType.parse(form.getContentType()).withCharset(StandardCharsets.UTF_8));
+
+    TDHttpEventResponse response = new TDHttpEventResponse(event, this, type, id);
+    getPhaseTimings().mark(Phase.PAYLOAD_DECODED);
+
+    onResponse(response, data.length());
+  }
+
 }
@@ -12,7 +12,12 @@ import com.google.gson.JsonPrimitive;
 import com.google.gson.JsonSyntaxException;
 import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
 import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpStatus;
 
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -31,6 +36,8 @@ public class TDHttpResponse extends BaseResponse {
 
   private final SimpleHttpResponse response;
 
+  // The payload is parsed when first requested, so that primitive accessors and streaming
+  // decoders of the encoded payload do not pay for a JSON tree
   private Optional<JsonElement> jsonPayload;
 
   private Optional<Object> payload;
@@ -39,24 +46,6 @@ public class TDHttpResponse extends BaseResponse {
     super(op);
 
     this.response = response;
-
-    if (response.getBodyText() == null) {
-      this.jsonPayload = Optional.empty();
-      this.payload = Optional.empty();
-    } else {
-      String txt = response.getBodyText();
-
-      try {
-        JsonElement val = JsonParser.parseString(txt);
-
-        this.jsonPayload = Optional.of(val);
-        this.payload = Optional.of(asJavaObject(val));
-      } catch (JsonSyntaxException e) {
-        // assuming textual content
-        this.jsonPayload = Optional.of(new JsonPrimitive(txt));
-        this.payload = Optional.of(txt);
-      }
-    }
   }
 
   public int getStatusCode() {
@@ -84,9 +73,51 @@ public class TDHttpResponse extends BaseResponse {
 
   @Override
   public Optional<Object> getPayload() {
+    parsePayload();
     return payload;
   }
 
+  @Override
+  public Optional<byte[]> getEncodedPayload() {
+    return Optional.ofNullable(response.getBodyBytes());
+  }
+
+  /**
+   * Gets the delay of the <code>Retry-After</code> header of a 429 (Too Many Requests) or 503
+   * (Service Unavailable) response. The header may hold a number of seconds or an HTTP date.
+   *
+   * @return the requested delay, if any
+   */
+  @Override
+  public Optional<Duration> getRetryAfter() {
+    if (response.getCode() != HttpStatus.SC_TOO_MANY_REQUESTS
+        && response.getCode() != HttpStatus.SC_SERVICE_UNAVAILABLE) {
+      return Optional.empty();
+    }
+
+    Header header = response.getFirstHeader("Retry-After");
+    if (header == null || header.getValue() == null) {
+      return Optional.empty();
+    }
+
+    String value = header.getValue().trim();
+
+    try {
+      return Optional.of(Duration.ofSeconds(Math.max(0, Long.parseLong(value))));
+    } catch (NumberFormatException e) {
+      // Not a number of seconds, the value should be an HTTP date
+    }
+
+    try {
+      Duration delay = Duration.between(ZonedDateTime.now(),
+        ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME));
+      return Optional.of(delay.isNegative() ? Duration.ZERO : delay);
+    } catch (DateTimeParseException e) {
+      LOGGER.info("Ignoring invalid Retry-After header: " + value);
+      return Optional.empty();
+    }
+  }
+
   @Override
   public Collection<Link> getLinks() {
     HashSet<Link> links = new HashSet<>();
@@ -104,19 +135,19 @@ public class TDHttpResponse extends BaseResponse {
   }
 
   public Boolean getPayloadAsBoolean() {
-    return (Boolean) payload.get();
+    return (Boolean) getPayload().get();
   }
 
   public Long getPayloadAsInteger() {
-    return (Long) payload.get();
+    return (Long) getPayload().get();
   }
 
   public Double getPayloadAsDouble() {
-    return (Double) payload.get();
+    return (Double) getPayload().get();
   }
 
   public String getPayloadAsString() {
-    return (String) payload.get();
+    return (String) getPayload().get();
   }
 
   /**
@@ -162,6 +193,7 @@ public class TDHttpResponse extends BaseResponse {
   }
 
   public Object getPayloadWithSchema(DataSchema schema) throws IllegalArgumentException {
+    parsePayload();
     return schema.parseJson(jsonPayload.get());
   }
 
@@ -169,6 +201,31 @@ public class TDHttpResponse extends BaseResponse {
     return true;
   }
 
+  private synchronized void parsePayload() {
+    if (payload != null) {
+      return;
+    }
+
+    String txt = response.getBodyText();
+
+    if (txt == null) {
+      this.jsonPayload = Optional.empty();
+      this.payload = Optional.empty();
+      return;
+    }
+
+    try {
+      JsonElement val = JsonParser.parseString(txt);
+
+      this.jsonPayload = Optional.of(val);
+      this.payload = Optional.of(asJavaObject(val));
+    } catch (JsonSyntaxException e) {
+      // assuming textual content
+      this.jsonPayload = Optional.of(new JsonPrimitive(txt));
+      this.payload = Optional.of(txt);
+    }
+  }
+
   /**
    * TODO share implementation with CoAP (and classes in package "schemas").
    *
@@ -204,9 +261,19 @@ public class TDHttpResponse extends BaseResponse {
   }
 
   private Number asDoubleOrLong(Number nb) {
+    String s = nb.toString();
+
+    // Only integers are parsed as longs (rather than catching the failure of every other number)
+    for (int i = s.charAt(0) == '-' ? 1 : 0; i < s.length(); i++) {
+      if (s.charAt(i) < '0' || s.charAt(i) > '9') {
+        return nb.doubleValue();
+      }
+    }
+
     try {
-      return Long.parseLong(nb.toString());
+      return Long.parseLong(s);
     } catch (NumberFormatException e) {
+      // Out of the range of longs
       return nb.doubleValue();
     }
   }
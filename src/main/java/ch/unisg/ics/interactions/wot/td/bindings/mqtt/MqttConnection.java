@@ -0,0 +1,575 @@
+package ch.unisg.ics.interactions.wot.td.bindings.mqtt;
+
+import ch.unisg.ics.interactions.wot.td.bindings.HashedWheelTimer;
+
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A minimal MQTT 3.1.1 client connection (see the
+ * <a href="https://docs.oasis-open.org/mqtt/mqtt/v3.1.1/mqtt-v3.1.1.html">OASIS specification</a>)
+ * with a clean session. Messages are published and topics are subscribed with QoS 0.
+ * <p>
+ * Outgoing packets are queued and written by a dedicated thread: all packets queued while the
+ * previous batch is written (or during the linger time) are written and flushed together. Incoming
+ * packets are read on another thread, and published messages are passed to a {@link Listener}.
+ */
+final class MqttConnection implements Closeable {
+  private final static Logger LOGGER = Logger.getLogger(MqttConnection.class.getCanonicalName());
+
+  static final int CONNECT = 1;
+  static final int CONNACK = 2;
+  static final int PUBLISH = 3;
+  static final int PUBACK = 4;
+  static final int SUBSCRIBE = 8;
+  static final int SUBACK = 9;
+  static final int UNSUBSCRIBE = 10;
+  static final int UNSUBACK = 11;
+  static final int PINGREQ = 12;
+  static final int PINGRESP = 13;
+  static final int DISCONNECT = 14;
+
+  /**
+   * Maximum value of the remaining length of a packet (in bytes)
+   */
+  static final int MAX_REMAINING_LENGTH = 268435455;
+
+  private static final HashedWheelTimer KEEP_ALIVE_TIMER = new HashedWheelTimer(100, TimeUnit.MILLISECONDS, 64);
+  private static final AtomicInteger THREADS = new AtomicInteger();
+
+  interface Listener {
+
+    void onPublish(String topic, byte[] payload);
+
+    /**
+     * Called once when the connection is closed, by either side.
+     *
+     * @param cause the error that closed the connection, if any
+     */
+    void onClose(Optional<IOException> cause);
+  }
+
+  /**
+   * A control packet: the flags of the fixed header and the rest of the packet.
+   */
+  static final class Packet {
+    final int type;
+    final int flags;
+    final byte[] body;
+
+    Packet(int type, int flags, byte[] body) {
+      this.type = type;
+      this.flags = flags;
+      this.body = body;
+    }
+  }
+
+  private static final class Outgoing {
+    private final byte[] packet;
+    private final CompletableFuture<Void> written = new CompletableFuture<>();
+
+    private Outgoing(byte[] packet) {
+      this.packet = packet;
+    }
+  }
+
+  private final Socket socket;
+  private final InputStream in;
+  private final OutputStream out;
+  private final Listener listener;
+  private final long lingerMillis;
+
+  private final BlockingQueue<Outgoing> queue = new LinkedBlockingQueue<>();
+  private final Map<Integer, CompletableFuture<byte[]>> pendingAcks = new ConcurrentHashMap<>();
+  private final AtomicInteger packetIds = new AtomicInteger();
+  private final AtomicLong flushes = new AtomicLong();
+  private final AtomicBoolean closed = new AtomicBoolean(false);
+
+  private volatile Thread writer;
+  private volatile HashedWheelTimer.Timeout keepAlive;
+
+  private MqttConnection(Socket socket, InputStream in, Listener listener, long lingerMillis)
+      throws IOException {
+    this.socket = socket;
+    this.in = in;
+    this.out = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024);
+    this.listener = listener;
+    this.lingerMillis = lingerMillis;
+  }
+
+  /**
+   * Opens a connection: the CONNECT packet is sent and the CONNACK packet is awaited on the
+   * calling thread. User name and password are taken from the user info of the URI, if any.
+   *
+   * @param uri the URI of the broker (<code>mqtt</code> or <code>mqtts</code>)
+   * @param clientId the client identifier
+   * @param keepAliveSeconds the keep alive interval (0 to disable keep alive)
+   * @param lingerMillis the time during which outgoing packets are accumulated before they are
+   *                     written (0 to write packets as soon as possible)
+   * @param timeoutMillis the timeout of the TCP connection and of the CONNACK packet
+   * @param listener the listener of published messages
+   * @return the open connection
+   * @throws IOException if the connection failed or was refused by the broker
+   */
+  static MqttConnection open(URI uri, String clientId, int keepAliveSeconds, long lingerMillis,
+      int timeoutMillis, Listener listener) throws IOException {
+    boolean secure = "mqtts".equalsIgnoreCase(uri.getScheme());
+    int port = uri.getPort() > 0 ? uri.getPort() : (secure ? 8883 : 1883);
+
+    Socket socket = secure ? createSecureSocket() : new Socket();
+
+    try {
+      socket.connect(new InetSocketAddress(uri.getHost(), port), timeoutMillis);
+      socket.setSoTimeout(timeoutMillis);
+      socket.setTcpNoDelay(true);
+
+      OutputStream rawOut = socket.getOutputStream();
+      writePacket(rawOut, CONNECT, 0, connectBody(uri.getUserInfo(), clientId, keepAliveSeconds));
+      rawOut.flush();
+
+      InputStream in = new BufferedInputStream(socket.getInputStream());
+      Packet connack = readPacket(in);
+      if (connack.type != CONNACK || connack.body.length < 2) {
+        throw new IOException("Unexpected packet from the broker: " + connack.type);
+      }
+      if (connack.body[1] != 0) {
+        throw new IOException("The broker refused the connection, return code: " + connack.body[1]);
+      }
+
+      // Reads block until a packet is received
+      socket.setSoTimeout(0);
+
+      MqttConnection connection = new MqttConnection(socket, in, listener, lingerMillis);
+      connection.start(keepAliveSeconds);
+
+      return connection;
+    } catch (IOException e) {
+      socket.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Publishes a message with QoS 0.
+   *
+   * @param topic the topic of the message
+   * @param payload the payload of the message
+   * @param retain true if the broker should retain the message
+   * @return a future completed when the message is written to the connection
+   */
+  CompletableFuture<Void> publish(String topic, byte[] payload, boolean retain) {
+    ByteArrayOutputStream body = new ByteArrayOutputStream(payload.length + topic.length() + 2);
+    writeString(body, topic);
+    body.write(payload, 0, payload.length);
+
+    return enqueue(PUBLISH, retain ? 1 : 0, body.toByteArray());
+  }
+
+  /**
+   * Subscribes to a topic filter with QoS 0.
+   *
+   * @param topicFilter the topic filter
+   * @return a future completed when the subscription is acknowledged, or completed exceptionally
+   * if it is refused by the broker
+   */
+  CompletableFuture<Void> subscribe(String topicFilter) {
+    int packetId = nextPacketId();
+
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    writeShort(body, packetId);
+    writeString(body, topicFilter);
+    body.write(0);
+
+    return acknowledged(packetId, SUBSCRIBE, body.toByteArray()).thenApply(ack -> {
+      if (ack.length < 3 || (ack[2] & 0x80) != 0) {
+        throw new CompletionException(new IOException("The broker refused the subscription to "
+          + topicFilter));
+      }
+      return null;
+    });
+  }
+
+  /**
+   * Unsubscribes from a topic filter.
+   *
+   * @param topicFilter the topic filter
+   * @return a future completed when the broker acknowledges the request
+   */
+  CompletableFuture<Void> unsubscribe(String topicFilter) {
+    int packetId = nextPacketId();
+
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    writeShort(body, packetId);
+    writeString(body, topicFilter);
+
+    return acknowledged(packetId, UNSUBSCRIBE, body.toByteArray()).thenApply(ack -> null);
+  }
+
+  boolean isOpen() {
+    return !closed.get();
+  }
+
+  /**
+   * Gets the number of batches of packets written (each batch is flushed once).
+   */
+  long getFlushCount() {
+    return flushes.get();
+  }
+
+  /**
+   * Closes the connection: queued packets are written, followed by a DISCONNECT packet.
+   */
+  @Override
+  public void close() {
+    if (closed.get()) {
+      return;
+    }
+
+    try {
+      enqueue(DISCONNECT, 0, new byte[0]).get(1, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException | TimeoutException e) {
+      // The connection is closed anyway
+    }
+
+    terminate(Optional.empty());
+  }
+
+  /**
+   * Creates a TLS socket that verifies that the certificate of the server matches its host name
+   * (as HTTPS clients do).
+   */
+  private static Socket createSecureSocket() throws IOException {
+    SSLSocket socket = (SSLSocket) SSLSocketFactory.getDefault().createSocket();
+
+    SSLParameters parameters = socket.getSSLParameters();
+    parameters.setEndpointIdentificationAlgorithm("HTTPS");
+    socket.setSSLParameters(parameters);
+
+    return socket;
+  }
+
+  static Packet readPacket(InputStream in) throws IOException {
+    int header = in.read();
+    if (header < 0) {
+      throw new EOFException("The connection was closed");
+    }
+
+    int length = 0;
+    int multiplier = 1;
+    int digit;
+    do {
+      // The remaining length has at most 4 bytes
+      if (multiplier > 128 * 128 * 128) {
+        throw new IOException("Malformed remaining length");
+      }
+      digit = readByte(in);
+      length += (digit & 0x7F) * multiplier;
+      multiplier *= 128;
+    } while ((digit & 0x80) != 0);
+
+    byte[] body = new byte[length];
+    int offset = 0;
+    while (offset < length) {
+      int n = in.read(body, offset, length - offset);
+      if (n < 0) {
+        throw new EOFException("The connection was closed");
+      }
+      offset += n;
+    }
+
+    return new Packet(header >>> 4, header & 0x0F, body);
+  }
+
+  static void writePacket(OutputStream out, int type, int flags, byte[] body) throws IOException {
+    if (body.length > MAX_REMAINING_LENGTH) {
+      throw new IOException("The packet exceeds the maximum size: " + body.length);
+    }
+
+    out.write((type << 4) | flags);
+
+    int length = body.length;
+    do {
+      int digit = length % 128;
+      length /= 128;
+      out.write(length > 0 ? digit | 0x80 : digit);
+    } while (length > 0);
+
+    out.write(body);
+  }
+
+  static void writeString(ByteArrayOutputStream out, String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    writeShort(out, bytes.length);
+    out.write(bytes, 0, bytes.length);
+  }
+
+  static void writeShort(ByteArrayOutputStream out, int value) {
+    out.write(value >>> 8);
+    out.write(value);
+  }
+
+  static String readString(byte[] body, int offset) {
+    int length = readShort(body, offset);
+    return new String(body, offset + 2, length, StandardCharsets.UTF_8);
+  }
+
+  static int readShort(byte[] body, int offset) {
+    return ((body[offset] & 0xFF) << 8) | (body[offset + 1] & 0xFF);
+  }
+
+  private static byte[] connectBody(String userInfo, String clientId, int keepAliveSeconds) {
+    Optional<String> userName = Optional.empty();
+    Optional<String> password = Optional.empty();
+
+    if (userInfo != null) {
+      int colon = userInfo.indexOf(':');
+      userName = Optional.of(colon < 0 ? userInfo : userInfo.substring(0, colon));
+      password = colon < 0 ? Optional.empty() : Optional.of(userInfo.substring(colon + 1));
+    }
+
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    writeString(body, "MQTT");
+    // Protocol level of MQTT 3.1.1
+    body.write(4);
+    // Clean session
+    body.write(0x02 | (userName.isPresent() ? 0x80 : 0) | (password.isPresent() ? 0x40 : 0));
+    writeShort(body, keepAliveSeconds);
+    writeString(body, clientId);
+    userName.ifPresent(name -> writeString(body, name));
+    password.ifPresent(pass -> writeString(body, pass));
+
+    return body.toByteArray();
+  }
+
+  private void start(int keepAliveSeconds) {
+    int id = THREADS.incrementAndGet();
+
+    writer = new Thread(this::write, "wot-td-mqtt-writer-" + id);
+    writer.setDaemon(true);
+    writer.start();
+
+    Thread reader = new Thread(this::read, "wot-td-mqtt-reader-" + id);
+    reader.setDaemon(true);
+    reader.start();
+
+    if (keepAliveSeconds > 0) {
+      scheduleKeepAlive(keepAliveSeconds * 750L);
+    }
+  }
+
+  private void scheduleKeepAlive(long periodMillis) {
+    keepAlive = KEEP_ALIVE_TIMER.newTimeout(() -> {
+      if (isOpen()) {
+        enqueue(PINGREQ, 0, new byte[0]);
+        scheduleKeepAlive(periodMillis);
+      }
+    }, periodMillis, TimeUnit.MILLISECONDS);
+  }
+
+  private int nextPacketId() {
+    // Packet identifiers are non-zero 16-bit integers
+    return packetIds.updateAndGet(id -> id >= 0xFFFF ? 1 : id + 1);
+  }
+
+  private CompletableFuture<byte[]> acknowledged(int packetId, int type, byte[] body) {
+    CompletableFuture<byte[]> ack = new CompletableFuture<>();
+    pendingAcks.put(packetId, ack);
+
+    enqueue(type, 2, body).whenComplete((v, e) -> {
+      if (e != null) {
+        pendingAcks.remove(packetId);
+        ack.completeExceptionally(e);
+      }
+    });
+
+    return ack;
+  }
+
+  private CompletableFuture<Void> enqueue(int type, int flags, byte[] body) {
+    ByteArrayOutputStream packet = new ByteArrayOutputStream(body.length + 5);
+
+    try {
+      writePacket(packet, type, flags, body);
+    } catch (IOException e) {
+      CompletableFuture<Void> failed = new CompletableFuture<>();
+      failed.completeExceptionally(e);
+      return failed;
+    }
+
+    Outgoing outgoing = new Outgoing(packet.toByteArray());
+
+    if (closed.get()) {
+      outgoing.written.completeExceptionally(new IOException("The MQTT connection is closed"));
+      return outgoing.written;
+    }
+
+    queue.add(outgoing);
+
+    // The connection may have been terminated (and its queue drained) before the packet was added
+    if (closed.get() && queue.remove(outgoing)) {
+      outgoing.written.completeExceptionally(new IOException("The MQTT connection is closed"));
+    }
+
+    return outgoing.written;
+  }
+
+  private void write() {
+    List<Outgoing> batch = new ArrayList<>();
+
+    try {
+      while (!closed.get()) {
+        Outgoing first = queue.take();
+        batch.add(first);
+
+        if (lingerMillis > 0) {
+          long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+          long remaining;
+          while ((remaining = deadline - System.nanoTime()) > 0) {
+            Outgoing next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+              break;
+            }
+            batch.add(next);
+          }
+        }
+
+        queue.drainTo(batch);
+
+        for (Outgoing outgoing : batch) {
+          out.write(outgoing.packet);
+        }
+        out.flush();
+        flushes.incrementAndGet();
+
+        batch.forEach(outgoing -> outgoing.written.complete(null));
+        batch.clear();
+      }
+    } catch (InterruptedException e) {
+      // The connection is closed: the packets taken from the queue are not drained by terminate
+      IOException closedException = new IOException("The MQTT connection is closed");
+      batch.forEach(outgoing -> outgoing.written.completeExceptionally(closedException));
+      failUnsent(closedException);
+    } catch (IOException e) {
+      batch.forEach(outgoing -> outgoing.written.completeExceptionally(e));
+      terminate(Optional.of(e));
+    }
+  }
+
+  private void read() {
+    try {
+      while (!closed.get()) {
+        Packet packet = readPacket(in);
+
+        switch (packet.type) {
+          case PUBLISH:
+            onPublish(packet);
+            break;
+          case SUBACK:
+          case UNSUBACK:
+            CompletableFuture<byte[]> ack = pendingAcks.remove(readShort(packet.body, 0));
+            if (ack != null) {
+              ack.complete(packet.body);
+            }
+            break;
+          default:
+            // PINGRESP and acknowledgements of packets not sent are ignored
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      terminate(closed.get() ? Optional.empty()
+        : Optional.of(e instanceof IOException ? (IOException) e : new IOException(e)));
+    }
+  }
+
+  private void onPublish(Packet packet) {
+    int qos = (packet.flags >>> 1) & 0x03;
+    String topic = readString(packet.body, 0);
+    int offset = 2 + readShort(packet.body, 0);
+
+    if (qos > 0) {
+      int packetId = readShort(packet.body, offset);
+      offset += 2;
+
+      // Subscriptions are made with QoS 0, so brokers should not send messages with QoS 2
+      if (qos == 1) {
+        ByteArrayOutputStream ack = new ByteArrayOutputStream(2);
+        writeShort(ack, packetId);
+        enqueue(PUBACK, 0, ack.toByteArray());
+      }
+    }
+
+    byte[] payload = new byte[packet.body.length - offset];
+    System.arraycopy(packet.body, offset, payload, 0, payload.length);
+
+    try {
+      listener.onPublish(topic, payload);
+    } catch (RuntimeException e) {
+      LOGGER.log(Level.WARNING, "The listener of an MQTT message failed", e);
+    }
+  }
+
+  private void terminate(Optional<IOException> cause) {
+    if (!closed.compareAndSet(false, true)) {
+      return;
+    }
+
+    HashedWheelTimer.Timeout timeout = keepAlive;
+    if (timeout != null) {
+      timeout.cancel();
+    }
+
+    Thread current = writer;
+    if (current != null && current != Thread.currentThread()) {
+      current.interrupt();
+    }
+
+    try {
+      socket.close();
+    } catch (IOException e) {
+      // Ignore
+    }
+
+    // The listener is notified first, so that the connection is no longer used when pending
+    // packets fail
+    listener.onClose(cause);
+
+    IOException closedException = new IOException("The MQTT connection is closed");
+    failUnsent(closedException);
+
+    List<CompletableFuture<byte[]>> acks = new ArrayList<>(pendingAcks.values());
+    pendingAcks.clear();
+    acks.forEach(ack -> ack.completeExceptionally(closedException));
+  }
+
+  private void failUnsent(IOException cause) {
+    List<Outgoing> unsent = new ArrayList<>();
+    queue.drainTo(unsent);
+    unsent.forEach(outgoing -> outgoing.written.completeExceptionally(cause));
+  }
+
+  private static int readByte(InputStream in) throws IOException {
+    int b = in.read();
+    if (b < 0) {
+      throw new EOFException("The connection was closed");
+    }
+    return b;
+  }
+}
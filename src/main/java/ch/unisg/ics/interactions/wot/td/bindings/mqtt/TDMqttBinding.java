@@ -0,0 +1,71 @@
+package ch.unisg.ics.interactions.wot.td.bindings.mqtt;
+
+import ch.unisg.ics.interactions.wot.td.affordances.Form;
+import ch.unisg.ics.interactions.wot.td.bindings.BaseProtocolBinding;
+import ch.unisg.ics.interactions.wot.td.bindings.Operation;
+import ch.unisg.ics.interactions.wot.td.vocabularies.TD;
+
+import java.util.*;
+
+/**
+ * Protocol binding for forms with an <code>mqtt</code> or <code>mqtts</code> target, e.g.
+ * <code>mqtt://broker.example.org:1883/lamp/overheating</code>: the authority of the target
+ * identifies the broker and its path the topic. The method of a form is the MQTT control packet
+ * used for its operations: messages are published to write properties and invoke actions, and
+ * topics are subscribed to observe properties and subscribe to events.
+ */
+public class TDMqttBinding extends BaseProtocolBinding {
+
+  /**
+   * Method name of operations that publish a message
+   */
+  public final static String PUBLISH = "publish";
+
+  /**
+   * Method name of operations that subscribe to a topic
+   */
+  public final static String SUBSCRIBE = "subscribe";
+
+  private final static String MQTT_PROTOCOL = "MQTT";
+
+  private final static Collection<String> SUPPORTED_SCHEMES = new HashSet<>();
+
+  private final static Map<String, String> DEFAULT_METHODS = new HashMap<>();
+
+  static {
+    SUPPORTED_SCHEMES.add("mqtt");
+    SUPPORTED_SCHEMES.add("mqtts");
+
+    DEFAULT_METHODS.put(TD.writeProperty, PUBLISH);
+    DEFAULT_METHODS.put(TD.invokeAction, PUBLISH);
+    DEFAULT_METHODS.put(TD.observeProperty, SUBSCRIBE);
+    DEFAULT_METHODS.put(TD.subscribeEvent, SUBSCRIBE);
+  }
+
+  @Override
+  public String getProtocol() {
+    return MQTT_PROTOCOL;
+  }
+
+  @Override
+  public Collection<String> getSupportedSchemes() {
+    return SUPPORTED_SCHEMES;
+  }
+
+  @Override
+  public Optional<String> getDefaultMethod(String operationType) {
+    if (DEFAULT_METHODS.containsKey(operationType)) return Optional.of(DEFAULT_METHODS.get(operationType));
+    else return Optional.empty();
+  }
+
+  @Override
+  public Optional<String> getDefaultSubProtocol(String operationType) {
+    return Optional.empty();
+  }
+
+  @Override
+  public Operation bind(Form form, String operationType) {
+    return new TDMqttOperation(form, operationType);
+  }
+
+}
@@ -0,0 +1,280 @@
+package ch.unisg.ics.interactions.wot.td.bindings.mqtt;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Client that performs {@link TDMqttOperation}s over a single connection per broker. Subscribers
+ * of the same topic filter share a single subscription: messages are fanned out to all
+ * subscribers of the filters that match their topic, and the broker is only asked to unsubscribe
+ * when the last subscriber is removed. Publishes are batched by the connection (see
+ * {@link #TDMqttClient(long)}).
+ * <p>
+ * Connections are opened on first use and removed when closed; subscribers of a closed connection
+ * are notified of the error.
+ */
+public class TDMqttClient implements AutoCloseable {
+  private final static Logger LOGGER = Logger.getLogger(TDMqttClient.class.getCanonicalName());
+
+  /**
+   * Default value of the keep alive interval (in seconds)
+   */
+  public static final int DEFAULT_KEEP_ALIVE_SECONDS = 60;
+
+  /**
+   * Default value of the timeout of the connection to a broker (in milliseconds)
+   */
+  public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 10000;
+
+  private static final TDMqttClient DEFAULT_CLIENT = new TDMqttClient();
+
+  /**
+   * Subscriber of a topic filter.
+   */
+  interface Subscriber {
+
+    void onMessage(String topic, byte[] payload);
+
+    /**
+     * Called if the connection to the broker is closed while subscribed.
+     */
+    void onError();
+  }
+
+  /**
+   * The connection to a broker, shared by all operations on the broker.
+   */
+  final class Broker implements MqttConnection.Listener {
+    private final String uri;
+    private final Map<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Void>> subscriptions = new HashMap<>();
+    private volatile MqttConnection connection;
+
+    private Broker(String uri) {
+      this.uri = uri;
+    }
+
+    MqttConnection connection() {
+      return connection;
+    }
+
+    CompletableFuture<Void> publish(String topic, byte[] payload, boolean retain) {
+      return connection.publish(topic, payload, retain);
+    }
+
+    /**
+     * Adds a subscriber of a topic filter: the broker is asked to subscribe for the first
+     * subscriber only.
+     *
+     * @return a future completed when the subscription is acknowledged by the broker
+     */
+    synchronized CompletableFuture<Void> subscribe(String topicFilter, Subscriber subscriber) {
+      subscribers.computeIfAbsent(topicFilter, f -> new CopyOnWriteArraySet<>()).add(subscriber);
+
+      CompletableFuture<Void> subscription = subscriptions.get(topicFilter);
+      if (subscription == null) {
+        subscription = connection.subscribe(topicFilter);
+        subscriptions.put(topicFilter, subscription);
+
+        subscription.whenComplete((v, e) -> {
+          if (e != null) {
+            // Later subscribers retry
+            removeSubscription(topicFilter);
+          }
+        });
+      }
+
+      return subscription;
+    }
+
+    /**
+     * Removes a subscriber of a topic filter: the broker is asked to unsubscribe when the last
+     * subscriber is removed.
+     */
+    synchronized void unsubscribe(String topicFilter, Subscriber subscriber) {
+      Set<Subscriber> current = subscribers.get(topicFilter);
+      if (current == null || !current.remove(subscriber) || !current.isEmpty()) {
+        return;
+      }
+
+      removeSubscription(topicFilter);
+      if (connection.isOpen()) {
+        connection.unsubscribe(topicFilter);
+      }
+    }
+
+    @Override
+    public void onPublish(String topic, byte[] payload) {
+      for (Map.Entry<String, Set<Subscriber>> entry : subscribers.entrySet()) {
+        if (topicMatches(entry.getKey(), topic)) {
+          for (Subscriber subscriber : entry.getValue()) {
+            try {
+              subscriber.onMessage(topic, payload);
+            } catch (RuntimeException e) {
+              LOGGER.log(Level.WARNING, "The subscriber of " + entry.getKey() + " failed", e);
+            }
+          }
+        }
+      }
+    }
+
+    @Override
+    public void onClose(Optional<IOException> cause) {
+      brokers.remove(uri, this);
+      cause.ifPresent(e -> LOGGER.log(Level.WARNING, "Connection to " + uri + " lost", e));
+
+      List<Subscriber> pending = new ArrayList<>();
+      synchronized (this) {
+        subscribers.values().forEach(pending::addAll);
+        subscribers.clear();
+        subscriptions.clear();
+      }
+
+      pending.forEach(Subscriber::onError);
+    }
+
+    private synchronized void removeSubscription(String topicFilter) {
+      subscribers.remove(topicFilter);
+      subscriptions.remove(topicFilter);
+    }
+  }
+
+  private final Map<String, Broker> brokers = new ConcurrentHashMap<>();
+  private final String clientId = "wot-td-java-" + UUID.randomUUID().toString().substring(0, 8);
+  private final long lingerMillis;
+
+  public TDMqttClient() {
+    this(0);
+  }
+
+  /**
+   * @param lingerMillis the time during which publishes are accumulated before they are written
+   *                     in a single batch (with a linger time of 0, publishes are batched only
+   *                     while the previous batch is written)
+   */
+  public TDMqttClient(long lingerMillis) {
+    this.lingerMillis = lingerMillis;
+  }
+
+  /**
+   * Gets the client shared by operations created by {@link TDMqttBinding}.
+   *
+   * @return the default client
+   */
+  public static TDMqttClient getDefault() {
+    return DEFAULT_CLIENT;
+  }
+
+  /**
+   * Gets the number of open broker connections.
+   *
+   * @return the number of connections
+   */
+  public int getConnectionCount() {
+    return brokers.size();
+  }
+
+  /**
+   * Closes all broker connections: subscribers are notified of the error.
+   */
+  @Override
+  public void close() {
+    new ArrayList<>(brokers.values()).forEach(broker -> {
+      MqttConnection connection = broker.connection;
+      if (connection != null) {
+        connection.close();
+      }
+    });
+  }
+
+  /**
+   * Gets the broker of a form target, and connects to it if needed. The broker is identified by
+   * the scheme and the authority of the target.
+   */
+  Broker getBroker(String target) throws IOException {
+    String uri = getBrokerUri(target);
+
+    Broker broker = brokers.get(uri);
+    if (broker != null) {
+      return broker;
+    }
+
+    synchronized (this) {
+      broker = brokers.get(uri);
+      if (broker != null) {
+        return broker;
+      }
+
+      broker = new Broker(uri);
+      broker.connection = MqttConnection.open(URI.create(uri), clientId, DEFAULT_KEEP_ALIVE_SECONDS,
+        lingerMillis, DEFAULT_CONNECT_TIMEOUT_MILLIS, broker);
+      brokers.put(uri, broker);
+
+      if (!broker.connection.isOpen()) {
+        // Closed by the broker before being registered
+        brokers.remove(uri, broker);
+        throw new IOException("The connection to " + uri + " was closed");
+      }
+
+      return broker;
+    }
+  }
+
+  static String getBrokerUri(String target) throws IOException {
+    try {
+      URI uri = new URI(target);
+      return new URI(uri.getScheme(), uri.getAuthority(), null, null, null).toString();
+    } catch (URISyntaxException e) {
+      throw new IOException("Invalid MQTT URI: " + target, e);
+    }
+  }
+
+  /**
+   * Gets the topic (or topic filter) of a form target: the path of the target without the leading
+   * slash. Wildcards are percent-encoded in the target (e.g. <code>%23</code> for <code>#</code>).
+   */
+  static String getTopic(String target) {
+    String path = URI.create(target).getPath();
+
+    if (path == null || path.length() <= 1) {
+      throw new IllegalArgumentException("No topic in the MQTT target: " + target);
+    }
+
+    return path.substring(1);
+  }
+
+  /**
+   * Checks whether a topic matches a topic filter, which may contain the wildcards <code>+</code>
+   * (single level) and <code>#</code> (multiple levels).
+   */
+  static boolean topicMatches(String topicFilter, String topic) {
+    String[] filterLevels = topicFilter.split("/", -1);
+    String[] topicLevels = topic.split("/", -1);
+
+    // Wildcards do not match topics that start with $ (e.g. $SYS)
+    if (topic.startsWith("$") && (filterLevels[0].equals("#") || filterLevels[0].equals("+"))) {
+      return false;
+    }
+
+    for (int i = 0; i < filterLevels.length; i++) {
+      if (filterLevels[i].equals("#")) {
+        return true;
+      }
+      if (i >= topicLevels.length) {
+        return false;
+      }
+      if (!filterLevels[i].equals("+") && !filterLevels[i].equals(topicLevels[i])) {
+        return false;
+      }
+    }
+
+    return filterLevels.length == topicLevels.length;
+  }
+}
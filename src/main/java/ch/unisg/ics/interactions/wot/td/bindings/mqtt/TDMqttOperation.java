@@ -0,0 +1,208 @@
+package ch.unisg.ics.interactions.wot.td.bindings.mqtt;
+
+import ch.unisg.ics.interactions.wot.td.affordances.Form;
+import ch.unisg.ics.interactions.wot.td.bindings.BaseOperation;
+import ch.unisg.ics.interactions.wot.td.metrics.PhaseTimings.Phase;
+import ch.unisg.ics.interactions.wot.td.schemas.SchemaSerializer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Operation performed over the broker connection of a {@link TDMqttClient}. Operations that publish
+ * a message get a single response (without payload) once the message is written to the
+ * connection. Operations that subscribe to a topic get a response per message received on the
+ * topic, until they are cancelled.
+ */
+public class TDMqttOperation extends BaseOperation {
+
+  private final class TDMqttSubscriber implements TDMqttClient.Subscriber {
+    private final AtomicBoolean failed = new AtomicBoolean(false);
+
+    @Override
+    public void onMessage(String topic, byte[] payload) {
+      if (cancelled) {
+        return;
+      }
+
+      getPhaseTimings().mark(Phase.RESPONSE_RECEIVED);
+      TDMqttResponse response = new TDMqttResponse(topic, payload, TDMqttOperation.this);
+      getPhaseTimings().mark(Phase.PAYLOAD_DECODED);
+
+      onResponse(response, payload.length);
+    }
+
+    /**
+     * Notifies the operation of an error, at most once (the subscription may fail and the
+     * connection be closed at the same time).
+     */
+    @Override
+    public void onError() {
+      if (!cancelled && failed.compareAndSet(false, true)) {
+        TDMqttOperation.this.onError();
+      }
+    }
+  }
+
+  private final TDMqttClient client;
+  private final String target;
+  private final String topic;
+  private final String methodName;
+
+  private Optional<byte[]> payload = Optional.empty();
+  private boolean retain = false;
+
+  private volatile TDMqttClient.Broker broker;
+  private volatile TDMqttSubscriber subscriber;
+  private volatile boolean cancelled = false;
+
+  public TDMqttOperation(Form form, String operationType) {
+    this(form, operationType, TDMqttClient.getDefault());
+  }
+
+  /**
+   * @param form the form of the operation
+   * @param operationType the operation type
+   * @param client the client that holds the connection to the broker of the form
+   */
+  public TDMqttOperation(Form form, String operationType, TDMqttClient client) {
+    super(form, operationType);
+
+    this.client = client;
+    this.target = form.getTarget();
+    this.topic = TDMqttClient.getTopic(target);
+
+    Optional<String> method = form.getMethodName(operationType);
+
+    if (method.filter(m -> m.equals(TDMqttBinding.PUBLISH) || m.equals(TDMqttBinding.SUBSCRIBE))
+        .isPresent()) {
+      this.methodName = method.get();
+    } else {
+      throw new IllegalArgumentException("No MQTT control packet for the given operation type: "
+        + operationType);
+    }
+  }
+
+  public String getTarget() {
+    return target;
+  }
+
+  public String getTopic() {
+    return topic;
+  }
+
+  /**
+   * Sets whether a published message should be retained by the broker (false by default).
+   *
+   * @param retain true if the message should be retained
+   * @return this operation
+   */
+  public TDMqttOperation setRetain(boolean retain) {
+    this.retain = retain;
+    return this;
+  }
+
+  @Override
+  public void sendRequest() throws IOException {
+    broker = client.getBroker(target);
+
+    if (methodName.equals(TDMqttBinding.PUBLISH)) {
+      byte[] message = payload.orElse(new byte[0]);
+      onRequestSent(message.length);
+
+      broker.publish(topic, message, retain).whenComplete((v, e) -> {
+        if (e == null) {
+          onResponse(new TDMqttResponse(this), 0);
+        } else {
+          onError();
+        }
+      });
+    } else {
+      onRequestSent(0);
+
+      TDMqttSubscriber current = new TDMqttSubscriber();
+      subscriber = current;
+      broker.subscribe(topic, current).whenComplete((v, e) -> {
+        if (e != null) {
+          current.onError();
+        }
+      });
+    }
+  }
+
+  /**
+   * Cancels the operation: a subscriber no longer receives messages, and the topic is unsubscribed
+   * if no other operation of the client subscribed to it.
+   */
+  public void cancel() {
+    cancelled = true;
+
+    TDMqttClient.Broker current = broker;
+    if (current != null && subscriber != null) {
+      current.unsubscribe(topic, subscriber);
+    }
+  }
+
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  @Override
+  protected void abort() {
+    cancel();
+  }
+
+  @Override
+  protected Object getPayload() {
+    return payload.map(bytes -> new String(bytes, StandardCharsets.UTF_8)).orElse(null);
+  }
+
+  @Override
+  protected void setBooleanPayload(Boolean value) {
+    setText(String.valueOf(value));
+  }
+
+  @Override
+  protected void setStringPayload(String value) {
+    setText(value);
+  }
+
+  @Override
+  protected void setIntegerPayload(Long value) {
+    setText(String.valueOf(value));
+  }
+
+  @Override
+  protected void setNumberPayload(Double value) {
+    setText(String.valueOf(value));
+  }
+
+  @Override
+  protected void setObjectPayload(Map<String, Object> payload) {
+    setSerializedPayload(SchemaSerializer.generic(), payload);
+  }
+
+  @Override
+  protected void setArrayPayload(List<Object> payload) {
+    setSerializedPayload(SchemaSerializer.generic(), payload);
+  }
+
+  @Override
+  protected void setSerializedPayload(SchemaSerializer serializer, Object payload) {
+    setEncodedPayload(serializer.toByteArray(payload));
+  }
+
+  @Override
+  public void setEncodedPayload(byte[] json) {
+    this.payload = Optional.of(json);
+  }
+
+  private void setText(String text) {
+    this.payload = Optional.of(text.getBytes(StandardCharsets.UTF_8));
+  }
+
+}
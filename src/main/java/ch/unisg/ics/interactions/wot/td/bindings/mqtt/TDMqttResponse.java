@@ -0,0 +1,191 @@
+package ch.unisg.ics.interactions.wot.td.bindings.mqtt;
+
+import ch.unisg.ics.interactions.wot.td.affordances.Link;
+import ch.unisg.ics.interactions.wot.td.bindings.BaseResponse;
+import ch.unisg.ics.interactions.wot.td.bindings.Operation;
+import ch.unisg.ics.interactions.wot.td.schemas.ArraySchema;
+import ch.unisg.ics.interactions.wot.td.schemas.DataSchema;
+import ch.unisg.ics.interactions.wot.td.schemas.ObjectSchema;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSyntaxException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Wrapper for an MQTT message received when performing a {@link TDMqttOperation} that subscribes
+ * to a topic, or for the completion of a publish (without payload). JSON payloads are deserialized,
+ * other payloads are kept as text.
+ */
+public class TDMqttResponse extends BaseResponse {
+
+  private final Optional<String> topic;
+  private final Optional<JsonElement> jsonPayload;
+  private final Optional<Object> payload;
+  private final Optional<byte[]> message;
+
+  /**
+   * Creates the response to a publish.
+   *
+   * @param op the operation that published a message
+   */
+  public TDMqttResponse(Operation op) {
+    super(op);
+
+    this.topic = Optional.empty();
+    this.jsonPayload = Optional.empty();
+    this.payload = Optional.empty();
+    this.message = Optional.empty();
+  }
+
+  /**
+   * Creates the response for a message received on a subscribed topic.
+   *
+   * @param topic the topic of the message
+   * @param message the payload of the message
+   * @param op the operation that subscribed to the topic
+   */
+  public TDMqttResponse(String topic, byte[] message, Operation op) {
+    super(op);
+
+    this.topic = Optional.of(topic);
+    this.message = message.length == 0 ? Optional.empty() : Optional.of(message);
+
+    if (message.length == 0) {
+      this.jsonPayload = Optional.empty();
+      this.payload = Optional.empty();
+    } else {
+      String txt = new String(message, StandardCharsets.UTF_8);
+
+      Optional<JsonElement> json;
+      try {
+        json = Optional.of(JsonParser.parseString(txt));
+      } catch (JsonSyntaxException e) {
+        json = Optional.empty();
+      }
+
+      if (json.isPresent()) {
+        this.jsonPayload = json;
+        this.payload = Optional.of(asJavaObject(json.get()));
+      } else {
+        // assuming textual content
+        this.jsonPayload = Optional.of(new JsonPrimitive(txt));
+        this.payload = Optional.of(txt);
+      }
+    }
+  }
+
+  /**
+   * Gets the topic of the message.
+   *
+   * @return the topic, if the response is a received message
+   */
+  public Optional<String> getTopic() {
+    return topic;
+  }
+
+  @Override
+  public ResponseStatus getStatus() {
+    return ResponseStatus.OK;
+  }
+
+  @Override
+  public Optional<Object> getPayload() {
+    return payload;
+  }
+
+  @Override
+  public Optional<byte[]> getEncodedPayload() {
+    return message;
+  }
+
+  @Override
+  public Collection<Link> getLinks() {
+    return Collections.emptySet();
+  }
+
+  public Boolean getPayloadAsBoolean() {
+    return (Boolean) payload.get();
+  }
+
+  public Long getPayloadAsInteger() {
+    return (Long) payload.get();
+  }
+
+  public Double getPayloadAsDouble() {
+    return ((Number) payload.get()).doubleValue();
+  }
+
+  public String getPayloadAsString() {
+    return (String) payload.get();
+  }
+
+  /**
+   * Gets the payload of the message as an object that conforms to a given <code>ObjectSchema</code>.
+   *
+   * @param schema schema to be used for constructing the map
+   * @return the constructed map
+   * @throws IllegalArgumentException if the payload of the message does not conform to the provided
+   * schema
+   */
+  @SuppressWarnings("unchecked")
+  public Map<String, Object> getPayloadAsObject(ObjectSchema schema) throws IllegalArgumentException {
+    return (Map<String, Object>) getPayloadWithSchema(schema);
+  }
+
+  /**
+   * Gets the payload of the message as an array that conforms to a given <code>ArraySchema</code>.
+   *
+   * @param schema schema to be used for constructing the list
+   * @return the constructed list
+   * @throws IllegalArgumentException if the payload of the message does not conform to the provided
+   * schema
+   */
+  @SuppressWarnings("unchecked")
+  public List<Object> getPayloadAsArray(ArraySchema schema) throws IllegalArgumentException {
+    return (List<Object>) getPayloadWithSchema(schema);
+  }
+
+  public Object getPayloadWithSchema(DataSchema schema) throws IllegalArgumentException {
+    return schema.parseJson(jsonPayload.get());
+  }
+
+  private Object asJavaObject(JsonElement val) {
+    if (val.isJsonPrimitive()) {
+      JsonPrimitive primitiveVal = val.getAsJsonPrimitive();
+
+      if (primitiveVal.isBoolean()) return val.getAsBoolean();
+      if (primitiveVal.isNumber()) return asDoubleOrLong(val.getAsNumber());
+      else return val.getAsString();
+    } else if (val.isJsonObject()) {
+      Map<String, Object> obj = new HashMap<>();
+
+      for (Map.Entry<String, JsonElement> kv : val.getAsJsonObject().entrySet()) {
+        obj.put(kv.getKey(), asJavaObject(kv.getValue()));
+      }
+
+      return obj;
+    } else if (val.isJsonArray()) {
+      List<Object> array = new ArrayList<>();
+
+      for (JsonElement v : val.getAsJsonArray()) {
+        array.add(asJavaObject(v));
+      }
+
+      return array;
+    } else {
+      return null;
+    }
+  }
+
+  private Number asDoubleOrLong(Number nb) {
+    try {
+      return Long.parseLong(nb.toString());
+    } catch (NumberFormatException e) {
+      return nb.doubleValue();
+    }
+  }
+
+}
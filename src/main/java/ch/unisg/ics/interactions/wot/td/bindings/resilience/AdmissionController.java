@@ -0,0 +1,174 @@
+package ch.unisg.ics.interactions.wot.td.bindings.resilience;
+
+import ch.unisg.ics.interactions.wot.td.affordances.Form;
+import ch.unisg.ics.interactions.wot.td.bindings.BaseOperation;
+import ch.unisg.ics.interactions.wot.td.bindings.NoResponseException;
+import ch.unisg.ics.interactions.wot.td.bindings.Operation;
+import ch.unisg.ics.interactions.wot.td.bindings.Response;
+import ch.unisg.ics.interactions.wot.td.bindings.ResponseCallback;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Admission control in front of the protocol bindings: holds one {@link ConcurrencyLimiter} per
+ * endpoint, where an endpoint is identified by the scheme and the authority of form targets (see
+ * {@link CircuitBreakerRegistry#getEndpoint(String)}), and sends operations when their endpoint
+ * admits them.
+ */
+public class AdmissionController {
+  private static final AdmissionController DEFAULT = new AdmissionController();
+
+  private final ConcurrencyLimiter.Builder builder;
+  private final ConcurrentMap<String, ConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+
+  /**
+   * Creates an admission controller with the default limits.
+   */
+  public AdmissionController() {
+    this(new ConcurrencyLimiter.Builder());
+  }
+
+  /**
+   * Creates an admission controller whose limiters are configured with the given builder.
+   *
+   * @param builder the builder used to create limiters
+   */
+  public AdmissionController(ConcurrencyLimiter.Builder builder) {
+    this.builder = builder;
+  }
+
+  public static AdmissionController getDefault() {
+    return DEFAULT;
+  }
+
+  public ConcurrencyLimiter getLimiter(Form form) {
+    return getLimiter(CircuitBreakerRegistry.getEndpoint(form.getTarget()));
+  }
+
+  public ConcurrencyLimiter getLimiter(String endpoint) {
+    return limiters.computeIfAbsent(endpoint, builder::build);
+  }
+
+  /**
+   * Gets the limiter of an endpoint without creating it.
+   *
+   * @param endpoint the endpoint
+   * @return an <code>Optional</code> with the limiter (empty if no operation used the endpoint)
+   */
+  public Optional<ConcurrencyLimiter> findLimiter(String endpoint) {
+    return Optional.ofNullable(limiters.get(endpoint));
+  }
+
+  public Collection<ConcurrencyLimiter> getLimiters() {
+    return new ArrayList<>(limiters.values());
+  }
+
+  /**
+   * Sends an operation when its endpoint admits it, with a timeout of
+   * {@link BaseOperation#DEFAULT_TIMEOUT} seconds.
+   *
+   * @param operation the operation to send
+   * @return a future of the first response of the operation
+   */
+  public CompletableFuture<Response> submit(Operation operation) {
+    return submit(operation, BaseOperation.DEFAULT_TIMEOUT, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Sends an operation when its endpoint admits it. The returned future completes with the first
+   * response of the operation, or fails with a {@link NoResponseException} if the operation is
+   * rejected, fails, or does not respond within the timeout (counted from admission). Cancelling the
+   * future before admission withdraws the operation.
+   *
+   * @param operation the operation to send
+   * @param timeout the response timeout (0 for no timeout)
+   * @param unit the time unit of the timeout
+   * @return a future of the first response of the operation
+   */
+  public CompletableFuture<Response> submit(Operation operation, long timeout, TimeUnit unit) {
+    CompletableFuture<Response> result = new CompletableFuture<>();
+    CompletableFuture<ConcurrencyLimiter.Permit> admission = getLimiter(operation.getForm()).acquire();
+
+    admission.whenComplete((permit, e) -> {
+      if (e != null) {
+        result.completeExceptionally(e instanceof CompletionException ? e.getCause() : e);
+      } else {
+        send(operation, permit, result, unit.toNanos(timeout));
+      }
+    });
+
+    result.whenComplete((response, e) -> admission.cancel(false));
+
+    return result;
+  }
+
+  private void send(Operation operation, ConcurrencyLimiter.Permit permit,
+      CompletableFuture<Response> result, long timeoutNanos) {
+    if (result.isDone()) {
+      permit.release();
+      return;
+    }
+
+    AtomicBoolean done = new AtomicBoolean(false);
+    ScheduledFuture<?>[] timeoutTask = new ScheduledFuture<?>[1];
+
+    ResponseCallback callback = new ResponseCallback() {
+      @Override
+      public void onResponse(Response response) {
+        if (done.compareAndSet(false, true)) {
+          cancel(timeoutTask[0]);
+          permit.onResponse(response);
+          result.complete(response);
+        }
+      }
+
+      @Override
+      public void onError() {
+        if (done.compareAndSet(false, true)) {
+          cancel(timeoutTask[0]);
+          permit.onDropped();
+          result.completeExceptionally(new NoResponseException());
+        }
+      }
+    };
+
+    operation.registerResponseCallback(callback);
+
+    if (timeoutNanos > 0) {
+      timeoutTask[0] = ResilienceScheduler.get().schedule(() -> {
+        if (done.compareAndSet(false, true)) {
+          permit.onDropped();
+          result.completeExceptionally(new NoResponseException("No response after "
+            + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + " ms"));
+        }
+      }, timeoutNanos, TimeUnit.NANOSECONDS);
+    }
+
+    try {
+      operation.sendRequest();
+    } catch (IOException e) {
+      if (done.compareAndSet(false, true)) {
+        cancel(timeoutTask[0]);
+        permit.onDropped();
+        result.completeExceptionally(e);
+      }
+    } catch (RuntimeException e) {
+      if (done.compareAndSet(false, true)) {
+        cancel(timeoutTask[0]);
+        permit.release();
+        result.completeExceptionally(e);
+      }
+    }
+  }
+
+  private static void cancel(ScheduledFuture<?> task) {
+    if (task != null) {
+      task.cancel(false);
+    }
+  }
+}
@@ -0,0 +1,22 @@
+package ch.unisg.ics.interactions.wot.td.bindings.resilience;
+
+import ch.unisg.ics.interactions.wot.td.bindings.NoResponseException;
+
+/**
+ * Exception thrown when an operation is rejected without contacting the Thing because too many
+ * operations are already waiting for admission to its endpoint.
+ */
+public class AdmissionRejectedException extends NoResponseException {
+
+  private final String endpoint;
+
+  public AdmissionRejectedException(String endpoint) {
+    super("Admission queue full for endpoint: " + endpoint);
+    this.endpoint = endpoint;
+  }
+
+  public String getEndpoint() {
+    return endpoint;
+  }
+
+}
@@ -0,0 +1,245 @@
+package ch.unisg.ics.interactions.wot.td.bindings.resilience;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * A circuit breaker for one endpoint (e.g. a Thing). The breaker is <code>CLOSED</code> while the
+ * endpoint responds, and opens after a number of consecutive failures: while it is
+ * <code>OPEN</code>, operations are rejected immediately. After a cool-down period, the breaker is
+ * <code>HALF_OPEN</code> and lets a limited number of probe operations through: it closes again if
+ * a probe succeeds, and opens again if a probe fails.
+ */
+public class CircuitBreaker {
+
+  public enum State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+  }
+
+  private final String endpoint;
+  private final int failureThreshold;
+  private final long openDurationNanos;
+  private final int halfOpenProbes;
+  private final LongSupplier clock;
+  private final List<CircuitBreakerListener> listeners = new CopyOnWriteArrayList<>();
+
+  private State state = State.CLOSED;
+  private int consecutiveFailures;
+  private int pendingProbes;
+  private long openedAt;
+
+  protected CircuitBreaker(String endpoint, int failureThreshold, long openDurationNanos,
+      int halfOpenProbes, LongSupplier clock) {
+    this.endpoint = endpoint;
+    this.failureThreshold = failureThreshold;
+    this.openDurationNanos = openDurationNanos;
+    this.halfOpenProbes = halfOpenProbes;
+    this.clock = clock;
+  }
+
+  public String getEndpoint() {
+    return endpoint;
+  }
+
+  /**
+   * Gets the current state of the breaker. An <code>OPEN</code> breaker whose cool-down period has
+   * elapsed is reported as <code>HALF_OPEN</code>.
+   *
+   * @return the state of the breaker
+   */
+  public State getState() {
+    State from;
+    State to;
+
+    synchronized (this) {
+      from = state;
+      updateState();
+      to = state;
+    }
+
+    notifyIfChanged(from, to);
+    return to;
+  }
+
+  public synchronized int getConsecutiveFailures() {
+    return consecutiveFailures;
+  }
+
+  /**
+   * Asks for permission to send a request to the endpoint. Callers that are granted permission
+   * must report the outcome with {@link #onSuccess()} or {@link #onFailure()} (or give the
+   * permission back with {@link #release()} if the request is not sent).
+   *
+   * @return true if the request can be sent, false if it should be rejected
+   */
+  public boolean tryAcquire() {
+    State from;
+    State to;
+    boolean acquired;
+
+    synchronized (this) {
+      from = state;
+      updateState();
+
+      if (state == State.CLOSED) {
+        acquired = true;
+      } else if (state == State.HALF_OPEN && pendingProbes < halfOpenProbes) {
+        pendingProbes++;
+        acquired = true;
+      } else {
+        acquired = false;
+      }
+
+      to = state;
+    }
+
+    notifyIfChanged(from, to);
+    return acquired;
+  }
+
+  /**
+   * Reports that the endpoint responded.
+   */
+  public void onSuccess() {
+    State from;
+
+    synchronized (this) {
+      from = state;
+      consecutiveFailures = 0;
+      pendingProbes = 0;
+      state = State.CLOSED;
+    }
+
+    notifyIfChanged(from, State.CLOSED);
+  }
+
+  /**
+   * Reports that the endpoint did not respond (or responded with a server error).
+   */
+  public void onFailure() {
+    State from;
+    State to;
+
+    synchronized (this) {
+      from = state;
+      consecutiveFailures++;
+
+      if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+        state = State.OPEN;
+        openedAt = clock.getAsLong();
+        pendingProbes = 0;
+      }
+
+      to = state;
+    }
+
+    notifyIfChanged(from, to);
+  }
+
+  /**
+   * Gives back a permission that was not used, e.g. because the request was rejected before it was
+   * sent to the endpoint.
+   */
+  public synchronized void release() {
+    if (state == State.HALF_OPEN && pendingProbes > 0) {
+      pendingProbes--;
+    }
+  }
+
+  /**
+   * Closes the breaker, e.g. when the endpoint is known to be up again.
+   */
+  public void reset() {
+    onSuccess();
+  }
+
+  public void addListener(CircuitBreakerListener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(CircuitBreakerListener listener) {
+    listeners.remove(listener);
+  }
+
+  private void updateState() {
+    if (state == State.OPEN && clock.getAsLong() - openedAt >= openDurationNanos) {
+      state = State.HALF_OPEN;
+      pendingProbes = 0;
+    }
+  }
+
+  private void notifyIfChanged(State from, State to) {
+    if (from != to) {
+      for (CircuitBreakerListener listener : listeners) {
+        listener.onStateChange(this, from, to);
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "[CircuitBreaker] Endpoint: " + endpoint + ", State: " + getState();
+  }
+
+  public static class Builder {
+    private int failureThreshold = 5;
+    private long openDurationNanos = TimeUnit.SECONDS.toNanos(30);
+    private int halfOpenProbes = 1;
+    private LongSupplier clock = System::nanoTime;
+
+    /**
+     * Sets the number of consecutive failures after which the breaker opens (5 by default).
+     *
+     * @param failureThreshold the number of consecutive failures
+     * @return this builder
+     */
+    public Builder setFailureThreshold(int failureThreshold) {
+      if (failureThreshold < 1) {
+        throw new IllegalArgumentException("The failure threshold must be positive.");
+      }
+      this.failureThreshold = failureThreshold;
+      return this;
+    }
+
+    /**
+     * Sets the time during which an open breaker rejects all requests (30 s by default).
+     *
+     * @param duration the duration
+     * @param unit the time unit of the duration
+     * @return this builder
+     */
+    public Builder setOpenDuration(long duration, TimeUnit unit) {
+      this.openDurationNanos = unit.toNanos(duration);
+      return this;
+    }
+
+    /**
+     * Sets the number of concurrent probe requests allowed by a half-open breaker (1 by default).
+     *
+     * @param halfOpenProbes the number of probes
+     * @return this builder
+     */
+    public Builder setHalfOpenProbes(int halfOpenProbes) {
+      if (halfOpenProbes < 1) {
+        throw new IllegalArgumentException("At least one probe must be allowed.");
+      }
+      this.halfOpenProbes = halfOpenProbes;
+      return this;
+    }
+
+    // Package-level access, used for testing
+    Builder setClock(LongSupplier clock) {
+      this.clock = clock;
+      return this;
+    }
+
+    public CircuitBreaker build(String endpoint) {
+      return new CircuitBreaker(endpoint, failureThreshold, openDurationNanos, halfOpenProbes,
+        clock);
+    }
+  }
+}
@@ -0,0 +1,21 @@
+package ch.unisg.ics.interactions.wot.td.bindings.resilience;
+
+import ch.unisg.ics.interactions.wot.td.bindings.resilience.CircuitBreaker.State;
+
+/**
+ * Listener notified when a {@link CircuitBreaker} changes state, e.g. to report that an endpoint
+ * is assumed to be down (<code>OPEN</code>) or up again (<code>CLOSED</code>).
+ */
+public interface CircuitBreakerListener {
+
+  /**
+   * Called after the state of a circuit breaker changed. Listeners are called on the thread that
+   * caused the transition, and must not block.
+   *
+   * @param breaker the circuit breaker
+   * @param from the previous state
+   * @param to the new state
+   */
+  void onStateChange(CircuitBreaker breaker, State from, State to);
+
+}
@@ -0,0 +1,22 @@
+package ch.unisg.ics.interactions.wot.td.bindings.resilience;
+
+import ch.unisg.ics.interactions.wot.td.bindings.NoResponseException;
+
+/**
+ * Exception thrown when an operation is rejected without contacting the Thing because the circuit
+ * breaker of its endpoint is open (i.e. the endpoint failed repeatedly and is assumed to be down).
+ */
+public class CircuitBreakerOpenException extends NoResponseException {
+
+  private final String endpoint;
+
+  public CircuitBreakerOpenException(String endpoint) {
+    super("Circuit breaker open for endpoint: " + endpoint);
+    this.endpoint = endpoint;
+  }
+
+  public String getEndpoint() {
+    return endpoint;
+  }
+
+}
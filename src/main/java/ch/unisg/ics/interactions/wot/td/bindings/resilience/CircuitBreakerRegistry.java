@@ -0,0 +1,111 @@
+package ch.unisg.ics.interactions.wot.td.bindings.resilience;
+
+import ch.unisg.ics.interactions.wot.td.affordances.Form;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Holds one {@link CircuitBreaker} per endpoint, where an endpoint is identified by the scheme and
+ * the authority of form targets (e.g. <code>http://lamp.example.org:8080</code>). Breakers are
+ * created on first use, and listeners registered with the registry are added to all breakers.
+ */
+public class CircuitBreakerRegistry {
+  private static final CircuitBreakerRegistry DEFAULT = new CircuitBreakerRegistry();
+
+  private final CircuitBreaker.Builder builder;
+  private final ConcurrentMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+  private final List<CircuitBreakerListener> listeners = new CopyOnWriteArrayList<>();
+
+  /**
+   * Creates a registry of breakers with the default configuration.
+   */
+  public CircuitBreakerRegistry() {
+    this(new CircuitBreaker.Builder());
+  }
+
+  /**
+   * Creates a registry of breakers configured with the given builder.
+   *
+   * @param builder the builder used to create breakers
+   */
+  public CircuitBreakerRegistry(CircuitBreaker.Builder builder) {
+    this.builder = builder;
+  }
+
+  /**
+   * Gets the registry used by {@link ResilientOperation}s when no registry is given.
+   *
+   * @return the default registry
+   */
+  public static CircuitBreakerRegistry getDefault() {
+    return DEFAULT;
+  }
+
+  /**
+   * Gets the endpoint of a form target: its scheme and authority, or the whole target if it is not
+   * a valid URI.
+   *
+   * @param target the form target
+   * @return the endpoint
+   */
+  public static String getEndpoint(String target) {
+    try {
+      URI uri = URI.create(target);
+      if (uri.getScheme() != null && uri.getRawAuthority() != null) {
+        return uri.getScheme() + "://" + uri.getRawAuthority();
+      }
+    } catch (IllegalArgumentException e) {
+      // Not a valid URI (e.g. an unexpanded URI template), the whole target is used
+    }
+
+    return target;
+  }
+
+  public CircuitBreaker getBreaker(Form form) {
+    return getBreaker(getEndpoint(form.getTarget()));
+  }
+
+  public CircuitBreaker getBreaker(String endpoint) {
+    return breakers.computeIfAbsent(endpoint, e -> {
+      CircuitBreaker breaker = builder.build(e);
+      breaker.addListener(this::notifyListeners);
+      return breaker;
+    });
+  }
+
+  /**
+   * Gets the breaker of an endpoint without creating it.
+   *
+   * @param endpoint the endpoint
+   * @return an <code>Optional</code> with the breaker (empty if no operation used the endpoint)
+   */
+  public Optional<CircuitBreaker> findBreaker(String endpoint) {
+    return Optional.ofNullable(breakers.get(endpoint));
+  }
+
+  public Collection<CircuitBreaker> getBreakers() {
+    return new ArrayList<>(breakers.values());
+  }
+
+  public void addListener(CircuitBreakerListener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(CircuitBreakerListener listener) {
+    listeners.remove(listener);
+  }
+
+  private void notifyListeners(CircuitBreaker breaker, CircuitBreaker.State from,
+      CircuitBreaker.State to) {
+    for (CircuitBreakerListener listener : listeners) {
+      listener.onStateChange(breaker, from, to);
+    }
+  }
+}
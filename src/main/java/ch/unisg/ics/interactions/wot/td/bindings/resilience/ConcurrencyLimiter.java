@@ -0,0 +1,423 @@
+package ch.unisg.ics.interactions.wot.td.bindings.resilience;
+
+import ch.unisg.ics.interactions.wot.td.bindings.Response;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits the number of in-flight operations on one endpoint (e.g. a constrained Thing). Operations
+ * beyond the limit wait in a FIFO queue and are admitted in order as permits are released.
+ * <p>
+ * The limit adapts to the endpoint with an additive-increase/multiplicative-decrease (AIMD) rule:
+ * <ul>
+ * <li>each timely response received while at least half of the limit is in use increases the
+ * limit by <code>1/limit</code> (i.e. by about 1 per round of requests), up to the maximum
+ * limit;</li>
+ * <li>an overload signal (a request without response, a response slower than the latency
+ * threshold, or a back-off request from the Thing) multiplies the limit by the decrease factor,
+ * down to the minimum limit. Overload signals of requests admitted before the last decrease are
+ * ignored, so that a burst of timeouts only decreases the limit once.</li>
+ * </ul>
+ * <p>
+ * Back-off requests (see {@link Response#getRetryAfter()}) also suspend all admissions to the
+ * endpoint until the requested delay has elapsed.
+ */
+public class ConcurrencyLimiter {
+  private static final int LATENCY_WARMUP_SAMPLES = 10;
+  private static final double LATENCY_SMOOTHING = 0.1;
+
+  private final String endpoint;
+  private final int minLimit;
+  private final int maxLimit;
+  private final int maxQueueLength;
+  private final double decreaseFactor;
+  private final long latencyThresholdNanos;
+  private final double latencyTolerance;
+  private final LongSupplier clock;
+
+  private final Deque<CompletableFuture<Permit>> queue = new ArrayDeque<>();
+
+  private double limit;
+  private int inFlight;
+  private long generation;
+  private long backoffUntil;
+  private boolean backingOff;
+  private boolean drainScheduled;
+  private double baselineLatencyNanos;
+  private long latencySamples;
+
+  protected ConcurrencyLimiter(String endpoint, Builder builder) {
+    this.endpoint = endpoint;
+    this.minLimit = builder.minLimit;
+    this.maxLimit = builder.maxLimit;
+    this.maxQueueLength = builder.maxQueueLength;
+    this.decreaseFactor = builder.decreaseFactor;
+    this.latencyThresholdNanos = builder.latencyThresholdNanos;
+    this.latencyTolerance = builder.latencyTolerance;
+    this.clock = builder.clock;
+    this.limit = Math.max(minLimit, Math.min(maxLimit, builder.initialLimit));
+  }
+
+  public String getEndpoint() {
+    return endpoint;
+  }
+
+  /**
+   * Gets the current limit of in-flight operations.
+   *
+   * @return the limit
+   */
+  public synchronized int getLimit() {
+    return (int) limit;
+  }
+
+  public synchronized int getInFlight() {
+    return inFlight;
+  }
+
+  public synchronized int getQueueLength() {
+    return queue.size();
+  }
+
+  /**
+   * Gets the time left before admissions resume, if the endpoint asked to back off.
+   *
+   * @param unit the time unit of the result
+   * @return the remaining back-off time (0 if admissions are not suspended)
+   */
+  public synchronized long getBackoffRemaining(TimeUnit unit) {
+    return backingOff ? unit.convert(Math.max(0, backoffUntil - clock.getAsLong()),
+      TimeUnit.NANOSECONDS) : 0;
+  }
+
+  /**
+   * Asks for a permit to send a request to the endpoint. The returned future completes when the
+   * request is admitted, or fails with an {@link AdmissionRejectedException} if the queue is full.
+   * Cancelling the future withdraws the request from the queue.
+   *
+   * @return a future of the permit
+   */
+  public CompletableFuture<Permit> acquire() {
+    synchronized (this) {
+      if (queue.isEmpty() && canAdmit()) {
+        return CompletableFuture.completedFuture(admit());
+      }
+
+      if (queue.size() >= maxQueueLength) {
+        CompletableFuture<Permit> rejected = new CompletableFuture<>();
+        rejected.completeExceptionally(new AdmissionRejectedException(endpoint));
+        return rejected;
+      }
+
+      CompletableFuture<Permit> waiter = new CompletableFuture<>();
+      queue.add(waiter);
+      scheduleDrain();
+      return waiter;
+    }
+  }
+
+  /**
+   * Gets a permit if a request can be sent to the endpoint right away.
+   *
+   * @return an <code>Optional</code> with the permit (empty if the request would have to wait)
+   */
+  public synchronized Optional<Permit> tryAcquire() {
+    return queue.isEmpty() && canAdmit() ? Optional.of(admit()) : Optional.empty();
+  }
+
+  /**
+   * Suspends admissions to the endpoint for the given delay (e.g. after an HTTP 503 response with
+   * a <code>Retry-After</code> header). In-flight operations are not affected.
+   *
+   * @param delay the back-off delay
+   * @param unit the time unit of the delay
+   */
+  public void backOff(long delay, TimeUnit unit) {
+    synchronized (this) {
+      long until = clock.getAsLong() + unit.toNanos(delay);
+
+      if (!backingOff || until - backoffUntil > 0) {
+        backoffUntil = until;
+      }
+
+      backingOff = true;
+      scheduleDrain();
+    }
+  }
+
+  private boolean canAdmit() {
+    if (backingOff) {
+      if (clock.getAsLong() - backoffUntil < 0) {
+        return false;
+      }
+      backingOff = false;
+    }
+
+    return inFlight < (int) limit;
+  }
+
+  private Permit admit() {
+    inFlight++;
+    return new Permit(generation, clock.getAsLong());
+  }
+
+  private void release(Permit permit, Signal signal, long latencyNanos) {
+    synchronized (this) {
+      boolean saturated = inFlight * 2 >= limit || !queue.isEmpty();
+      inFlight--;
+
+      if (signal == Signal.RESPONSE) {
+        signal = updateLatency(latencyNanos);
+      }
+
+      if (signal == Signal.OVERLOAD) {
+        if (permit.generation == generation) {
+          limit = Math.max(minLimit, limit * decreaseFactor);
+          generation++;
+        }
+      } else if (signal == Signal.RESPONSE && saturated) {
+        limit = Math.min(maxLimit, limit + 1 / limit);
+      }
+    }
+
+    drain();
+  }
+
+  private Signal updateLatency(long latencyNanos) {
+    boolean slow;
+
+    if (latencyThresholdNanos > 0) {
+      slow = latencyNanos > latencyThresholdNanos;
+    } else {
+      slow = latencySamples >= LATENCY_WARMUP_SAMPLES
+        && latencyNanos > baselineLatencyNanos * latencyTolerance;
+    }
+
+    baselineLatencyNanos = latencySamples == 0 ? latencyNanos
+      : baselineLatencyNanos + LATENCY_SMOOTHING * (latencyNanos - baselineLatencyNanos);
+    latencySamples++;
+
+    return slow ? Signal.OVERLOAD : Signal.RESPONSE;
+  }
+
+  private void drain() {
+    List<CompletableFuture<Permit>> admitted = new ArrayList<>();
+    List<Permit> permits = new ArrayList<>();
+
+    synchronized (this) {
+      while (!queue.isEmpty() && canAdmit()) {
+        CompletableFuture<Permit> waiter = queue.poll();
+
+        if (!waiter.isDone()) {
+          admitted.add(waiter);
+          permits.add(admit());
+        }
+      }
+
+      scheduleDrain();
+    }
+
+    // Waiters are completed outside of the lock: they typically send their request right away
+    for (int i = 0; i < admitted.size(); i++) {
+      if (!admitted.get(i).complete(permits.get(i))) {
+        permits.get(i).release();
+      }
+    }
+  }
+
+  private void scheduleDrain() {
+    if (backingOff && !drainScheduled && !queue.isEmpty()) {
+      drainScheduled = true;
+
+      ResilienceScheduler.get().schedule(() -> {
+        synchronized (this) {
+          drainScheduled = false;
+        }
+        drain();
+      }, Math.max(0, backoffUntil - clock.getAsLong()), TimeUnit.NANOSECONDS);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "[ConcurrencyLimiter] Endpoint: " + endpoint + ", Limit: " + getLimit() + ", In flight: "
+      + getInFlight() + ", Queued: " + getQueueLength();
+  }
+
+  private enum Signal {
+    RESPONSE,
+    OVERLOAD,
+    IGNORE
+  }
+
+  /**
+   * Permission to have one operation in flight. Exactly one of the release methods must be called
+   * when the operation completes; further calls are ignored.
+   */
+  public final class Permit {
+    private final long generation;
+    private final long acquiredAt;
+    private final AtomicBoolean released = new AtomicBoolean(false);
+
+    private Permit(long generation, long acquiredAt) {
+      this.generation = generation;
+      this.acquiredAt = acquiredAt;
+    }
+
+    public ConcurrencyLimiter getLimiter() {
+      return ConcurrencyLimiter.this;
+    }
+
+    /**
+     * Releases the permit after a response: back-off requests suspend admissions and decrease the
+     * limit, other responses adjust the limit based on their latency.
+     *
+     * @param response the response of the operation
+     */
+    public void onResponse(Response response) {
+      Optional<Duration> retryAfter = response.getRetryAfter();
+
+      if (retryAfter.isPresent()) {
+        backOff(retryAfter.get().toNanos(), TimeUnit.NANOSECONDS);
+        releaseWith(Signal.OVERLOAD);
+      } else {
+        releaseWith(Signal.RESPONSE);
+      }
+    }
+
+    /**
+     * Releases the permit of an operation that did not receive a response (e.g. a timeout), which
+     * is an overload signal.
+     */
+    public void onDropped() {
+      releaseWith(Signal.OVERLOAD);
+    }
+
+    /**
+     * Releases the permit without adjusting the limit (e.g. the request was not sent).
+     */
+    public void release() {
+      releaseWith(Signal.IGNORE);
+    }
+
+    private void releaseWith(Signal signal) {
+      if (released.compareAndSet(false, true)) {
+        ConcurrencyLimiter.this.release(this, signal, clock.getAsLong() - acquiredAt);
+      }
+    }
+  }
+
+  public static class Builder {
+    private int initialLimit = 4;
+    private int minLimit = 1;
+    private int maxLimit = 64;
+    private int maxQueueLength = 1024;
+    private double decreaseFactor = 0.5;
+    private long latencyThresholdNanos = 0;
+    private double latencyTolerance = 2;
+    private LongSupplier clock = System::nanoTime;
+
+    /**
+     * Sets the initial limit of in-flight operations (4 by default).
+     *
+     * @param initialLimit the initial limit
+     * @return this builder
+     */
+    public Builder setInitialLimit(int initialLimit) {
+      this.initialLimit = initialLimit;
+      return this;
+    }
+
+    /**
+     * Sets the bounds of the limit of in-flight operations (between 1 and 64 by default). A fixed
+     * limit is obtained with equal bounds.
+     *
+     * @param minLimit the minimum limit
+     * @param maxLimit the maximum limit
+     * @return this builder
+     */
+    public Builder setLimitBounds(int minLimit, int maxLimit) {
+      if (minLimit < 1 || maxLimit < minLimit) {
+        throw new IllegalArgumentException("Invalid limit bounds: " + minLimit + ", " + maxLimit);
+      }
+      this.minLimit = minLimit;
+      this.maxLimit = maxLimit;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of operations waiting for admission (1024 by default).
+     *
+     * @param maxQueueLength the maximum queue length
+     * @return this builder
+     */
+    public Builder setMaxQueueLength(int maxQueueLength) {
+      if (maxQueueLength < 0) {
+        throw new IllegalArgumentException("The queue length cannot be negative.");
+      }
+      this.maxQueueLength = maxQueueLength;
+      return this;
+    }
+
+    /**
+     * Sets the factor applied to the limit after an overload signal (0.5 by default).
+     *
+     * @param decreaseFactor the decrease factor, between 0 and 1
+     * @return this builder
+     */
+    public Builder setDecreaseFactor(double decreaseFactor) {
+      if (decreaseFactor <= 0 || decreaseFactor >= 1) {
+        throw new IllegalArgumentException("The decrease factor must be between 0 and 1.");
+      }
+      this.decreaseFactor = decreaseFactor;
+      return this;
+    }
+
+    /**
+     * Sets a fixed latency threshold: slower responses are overload signals. By default, the
+     * threshold is the smoothed latency of the endpoint multiplied by the latency tolerance.
+     *
+     * @param threshold the latency threshold
+     * @param unit the time unit of the threshold
+     * @return this builder
+     */
+    public Builder setLatencyThreshold(long threshold, TimeUnit unit) {
+      this.latencyThresholdNanos = unit.toNanos(threshold);
+      return this;
+    }
+
+    /**
+     * Sets how much slower than the smoothed latency of the endpoint a response can be before it is
+     * an overload signal (2 by default). Only used if no fixed latency threshold is set.
+     *
+     * @param latencyTolerance the latency tolerance
+     * @return this builder
+     */
+    public Builder setLatencyTolerance(double latencyTolerance) {
+      if (latencyTolerance < 1) {
+        throw new IllegalArgumentException("The latency tolerance cannot be lower than 1.");
+      }
+      this.latencyTolerance = latencyTolerance;
+      return this;
+    }
+
+    // Package-level access, used for testing
+    Builder setClock(LongSupplier clock) {
+      this.clock = clock;
+      return this;
+    }
+
+    public ConcurrencyLimiter build(String endpoint) {
+      return new ConcurrencyLimiter(endpoint, this);
+    }
+  }
+}
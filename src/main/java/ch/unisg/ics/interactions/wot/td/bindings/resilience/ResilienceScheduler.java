@@ -0,0 +1,28 @@
+package ch.unisg.ics.interactions.wot.td.bindings.resilience;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+/**
+ * The daemon thread that runs the timeouts, retries, and delayed admissions of this package.
+ * Scheduled tasks must not block.
+ */
+final class ResilienceScheduler {
+  private static final ScheduledExecutorService SCHEDULER = createScheduler();
+
+  private ResilienceScheduler() { }
+
+  static ScheduledExecutorService get() {
+    return SCHEDULER;
+  }
+
+  private static ScheduledExecutorService createScheduler() {
+    ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+      Thread thread = new Thread(runnable, "wot-td-resilience");
+      thread.setDaemon(true);
+      return thread;
+    });
+    scheduler.setRemoveOnCancelPolicy(true);
+    return scheduler;
+  }
+}
@@ -0,0 +1,411 @@
+package ch.unisg.ics.interactions.wot.td.bindings.resilience;
+
+import ch.unisg.ics.interactions.wot.td.affordances.Form;
+import ch.unisg.ics.interactions.wot.td.bindings.*;
+import ch.unisg.ics.interactions.wot.td.schemas.DataSchema;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An operation that guards another operation with the {@link CircuitBreaker} of its endpoint and
+ * retries it according to a {@link RetryPolicy}. A new operation is bound for every attempt (with
+ * the same payload), and each attempt is given a bounded time to respond.
+ * <p>
+ * If the breaker of the endpoint is open, {@link #sendRequest()} fails fast with a
+ * {@link CircuitBreakerOpenException} instead of waiting for the operation to time out. Responses
+ * and failures are reported to the breaker: failures and responses with a retryable status (see
+ * {@link RetryPolicy#isRetryable(Response.ResponseStatus)}) count as failures. Responses that ask
+ * to back off (see {@link Response#getRetryAfter()}) are retried no earlier than requested.
+ * <p>
+ * Only the first response of each attempt is considered: this class is meant for request/response
+ * operations, not for observations or event subscriptions.
+ */
+public class ResilientOperation implements Operation {
+  private final static Logger LOGGER = Logger.getLogger(ResilientOperation.class.getCanonicalName());
+
+  private final Form form;
+  private final String operationType;
+  private final Supplier<Operation> operationFactory;
+  private final RetryPolicy retryPolicy;
+  private final CircuitBreaker breaker;
+  private final long attemptTimeoutNanos;
+  private final Optional<AdmissionController> admissionController;
+
+  private final CompletableFuture<Response> result = new CompletableFuture<>();
+  private final Collection<ResponseCallback> callbacks = new CopyOnWriteArrayList<>();
+  private final AtomicInteger attempts = new AtomicInteger();
+  private final AtomicBoolean sent = new AtomicBoolean(false);
+  private final AtomicBoolean finished = new AtomicBoolean(false);
+
+  private volatile Consumer<Operation> payloadSetter = op -> { };
+
+  private ResilientOperation(Builder builder) {
+    this.form = builder.form;
+    this.operationType = builder.operationType;
+    this.operationFactory = builder.operationFactory;
+    this.retryPolicy = builder.retryPolicy;
+    this.breaker = builder.breakers.getBreaker(builder.form);
+    this.attemptTimeoutNanos = builder.attemptTimeoutNanos;
+    this.admissionController = builder.admissionController;
+  }
+
+  @Override
+  public Form getForm() {
+    return form;
+  }
+
+  @Override
+  public String getOperationType() {
+    return operationType;
+  }
+
+  public CircuitBreaker getCircuitBreaker() {
+    return breaker;
+  }
+
+  /**
+   * Gets the number of attempts made so far.
+   *
+   * @return the number of attempts
+   */
+  public int getAttempts() {
+    return attempts.get();
+  }
+
+  @Override
+  public void setPayload(DataSchema schema, Object payload) {
+    payloadSetter = op -> op.setPayload(schema, payload);
+  }
+
+  @Override
+  public void setPayload(Object payload) {
+    payloadSetter = op -> op.setPayload(payload);
+  }
+
+  /**
+   * Sends the first attempt of the operation.
+   *
+   * @throws CircuitBreakerOpenException if the breaker of the endpoint is open
+   * @throws IOException if the first attempt could not be sent and cannot be retried
+   */
+  @Override
+  public void sendRequest() throws IOException {
+    if (!sent.compareAndSet(false, true)) {
+      throw new IllegalStateException("The request of this operation was already sent.");
+    }
+
+    if (!breaker.tryAcquire()) {
+      CircuitBreakerOpenException e = new CircuitBreakerOpenException(breaker.getEndpoint());
+      fail(e);
+      throw e;
+    }
+
+    IOException sendFailure = attempt();
+
+    if (sendFailure != null && result.isCompletedExceptionally()) {
+      throw sendFailure;
+    }
+  }
+
+  /**
+   * Waits for the final response of the operation, after all the attempts allowed by the retry
+   * policy.
+   */
+  @Override
+  public Response getResponse() throws NoResponseException {
+    try {
+      return result.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new NoResponseException(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof NoResponseException) {
+        throw (NoResponseException) e.getCause();
+      }
+      throw new NoResponseException(e.getCause());
+    }
+  }
+
+  /**
+   * Registers a callback notified of the final response (or failure) of the operation.
+   */
+  @Override
+  public void registerResponseCallback(ResponseCallback callback) {
+    callbacks.add(callback);
+  }
+
+  @Override
+  public void unregisterResponseCallback(ResponseCallback callback) {
+    callbacks.remove(callback);
+  }
+
+  private IOException attempt() {
+    Attempt attempt = new Attempt(attempts.incrementAndGet());
+
+    if (!admissionController.isPresent()) {
+      return send(attempt);
+    }
+
+    admissionController.get().getLimiter(form).acquire().whenComplete((permit, e) -> {
+      if (e != null) {
+        // The request was not sent: the endpoint did not fail
+        attempt.done.set(true);
+        breaker.release();
+        fail(e instanceof CompletionException ? e.getCause() : e);
+      } else {
+        attempt.permit = permit;
+        send(attempt);
+      }
+    });
+
+    return null;
+  }
+
+  private IOException send(Attempt attempt) {
+    try {
+      Operation operation = operationFactory.get();
+
+      if (operation instanceof BaseOperation) {
+        // The deadline of the operation is the attempt timeout, so that the operation is aborted
+        // (and its connection released) when the attempt times out
+        ((BaseOperation) operation).setTimeout(attemptTimeoutNanos, TimeUnit.NANOSECONDS);
+      }
+
+      payloadSetter.accept(operation);
+      operation.registerResponseCallback(attempt);
+      attempt.scheduleTimeout();
+      operation.sendRequest();
+    } catch (IOException e) {
+      attempt.fail(e);
+      return e;
+    } catch (RuntimeException e) {
+      if (attempt.done.compareAndSet(false, true)) {
+        attempt.cancelTimeout();
+        attempt.releasePermit();
+        breaker.onFailure();
+        fail(e);
+      }
+    }
+
+    return null;
+  }
+
+  private void onAttemptResponse(Attempt attempt, Response response) {
+    Optional<Duration> retryAfter = response.getRetryAfter();
+
+    if (!retryPolicy.isRetryable(response.getStatus()) && !retryAfter.isPresent()) {
+      breaker.onSuccess();
+      complete(response);
+      return;
+    }
+
+    if (retryPolicy.isRetryable(response.getStatus())) {
+      breaker.onFailure();
+    } else {
+      // The Thing asked to back off, but it is up
+      breaker.onSuccess();
+    }
+
+    if (!retry(attempt, retryAfter.map(Duration::toNanos).orElse(0L))) {
+      complete(response);
+    }
+  }
+
+  private void onAttemptFailure(Attempt attempt, IOException cause) {
+    breaker.onFailure();
+
+    if (!retry(attempt, 0)) {
+      fail(cause instanceof NoResponseException ? cause : new NoResponseException(cause));
+    }
+  }
+
+  private boolean retry(Attempt attempt, long minBackoffNanos) {
+    if (!retryPolicy.canRetry(operationType, attempt.number)) {
+      return false;
+    }
+
+    // The back-off requested by the Thing (if any) takes precedence over the retry policy
+    long backoff = Math.max(minBackoffNanos, retryPolicy.getBackoff(attempt.number + 1,
+      TimeUnit.NANOSECONDS));
+    LOGGER.log(Level.FINE, "Retrying " + operationType + " on " + form.getTarget() + " in "
+      + TimeUnit.NANOSECONDS.toMillis(backoff) + " ms (attempt " + (attempt.number + 1) + ")");
+
+    ResilienceScheduler.get().schedule(() -> {
+      if (breaker.tryAcquire()) {
+        attempt();
+      } else {
+        fail(new CircuitBreakerOpenException(breaker.getEndpoint()));
+      }
+    }, backoff, TimeUnit.NANOSECONDS);
+
+    return true;
+  }
+
+  private void complete(Response response) {
+    // Callbacks are notified before the result is completed, so that they happen before the
+    // return of getResponse()
+    if (finished.compareAndSet(false, true)) {
+      callbacks.forEach(callback -> callback.onResponse(response));
+      result.complete(response);
+    }
+  }
+
+  private void fail(Throwable cause) {
+    if (finished.compareAndSet(false, true)) {
+      callbacks.forEach(ResponseCallback::onError);
+      result.completeExceptionally(cause);
+    }
+  }
+
+  private final class Attempt implements ResponseCallback {
+    private final int number;
+    private final AtomicBoolean done = new AtomicBoolean(false);
+    private volatile ScheduledFuture<?> timeoutTask;
+    private volatile ConcurrencyLimiter.Permit permit;
+
+    Attempt(int number) {
+      this.number = number;
+    }
+
+    void scheduleTimeout() {
+      if (attemptTimeoutNanos > 0) {
+        timeoutTask = ResilienceScheduler.get().schedule(() -> fail(new NoResponseException("No response after "
+          + TimeUnit.NANOSECONDS.toMillis(attemptTimeoutNanos) + " ms")), attemptTimeoutNanos,
+          TimeUnit.NANOSECONDS);
+      }
+    }
+
+    void cancelTimeout() {
+      ScheduledFuture<?> task = timeoutTask;
+      if (task != null) {
+        task.cancel(false);
+      }
+    }
+
+    void releasePermit() {
+      ConcurrencyLimiter.Permit p = permit;
+      if (p != null) {
+        p.release();
+      }
+    }
+
+    void fail(IOException cause) {
+      if (done.compareAndSet(false, true)) {
+        cancelTimeout();
+        ConcurrencyLimiter.Permit p = permit;
+        if (p != null) {
+          p.onDropped();
+        }
+        onAttemptFailure(this, cause);
+      }
+    }
+
+    @Override
+    public void onResponse(Response response) {
+      if (done.compareAndSet(false, true)) {
+        cancelTimeout();
+        ConcurrencyLimiter.Permit p = permit;
+        if (p != null) {
+          p.onResponse(response);
+        }
+        onAttemptResponse(this, response);
+      }
+    }
+
+    @Override
+    public void onError() {
+      fail(new NoResponseException());
+    }
+  }
+
+  public static class Builder {
+    private final Form form;
+    private final String operationType;
+    private Supplier<Operation> operationFactory;
+    private RetryPolicy retryPolicy = new RetryPolicy.Builder().build();
+    private CircuitBreakerRegistry breakers = CircuitBreakerRegistry.getDefault();
+    private long attemptTimeoutNanos = TimeUnit.SECONDS.toNanos(BaseOperation.DEFAULT_TIMEOUT);
+    private Optional<AdmissionController> admissionController = Optional.empty();
+
+    /**
+     * Creates a builder for an operation bound with the protocol binding of the form.
+     *
+     * @param form the form of the operation
+     * @param operationType the operation type
+     */
+    public Builder(Form form, String operationType) {
+      this.form = form;
+      this.operationType = operationType;
+      this.operationFactory = () -> ProtocolBindings.getBinding(form).bind(form, operationType);
+    }
+
+    /**
+     * Sets the factory that creates the operation of each attempt (e.g. to bind URI variables or
+     * to set headers). The operations must be built from the same form and operation type.
+     *
+     * @param operationFactory the operation factory
+     * @return this builder
+     */
+    public Builder setOperationFactory(Supplier<Operation> operationFactory) {
+      this.operationFactory = operationFactory;
+      return this;
+    }
+
+    public Builder setRetryPolicy(RetryPolicy retryPolicy) {
+      this.retryPolicy = retryPolicy;
+      return this;
+    }
+
+    /**
+     * Sets the registry of the circuit breakers ({@link CircuitBreakerRegistry#getDefault()} by
+     * default).
+     *
+     * @param breakers the registry of circuit breakers
+     * @return this builder
+     */
+    public Builder setCircuitBreakers(CircuitBreakerRegistry breakers) {
+      this.breakers = breakers;
+      return this;
+    }
+
+    /**
+     * Sets the time each attempt has to respond ({@link BaseOperation#DEFAULT_TIMEOUT} seconds by
+     * default). A timeout of 0 is equivalent to no timeout.
+     *
+     * @param timeout the timeout
+     * @param unit the time unit of the timeout
+     * @return this builder
+     */
+    public Builder setAttemptTimeout(long timeout, TimeUnit unit) {
+      this.attemptTimeoutNanos = unit.toNanos(timeout);
+      return this;
+    }
+
+    /**
+     * Sets the admission controller that limits the number of concurrent operations on the
+     * endpoint (no admission control by default). Each attempt waits for admission before it is
+     * sent, and its timeout is counted from admission.
+     *
+     * @param admissionController the admission controller
+     * @return this builder
+     */
+    public Builder setAdmissionController(AdmissionController admissionController) {
+      this.admissionController = Optional.of(admissionController);
+      return this;
+    }
+
+    public ResilientOperation build() {
+      return new ResilientOperation(this);
+    }
+  }
+}
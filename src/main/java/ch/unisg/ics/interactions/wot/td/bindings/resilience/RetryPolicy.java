@@ -0,0 +1,180 @@
+package ch.unisg.ics.interactions.wot.td.bindings.resilience;
+
+import ch.unisg.ics.interactions.wot.td.bindings.Response.ResponseStatus;
+import ch.unisg.ics.interactions.wot.td.vocabularies.TD;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Policy for retrying operations that failed: only idempotent operation types are retried (by
+ * default, <code>readProperty</code> and <code>queryAction</code>), up to a maximum number of
+ * attempts, with an exponential backoff and full jitter between attempts (i.e. the delay before
+ * attempt <i>n</i> is drawn uniformly between 0 and
+ * <code>min(maxBackoff, initialBackoff * multiplier<sup>n-2</sup>)</code>).
+ * <p>
+ * Operations are retried if no response is received, and if a response has one of the retryable
+ * statuses (by default, <code>THING_ERROR</code>).
+ */
+public class RetryPolicy {
+
+  /**
+   * A policy that never retries.
+   */
+  public static final RetryPolicy NONE = new Builder().setMaxAttempts(1).build();
+
+  private final int maxAttempts;
+  private final long initialBackoffNanos;
+  private final long maxBackoffNanos;
+  private final double multiplier;
+  private final Set<String> idempotentOperationTypes;
+  private final Set<ResponseStatus> retryableStatuses;
+
+  private RetryPolicy(Builder builder) {
+    this.maxAttempts = builder.maxAttempts;
+    this.initialBackoffNanos = builder.initialBackoffNanos;
+    this.maxBackoffNanos = builder.maxBackoffNanos;
+    this.multiplier = builder.multiplier;
+    this.idempotentOperationTypes = Collections.unmodifiableSet(new HashSet<>(builder.operationTypes));
+    this.retryableStatuses = Collections.unmodifiableSet(EnumSet.copyOf(builder.statuses));
+  }
+
+  public int getMaxAttempts() {
+    return maxAttempts;
+  }
+
+  public Set<String> getIdempotentOperationTypes() {
+    return idempotentOperationTypes;
+  }
+
+  /**
+   * Checks if operations of the given type can be retried.
+   *
+   * @param operationType the operation type
+   * @return true if the operation type is idempotent and more than one attempt is allowed
+   */
+  public boolean isRetryable(String operationType) {
+    return maxAttempts > 1 && idempotentOperationTypes.contains(operationType);
+  }
+
+  /**
+   * Checks if a response with the given status should be retried.
+   *
+   * @param status the response status
+   * @return true if the status is retryable
+   */
+  public boolean isRetryable(ResponseStatus status) {
+    return retryableStatuses.contains(status);
+  }
+
+  /**
+   * Checks if an operation of the given type can be attempted again after the given number of
+   * attempts.
+   *
+   * @param operationType the operation type
+   * @param attempts the number of attempts made so far
+   * @return true if another attempt is allowed
+   */
+  public boolean canRetry(String operationType, int attempts) {
+    return isRetryable(operationType) && attempts < maxAttempts;
+  }
+
+  /**
+   * Draws the delay before the given attempt.
+   *
+   * @param attempt the attempt (2 for the first retry)
+   * @param unit the time unit of the result
+   * @return the jittered delay
+   */
+  public long getBackoff(int attempt, TimeUnit unit) {
+    double ceiling = initialBackoffNanos * Math.pow(multiplier, Math.max(0, attempt - 2));
+    long bound = (long) Math.min(maxBackoffNanos, ceiling);
+    long delay = bound > 0 ? ThreadLocalRandom.current().nextLong(bound + 1) : 0;
+
+    return unit.convert(delay, TimeUnit.NANOSECONDS);
+  }
+
+  public static class Builder {
+    private int maxAttempts = 3;
+    private long initialBackoffNanos = TimeUnit.MILLISECONDS.toNanos(100);
+    private long maxBackoffNanos = TimeUnit.SECONDS.toNanos(10);
+    private double multiplier = 2;
+    private final Set<String> operationTypes = new HashSet<>(Arrays.asList(TD.readProperty,
+      TD.queryAction));
+    private final Set<ResponseStatus> statuses = EnumSet.of(ResponseStatus.THING_ERROR);
+
+    /**
+     * Sets the maximum number of attempts, including the first one (3 by default).
+     *
+     * @param maxAttempts the maximum number of attempts
+     * @return this builder
+     */
+    public Builder setMaxAttempts(int maxAttempts) {
+      if (maxAttempts < 1) {
+        throw new IllegalArgumentException("At least one attempt is required.");
+      }
+      this.maxAttempts = maxAttempts;
+      return this;
+    }
+
+    /**
+     * Sets the backoff bounds: the delay before the first retry is at most the initial backoff
+     * (100 ms by default), and it grows up to the maximum backoff (10 s by default).
+     *
+     * @param initial the initial backoff
+     * @param max the maximum backoff
+     * @param unit the time unit of the backoffs
+     * @return this builder
+     */
+    public Builder setBackoff(long initial, long max, TimeUnit unit) {
+      if (initial < 0 || max < initial) {
+        throw new IllegalArgumentException("Invalid backoff bounds: " + initial + ", " + max);
+      }
+      this.initialBackoffNanos = unit.toNanos(initial);
+      this.maxBackoffNanos = unit.toNanos(max);
+      return this;
+    }
+
+    /**
+     * Sets the factor by which the backoff grows after each attempt (2 by default).
+     *
+     * @param multiplier the backoff multiplier
+     * @return this builder
+     */
+    public Builder setMultiplier(double multiplier) {
+      if (multiplier < 1) {
+        throw new IllegalArgumentException("The multiplier cannot be lower than 1.");
+      }
+      this.multiplier = multiplier;
+      return this;
+    }
+
+    /**
+     * Declares an additional operation type as idempotent (e.g. an action known to be safe).
+     *
+     * @param operationType the operation type
+     * @return this builder
+     */
+    public Builder addIdempotentOperationType(String operationType) {
+      this.operationTypes.add(operationType);
+      return this;
+    }
+
+    /**
+     * Sets the response statuses that are retried (<code>THING_ERROR</code> by default).
+     *
+     * @param statuses the retryable statuses
+     * @return this builder
+     */
+    public Builder setRetryableStatuses(ResponseStatus... statuses) {
+      this.statuses.clear();
+      this.statuses.addAll(Arrays.asList(statuses));
+      return this;
+    }
+
+    public RetryPolicy build() {
+      return new RetryPolicy(this);
+    }
+  }
+}
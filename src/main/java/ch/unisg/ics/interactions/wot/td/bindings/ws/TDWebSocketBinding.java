@@ -0,0 +1,99 @@
+package ch.unisg.ics.interactions.wot.td.bindings.ws;
+
+import ch.unisg.ics.interactions.wot.td.affordances.Form;
+import ch.unisg.ics.interactions.wot.td.bindings.BaseProtocolBinding;
+import ch.unisg.ics.interactions.wot.td.bindings.Operation;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Optional;
+
+/**
+ * Protocol binding for forms with a <code>ws</code> or <code>wss</code> target. Operations on the
+ * same endpoint share a single WebSocket connection (see {@link TDWebSocketClient}), over which
+ * JSON messages are exchanged:
+ * <ul>
+ *   <li>requests: <code>{"messageId": "1", "operation": "readproperty", "href": "ws://...",
+ *   "name": "status", "data": ...}</code>, where <code>operation</code> is the name of the
+ *   operation type (e.g. <code>readproperty</code>, <code>writeproperty</code>,
+ *   <code>invokeaction</code>, <code>subscribeevent</code>), and <code>name</code> and
+ *   <code>data</code> are optional;</li>
+ *   <li>responses: <code>{"messageId": "1", "status": 200, "data": ...}</code>, where
+ *   <code>status</code> (an HTTP status code, 200 by default), <code>data</code> and
+ *   <code>error</code> (a description of the error) are optional. A subscription receives a
+ *   response per notification, until it is cancelled with an <code>unsubscribeevent</code> (or
+ *   <code>unobserveproperty</code>) request that has the same <code>messageId</code>.</li>
+ * </ul>
+ */
+public class TDWebSocketBinding extends BaseProtocolBinding {
+
+  /**
+   * Key of the ID that correlates requests and responses
+   */
+  public static final String MESSAGE_ID = "messageId";
+
+  /**
+   * Key of the operation type of a request
+   */
+  public static final String OPERATION = "operation";
+
+  /**
+   * Key of the form target of a request
+   */
+  public static final String HREF = "href";
+
+  /**
+   * Key of the name of the affordance of a request
+   */
+  public static final String NAME = "name";
+
+  /**
+   * Key of the payload of a request or response
+   */
+  public static final String DATA = "data";
+
+  /**
+   * Key of the status code of a response
+   */
+  public static final String STATUS = "status";
+
+  /**
+   * Key of the error description of a response
+   */
+  public static final String ERROR = "error";
+
+  private final static String WEBSOCKET_PROTOCOL = "WebSocket";
+
+  private final static Collection<String> SUPPORTED_SCHEMES = new HashSet<>();
+
+  static {
+    SUPPORTED_SCHEMES.add("ws");
+    SUPPORTED_SCHEMES.add("wss");
+  }
+
+  @Override
+  public String getProtocol() {
+    return WEBSOCKET_PROTOCOL;
+  }
+
+  @Override
+  public Collection<String> getSupportedSchemes() {
+    return SUPPORTED_SCHEMES;
+  }
+
+  @Override
+  public Optional<String> getDefaultMethod(String operationType) {
+    return Optional.empty();
+  }
+
+  @Override
+  public Optional<String> getDefaultSubProtocol(String operationType) {
+    return Optional.empty();
+  }
+
+  @Override
+  public Operation bind(Form form, String operationType) {
+    return new TDWebSocketOperation(form, operationType);
+  }
+
+}
@@ -0,0 +1,256 @@
+package ch.unisg.ics.interactions.wot.td.bindings.ws;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Client that multiplexes {@link TDWebSocketOperation}s over WebSocket connections: a single
+ * connection is opened per endpoint (i.e. per Thing), and responses are correlated with requests
+ * by their <code>messageId</code>. Connections are opened on first use and removed when closed;
+ * pending operations of a closed connection fail.
+ */
+public class TDWebSocketClient implements AutoCloseable {
+  private final static Logger LOGGER = Logger.getLogger(TDWebSocketClient.class.getCanonicalName());
+
+  /**
+   * Default value of the timeout of the opening handshake (in milliseconds)
+   */
+  public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 10000;
+
+  private static final TDWebSocketClient DEFAULT_CLIENT = new TDWebSocketClient();
+
+  /**
+   * Handler of the messages received for a given message ID.
+   */
+  interface MessageHandler {
+
+    /**
+     * @param message the message received
+     * @param size the size of the message (in characters)
+     */
+    void onMessage(JsonObject message, int size);
+
+    /**
+     * Called if the connection is closed before the handler is released.
+     */
+    void onClose();
+  }
+
+  /**
+   * A WebSocket connection shared by all operations on an endpoint.
+   */
+  final class Channel implements WebSocketConnection.Listener {
+    private final String endpoint;
+    private final Map<String, MessageHandler> handlers = new ConcurrentHashMap<>();
+    private volatile WebSocketConnection connection;
+
+    private Channel(String endpoint) {
+      this.endpoint = endpoint;
+    }
+
+    /**
+     * Sends a message and registers a handler for the messages received with the same ID.
+     */
+    void send(String messageId, JsonObject message, MessageHandler handler) throws IOException {
+      handlers.put(messageId, handler);
+
+      try {
+        connection.sendText(message.toString());
+      } catch (IOException e) {
+        handlers.remove(messageId);
+        throw e;
+      }
+    }
+
+    /**
+     * Sends a message for which no reply is expected.
+     */
+    void send(JsonObject message) throws IOException {
+      connection.sendText(message.toString());
+    }
+
+    /**
+     * Releases the handler of a message ID: further messages with this ID are dropped.
+     */
+    void release(String messageId) {
+      handlers.remove(messageId);
+    }
+
+    @Override
+    public void onText(String text) {
+      JsonObject message;
+
+      try {
+        JsonElement element = JsonParser.parseString(text);
+        if (!element.isJsonObject()) {
+          throw new JsonParseException("Not a JSON object");
+        }
+        message = element.getAsJsonObject();
+      } catch (JsonParseException e) {
+        LOGGER.log(Level.WARNING, "Invalid message received from " + endpoint + ": " + text);
+        return;
+      }
+
+      JsonElement messageId = message.get(TDWebSocketBinding.MESSAGE_ID);
+      MessageHandler handler = messageId == null || !messageId.isJsonPrimitive() ? null
+        : handlers.get(messageId.getAsString());
+
+      if (handler == null) {
+        LOGGER.fine("Message without pending request received from " + endpoint + ": " + text);
+      } else {
+        handler.onMessage(message, text.length());
+      }
+    }
+
+    @Override
+    public void onClose(Optional<IOException> cause) {
+      channels.remove(endpoint, this);
+      cause.ifPresent(e -> LOGGER.log(Level.WARNING, "Connection to " + endpoint + " lost", e));
+
+      List<MessageHandler> pending = new ArrayList<>(handlers.values());
+      handlers.clear();
+      pending.forEach(MessageHandler::onClose);
+    }
+  }
+
+  private final Map<String, Channel> channels = new ConcurrentHashMap<>();
+  private final Map<String, CompletableFuture<Channel>> openingChannels = new ConcurrentHashMap<>();
+  private final AtomicLong messageIds = new AtomicLong();
+  private final int connectTimeoutMillis;
+
+  public TDWebSocketClient() {
+    this(DEFAULT_CONNECT_TIMEOUT_MILLIS);
+  }
+
+  /**
+   * @param connectTimeoutMillis timeout of the TCP connection and of the opening handshake
+   *                             (in milliseconds)
+   */
+  public TDWebSocketClient(int connectTimeoutMillis) {
+    this.connectTimeoutMillis = connectTimeoutMillis;
+  }
+
+  /**
+   * Gets the client shared by operations created by {@link TDWebSocketBinding}.
+   *
+   * @return the default client
+   */
+  public static TDWebSocketClient getDefault() {
+    return DEFAULT_CLIENT;
+  }
+
+  /**
+   * Gets the number of open connections.
+   *
+   * @return the number of connections
+   */
+  public int getConnectionCount() {
+    return channels.size();
+  }
+
+  /**
+   * Closes all connections: pending operations fail.
+   */
+  @Override
+  public void close() {
+    new ArrayList<>(channels.values()).forEach(channel -> {
+      WebSocketConnection connection = channel.connection;
+      if (connection != null) {
+        connection.close();
+      }
+    });
+  }
+
+  String nextMessageId() {
+    return Long.toString(messageIds.incrementAndGet());
+  }
+
+  /**
+   * Gets the channel of the endpoint of a form target, and opens it if needed. The endpoint is the
+   * target without query and fragment.
+   */
+  Channel getChannel(String target) throws IOException {
+    String endpoint = getEndpoint(target);
+
+    Channel channel = channels.get(endpoint);
+    if (channel != null) {
+      return channel;
+    }
+
+    // Connections are opened outside of any client-wide lock, so that an unreachable endpoint does
+    // not delay the others: concurrent callers for the same endpoint wait for a single connection
+    CompletableFuture<Channel> opening = new CompletableFuture<>();
+    CompletableFuture<Channel> pending = openingChannels.putIfAbsent(endpoint, opening);
+    if (pending != null) {
+      return await(endpoint, pending);
+    }
+
+    try {
+      channel = channels.get(endpoint);
+      if (channel == null) {
+        channel = openChannel(endpoint);
+      }
+
+      opening.complete(channel);
+      return channel;
+    } catch (IOException | RuntimeException e) {
+      opening.completeExceptionally(e);
+      throw e;
+    } finally {
+      openingChannels.remove(endpoint, opening);
+    }
+  }
+
+  private Channel openChannel(String endpoint) throws IOException {
+    Channel channel = new Channel(endpoint);
+    channel.connection = WebSocketConnection.open(URI.create(endpoint), connectTimeoutMillis,
+      channel);
+    channels.put(endpoint, channel);
+
+    if (!channel.connection.isOpen()) {
+      // Closed by the server before being registered
+      channels.remove(endpoint, channel);
+      throw new IOException("The connection to " + endpoint + " was closed");
+    }
+
+    return channel;
+  }
+
+  private static Channel await(String endpoint, CompletableFuture<Channel> opening)
+      throws IOException {
+    try {
+      return opening.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while connecting to " + endpoint);
+    } catch (ExecutionException e) {
+      throw new IOException("The connection to " + endpoint + " failed", e.getCause());
+    }
+  }
+
+  static String getEndpoint(String target) throws IOException {
+    try {
+      URI uri = new URI(target);
+      return new URI(uri.getScheme(), uri.getAuthority(), uri.getPath(), null, null).toString();
+    } catch (URISyntaxException e) {
+      throw new IOException("Invalid WebSocket URI: " + target, e);
+    }
+  }
+}
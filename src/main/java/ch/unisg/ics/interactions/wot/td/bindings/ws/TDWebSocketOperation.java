@@ -0,0 +1,217 @@
+package ch.unisg.ics.interactions.wot.td.bindings.ws;
+
+import ch.unisg.ics.interactions.wot.td.affordances.Form;
+import ch.unisg.ics.interactions.wot.td.bindings.BaseOperation;
+import ch.unisg.ics.interactions.wot.td.bindings.Response;
+import ch.unisg.ics.interactions.wot.td.metrics.PhaseTimings.Phase;
+import ch.unisg.ics.interactions.wot.td.vocabularies.TD;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Operation performed over a WebSocket connection shared with the other operations on the same
+ * endpoint (see {@link TDWebSocketBinding} for the message format). Operations that subscribe to
+ * an event or observe a property receive a response per notification, until they are cancelled.
+ */
+public class TDWebSocketOperation extends BaseOperation {
+  private final static Logger LOGGER = Logger.getLogger(TDWebSocketOperation.class.getCanonicalName());
+
+  private final class TDWebSocketHandler implements TDWebSocketClient.MessageHandler {
+
+    @Override
+    public void onMessage(JsonObject message, int size) {
+      getPhaseTimings().mark(Phase.RESPONSE_RECEIVED);
+
+      TDWebSocketResponse response = new TDWebSocketResponse(message, TDWebSocketOperation.this);
+      getPhaseTimings().mark(Phase.PAYLOAD_DECODED);
+
+      if (!isSubscription() || response.getStatus() != Response.ResponseStatus.OK) {
+        // Other operations get a single response, and an error ends a subscription
+        channel.release(messageId);
+      }
+
+      if (!cancelled) {
+        onResponse(response, size);
+      }
+    }
+
+    @Override
+    public void onClose() {
+      if (!cancelled) {
+        onError();
+      }
+    }
+  }
+
+  private final TDWebSocketClient client;
+  private final String target;
+  private final String messageId;
+
+  private Optional<JsonElement> payload = Optional.empty();
+  private Optional<String> affordanceName = Optional.empty();
+
+  private volatile TDWebSocketClient.Channel channel;
+  private volatile boolean cancelled = false;
+
+  public TDWebSocketOperation(Form form, String operationType) {
+    this(form, operationType, TDWebSocketClient.getDefault());
+  }
+
+  /**
+   * @param form the form of the operation
+   * @param operationType the operation type
+   * @param client the client that holds the connection to the endpoint of the form
+   */
+  public TDWebSocketOperation(Form form, String operationType, TDWebSocketClient client) {
+    super(form, operationType);
+
+    this.client = client;
+    this.target = form.getTarget();
+    this.messageId = client.nextMessageId();
+  }
+
+  public String getTarget() {
+    return target;
+  }
+
+  public String getMessageId() {
+    return messageId;
+  }
+
+  /**
+   * Sets the name of the affordance of the operation, for endpoints that serve several affordances.
+   *
+   * @param name the name of the affordance
+   * @return this operation
+   */
+  public TDWebSocketOperation setAffordanceName(String name) {
+    this.affordanceName = Optional.of(name);
+    return this;
+  }
+
+  @Override
+  public void sendRequest() throws IOException {
+    channel = client.getChannel(target);
+
+    JsonObject message = createMessage(operationType);
+    payload.ifPresent(data -> message.add(TDWebSocketBinding.DATA, data));
+
+    String text = message.toString();
+    onRequestSent(text.length());
+    channel.send(messageId, message, new TDWebSocketHandler());
+  }
+
+  /**
+   * Cancels the operation: further responses are dropped. A subscription is ended with an
+   * <code>unsubscribeevent</code> (or <code>unobserveproperty</code>) request.
+   */
+  public void cancel() {
+    cancelled = true;
+
+    TDWebSocketClient.Channel current = channel;
+    if (current == null) {
+      return;
+    }
+
+    current.release(messageId);
+
+    if (isSubscription()) {
+      String cancellation = operationType.equals(TD.subscribeEvent) ? TD.unsubscribeEvent
+        : TD.unobserveProperty;
+
+      try {
+        current.send(createMessage(cancellation));
+      } catch (IOException e) {
+        LOGGER.log(Level.FINE, "The subscription could not be cancelled: " + e.getMessage());
+      }
+    }
+  }
+
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  /**
+   * Drops the response: the handler of the message is released from the channel.
+   */
+  @Override
+  protected void abort() {
+    cancel();
+  }
+
+  @Override
+  protected Object getPayload() {
+    return payload.map(JsonElement::toString).orElse(null);
+  }
+
+  @Override
+  protected void setObjectPayload(Map<String, Object> payload) {
+    this.payload = Optional.of(new Gson().toJsonTree(payload));
+  }
+
+  @Override
+  protected void setArrayPayload(List<Object> payload) {
+    this.payload = Optional.of(new Gson().toJsonTree(payload));
+  }
+
+  @Override
+  protected void setStringPayload(String payload) {
+    this.payload = Optional.of(new Gson().toJsonTree(payload));
+  }
+
+  @Override
+  protected void setBooleanPayload(Boolean payload) {
+    this.payload = Optional.of(new Gson().toJsonTree(payload));
+  }
+
+  @Override
+  protected void setIntegerPayload(Long payload) {
+    this.payload = Optional.of(new Gson().toJsonTree(payload));
+  }
+
+  @Override
+  protected void setNumberPayload(Double payload) {
+    this.payload = Optional.of(new Gson().toJsonTree(payload));
+  }
+
+  @Override
+  public void setEncodedPayload(byte[] json) {
+    this.payload = Optional.of(JsonParser.parseString(new String(json, StandardCharsets.UTF_8)));
+  }
+
+  private boolean isSubscription() {
+    return operationType.equals(TD.subscribeEvent) || operationType.equals(TD.observeProperty);
+  }
+
+  private JsonObject createMessage(String type) {
+    JsonObject message = new JsonObject();
+
+    message.addProperty(TDWebSocketBinding.MESSAGE_ID, messageId);
+    message.addProperty(TDWebSocketBinding.OPERATION, getOperationName(type));
+    message.addProperty(TDWebSocketBinding.HREF, target);
+    affordanceName.ifPresent(name -> message.addProperty(TDWebSocketBinding.NAME, name));
+
+    return message;
+  }
+
+  /**
+   * Gets the name of an operation type as used in TDs (e.g. <code>readproperty</code>).
+   */
+  static String getOperationName(String operationType) {
+    String name = operationType.startsWith(TD.PREFIX) ? operationType.substring(TD.PREFIX.length())
+      : operationType;
+
+    return name.toLowerCase();
+  }
+
+}
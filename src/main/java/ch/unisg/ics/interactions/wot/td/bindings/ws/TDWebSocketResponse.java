@@ -0,0 +1,186 @@
+package ch.unisg.ics.interactions.wot.td.bindings.ws;
+
+import ch.unisg.ics.interactions.wot.td.affordances.Link;
+import ch.unisg.ics.interactions.wot.td.bindings.BaseResponse;
+import ch.unisg.ics.interactions.wot.td.bindings.Operation;
+import ch.unisg.ics.interactions.wot.td.schemas.ArraySchema;
+import ch.unisg.ics.interactions.wot.td.schemas.DataSchema;
+import ch.unisg.ics.interactions.wot.td.schemas.ObjectSchema;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Wrapper for a WebSocket message received when performing a {@link TDWebSocketOperation}. The
+ * payload of the response is the <code>data</code> of the message (see {@link TDWebSocketBinding}).
+ */
+public class TDWebSocketResponse extends BaseResponse {
+
+  private final JsonObject message;
+  private final Optional<JsonElement> jsonPayload;
+  private final Optional<Object> payload;
+
+  public TDWebSocketResponse(JsonObject message, Operation op) {
+    super(op);
+
+    this.message = message;
+
+    JsonElement data = message.get(TDWebSocketBinding.DATA);
+    if (data == null || data.isJsonNull()) {
+      this.jsonPayload = Optional.empty();
+      this.payload = Optional.empty();
+    } else {
+      this.jsonPayload = Optional.of(data);
+      this.payload = Optional.of(asJavaObject(data));
+    }
+  }
+
+  /**
+   * Gets the status code of the message.
+   *
+   * @return the status code, if any
+   */
+  public Optional<Integer> getStatusCode() {
+    JsonElement status = message.get(TDWebSocketBinding.STATUS);
+
+    if (status == null || !status.isJsonPrimitive() || !status.getAsJsonPrimitive().isNumber()) {
+      return Optional.empty();
+    }
+
+    return Optional.of(status.getAsInt());
+  }
+
+  /**
+   * Gets the description of the error reported by the message.
+   *
+   * @return the error, if any
+   */
+  public Optional<String> getError() {
+    JsonElement error = message.get(TDWebSocketBinding.ERROR);
+
+    if (error == null || error.isJsonNull()) {
+      return Optional.empty();
+    }
+
+    return Optional.of(error.isJsonPrimitive() ? error.getAsString() : error.toString());
+  }
+
+  @Override
+  public ResponseStatus getStatus() {
+    Optional<Integer> code = getStatusCode();
+
+    if (!code.isPresent()) {
+      return getError().isPresent() ? ResponseStatus.THING_ERROR : ResponseStatus.OK;
+    }
+
+    if (code.get() >= 200 && code.get() < 300) return ResponseStatus.OK;
+    else if (code.get() >= 400 && code.get() < 500) return ResponseStatus.CONSUMER_ERROR;
+    else if (code.get() >= 500 && code.get() < 600) return ResponseStatus.THING_ERROR;
+    else return ResponseStatus.UNKNOWN_ERROR;
+  }
+
+  @Override
+  public Optional<Object> getPayload() {
+    return payload;
+  }
+
+  /**
+   * Gets the <code>data</code> of the message, encoded again as JSON (the message is decoded as a
+   * whole when received).
+   */
+  @Override
+  public Optional<byte[]> getEncodedPayload() {
+    return jsonPayload.map(data -> data.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Override
+  public Collection<Link> getLinks() {
+    return Collections.emptySet();
+  }
+
+  public Boolean getPayloadAsBoolean() {
+    return (Boolean) payload.get();
+  }
+
+  public Long getPayloadAsInteger() {
+    return (Long) payload.get();
+  }
+
+  public Double getPayloadAsDouble() {
+    return ((Number) payload.get()).doubleValue();
+  }
+
+  public String getPayloadAsString() {
+    return (String) payload.get();
+  }
+
+  /**
+   * Gets the payload of the response as an object that conforms to a given <code>ObjectSchema</code>.
+   *
+   * @param schema schema to be used for constructing the map
+   * @return the constructed map
+   * @throws IllegalArgumentException if the payload of the response does not conform to the provided
+   * schema
+   */
+  @SuppressWarnings("unchecked")
+  public Map<String, Object> getPayloadAsObject(ObjectSchema schema) throws IllegalArgumentException {
+    return (Map<String, Object>) getPayloadWithSchema(schema);
+  }
+
+  /**
+   * Gets the payload of the response as an array that conforms to a given <code>ArraySchema</code>.
+   *
+   * @param schema schema to be used for constructing the list
+   * @return the constructed list
+   * @throws IllegalArgumentException if the payload of the response does not conform to the provided
+   * schema
+   */
+  @SuppressWarnings("unchecked")
+  public List<Object> getPayloadAsArray(ArraySchema schema) throws IllegalArgumentException {
+    return (List<Object>) getPayloadWithSchema(schema);
+  }
+
+  public Object getPayloadWithSchema(DataSchema schema) throws IllegalArgumentException {
+    return schema.parseJson(jsonPayload.get());
+  }
+
+  private Object asJavaObject(JsonElement val) {
+    if (val.isJsonPrimitive()) {
+      JsonPrimitive primitiveVal = val.getAsJsonPrimitive();
+
+      if (primitiveVal.isBoolean()) return val.getAsBoolean();
+      if (primitiveVal.isNumber()) return asDoubleOrLong(val.getAsNumber());
+      else return val.getAsString();
+    } else if (val.isJsonObject()) {
+      Map<String, Object> obj = new HashMap<>();
+
+      for (Map.Entry<String, JsonElement> kv : val.getAsJsonObject().entrySet()) {
+        obj.put(kv.getKey(), asJavaObject(kv.getValue()));
+      }
+
+      return obj;
+    } else if (val.isJsonArray()) {
+      List<Object> array = new ArrayList<>();
+
+      for (JsonElement v : val.getAsJsonArray()) {
+        array.add(asJavaObject(v));
+      }
+
+      return array;
+    } else {
+      return null;
+    }
+  }
+
+  private Number asDoubleOrLong(Number nb) {
+    try {
+      return Long.parseLong(nb.toString());
+    } catch (NumberFormatException e) {
+      return nb.doubleValue();
+    }
+  }
+
+}
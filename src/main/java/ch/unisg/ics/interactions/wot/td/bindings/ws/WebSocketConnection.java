@@ -0,0 +1,470 @@
+package ch.unisg.ics.interactions.wot.td.bindings.ws;
+
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A minimal WebSocket client connection (<a href="https://www.rfc-editor.org/rfc/rfc6455">RFC 6455</a>)
+ * that exchanges text messages. Incoming messages are read on a dedicated thread and passed to a
+ * {@link Listener}; pings are answered automatically.
+ */
+final class WebSocketConnection implements Closeable {
+  private final static Logger LOGGER = Logger.getLogger(WebSocketConnection.class.getCanonicalName());
+
+  static final int OP_CONTINUATION = 0x0;
+  static final int OP_TEXT = 0x1;
+  static final int OP_BINARY = 0x2;
+  static final int OP_CLOSE = 0x8;
+  static final int OP_PING = 0x9;
+  static final int OP_PONG = 0xA;
+
+  /**
+   * Maximum size of a message (in bytes)
+   */
+  static final int MAX_MESSAGE_SIZE = 16 * 1024 * 1024;
+
+  /**
+   * Maximum size of the header of the handshake response (in bytes)
+   */
+  static final int MAX_HEADER_SIZE = 8 * 1024;
+
+  /**
+   * Maximum size of the payload of a control frame (in bytes)
+   */
+  static final int MAX_CONTROL_PAYLOAD_SIZE = 125;
+
+  private static final String ACCEPT_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+  private static final SecureRandom RANDOM = new SecureRandom();
+  private static final AtomicInteger READERS = new AtomicInteger();
+
+  interface Listener {
+
+    void onText(String text);
+
+    /**
+     * Called once when the connection is closed, by either side.
+     *
+     * @param cause the error that closed the connection, if any
+     */
+    void onClose(Optional<IOException> cause);
+  }
+
+  /**
+   * A frame of a WebSocket message.
+   */
+  static final class Frame {
+    final boolean fin;
+    final int opcode;
+    final boolean masked;
+    final byte[] payload;
+
+    Frame(boolean fin, int opcode, boolean masked, byte[] payload) {
+      this.fin = fin;
+      this.opcode = opcode;
+      this.masked = masked;
+      this.payload = payload;
+    }
+  }
+
+  private final Socket socket;
+  private final InputStream in;
+  private final OutputStream out;
+  private final Listener listener;
+  private final AtomicBoolean closed = new AtomicBoolean(false);
+
+  private WebSocketConnection(Socket socket, InputStream in, Listener listener) throws IOException {
+    this.socket = socket;
+    this.in = in;
+    this.out = new BufferedOutputStream(socket.getOutputStream());
+    this.listener = listener;
+  }
+
+  /**
+   * Opens a connection: the opening handshake is performed on the calling thread.
+   *
+   * @param uri the URI of the WebSocket endpoint (<code>ws</code> or <code>wss</code>)
+   * @param timeoutMillis the timeout of the TCP connection and of the handshake
+   * @param listener the listener of incoming messages
+   * @return the open connection
+   * @throws IOException if the connection or the handshake failed
+   */
+  static WebSocketConnection open(URI uri, int timeoutMillis, Listener listener) throws IOException {
+    boolean secure = "wss".equalsIgnoreCase(uri.getScheme());
+    int port = uri.getPort() > 0 ? uri.getPort() : (secure ? 443 : 80);
+
+    Socket socket = secure ? createSecureSocket() : new Socket();
+
+    try {
+      socket.connect(new InetSocketAddress(uri.getHost(), port), timeoutMillis);
+      socket.setSoTimeout(timeoutMillis);
+      socket.setTcpNoDelay(true);
+
+      byte[] nonce = new byte[16];
+      RANDOM.nextBytes(nonce);
+      String key = Base64.getEncoder().encodeToString(nonce);
+
+      String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+      if (uri.getRawQuery() != null) {
+        path += "?" + uri.getRawQuery();
+      }
+
+      String handshake = new StringBuilder()
+        .append("GET ").append(path).append(" HTTP/1.1\r\n")
+        .append("Host: ").append(uri.getHost()).append(uri.getPort() > 0 ? ":" + port : "").append("\r\n")
+        .append("Upgrade: websocket\r\n")
+        .append("Connection: Upgrade\r\n")
+        .append("Sec-WebSocket-Key: ").append(key).append("\r\n")
+        .append("Sec-WebSocket-Version: 13\r\n")
+        .append("\r\n")
+        .toString();
+
+      OutputStream out = socket.getOutputStream();
+      out.write(handshake.getBytes(StandardCharsets.US_ASCII));
+      out.flush();
+
+      InputStream in = new BufferedInputStream(socket.getInputStream());
+      String status = readLine(in);
+      if (!status.startsWith("HTTP/1.1 101")) {
+        throw new IOException("The server refused the WebSocket handshake: " + status);
+      }
+
+      String accept = null;
+      String line;
+      int headerSize = status.length();
+      while (!(line = readLine(in)).isEmpty()) {
+        headerSize += line.length();
+        if (headerSize > MAX_HEADER_SIZE) {
+          throw new IOException("The handshake response exceeds the maximum header size");
+        }
+
+        int colon = line.indexOf(':');
+        if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("Sec-WebSocket-Accept")) {
+          accept = line.substring(colon + 1).trim();
+        }
+      }
+
+      if (!acceptKey(key).equals(accept)) {
+        throw new IOException("Invalid Sec-WebSocket-Accept header: " + accept);
+      }
+
+      // Reads block until a message is received
+      socket.setSoTimeout(0);
+
+      WebSocketConnection connection = new WebSocketConnection(socket, in, listener);
+      Thread reader = new Thread(connection::read, "wot-td-ws-reader-" + READERS.incrementAndGet());
+      reader.setDaemon(true);
+      reader.start();
+
+      return connection;
+    } catch (IOException e) {
+      socket.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Sends a text message.
+   *
+   * @param text the message
+   * @throws IOException if the connection is closed or the message could not be written
+   */
+  void sendText(String text) throws IOException {
+    send(OP_TEXT, text.getBytes(StandardCharsets.UTF_8));
+  }
+
+  boolean isOpen() {
+    return !closed.get();
+  }
+
+  /**
+   * Closes the connection with a close frame (status 1000).
+   */
+  @Override
+  public void close() {
+    try {
+      send(OP_CLOSE, new byte[] { 0x03, (byte) 0xE8 });
+    } catch (IOException e) {
+      // The connection is closed anyway
+    }
+
+    terminate(Optional.empty());
+  }
+
+  /**
+   * Computes the value of the <code>Sec-WebSocket-Accept</code> header for a given key.
+   *
+   * @param key the value of the <code>Sec-WebSocket-Key</code> header
+   * @return the expected accept value
+   */
+  static String acceptKey(String key) {
+    try {
+      MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+      byte[] digest = sha1.digest((key + ACCEPT_GUID).getBytes(StandardCharsets.US_ASCII));
+      return Base64.getEncoder().encodeToString(digest);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-1 is not available", e);
+    }
+  }
+
+  /**
+   * Creates a TLS socket that verifies that the certificate of the server matches its host name
+   * (as HTTPS clients do).
+   */
+  private static Socket createSecureSocket() throws IOException {
+    SSLSocket socket = (SSLSocket) SSLSocketFactory.getDefault().createSocket();
+
+    SSLParameters parameters = socket.getSSLParameters();
+    parameters.setEndpointIdentificationAlgorithm("HTTPS");
+    socket.setSSLParameters(parameters);
+
+    return socket;
+  }
+
+  static Frame readFrame(InputStream in) throws IOException {
+    int b0 = in.read();
+    int b1 = in.read();
+    if (b0 < 0 || b1 < 0) {
+      throw new EOFException("The connection was closed");
+    }
+
+    long length = b1 & 0x7F;
+    if (length == 126) {
+      length = ((long) readByte(in) << 8) | readByte(in);
+    } else if (length == 127) {
+      length = 0;
+      for (int i = 0; i < 8; i++) {
+        length = (length << 8) | readByte(in);
+      }
+    }
+
+    // A 64-bit length with its most significant bit set is negative
+    if (length < 0 || length > MAX_MESSAGE_SIZE) {
+      throw new IOException("The frame exceeds the maximum message size: " + length);
+    }
+
+    boolean fin = (b0 & 0x80) != 0;
+    int opcode = b0 & 0x0F;
+
+    // Control frames are not fragmented and have short payloads (RFC 6455, Section 5.5)
+    if ((opcode & 0x08) != 0 && (!fin || length > MAX_CONTROL_PAYLOAD_SIZE)) {
+      throw new ProtocolException("Invalid control frame: opcode " + opcode + ", length " + length);
+    }
+
+    byte[] mask = null;
+    if ((b1 & 0x80) != 0) {
+      mask = new byte[4];
+      readFully(in, mask);
+    }
+
+    byte[] payload = new byte[(int) length];
+    readFully(in, payload);
+
+    if (mask != null) {
+      for (int i = 0; i < payload.length; i++) {
+        payload[i] ^= mask[i & 3];
+      }
+    }
+
+    return new Frame(fin, opcode, mask != null, payload);
+  }
+
+  /**
+   * Writes a frame that holds a whole message.
+   *
+   * @param out the stream to which the frame is written
+   * @param opcode the opcode of the frame
+   * @param payload the payload of the frame
+   * @param masked true if the payload is masked (i.e. for frames sent by clients)
+   * @throws IOException if the frame could not be written
+   */
+  static void writeFrame(OutputStream out, int opcode, byte[] payload, boolean masked) throws IOException {
+    out.write(0x80 | opcode);
+
+    int maskBit = masked ? 0x80 : 0;
+    if (payload.length < 126) {
+      out.write(maskBit | payload.length);
+    } else if (payload.length <= 0xFFFF) {
+      out.write(maskBit | 126);
+      out.write(payload.length >>> 8);
+      out.write(payload.length);
+    } else {
+      out.write(maskBit | 127);
+      for (int i = 7; i >= 0; i--) {
+        out.write((int) ((long) payload.length >>> (8 * i)));
+      }
+    }
+
+    if (masked) {
+      byte[] mask = new byte[4];
+      RANDOM.nextBytes(mask);
+      out.write(mask);
+
+      byte[] maskedPayload = new byte[payload.length];
+      for (int i = 0; i < payload.length; i++) {
+        maskedPayload[i] = (byte) (payload[i] ^ mask[i & 3]);
+      }
+      out.write(maskedPayload);
+    } else {
+      out.write(payload);
+    }
+
+    out.flush();
+  }
+
+  private synchronized void send(int opcode, byte[] payload) throws IOException {
+    if (closed.get()) {
+      throw new IOException("The WebSocket connection is closed");
+    }
+
+    writeFrame(out, opcode, payload, true);
+  }
+
+  private void read() {
+    ByteArrayOutputStream message = new ByteArrayOutputStream();
+    boolean fragmented = false;
+
+    try {
+      while (!closed.get()) {
+        Frame frame = readFrame(in);
+
+        // Frames sent by servers are not masked (RFC 6455, Section 5.1)
+        if (frame.masked) {
+          throw new ProtocolException("The server sent a masked frame");
+        }
+
+        switch (frame.opcode) {
+          case OP_TEXT:
+          case OP_BINARY:
+            if (fragmented) {
+              throw new ProtocolException("A message started before the fragmented message ended");
+            }
+            message.reset();
+            fragmented = receive(message, frame);
+            break;
+          case OP_CONTINUATION:
+            if (!fragmented) {
+              throw new ProtocolException("A continuation frame was received without a fragmented message");
+            }
+            fragmented = receive(message, frame);
+            break;
+          case OP_PING:
+            send(OP_PONG, frame.payload);
+            break;
+          case OP_CLOSE:
+            close();
+            return;
+          default:
+            // Pongs and unknown control frames are ignored
+        }
+      }
+    } catch (ProtocolException e) {
+      // The connection is failed with status 1002 (RFC 6455, Section 7.4.1)
+      try {
+        send(OP_CLOSE, new byte[] { 0x03, (byte) 0xEA });
+      } catch (IOException ignored) {
+        // The connection is closed anyway
+      }
+      terminate(closed.get() ? Optional.empty() : Optional.of(e));
+    } catch (IOException | RuntimeException e) {
+      terminate(closed.get() ? Optional.empty()
+        : Optional.of(e instanceof IOException ? (IOException) e : new IOException(e)));
+    }
+  }
+
+  /**
+   * Appends a data frame to the message, and delivers the message if the frame is its last one.
+   *
+   * @return true if the message continues in further frames
+   */
+  private boolean receive(ByteArrayOutputStream message, Frame frame) throws IOException {
+    if (message.size() + frame.payload.length > MAX_MESSAGE_SIZE) {
+      throw new IOException("The message exceeds the maximum message size");
+    }
+    message.write(frame.payload, 0, frame.payload.length);
+
+    if (frame.fin) {
+      deliver(message.toString("UTF-8"));
+    }
+
+    return !frame.fin;
+  }
+
+  private void deliver(String text) {
+    try {
+      listener.onText(text);
+    } catch (RuntimeException e) {
+      LOGGER.log(Level.WARNING, "The listener of a WebSocket message failed", e);
+    }
+  }
+
+  private void terminate(Optional<IOException> cause) {
+    if (!closed.compareAndSet(false, true)) {
+      return;
+    }
+
+    try {
+      socket.close();
+    } catch (IOException e) {
+      // Ignore
+    }
+
+    listener.onClose(cause);
+  }
+
+  private static int readByte(InputStream in) throws IOException {
+    int b = in.read();
+    if (b < 0) {
+      throw new EOFException("The connection was closed");
+    }
+    return b;
+  }
+
+  private static void readFully(InputStream in, byte[] buffer) throws IOException {
+    int offset = 0;
+    while (offset < buffer.length) {
+      int n = in.read(buffer, offset, buffer.length - offset);
+      if (n < 0) {
+        throw new EOFException("The connection was closed");
+      }
+      offset += n;
+    }
+  }
+
+  private static String readLine(InputStream in) throws IOException {
+    StringBuilder line = new StringBuilder();
+    int c;
+
+    while ((c = in.read()) >= 0) {
+      if (c == '\n') {
+        int length = line.length();
+        if (length > 0 && line.charAt(length - 1) == '\r') {
+          line.setLength(length - 1);
+        }
+        return line.toString();
+      }
+      if (line.length() >= MAX_HEADER_SIZE) {
+        throw new IOException("A line of the handshake response exceeds the maximum header size");
+      }
+      line.append((char) c);
+    }
+
+    throw new EOFException("The connection was closed during the handshake");
+  }
+}
@@ -0,0 +1,310 @@
+package ch.unisg.ics.interactions.wot.td.clients;
+
+import ch.unisg.ics.interactions.wot.td.ThingDescription;
+import ch.unisg.ics.interactions.wot.td.affordances.Form;
+import ch.unisg.ics.interactions.wot.td.affordances.InteractionAffordance;
+import ch.unisg.ics.interactions.wot.td.bindings.BaseOperation;
+import ch.unisg.ics.interactions.wot.td.bindings.NoResponseException;
+import ch.unisg.ics.interactions.wot.td.bindings.Operation;
+import ch.unisg.ics.interactions.wot.td.bindings.ProtocolBindings;
+import ch.unisg.ics.interactions.wot.td.bindings.Response;
+import ch.unisg.ics.interactions.wot.td.bindings.ResponseCallback;
+import ch.unisg.ics.interactions.wot.td.schemas.SchemaSerializer;
+import ch.unisg.ics.interactions.wot.td.schemas.SchemaSerializer.Encoder;
+import ch.unisg.ics.interactions.wot.td.schemas.SchemaSerializer.JsonOutput;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Base class of the typed clients generated by {@link TDClientGenerator}. Generated clients resolve
+ * the forms of their affordances when created, encode payloads with specialized encoders (that
+ * write JSON through the buffers of {@link SchemaSerializer#encode(Object, Encoder)}), and decode
+ * responses with specialized decoders (that read the encoded payload of the response with a
+ * streaming {@link JsonReader}), so that values are neither boxed nor held in generic maps.
+ */
+public abstract class GeneratedClient {
+  private final static Logger LOGGER = Logger.getLogger(GeneratedClient.class.getCanonicalName());
+
+  private static final Gson GSON = new Gson();
+
+  /**
+   * Decoder of a value from a JSON reader.
+   *
+   * @param <T> the type of the decoded values
+   */
+  protected interface Decoder<T> {
+    T decode(JsonReader reader) throws IOException;
+  }
+
+  private final ThingDescription td;
+  private long timeoutMillis = TimeUnit.SECONDS.toMillis(BaseOperation.DEFAULT_TIMEOUT);
+
+  protected GeneratedClient(ThingDescription td) {
+    this.td = td;
+  }
+
+  public ThingDescription getThingDescription() {
+    return td;
+  }
+
+  /**
+   * Sets the timeout of the operations performed by the client.
+   *
+   * @param timeout the timeout (0 for no timeout)
+   * @param unit the time unit of the timeout
+   */
+  public void setTimeout(long timeout, TimeUnit unit) {
+    this.timeoutMillis = unit.toMillis(timeout);
+  }
+
+  protected final Form propertyForm(String name, String operationType) {
+    return form(td.getPropertyByName(name), "property", name, operationType);
+  }
+
+  protected final Form actionForm(String name, String operationType) {
+    return form(td.getActionByName(name), "action", name, operationType);
+  }
+
+  protected final Form eventForm(String name, String operationType) {
+    return form(td.getEventByName(name), "event", name, operationType);
+  }
+
+  /**
+   * Performs an operation that does not return a value.
+   *
+   * @param form the form of the operation
+   * @param operationType the operation type
+   * @param payload the encoded payload of the request, or null
+   * @throws IOException if the operation failed
+   */
+  protected final void send(Form form, String operationType, byte[] payload) throws IOException {
+    exchange(form, operationType, payload);
+  }
+
+  /**
+   * Performs an operation and returns a reader of the payload of the response.
+   *
+   * @param form the form of the operation
+   * @param operationType the operation type
+   * @param payload the encoded payload of the request, or null
+   * @return the reader of the payload of the response
+   * @throws IOException if the operation failed, or if the response has no payload
+   */
+  protected final JsonReader receive(Form form, String operationType, byte[] payload)
+      throws IOException {
+    Response response = exchange(form, operationType, payload);
+
+    return reader(response).orElseThrow(() -> new IOException("The response of "
+      + form.getTarget() + " has no payload"));
+  }
+
+  /**
+   * Starts an operation that receives notifications (e.g. an event subscription).
+   *
+   * @param form the form of the operation
+   * @param operationType the operation type
+   * @param decoder the decoder of the payload of notifications
+   * @param listener the listener of the decoded notifications
+   * @param <T> the type of the notifications
+   * @return the operation
+   * @throws IOException if the request could not be sent
+   */
+  protected final <T> Operation subscribe(Form form, String operationType, Decoder<T> decoder,
+      Consumer<T> listener) throws IOException {
+    Operation operation = ProtocolBindings.getBinding(form).bind(form, operationType);
+    operation.registerResponseCallback(new ResponseCallback() {
+      @Override
+      public void onResponse(Response response) {
+        Optional<JsonReader> reader = reader(response);
+        if (response.getStatus() != Response.ResponseStatus.OK || !reader.isPresent()) {
+          return;
+        }
+
+        try (JsonReader r = reader.get()) {
+          listener.accept(decoder.decode(r));
+        } catch (IOException | RuntimeException e) {
+          LOGGER.log(Level.WARNING, "Could not decode a notification of " + form.getTarget(), e);
+        }
+      }
+
+      @Override
+      public void onError() {
+        LOGGER.log(Level.FINE, "Notifications of " + form.getTarget() + " ended with an error");
+      }
+    });
+    operation.sendRequest();
+
+    return operation;
+  }
+
+  protected static void writeLongArray(JsonOutput out, long[] values) {
+    out.writeRaw('[');
+    for (int i = 0; i < values.length; i++) {
+      if (i > 0) {
+        out.writeRaw(',');
+      }
+      out.writeLong(values[i]);
+    }
+    out.writeRaw(']');
+  }
+
+  protected static void writeDoubleArray(JsonOutput out, double[] values) {
+    out.writeRaw('[');
+    for (int i = 0; i < values.length; i++) {
+      if (i > 0) {
+        out.writeRaw(',');
+      }
+      out.writeDouble(values[i]);
+    }
+    out.writeRaw(']');
+  }
+
+  protected static <T> void writeList(JsonOutput out, List<T> values, Encoder<? super T> encoder) {
+    out.writeRaw('[');
+    for (int i = 0; i < values.size(); i++) {
+      if (i > 0) {
+        out.writeRaw(',');
+      }
+      encoder.encode(out, values.get(i));
+    }
+    out.writeRaw(']');
+  }
+
+  protected static long[] readLongArray(JsonReader reader) throws IOException {
+    long[] values = new long[16];
+    int size = 0;
+
+    reader.beginArray();
+    while (reader.hasNext()) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = reader.nextLong();
+    }
+    reader.endArray();
+
+    return Arrays.copyOf(values, size);
+  }
+
+  protected static double[] readDoubleArray(JsonReader reader) throws IOException {
+    double[] values = new double[16];
+    int size = 0;
+
+    reader.beginArray();
+    while (reader.hasNext()) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = reader.nextDouble();
+    }
+    reader.endArray();
+
+    return Arrays.copyOf(values, size);
+  }
+
+  protected static <T> List<T> readList(JsonReader reader, Decoder<T> decoder) throws IOException {
+    List<T> values = new ArrayList<>();
+
+    reader.beginArray();
+    while (reader.hasNext()) {
+      values.add(decoder.decode(reader));
+    }
+    reader.endArray();
+
+    return values;
+  }
+
+  protected static JsonElement readElement(JsonReader reader) throws IOException {
+    return JsonParser.parseReader(reader);
+  }
+
+  /**
+   * Skips a <code>null</code> value.
+   *
+   * @return true if the next value was <code>null</code> (and was skipped)
+   */
+  protected static boolean skipNull(JsonReader reader) throws IOException {
+    if (reader.peek() == JsonToken.NULL) {
+      reader.nextNull();
+      return true;
+    }
+
+    return false;
+  }
+
+  private Response exchange(Form form, String operationType, byte[] payload) throws IOException {
+    Operation operation = ProtocolBindings.getBinding(form).bind(form, operationType);
+
+    if (operation instanceof BaseOperation) {
+      ((BaseOperation) operation).setTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+
+      if (payload != null) {
+        ((BaseOperation) operation).setEncodedPayload(payload);
+      }
+    } else if (payload != null) {
+      operation.setPayload(GSON.fromJson(new String(payload, StandardCharsets.UTF_8),
+        Object.class));
+    }
+
+    operation.sendRequest();
+
+    Response response;
+    try {
+      response = operation.getResponse();
+    } catch (NoResponseException e) {
+      throw new IOException("No response from " + form.getTarget(), e);
+    }
+
+    if (response.getStatus() != Response.ResponseStatus.OK) {
+      throw new IOException("The operation on " + form.getTarget() + " failed: "
+        + response.getStatus());
+    }
+
+    return response;
+  }
+
+  private static Optional<JsonReader> reader(Response response) {
+    Optional<byte[]> encoded = response.getEncodedPayload();
+
+    if (!encoded.isPresent() && response.getPayload().isPresent()) {
+      // The binding does not keep the encoded payload
+      encoded = Optional.of(GSON.toJson(response.getPayload().get())
+        .getBytes(StandardCharsets.UTF_8));
+    }
+
+    return encoded.filter(bytes -> bytes.length > 0).map(bytes -> {
+      JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(bytes),
+        StandardCharsets.UTF_8));
+      // Textual payloads are not quoted by all Things
+      reader.setLenient(true);
+      return reader;
+    });
+  }
+
+  private static Form form(Optional<? extends InteractionAffordance> affordance, String kind,
+      String name, String operationType) {
+    if (!affordance.isPresent()) {
+      throw new IllegalArgumentException("The TD has no " + kind + " named " + name);
+    }
+
+    return affordance.get().getFirstFormForOperationType(operationType)
+      .orElseThrow(() -> new IllegalArgumentException("The " + kind + " " + name
+        + " has no form for " + operationType));
+  }
+}
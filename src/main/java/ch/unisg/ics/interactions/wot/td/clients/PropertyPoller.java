@@ -0,0 +1,542 @@
+package ch.unisg.ics.interactions.wot.td.clients;
+
+import ch.unisg.ics.interactions.wot.td.ThingDescription;
+import ch.unisg.ics.interactions.wot.td.affordances.Form;
+import ch.unisg.ics.interactions.wot.td.affordances.PropertyAffordance;
+import ch.unisg.ics.interactions.wot.td.bindings.*;
+import ch.unisg.ics.interactions.wot.td.bindings.Response.ResponseStatus;
+import ch.unisg.ics.interactions.wot.td.bindings.resilience.AdmissionController;
+import ch.unisg.ics.interactions.wot.td.bindings.resilience.CircuitBreakerRegistry;
+import ch.unisg.ics.interactions.wot.td.vocabularies.TD;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Polls properties (typically properties that are not observable) on a single
+ * {@link HashedWheelTimer}, and notifies subscribers only when the values change.
+ * <p>
+ * Polls are batched per Thing: each Thing has a single timeout on the timer, and when it expires,
+ * all the properties of the Thing that are due within the batch window are polled together. Each
+ * property has its own polling interval, which adapts to the rate at which the property changes:
+ * the interval is halved when a poll returns a new value, and multiplied by the growth factor when
+ * the value is unchanged (or the poll fails), within the configured bounds. At most one poll per
+ * property is in flight at any time.
+ * <p>
+ * Polls are sent asynchronously: listeners are notified on the threads of the protocol bindings,
+ * and must not block. The exchange of a poll that times out is aborted (for operations that extend
+ * {@link BaseOperation}, through their deadline).
+ */
+public class PropertyPoller implements AutoCloseable {
+  private final static Logger LOGGER = Logger.getLogger(PropertyPoller.class.getCanonicalName());
+
+  private final HashedWheelTimer timer;
+  private final boolean ownsTimer;
+  private final long minIntervalNanos;
+  private final long maxIntervalNanos;
+  private final double growthFactor;
+  private final long batchWindowNanos;
+  private final long timeoutNanos;
+  private final Function<Form, Operation> operationFactory;
+  private final Optional<AdmissionController> admissionController;
+
+  private final ConcurrentMap<String, ThingPolls> things = new ConcurrentHashMap<>();
+  private volatile boolean closed = false;
+
+  private PropertyPoller(Builder builder) {
+    this.ownsTimer = !builder.timer.isPresent();
+    this.timer = builder.timer.orElseGet(HashedWheelTimer::new);
+    this.minIntervalNanos = builder.minIntervalNanos;
+    this.maxIntervalNanos = builder.maxIntervalNanos;
+    this.growthFactor = builder.growthFactor;
+    this.batchWindowNanos = builder.batchWindowNanos;
+    this.timeoutNanos = builder.timeoutNanos;
+    this.operationFactory = builder.operationFactory;
+    this.admissionController = builder.admissionController;
+  }
+
+  /**
+   * Polls a property of a Thing. The polls of properties of the same TD are batched.
+   *
+   * @param td the TD of the Thing
+   * @param propertyName the name of the property
+   * @param listener the listener notified of the values of the property
+   * @return the subscription
+   * @throws IllegalArgumentException if the TD has no such property, or if the property has no
+   * form for <code>readProperty</code>
+   */
+  public PollingSubscription subscribe(ThingDescription td, String propertyName,
+      PropertyValueListener listener) {
+    Optional<PropertyAffordance> property = td.getPropertyByName(propertyName);
+
+    if (!property.isPresent()) {
+      throw new IllegalArgumentException("Unknown property: " + propertyName);
+    }
+
+    String thing = td.getThingURI().orElse(getEndpoint(property.get()));
+    return subscribe(thing, property.get(), listener);
+  }
+
+  /**
+   * Polls a property. The polls of properties with the same endpoint (i.e. the scheme and the
+   * authority of their form targets) are batched.
+   *
+   * @param property the property to poll
+   * @param listener the listener notified of the values of the property
+   * @return the subscription
+   * @throws IllegalArgumentException if the property has no form for <code>readProperty</code>
+   */
+  public PollingSubscription subscribe(PropertyAffordance property, PropertyValueListener listener) {
+    return subscribe(getEndpoint(property), property, listener);
+  }
+
+  /**
+   * Polls a property. The polls of properties with the same Thing identifier are batched.
+   *
+   * @param thing an identifier of the Thing of the property (e.g. its URI)
+   * @param property the property to poll
+   * @param listener the listener notified of the values of the property
+   * @return the subscription
+   * @throws IllegalArgumentException if the property has no form for <code>readProperty</code>
+   */
+  public PollingSubscription subscribe(String thing, PropertyAffordance property,
+      PropertyValueListener listener) {
+    if (closed) {
+      throw new IllegalStateException("The poller was closed.");
+    }
+
+    Form form = getReadForm(property);
+    PollingSubscription subscription = new PollingSubscription(thing, property, form, listener);
+
+    while (!things.computeIfAbsent(thing, ThingPolls::new).add(subscription)) {
+      // The polls of the Thing were retired concurrently, retry with a new instance
+    }
+
+    return subscription;
+  }
+
+  /**
+   * Gets the subscriptions of all Things.
+   *
+   * @return the active subscriptions
+   */
+  public List<PollingSubscription> getSubscriptions() {
+    List<PollingSubscription> subscriptions = new ArrayList<>();
+
+    for (ThingPolls polls : things.values()) {
+      synchronized (polls) {
+        subscriptions.addAll(polls.subscriptions);
+      }
+    }
+
+    return subscriptions;
+  }
+
+  /**
+   * Cancels all subscriptions, and stops the timer if it was created by this poller.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    getSubscriptions().forEach(PollingSubscription::cancel);
+
+    if (ownsTimer) {
+      timer.stop();
+    }
+  }
+
+  private static String getEndpoint(PropertyAffordance property) {
+    return CircuitBreakerRegistry.getEndpoint(getReadForm(property).getTarget());
+  }
+
+  private static Form getReadForm(PropertyAffordance property) {
+    Optional<Form> form = property.getFirstFormForOperationType(TD.readProperty);
+
+    if (!form.isPresent()) {
+      throw new IllegalArgumentException("The property " + property.getName()
+        + " has no form for readProperty.");
+    }
+
+    return form.get();
+  }
+
+  private void poll(PollingSubscription subscription) {
+    CompletableFuture<Response> response;
+
+    try {
+      Operation operation = operationFactory.apply(subscription.form);
+
+      if (operation instanceof BaseOperation) {
+        // The deadline of the operation aborts the exchange of a poll that times out
+        ((BaseOperation) operation).setTimeout(timeoutNanos, TimeUnit.NANOSECONDS);
+      }
+
+      response = admissionController.isPresent()
+        ? admissionController.get().submit(operation, timeoutNanos, TimeUnit.NANOSECONDS)
+        : send(operation);
+    } catch (RuntimeException e) {
+      LOGGER.log(Level.WARNING, "Could not poll property " + subscription.property.getName(), e);
+      response = new CompletableFuture<>();
+      response.completeExceptionally(e);
+    }
+
+    response.whenComplete((r, e) -> subscription.onPollComplete(r));
+  }
+
+  private CompletableFuture<Response> send(Operation operation) {
+    CompletableFuture<Response> result = new CompletableFuture<>();
+    AtomicBoolean done = new AtomicBoolean(false);
+
+    // Operations that extend BaseOperation report the expiry of their deadline as an error
+    HashedWheelTimer.Timeout timeout = timeoutNanos > 0 && !(operation instanceof BaseOperation)
+      ? timer.newTimeout(() -> {
+        if (done.compareAndSet(false, true)) {
+          result.completeExceptionally(new NoResponseException("No response after "
+            + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + " ms"));
+        }
+      }, timeoutNanos, TimeUnit.NANOSECONDS)
+      : null;
+
+    operation.registerResponseCallback(new ResponseCallback() {
+      @Override
+      public void onResponse(Response response) {
+        if (done.compareAndSet(false, true)) {
+          cancel(timeout);
+          result.complete(response);
+        }
+      }
+
+      @Override
+      public void onError() {
+        if (done.compareAndSet(false, true)) {
+          cancel(timeout);
+          result.completeExceptionally(new NoResponseException());
+        }
+      }
+    });
+
+    try {
+      operation.sendRequest();
+    } catch (IOException e) {
+      if (done.compareAndSet(false, true)) {
+        cancel(timeout);
+        result.completeExceptionally(e);
+      }
+    }
+
+    return result;
+  }
+
+  private static void cancel(HashedWheelTimer.Timeout timeout) {
+    if (timeout != null) {
+      timeout.cancel();
+    }
+  }
+
+  /**
+   * The polls of the properties of one Thing, which share a single timeout on the timer.
+   */
+  private final class ThingPolls {
+    private final String thing;
+    private final List<PollingSubscription> subscriptions = new ArrayList<>();
+    private HashedWheelTimer.Timeout timeout;
+    private long timeoutAt;
+    private boolean retired = false;
+
+    ThingPolls(String thing) {
+      this.thing = thing;
+    }
+
+    synchronized boolean add(PollingSubscription subscription) {
+      if (retired) {
+        return false;
+      }
+
+      subscription.polls = this;
+      subscriptions.add(subscription);
+      schedule();
+      return true;
+    }
+
+    synchronized void remove(PollingSubscription subscription) {
+      subscriptions.remove(subscription);
+
+      if (subscriptions.isEmpty()) {
+        retired = true;
+        things.remove(thing, this);
+      }
+
+      schedule();
+    }
+
+    /**
+     * Schedules the timeout of the Thing at the earliest poll. Must be called with the lock held.
+     */
+    void schedule() {
+      long earliest = Long.MAX_VALUE;
+      boolean due = false;
+
+      for (PollingSubscription subscription : subscriptions) {
+        if (!subscription.inFlight && (!due || subscription.nextPollAt - earliest < 0)) {
+          earliest = subscription.nextPollAt;
+          due = true;
+        }
+      }
+
+      if (timeout != null && (!due || earliest - timeoutAt < 0)) {
+        timeout.cancel();
+        timeout = null;
+      }
+
+      if (due && timeout == null && !closed) {
+        timeoutAt = earliest;
+        timeout = timer.newTimeout(this::fire, earliest - System.nanoTime(), TimeUnit.NANOSECONDS);
+      }
+    }
+
+    void fire() {
+      List<PollingSubscription> batch = new ArrayList<>();
+
+      synchronized (this) {
+        timeout = null;
+        long now = System.nanoTime();
+
+        for (PollingSubscription subscription : subscriptions) {
+          if (!subscription.inFlight && subscription.nextPollAt - now <= batchWindowNanos) {
+            subscription.inFlight = true;
+            batch.add(subscription);
+          }
+        }
+
+        schedule();
+      }
+
+      batch.forEach(PropertyPoller.this::poll);
+    }
+  }
+
+  /**
+   * The subscription of a listener to the values of a polled property.
+   */
+  public final class PollingSubscription {
+    private final String thing;
+    private final PropertyAffordance property;
+    private final Form form;
+    private final PropertyValueListener listener;
+
+    // Guarded by the lock of the polls of the Thing
+    private ThingPolls polls;
+    private long intervalNanos = minIntervalNanos;
+    private long nextPollAt = System.nanoTime();
+    private boolean inFlight = false;
+    private boolean hasValue = false;
+    private Object lastValue;
+    private volatile boolean cancelled = false;
+
+    private PollingSubscription(String thing, PropertyAffordance property, Form form,
+        PropertyValueListener listener) {
+      this.thing = thing;
+      this.property = property;
+      this.form = form;
+      this.listener = listener;
+    }
+
+    public String getThing() {
+      return thing;
+    }
+
+    public PropertyAffordance getProperty() {
+      return property;
+    }
+
+    /**
+     * Gets the current polling interval of the property.
+     *
+     * @param unit the time unit of the result
+     * @return the polling interval
+     */
+    public long getInterval(TimeUnit unit) {
+      synchronized (polls) {
+        return unit.convert(intervalNanos, TimeUnit.NANOSECONDS);
+      }
+    }
+
+    /**
+     * Gets the last value read from the property.
+     *
+     * @return the last value, if any
+     */
+    public Optional<Object> getLastValue() {
+      synchronized (polls) {
+        return hasValue ? Optional.ofNullable(lastValue) : Optional.empty();
+      }
+    }
+
+    public boolean isCancelled() {
+      return cancelled;
+    }
+
+    /**
+     * Stops polling the property.
+     */
+    public void cancel() {
+      if (!cancelled) {
+        cancelled = true;
+        polls.remove(this);
+      }
+    }
+
+    private void onPollComplete(Response response) {
+      boolean ok = response != null && response.getStatus() == ResponseStatus.OK;
+      Object value = ok ? response.getPayload().orElse(null) : null;
+      boolean changed = false;
+
+      synchronized (polls) {
+        if (ok && (!hasValue || !Objects.equals(lastValue, value))) {
+          changed = true;
+          hasValue = true;
+          lastValue = value;
+          intervalNanos = Math.max(minIntervalNanos, intervalNanos / 2);
+        } else {
+          intervalNanos = Math.min(maxIntervalNanos, (long) (intervalNanos * growthFactor));
+        }
+
+        inFlight = false;
+        nextPollAt = System.nanoTime() + intervalNanos;
+        polls.schedule();
+      }
+
+      if (cancelled) {
+        return;
+      }
+
+      if (changed) {
+        listener.onValue(property, value);
+      } else if (!ok) {
+        listener.onError(property, Optional.ofNullable(response));
+      }
+    }
+  }
+
+  public static class Builder {
+    private Optional<HashedWheelTimer> timer = Optional.empty();
+    private long minIntervalNanos = TimeUnit.SECONDS.toNanos(1);
+    private long maxIntervalNanos = TimeUnit.SECONDS.toNanos(60);
+    private double growthFactor = 1.5;
+    private long batchWindowNanos = TimeUnit.MILLISECONDS.toNanos(100);
+    private long timeoutNanos = TimeUnit.SECONDS.toNanos(BaseOperation.DEFAULT_TIMEOUT);
+    private Function<Form, Operation> operationFactory =
+      form -> ProtocolBindings.getBinding(form).bind(form, TD.readProperty);
+    private Optional<AdmissionController> admissionController = Optional.empty();
+
+    /**
+     * Sets the timer used to schedule polls and timeouts. By default, the poller creates its own
+     * timer, which is stopped when the poller is closed.
+     *
+     * @param timer the timer
+     * @return this builder
+     */
+    public Builder setTimer(HashedWheelTimer timer) {
+      this.timer = Optional.of(timer);
+      return this;
+    }
+
+    /**
+     * Sets the bounds of the polling intervals (between 1 s and 60 s by default). Properties are
+     * first polled at the minimum interval.
+     *
+     * @param min the minimum interval
+     * @param max the maximum interval
+     * @param unit the time unit of the intervals
+     * @return this builder
+     */
+    public Builder setIntervalBounds(long min, long max, TimeUnit unit) {
+      if (min <= 0 || max < min) {
+        throw new IllegalArgumentException("Invalid interval bounds: " + min + ", " + max);
+      }
+      this.minIntervalNanos = unit.toNanos(min);
+      this.maxIntervalNanos = unit.toNanos(max);
+      return this;
+    }
+
+    /**
+     * Sets the factor by which the interval of a property grows when its value is unchanged (1.5
+     * by default).
+     *
+     * @param growthFactor the growth factor
+     * @return this builder
+     */
+    public Builder setGrowthFactor(double growthFactor) {
+      if (growthFactor < 1) {
+        throw new IllegalArgumentException("The growth factor cannot be lower than 1.");
+      }
+      this.growthFactor = growthFactor;
+      return this;
+    }
+
+    /**
+     * Sets the window within which the polls of a Thing are batched (100 ms by default): when a
+     * poll is due, the properties of the same Thing due within the window are polled as well.
+     *
+     * @param window the batch window
+     * @param unit the time unit of the window
+     * @return this builder
+     */
+    public Builder setBatchWindow(long window, TimeUnit unit) {
+      this.batchWindowNanos = unit.toNanos(window);
+      return this;
+    }
+
+    /**
+     * Sets the time a Thing has to respond to a poll ({@link BaseOperation#DEFAULT_TIMEOUT}
+     * seconds by default).
+     *
+     * @param timeout the timeout (0 for no timeout)
+     * @param unit the time unit of the timeout
+     * @return this builder
+     */
+    public Builder setTimeout(long timeout, TimeUnit unit) {
+      if (timeout < 0) {
+        throw new IllegalArgumentException("The timeout cannot be negative: " + timeout);
+      }
+      this.timeoutNanos = unit.toNanos(timeout);
+      return this;
+    }
+
+    /**
+     * Sets the factory that creates the <code>readProperty</code> operation of each poll from the
+     * form of the property (by default, the form is bound with its protocol binding).
+     *
+     * @param operationFactory the operation factory
+     * @return this builder
+     */
+    public Builder setOperationFactory(Function<Form, Operation> operationFactory) {
+      this.operationFactory = operationFactory;
+      return this;
+    }
+
+    /**
+     * Sets the admission controller that limits the number of concurrent polls per endpoint (no
+     * admission control by default).
+     *
+     * @param admissionController the admission controller
+     * @return this builder
+     */
+    public Builder setAdmissionController(AdmissionController admissionController) {
+      this.admissionController = Optional.of(admissionController);
+      return this;
+    }
+
+    public PropertyPoller build() {
+      return new PropertyPoller(this);
+    }
+  }
+}
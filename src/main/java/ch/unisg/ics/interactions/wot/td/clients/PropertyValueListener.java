@@ -0,0 +1,30 @@
+package ch.unisg.ics.interactions.wot.td.clients;
+
+import ch.unisg.ics.interactions.wot.td.affordances.PropertyAffordance;
+import ch.unisg.ics.interactions.wot.td.bindings.Response;
+
+import java.util.Optional;
+
+/**
+ * Listener notified by a {@link PropertyPoller} when the value of a polled property changes.
+ */
+public interface PropertyValueListener {
+
+  /**
+   * Called with the first value read from the property, and then whenever the value changes.
+   *
+   * @param property the polled property
+   * @param value the new value of the property (e.g. a map, a list, a string, a number, a boolean,
+   * or null if the response has no payload)
+   */
+  void onValue(PropertyAffordance property, Object value);
+
+  /**
+   * Called when a poll fails: the Thing did not respond in time, or it responded with an error.
+   *
+   * @param property the polled property
+   * @param response the error response, if any
+   */
+  default void onError(PropertyAffordance property, Optional<Response> response) { }
+
+}
@@ -0,0 +1,716 @@
+package ch.unisg.ics.interactions.wot.td.clients;
+
+import ch.unisg.ics.interactions.wot.td.ThingDescription;
+import ch.unisg.ics.interactions.wot.td.ThingDescription.TDFormat;
+import ch.unisg.ics.interactions.wot.td.affordances.ActionAffordance;
+import ch.unisg.ics.interactions.wot.td.affordances.EventAffordance;
+import ch.unisg.ics.interactions.wot.td.affordances.InteractionAffordance;
+import ch.unisg.ics.interactions.wot.td.affordances.PropertyAffordance;
+import ch.unisg.ics.interactions.wot.td.io.TDGraphReader;
+import ch.unisg.ics.interactions.wot.td.schemas.ArraySchema;
+import ch.unisg.ics.interactions.wot.td.schemas.DataSchema;
+import ch.unisg.ics.interactions.wot.td.schemas.ObjectSchema;
+import ch.unisg.ics.interactions.wot.td.schemas.SchemaSerializer;
+import ch.unisg.ics.interactions.wot.td.vocabularies.TD;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Generator of typed Java clients from TDs. The client of a Thing is a subclass of
+ * {@link GeneratedClient} with a method per operation of its affordances:
+ * <ul>
+ *   <li>properties: <code>read&lt;Name&gt;()</code>, <code>write&lt;Name&gt;(value)</code>, and
+ *   <code>observe&lt;Name&gt;(listener)</code></li>
+ *   <li>actions: <code>invoke&lt;Name&gt;(input)</code>, which returns the output of the action</li>
+ *   <li>events: <code>subscribe&lt;Name&gt;(listener)</code></li>
+ * </ul>
+ * Data schemas are mapped to Java types as follows: booleans, integers, and numbers to
+ * <code>boolean</code>, <code>long</code>, and <code>double</code>; strings to {@link String};
+ * object schemas with properties to nested classes (with specialized encoders and decoders);
+ * arrays of integers and numbers to <code>long[]</code> and <code>double[]</code>; other arrays
+ * with a single item schema to {@link List}s; and other schemas to Gson's
+ * {@link com.google.gson.JsonElement}.
+ * <p>
+ * Affordances with URI variables are not supported (no method is generated for them).
+ * <p>
+ * The generator can be run from the command line (see {@link #main(String[])}), e.g. with the
+ * <code>generateTDClients</code> Gradle task.
+ */
+public class TDClientGenerator {
+
+  private static final Set<String> JAVA_KEYWORDS = new HashSet<>(Arrays.asList("abstract",
+    "assert", "boolean", "break", "byte", "case", "catch", "char", "class", "const", "continue",
+    "default", "do", "double", "else", "enum", "extends", "final", "finally", "float", "for", "goto",
+    "if", "implements", "import", "instanceof", "int", "interface", "long", "native", "new",
+    "package", "private", "protected", "public", "return", "short", "static", "strictfp", "super",
+    "switch", "synchronized", "this", "throw", "throws", "transient", "try", "void", "volatile",
+    "while", "true", "false", "null"));
+
+  private final String packageName;
+
+  /**
+   * @param packageName the package of the generated clients
+   */
+  public TDClientGenerator(String packageName) {
+    this.packageName = packageName;
+  }
+
+  /**
+   * Generates typed clients from TDs.
+   * <p>
+   * Usage: <code>TDClientGenerator &lt;source directory&gt; &lt;package&gt; &lt;TD&gt;...</code>,
+   * where TDs are paths or URLs of Turtle documents (or of JSON-LD documents, if their name ends
+   * with <code>.jsonld</code> or <code>.json</code>).
+   *
+   * @param args the command line arguments
+   * @throws IOException if a TD could not be read, or if a client could not be written
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 3) {
+      System.err.println("Usage: TDClientGenerator <source directory> <package> <TD>...");
+      System.exit(1);
+    }
+
+    Path sourceDir = Paths.get(args[0]);
+    TDClientGenerator generator = new TDClientGenerator(args[1]);
+
+    for (int i = 2; i < args.length; i++) {
+      String location = args[i];
+      TDFormat format = location.endsWith(".jsonld") || location.endsWith(".json")
+        ? TDFormat.RDF_JSONLD : TDFormat.RDF_TURTLE;
+
+      ThingDescription td = location.startsWith("http://") || location.startsWith("https://")
+        ? TDGraphReader.readFromURL(format, location)
+        : TDGraphReader.readFromFile(format, location);
+
+      Path file = generator.generate(td, sourceDir);
+      System.out.println("Generated " + file + " from " + location);
+    }
+  }
+
+  /**
+   * Gets the simple name of the client generated for a TD (e.g. <code>LampClient</code> for a
+   * Thing titled <code>lamp</code>).
+   *
+   * @param td the TD
+   * @return the name of the client class
+   */
+  public String getClassName(ThingDescription td) {
+    return toTypeName(td.getTitle()) + "Client";
+  }
+
+  /**
+   * Generates the client of a TD and writes it to a source directory (in the directory of its
+   * package).
+   *
+   * @param td the TD
+   * @param sourceDir the source directory
+   * @return the path of the generated source file
+   * @throws IOException if the source file could not be written
+   */
+  public Path generate(ThingDescription td, Path sourceDir) throws IOException {
+    Path dir = packageName.isEmpty() ? sourceDir
+      : sourceDir.resolve(packageName.replace('.', '/'));
+    Files.createDirectories(dir);
+
+    Path file = dir.resolve(getClassName(td) + ".java");
+    Files.write(file, generate(td).getBytes(StandardCharsets.UTF_8));
+
+    return file;
+  }
+
+  /**
+   * Generates the source code of the client of a TD.
+   *
+   * @param td the TD
+   * @return the source code of the client class
+   */
+  public String generate(ThingDescription td) {
+    return new ClientWriter(td).write();
+  }
+
+  /**
+   * Converts a name to a Java type name (e.g. <code>first_name</code> to <code>FirstName</code>).
+   */
+  static String toTypeName(String name) {
+    StringBuilder builder = new StringBuilder();
+    boolean upper = true;
+
+    for (int i = 0; i < name.length(); i++) {
+      char c = name.charAt(i);
+
+      if (!Character.isLetterOrDigit(c) || c > 0x7f) {
+        upper = true;
+      } else if (upper) {
+        builder.append(Character.toUpperCase(c));
+        upper = false;
+      } else {
+        builder.append(c);
+      }
+    }
+
+    if (builder.length() == 0 || Character.isDigit(builder.charAt(0))) {
+      builder.insert(0, 'T');
+    }
+
+    return builder.toString();
+  }
+
+  /**
+   * Converts a name to a Java identifier (e.g. <code>first_name</code> to <code>firstName</code>).
+   */
+  static String toIdentifier(String name) {
+    String typeName = toTypeName(name);
+    String identifier = Character.toLowerCase(typeName.charAt(0)) + typeName.substring(1);
+
+    return JAVA_KEYWORDS.contains(identifier) ? identifier + "_" : identifier;
+  }
+
+  private static String quote(String s) {
+    StringBuilder builder = new StringBuilder("\"");
+
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+
+      switch (c) {
+        case '"': builder.append("\\\""); break;
+        case '\\': builder.append("\\\\"); break;
+        case '\n': builder.append("\\n"); break;
+        case '\r': builder.append("\\r"); break;
+        case '\t': builder.append("\\t"); break;
+        default:
+          if (c < 0x20 || c > 0x7e) {
+            builder.append(String.format("\\u%04x", (int) c));
+          } else {
+            builder.append(c);
+          }
+      }
+    }
+
+    return builder.append('"').toString();
+  }
+
+  private static String escapeHtml(String s) {
+    return s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+  }
+
+  /**
+   * Java type of a data schema, with the expressions that decode and encode its values.
+   */
+  private static final class JavaType {
+    private final String name;
+    private final String boxedName;
+    private final Function<String, String> decoder;
+    private final BiFunction<String, String, String> encoder;
+
+    /**
+     * @param name the name of the type
+     * @param boxedName the name of the type as a type argument
+     * @param decoder the expression that decodes a value, given the name of a JSON reader
+     * @param encoder the statement that encodes a value, given the name of a
+     *                {@link SchemaSerializer.JsonOutput} and a value expression
+     */
+    JavaType(String name, String boxedName, Function<String, String> decoder,
+        BiFunction<String, String, String> encoder) {
+      this.name = name;
+      this.boxedName = boxedName;
+      this.decoder = decoder;
+      this.encoder = encoder;
+    }
+
+    boolean isPrimitive() {
+      return !name.equals(boxedName);
+    }
+
+    String decode(String reader) {
+      return decoder.apply(reader);
+    }
+
+    String encode(String out, String value) {
+      return encoder.apply(out, value);
+    }
+  }
+
+  private final class ClientWriter {
+    private final ThingDescription td;
+    private final String className;
+    private final Set<String> typeNames = new HashSet<>();
+    private final Set<String> memberNames = new HashSet<>();
+
+    private final StringBuilder fields = new StringBuilder();
+    private final StringBuilder initializers = new StringBuilder();
+    private final StringBuilder methods = new StringBuilder();
+    private final StringBuilder types = new StringBuilder();
+
+    ClientWriter(ThingDescription td) {
+      this.td = td;
+      this.className = getClassName(td);
+      this.typeNames.add(className);
+    }
+
+    String write() {
+      for (PropertyAffordance property : td.getProperties()) {
+        if (isSupported(property)) {
+          writeProperty(property);
+        }
+      }
+
+      for (ActionAffordance action : td.getActions()) {
+        if (isSupported(action)) {
+          writeAction(action);
+        }
+      }
+
+      for (EventAffordance event : td.getEvents()) {
+        if (isSupported(event)) {
+          writeEvent(event);
+        }
+      }
+
+      StringBuilder source = new StringBuilder();
+
+      if (!packageName.isEmpty()) {
+        source.append("package ").append(packageName).append(";\n\n");
+      }
+
+      source.append("import ch.unisg.ics.interactions.wot.td.ThingDescription;\n")
+        .append("import ch.unisg.ics.interactions.wot.td.affordances.Form;\n")
+        .append("import ch.unisg.ics.interactions.wot.td.bindings.Operation;\n")
+        .append("import ch.unisg.ics.interactions.wot.td.clients.GeneratedClient;\n")
+        .append("import ch.unisg.ics.interactions.wot.td.schemas.SchemaSerializer;\n")
+        .append("import ch.unisg.ics.interactions.wot.td.schemas.SchemaSerializer.JsonOutput;\n")
+        .append("import ch.unisg.ics.interactions.wot.td.vocabularies.TD;\n")
+        .append("import com.google.gson.JsonElement;\n")
+        .append("import com.google.gson.stream.JsonReader;\n\n")
+        .append("import java.io.IOException;\n")
+        .append("import java.util.List;\n")
+        .append("import java.util.function.Consumer;\n\n")
+        .append("/**\n")
+        .append(" * Typed client of the Thing <i>").append(escapeHtml(td.getTitle()))
+        .append("</i>, generated from its TD by {@link ")
+        .append(TDClientGenerator.class.getName()).append("}.\n")
+        .append(" */\n")
+        .append("public class ").append(className).append(" extends GeneratedClient {\n")
+        .append(fields)
+        .append("\n")
+        .append("  /**\n")
+        .append("   * @param td the TD of the Thing\n")
+        .append("   * @throws IllegalArgumentException if an affordance of the client is not in the TD\n")
+        .append("   */\n")
+        .append("  public ").append(className).append("(ThingDescription td) {\n")
+        .append("    super(td);\n")
+        .append(initializers)
+        .append("  }\n")
+        .append(methods)
+        .append(types)
+        .append("}\n");
+
+      return source.toString();
+    }
+
+    private boolean isSupported(InteractionAffordance affordance) {
+      return !affordance.getUriVariables().filter(variables -> !variables.isEmpty()).isPresent();
+    }
+
+    private void writeProperty(PropertyAffordance property) {
+      String name = property.getName();
+      JavaType type = typeOf(property.getDataSchema(), toTypeName(name));
+
+      if (property.hasFormWithOperationType(TD.readProperty)) {
+        String form = addForm("property", name, TD.readProperty, "readProperty", "Read");
+
+        methods.append("\n")
+          .append("  /**\n")
+          .append("   * Reads the property <code>").append(escapeHtml(name)).append("</code>.\n")
+          .append("   */\n")
+          .append("  public ").append(type.name).append(" ").append(memberName("read", name))
+          .append("() throws IOException {\n")
+          .append("    try (JsonReader reader = receive(").append(form)
+          .append(", TD.readProperty, null)) {\n")
+          .append("      return ").append(type.decode("reader")).append(";\n")
+          .append("    }\n")
+          .append("  }\n");
+      }
+
+      if (property.hasFormWithOperationType(TD.writeProperty)) {
+        String form = addForm("property", name, TD.writeProperty, "writeProperty", "Write");
+
+        methods.append("\n")
+          .append("  /**\n")
+          .append("   * Writes the property <code>").append(escapeHtml(name)).append("</code>.\n")
+          .append("   */\n")
+          .append("  public void ").append(memberName("write", name)).append("(")
+          .append(type.name).append(" value) throws IOException {\n")
+          .append("    send(").append(form).append(", TD.writeProperty, ")
+          .append(encode(type, "value")).append(");\n")
+          .append("  }\n");
+      }
+
+      if (property.hasFormWithOperationType(TD.observeProperty)) {
+        String form = addForm("property", name, TD.observeProperty, "observeProperty", "Observe");
+        writeSubscription("observe", "Observes the property", name, form, "TD.observeProperty",
+          type);
+      }
+    }
+
+    private void writeAction(ActionAffordance action) {
+      if (!action.hasFormWithOperationType(TD.invokeAction)) {
+        return;
+      }
+
+      String name = action.getName();
+      String form = addForm("action", name, TD.invokeAction, "invokeAction", "Invoke");
+
+      Optional<JavaType> input = action.getInputSchema()
+        .map(schema -> typeOf(schema, toTypeName(name) + "Input"));
+      Optional<JavaType> output = action.getOutputSchema()
+        .map(schema -> typeOf(schema, toTypeName(name) + "Output"));
+
+      methods.append("\n")
+        .append("  /**\n")
+        .append("   * Invokes the action <code>").append(escapeHtml(name)).append("</code>.\n")
+        .append("   */\n")
+        .append("  public ").append(output.map(type -> type.name).orElse("void")).append(" ")
+        .append(memberName("invoke", name)).append("(")
+        .append(input.map(type -> type.name + " input").orElse(""))
+        .append(") throws IOException {\n");
+
+      String payload = "null";
+      if (input.isPresent()) {
+        payload = encode(input.get(), "input");
+      }
+
+      if (output.isPresent()) {
+        methods.append("    try (JsonReader reader = receive(").append(form)
+          .append(", TD.invokeAction, ").append(payload).append(")) {\n")
+          .append("      return ").append(output.get().decode("reader")).append(";\n")
+          .append("    }\n");
+      } else {
+        methods.append("    send(").append(form).append(", TD.invokeAction, ").append(payload)
+          .append(");\n");
+      }
+
+      methods.append("  }\n");
+    }
+
+    private void writeEvent(EventAffordance event) {
+      if (!event.hasFormWithOperationType(TD.subscribeEvent)) {
+        return;
+      }
+
+      String name = event.getName();
+      String form = addForm("event", name, TD.subscribeEvent, "subscribeEvent", "Subscribe");
+      JavaType type = typeOf(event.getNotificationSchema().orElse(DataSchema.getEmptySchema()),
+        toTypeName(name) + "Event");
+
+      writeSubscription("subscribe", "Subscribes to the event", name, form, "TD.subscribeEvent",
+        type);
+    }
+
+    private void writeSubscription(String prefix, String description, String name, String form,
+        String operationType, JavaType type) {
+      methods.append("\n")
+        .append("  /**\n")
+        .append("   * ").append(description).append(" <code>").append(escapeHtml(name))
+        .append("</code>.\n")
+        .append("   *\n")
+        .append("   * @param listener the listener of the notifications\n")
+        .append("   * @return the operation, which receives the notifications\n")
+        .append("   */\n")
+        .append("  public Operation ").append(memberName(prefix, name)).append("(Consumer<")
+        .append(type.boxedName).append("> listener) throws IOException {\n")
+        .append("    return subscribe(").append(form).append(", ").append(operationType)
+        .append(", reader -> ").append(type.decode("reader")).append(", listener);\n")
+        .append("  }\n");
+    }
+
+    /**
+     * Adds a field for the form of an operation, resolved when the client is created.
+     *
+     * @return the name of the field
+     */
+    private String addForm(String kind, String name, String operationType, String operationName,
+        String suffix) {
+      String field = uniqueMemberName(toIdentifier(kind + "_" + name) + suffix + "Form");
+
+      fields.append("  private final Form ").append(field).append(";\n");
+      initializers.append("    ").append(field).append(" = ").append(kind).append("Form(")
+        .append(quote(name)).append(", TD.").append(operationName).append(");\n");
+
+      return field;
+    }
+
+    /**
+     * Gets the expression that encodes a value with {@link SchemaSerializer#encode}.
+     */
+    private String encode(JavaType type, String value) {
+      return "SchemaSerializer.encode(" + value + ", (out, v) -> " + type.encode("out", "v") + ")";
+    }
+
+    private String memberName(String prefix, String name) {
+      return uniqueMemberName(prefix + toTypeName(name));
+    }
+
+    private String uniqueMemberName(String candidate) {
+      String name = candidate;
+      for (int i = 2; !memberNames.add(name); i++) {
+        name = candidate + i;
+      }
+      return name;
+    }
+
+    private String uniqueFieldName(Set<String> usedFields, String candidate) {
+      String name = candidate;
+      for (int i = 2; !usedFields.add(name); i++) {
+        name = candidate + i;
+      }
+      return name;
+    }
+
+    private String uniqueTypeName(String candidate) {
+      String name = candidate;
+      for (int i = 2; !typeNames.add(name); i++) {
+        name = candidate + i;
+      }
+      return name;
+    }
+
+    private JavaType typeOf(DataSchema schema, String suggestedName) {
+      switch (schema.getDatatype()) {
+        case DataSchema.BOOLEAN:
+          return new JavaType("boolean", "Boolean", r -> r + ".nextBoolean()",
+            (o, v) -> o + ".writeBoolean(" + v + ")");
+        case DataSchema.INTEGER:
+          return new JavaType("long", "Long", r -> r + ".nextLong()",
+            (o, v) -> o + ".writeLong(" + v + ")");
+        case DataSchema.NUMBER:
+          return new JavaType("double", "Double", r -> r + ".nextDouble()",
+            (o, v) -> o + ".writeDouble(" + v + ")");
+        case DataSchema.STRING:
+          return new JavaType("String", "String", r -> r + ".nextString()",
+            (o, v) -> o + ".writeString(" + v + ")");
+        case DataSchema.OBJECT:
+          ObjectSchema objectSchema = (ObjectSchema) schema;
+          if (!objectSchema.getProperties().isEmpty()) {
+            String typeName = writeObjectType(objectSchema, suggestedName);
+            return new JavaType(typeName, typeName, r -> typeName + ".decode(" + r + ")",
+              (o, v) -> v + ".encode(" + o + ")");
+          }
+          break;
+        case DataSchema.ARRAY:
+          ArraySchema arraySchema = (ArraySchema) schema;
+          if (arraySchema.getItems().size() == 1) {
+            return arrayTypeOf(arraySchema.getItems().get(0), suggestedName + "Item");
+          }
+          break;
+        default:
+      }
+
+      return new JavaType("JsonElement", "JsonElement", r -> "readElement(" + r + ")",
+        (o, v) -> o + ".writeValue(" + v + ")");
+    }
+
+    private JavaType arrayTypeOf(DataSchema itemSchema, String suggestedName) {
+      switch (itemSchema.getDatatype()) {
+        case DataSchema.INTEGER:
+          return new JavaType("long[]", "long[]", r -> "readLongArray(" + r + ")",
+            (o, v) -> "writeLongArray(" + o + ", " + v + ")");
+        case DataSchema.NUMBER:
+          return new JavaType("double[]", "double[]", r -> "readDoubleArray(" + r + ")",
+            (o, v) -> "writeDoubleArray(" + o + ", " + v + ")");
+        case DataSchema.ARRAY:
+          // Nested arrays are kept as JSON
+          return new JavaType("JsonElement", "JsonElement", r -> "readElement(" + r + ")",
+            (o, v) -> o + ".writeValue(" + v + ")");
+        default:
+          JavaType item = typeOf(itemSchema, suggestedName);
+          String listType = "List<" + item.boxedName + ">";
+
+          return new JavaType(listType, listType,
+            r -> "readList(" + r + ", r -> " + item.decode("r") + ")",
+            (o, v) -> "writeList(" + o + ", " + v + ", (o, e) -> " + item.encode("o", "e") + ")");
+      }
+    }
+
+    /**
+     * Writes the nested class of an object schema.
+     *
+     * @return the name of the class
+     */
+    private String writeObjectType(ObjectSchema schema, String suggestedName) {
+      String typeName = uniqueTypeName(suggestedName);
+
+      // Property names are sorted so that generated code is stable
+      List<String> names = new ArrayList<>(schema.getProperties().keySet());
+      Collections.sort(names);
+
+      Map<String, JavaType> propertyTypes = new LinkedHashMap<>();
+      Map<String, String> fieldNames = new HashMap<>();
+      Set<String> usedFields = new HashSet<>();
+
+      for (String name : names) {
+        propertyTypes.put(name, typeOf(schema.getProperties().get(name), typeName + toTypeName(name)));
+        fieldNames.put(name, uniqueFieldName(usedFields, toIdentifier(name)));
+      }
+
+      // The presence flags of primitive fields and the encoded member names are reserved once all
+      // properties have a field, so that they do not clash with properties named alike
+      Map<String, String> flagNames = new HashMap<>();
+      Map<String, String> encodedNames = new HashMap<>();
+
+      for (String name : names) {
+        String field = fieldNames.get(name);
+
+        if (propertyTypes.get(name).isPrimitive()) {
+          flagNames.put(name, uniqueFieldName(usedFields, "has" + toTypeName(field)));
+        }
+        encodedNames.put(name, uniqueFieldName(usedFields,
+          "NAME_" + field.toUpperCase(Locale.ROOT)));
+      }
+
+      List<String> required = new ArrayList<>();
+      for (String name : names) {
+        if (schema.hasRequiredProperty(name)) {
+          required.add(name);
+        }
+      }
+
+      StringBuilder type = new StringBuilder();
+      type.append("\n")
+        .append("  public static class ").append(typeName).append(" {\n");
+
+      // Fields
+      for (String name : names) {
+        type.append("    private static final byte[] ").append(encodedNames.get(name))
+          .append(" = JsonOutput.encodeName(").append(quote(name)).append(");\n");
+      }
+
+      for (String name : names) {
+        JavaType propertyType = propertyTypes.get(name);
+        String field = fieldNames.get(name);
+
+        type.append("    private ").append(propertyType.name).append(" ").append(field)
+          .append(";\n");
+        if (propertyType.isPrimitive()) {
+          type.append("    private boolean ").append(flagNames.get(name)).append(";\n");
+        }
+      }
+
+      // Accessors
+      for (String name : names) {
+        JavaType propertyType = propertyTypes.get(name);
+        String field = fieldNames.get(name);
+        String accessor = toTypeName(field);
+
+        type.append("\n")
+          .append("    public ").append(propertyType.name).append(" ")
+          .append(propertyType.name.equals("boolean") ? "is" : "get").append(accessor)
+          .append("() {\n")
+          .append("      return ").append(field).append(";\n")
+          .append("    }\n");
+
+        if (propertyType.isPrimitive()) {
+          type.append("\n")
+            .append("    public boolean has").append(accessor).append("() {\n")
+            .append("      return ").append(flagNames.get(name)).append(";\n")
+            .append("    }\n");
+        }
+
+        type.append("\n")
+          .append("    public ").append(typeName).append(" set").append(accessor).append("(")
+          .append(propertyType.name).append(" ").append(field).append(") {\n")
+          .append("      this.").append(field).append(" = ").append(field).append(";\n");
+        if (propertyType.isPrimitive()) {
+          type.append("      this.").append(flagNames.get(name)).append(" = true;\n");
+        }
+        type.append("      return this;\n")
+          .append("    }\n");
+      }
+
+      // Encoder
+      type.append("\n")
+        .append("    void encode(JsonOutput out) {\n")
+        .append("      out.writeRaw('{');\n")
+        .append("      boolean first = true;\n");
+
+      for (String name : names) {
+        JavaType propertyType = propertyTypes.get(name);
+        String field = fieldNames.get(name);
+
+        type.append("      if (")
+          .append(propertyType.isPrimitive() ? "this." + flagNames.get(name)
+            : "this." + field + " != null")
+          .append(") {\n")
+          .append("        if (!first) {\n")
+          .append("          out.writeRaw(',');\n")
+          .append("        }\n")
+          .append("        first = false;\n")
+          .append("        out.writeRaw(").append(encodedNames.get(name)).append(");\n")
+          .append("        ").append(propertyType.encode("out", "this." + field)).append(";\n")
+          .append("      }\n");
+      }
+
+      type.append("      out.writeRaw('}');\n")
+        .append("    }\n");
+
+      // Decoder: required properties are tracked with a bit mask
+      boolean checkRequired = !required.isEmpty() && required.size() <= 64;
+
+      type.append("\n")
+        .append("    static ").append(typeName)
+        .append(" decode(JsonReader reader) throws IOException {\n")
+        .append("      ").append(typeName).append(" value = new ").append(typeName).append("();\n");
+      if (checkRequired) {
+        type.append("      long seen = 0;\n");
+      }
+      type.append("      reader.beginObject();\n")
+        .append("      while (reader.hasNext()) {\n")
+        .append("        String name = reader.nextName();\n")
+        .append("        if (skipNull(reader)) {\n")
+        .append("          continue;\n")
+        .append("        }\n")
+        .append("        switch (name) {\n");
+
+      for (String name : names) {
+        JavaType propertyType = propertyTypes.get(name);
+        String field = fieldNames.get(name);
+
+        type.append("          case ").append(quote(name)).append(":\n")
+          .append("            value.set").append(toTypeName(field)).append("(")
+          .append(propertyType.decode("reader")).append(");\n");
+        if (checkRequired && required.contains(name)) {
+          type.append("            seen |= ").append(1L << required.indexOf(name)).append("L;\n");
+        }
+        type.append("            break;\n");
+      }
+
+      type.append("          default:\n")
+        .append("            reader.skipValue();\n")
+        .append("        }\n")
+        .append("      }\n")
+        .append("      reader.endObject();\n");
+
+      if (checkRequired) {
+        long mask = required.size() == 64 ? -1L : (1L << required.size()) - 1;
+        type.append("      if (seen != ").append(mask).append("L) {\n")
+          .append("        throw new IOException(\"Missing required properties of ")
+          .append(typeName).append("\");\n")
+          .append("      }\n");
+      }
+
+      type.append("      return value;\n")
+        .append("    }\n")
+        .append("  }\n");
+
+      types.append(type);
+      return typeName;
+    }
+  }
+}
@@ -0,0 +1,120 @@
+package ch.unisg.ics.interactions.wot.td.diff;
+
+import ch.unisg.ics.interactions.wot.td.affordances.ActionAffordance;
+import ch.unisg.ics.interactions.wot.td.affordances.EventAffordance;
+import ch.unisg.ics.interactions.wot.td.affordances.InteractionAffordance;
+import ch.unisg.ics.interactions.wot.td.affordances.PropertyAffordance;
+
+import java.util.HashSet;
+import java.util.Objects;
+
+/**
+ * A change of an interaction affordance between two versions of a TD. Affordances are matched by
+ * name. A change records which parts of the affordance were modified, such that consumers can decide
+ * whether they need to rebind their operations (e.g. when the forms changed) or only update the
+ * payloads they send (e.g. when the data schemas changed).
+ *
+ * @param <T> the type of the interaction affordance
+ */
+public class AffordanceChange<T extends InteractionAffordance> {
+  private final T oldAffordance;
+  private final T newAffordance;
+
+  private final boolean formsChanged;
+  private final boolean schemasChanged;
+  private final boolean metadataChanged;
+
+  AffordanceChange(T oldAffordance, T newAffordance) {
+    this.oldAffordance = oldAffordance;
+    this.newAffordance = newAffordance;
+
+    this.formsChanged = !oldAffordance.getForms().equals(newAffordance.getForms());
+    this.schemasChanged = !haveSameSchemas(oldAffordance, newAffordance);
+    this.metadataChanged = !oldAffordance.getTitle().equals(newAffordance.getTitle())
+      || !new HashSet<>(oldAffordance.getSemanticTypes())
+        .equals(new HashSet<>(newAffordance.getSemanticTypes()))
+      || isObservable(oldAffordance) != isObservable(newAffordance);
+  }
+
+  public String getName() {
+    return newAffordance.getName();
+  }
+
+  public T getOldAffordance() {
+    return oldAffordance;
+  }
+
+  public T getNewAffordance() {
+    return newAffordance;
+  }
+
+  /**
+   * Checks if the forms of the affordance changed. Operations bound to the old forms should be
+   * rebound.
+   *
+   * @return true if the forms changed
+   */
+  public boolean isFormsChanged() {
+    return formsChanged;
+  }
+
+  /**
+   * Checks if any of the data schemas of the affordance changed, including URI variables.
+   *
+   * @return true if the data schemas changed
+   */
+  public boolean isSchemasChanged() {
+    return schemasChanged;
+  }
+
+  /**
+   * Checks if the title, the semantic types, or (for properties) the <code>observable</code> flag of
+   * the affordance changed.
+   *
+   * @return true if the metadata of the affordance changed
+   */
+  public boolean isMetadataChanged() {
+    return metadataChanged;
+  }
+
+  @Override
+  public String toString() {
+    return "AffordanceChange{name=" + getName() + ", formsChanged=" + formsChanged
+      + ", schemasChanged=" + schemasChanged + ", metadataChanged=" + metadataChanged + "}";
+  }
+
+  private static boolean isObservable(InteractionAffordance affordance) {
+    return affordance instanceof PropertyAffordance && ((PropertyAffordance) affordance).isObservable();
+  }
+
+  private static boolean haveSameSchemas(InteractionAffordance oldAffordance,
+                                         InteractionAffordance newAffordance) {
+    if (!oldAffordance.getUriVariables().equals(newAffordance.getUriVariables())) {
+      return false;
+    }
+
+    if (oldAffordance instanceof PropertyAffordance) {
+      return Objects.equals(((PropertyAffordance) oldAffordance).getDataSchema(),
+        ((PropertyAffordance) newAffordance).getDataSchema());
+    }
+
+    if (oldAffordance instanceof ActionAffordance) {
+      ActionAffordance oldAction = (ActionAffordance) oldAffordance;
+      ActionAffordance newAction = (ActionAffordance) newAffordance;
+
+      return oldAction.getInputSchema().equals(newAction.getInputSchema())
+        && oldAction.getOutputSchema().equals(newAction.getOutputSchema());
+    }
+
+    if (oldAffordance instanceof EventAffordance) {
+      EventAffordance oldEvent = (EventAffordance) oldAffordance;
+      EventAffordance newEvent = (EventAffordance) newAffordance;
+
+      return oldEvent.getSubscriptionSchema().equals(newEvent.getSubscriptionSchema())
+        && oldEvent.getNotificationSchema().equals(newEvent.getNotificationSchema())
+        && oldEvent.getCancellationSchema().equals(newEvent.getCancellationSchema());
+    }
+
+    return true;
+  }
+}
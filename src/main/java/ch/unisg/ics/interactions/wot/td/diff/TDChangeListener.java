@@ -0,0 +1,54 @@
+package ch.unisg.ics.interactions.wot.td.diff;
+
+import ch.unisg.ics.interactions.wot.td.ThingDescription;
+import ch.unisg.ics.interactions.wot.td.affordances.InteractionAffordance;
+
+/**
+ * Listener notified about the changes between two versions of a TD (see {@link TDDiff#dispatch}).
+ * All methods have an empty default implementation, such that listeners only need to implement the
+ * notifications they are interested in. Affordances can be told apart by their class (e.g.
+ * <code>PropertyAffordance</code>).
+ */
+public interface TDChangeListener {
+
+  /**
+   * Called for each affordance present only in the new version of the TD.
+   *
+   * @param td the new version of the TD
+   * @param affordance the added affordance
+   */
+  default void onAffordanceAdded(ThingDescription td, InteractionAffordance affordance) { }
+
+  /**
+   * Called for each affordance present only in the old version of the TD.
+   *
+   * @param td the new version of the TD (<code>null</code> if the Thing was removed)
+   * @param affordance the removed affordance
+   */
+  default void onAffordanceRemoved(ThingDescription td, InteractionAffordance affordance) { }
+
+  /**
+   * Called for each affordance present in both versions of the TD, but with different content.
+   *
+   * @param td the new version of the TD
+   * @param change the change of the affordance
+   */
+  default void onAffordanceChanged(ThingDescription td,
+                                   AffordanceChange<? extends InteractionAffordance> change) { }
+
+  /**
+   * Called once if the security definitions or the applied security schemes changed.
+   *
+   * @param td the new version of the TD
+   * @param diff the diff between the two versions
+   */
+  default void onSecurityChanged(ThingDescription td, TDDiff diff) { }
+
+  /**
+   * Called once if the title, the URI, the base URI, or the semantic types of the Thing changed.
+   *
+   * @param td the new version of the TD
+   * @param diff the diff between the two versions
+   */
+  default void onMetadataChanged(ThingDescription td, TDDiff diff) { }
+}
@@ -0,0 +1,82 @@
+package ch.unisg.ics.interactions.wot.td.diff;
+
+import ch.unisg.ics.interactions.wot.td.ThingDescription;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Keeps track of the latest version of a set of TDs and notifies registered listeners about the
+ * changes between consecutive versions. TDs are identified by a key chosen by the caller (e.g. the
+ * URI of the Thing or the URL of its TD).
+ * <p>
+ * Updates are applied in order, and listeners are notified of the changes of an update before the
+ * next update is applied.
+ */
+public class TDChangeTracker {
+  private final Map<String, ThingDescription> tds;
+  private final List<TDChangeListener> listeners;
+
+  public TDChangeTracker() {
+    this.tds = new HashMap<>();
+    this.listeners = new CopyOnWriteArrayList<>();
+  }
+
+  public void addListener(TDChangeListener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(TDChangeListener listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * Replaces the TD registered for the given key and notifies the listeners about the changes. If
+   * no TD was registered for the key, all the affordances of the TD are notified as added.
+   *
+   * @param key the key of the TD
+   * @param td the new version of the TD
+   * @return the diff between the previous and the new version of the TD
+   */
+  public synchronized TDDiff update(String key, ThingDescription td) {
+    if (td == null) {
+      throw new IllegalArgumentException("The TD cannot be null, use remove() to remove a TD.");
+    }
+
+    TDDiff diff = TDDiff.compute(tds.put(key, td), td);
+    dispatch(diff);
+
+    return diff;
+  }
+
+  /**
+   * Removes the TD registered for the given key and notifies the listeners that all its affordances
+   * were removed.
+   *
+   * @param key the key of the TD
+   * @return the diff between the removed TD and no TD (empty if no TD was registered for the key)
+   */
+  public synchronized TDDiff remove(String key) {
+    TDDiff diff = TDDiff.compute(tds.remove(key), null);
+    dispatch(diff);
+
+    return diff;
+  }
+
+  public synchronized Optional<ThingDescription> get(String key) {
+    return Optional.ofNullable(tds.get(key));
+  }
+
+  public synchronized int size() {
+    return tds.size();
+  }
+
+  private void dispatch(TDDiff diff) {
+    for (TDChangeListener listener : listeners) {
+      diff.dispatch(listener);
+    }
+  }
+}
@@ -0,0 +1,308 @@
+package ch.unisg.ics.interactions.wot.td.diff;
+
+import ch.unisg.ics.interactions.wot.td.ThingDescription;
+import ch.unisg.ics.interactions.wot.td.affordances.ActionAffordance;
+import ch.unisg.ics.interactions.wot.td.affordances.EventAffordance;
+import ch.unisg.ics.interactions.wot.td.affordances.InteractionAffordance;
+import ch.unisg.ics.interactions.wot.td.affordances.PropertyAffordance;
+import ch.unisg.ics.interactions.wot.td.security.SecurityScheme;
+
+import java.util.*;
+
+/**
+ * The differences between two versions of a TD: added, removed, and changed interaction affordances
+ * (matched by name), security definitions (matched by name), and changes of the Thing's metadata.
+ * <p>
+ * Diffs are computed with {@link #compute(ThingDescription, ThingDescription)} and rely on the
+ * fingerprints of TDs and affordances: if two TDs have the same fingerprint the diff is empty and
+ * computed in constant time, otherwise the affordances are matched by name and only the affordances
+ * with different fingerprints are compared in detail.
+ */
+public class TDDiff {
+  private final Optional<ThingDescription> oldTd;
+  private final Optional<ThingDescription> newTd;
+
+  private final AffordanceDiff<PropertyAffordance> properties;
+  private final AffordanceDiff<ActionAffordance> actions;
+  private final AffordanceDiff<EventAffordance> events;
+
+  private final Map<String, SecurityScheme> addedSecurityDefinitions;
+  private final Map<String, SecurityScheme> removedSecurityDefinitions;
+  private final Set<String> changedSecurityDefinitions;
+  private final boolean appliedSecurityChanged;
+
+  private final boolean metadataChanged;
+
+  private TDDiff(Optional<ThingDescription> oldTd, Optional<ThingDescription> newTd) {
+    this.oldTd = oldTd;
+    this.newTd = newTd;
+
+    this.properties = new AffordanceDiff<>(oldTd.map(ThingDescription::getProperties),
+      newTd.map(ThingDescription::getProperties));
+    this.actions = new AffordanceDiff<>(oldTd.map(ThingDescription::getActions),
+      newTd.map(ThingDescription::getActions));
+    this.events = new AffordanceDiff<>(oldTd.map(ThingDescription::getEvents),
+      newTd.map(ThingDescription::getEvents));
+
+    Map<String, SecurityScheme> oldDefinitions = oldTd.map(ThingDescription::getSecurityDefinitions)
+      .orElse(Collections.emptyMap());
+    Map<String, SecurityScheme> newDefinitions = newTd.map(ThingDescription::getSecurityDefinitions)
+      .orElse(Collections.emptyMap());
+
+    this.addedSecurityDefinitions = new HashMap<>();
+    this.removedSecurityDefinitions = new HashMap<>();
+    this.changedSecurityDefinitions = new HashSet<>();
+
+    for (Map.Entry<String, SecurityScheme> entry : newDefinitions.entrySet()) {
+      SecurityScheme oldScheme = oldDefinitions.get(entry.getKey());
+
+      if (oldScheme == null) {
+        addedSecurityDefinitions.put(entry.getKey(), entry.getValue());
+      } else if (!oldScheme.equals(entry.getValue())) {
+        changedSecurityDefinitions.add(entry.getKey());
+      }
+    }
+
+    for (Map.Entry<String, SecurityScheme> entry : oldDefinitions.entrySet()) {
+      if (!newDefinitions.containsKey(entry.getKey())) {
+        removedSecurityDefinitions.put(entry.getKey(), entry.getValue());
+      }
+    }
+
+    this.appliedSecurityChanged = !oldTd.map(ThingDescription::getSecuritySchemes)
+      .equals(newTd.map(ThingDescription::getSecuritySchemes));
+
+    this.metadataChanged = !oldTd.map(TDDiff::getMetadata).equals(newTd.map(TDDiff::getMetadata));
+  }
+
+  private TDDiff(ThingDescription td) {
+    this.oldTd = Optional.of(td);
+    this.newTd = Optional.of(td);
+
+    this.properties = new AffordanceDiff<>();
+    this.actions = new AffordanceDiff<>();
+    this.events = new AffordanceDiff<>();
+
+    this.addedSecurityDefinitions = Collections.emptyMap();
+    this.removedSecurityDefinitions = Collections.emptyMap();
+    this.changedSecurityDefinitions = Collections.emptySet();
+    this.appliedSecurityChanged = false;
+
+    this.metadataChanged = false;
+  }
+
+  /**
+   * Computes the diff between two versions of a TD. Either version can be <code>null</code>: a
+   * missing old version means that the Thing was added (all its affordances are added), a missing
+   * new version means that the Thing was removed (all its affordances are removed).
+   *
+   * @param oldTd the old version of the TD (can be <code>null</code>)
+   * @param newTd the new version of the TD (can be <code>null</code>)
+   * @return the diff
+   */
+  public static TDDiff compute(ThingDescription oldTd, ThingDescription newTd) {
+    if (oldTd != null && newTd != null && oldTd.getFingerprint().equals(newTd.getFingerprint())) {
+      return new TDDiff(newTd);
+    }
+
+    return new TDDiff(Optional.ofNullable(oldTd), Optional.ofNullable(newTd));
+  }
+
+  public Optional<ThingDescription> getOldThingDescription() {
+    return oldTd;
+  }
+
+  public Optional<ThingDescription> getNewThingDescription() {
+    return newTd;
+  }
+
+  /**
+   * Checks if the two versions of the TD have the same content.
+   *
+   * @return true if nothing changed
+   */
+  public boolean isEmpty() {
+    return properties.isEmpty() && actions.isEmpty() && events.isEmpty() && !isSecurityChanged()
+      && !metadataChanged;
+  }
+
+  public List<PropertyAffordance> getAddedProperties() {
+    return properties.added;
+  }
+
+  public List<PropertyAffordance> getRemovedProperties() {
+    return properties.removed;
+  }
+
+  public List<AffordanceChange<PropertyAffordance>> getChangedProperties() {
+    return properties.changed;
+  }
+
+  public List<ActionAffordance> getAddedActions() {
+    return actions.added;
+  }
+
+  public List<ActionAffordance> getRemovedActions() {
+    return actions.removed;
+  }
+
+  public List<AffordanceChange<ActionAffordance>> getChangedActions() {
+    return actions.changed;
+  }
+
+  public List<EventAffordance> getAddedEvents() {
+    return events.added;
+  }
+
+  public List<EventAffordance> getRemovedEvents() {
+    return events.removed;
+  }
+
+  public List<AffordanceChange<EventAffordance>> getChangedEvents() {
+    return events.changed;
+  }
+
+  public Map<String, SecurityScheme> getAddedSecurityDefinitions() {
+    return addedSecurityDefinitions;
+  }
+
+  public Map<String, SecurityScheme> getRemovedSecurityDefinitions() {
+    return removedSecurityDefinitions;
+  }
+
+  /**
+   * Gets the names of the security definitions present in both versions of the TD, but with
+   * different security schemes.
+   *
+   * @return the set of names
+   */
+  public Set<String> getChangedSecurityDefinitions() {
+    return changedSecurityDefinitions;
+  }
+
+  /**
+   * Checks if the security definitions or the security schemes applied to the Thing changed.
+   *
+   * @return true if the security changed
+   */
+  public boolean isSecurityChanged() {
+    return appliedSecurityChanged || !addedSecurityDefinitions.isEmpty()
+      || !removedSecurityDefinitions.isEmpty() || !changedSecurityDefinitions.isEmpty();
+  }
+
+  /**
+   * Checks if the title, the URI, the base URI, or the semantic types of the Thing changed.
+   *
+   * @return true if the metadata changed
+   */
+  public boolean isMetadataChanged() {
+    return metadataChanged;
+  }
+
+  /**
+   * Notifies a listener about all the changes in this diff: removed affordances first, then changed
+   * and added affordances, and finally changes of the security and of the metadata.
+   *
+   * @param listener the listener to notify
+   */
+  public void dispatch(TDChangeListener listener) {
+    if (isEmpty()) {
+      return;
+    }
+
+    ThingDescription td = newTd.orElse(null);
+
+    for (InteractionAffordance affordance : properties.removed) {
+      listener.onAffordanceRemoved(td, affordance);
+    }
+    for (InteractionAffordance affordance : actions.removed) {
+      listener.onAffordanceRemoved(td, affordance);
+    }
+    for (InteractionAffordance affordance : events.removed) {
+      listener.onAffordanceRemoved(td, affordance);
+    }
+
+    for (AffordanceChange<? extends InteractionAffordance> change : properties.changed) {
+      listener.onAffordanceChanged(td, change);
+    }
+    for (AffordanceChange<? extends InteractionAffordance> change : actions.changed) {
+      listener.onAffordanceChanged(td, change);
+    }
+    for (AffordanceChange<? extends InteractionAffordance> change : events.changed) {
+      listener.onAffordanceChanged(td, change);
+    }
+
+    for (InteractionAffordance affordance : properties.added) {
+      listener.onAffordanceAdded(td, affordance);
+    }
+    for (InteractionAffordance affordance : actions.added) {
+      listener.onAffordanceAdded(td, affordance);
+    }
+    for (InteractionAffordance affordance : events.added) {
+      listener.onAffordanceAdded(td, affordance);
+    }
+
+    if (isSecurityChanged()) {
+      listener.onSecurityChanged(td, this);
+    }
+
+    if (metadataChanged) {
+      listener.onMetadataChanged(td, this);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "TDDiff{properties=" + properties + ", actions=" + actions + ", events=" + events
+      + ", securityChanged=" + isSecurityChanged() + ", metadataChanged=" + metadataChanged + "}";
+  }
+
+  private static List<Object> getMetadata(ThingDescription td) {
+    return Arrays.asList(td.getTitle(), td.getThingURI(), td.getBaseURI(), td.getSemanticTypes());
+  }
+
+  private static final class AffordanceDiff<T extends InteractionAffordance> {
+    private final List<T> added;
+    private final List<T> removed;
+    private final List<AffordanceChange<T>> changed;
+
+    private AffordanceDiff() {
+      this.added = Collections.emptyList();
+      this.removed = Collections.emptyList();
+      this.changed = Collections.emptyList();
+    }
+
+    private AffordanceDiff(Optional<List<T>> oldAffordances, Optional<List<T>> newAffordances) {
+      this.added = new ArrayList<>();
+      this.removed = new ArrayList<>();
+      this.changed = new ArrayList<>();
+
+      Map<String, T> oldByName = new LinkedHashMap<>();
+      for (T affordance : oldAffordances.orElse(Collections.emptyList())) {
+        oldByName.put(affordance.getName(), affordance);
+      }
+
+      for (T affordance : newAffordances.orElse(Collections.emptyList())) {
+        T oldAffordance = oldByName.remove(affordance.getName());
+
+        if (oldAffordance == null) {
+          added.add(affordance);
+        } else if (!oldAffordance.getFingerprint().equals(affordance.getFingerprint())) {
+          changed.add(new AffordanceChange<>(oldAffordance, affordance));
+        }
+      }
+
+      removed.addAll(oldByName.values());
+    }
+
+    private boolean isEmpty() {
+      return added.isEmpty() && removed.isEmpty() && changed.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+      return "{added=" + added.size() + ", removed=" + removed.size() + ", changed=" + changed.size()
+        + "}";
+    }
+  }
+}
@@ -0,0 +1,438 @@
+package ch.unisg.ics.interactions.wot.td.directory;
+
+import ch.unisg.ics.interactions.wot.td.ThingDescription;
+import ch.unisg.ics.interactions.wot.td.affordances.ActionAffordance;
+import ch.unisg.ics.interactions.wot.td.affordances.EventAffordance;
+import ch.unisg.ics.interactions.wot.td.affordances.Form;
+import ch.unisg.ics.interactions.wot.td.affordances.InteractionAffordance;
+import ch.unisg.ics.interactions.wot.td.affordances.PropertyAffordance;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An in-memory directory of TDs that supports conjunctive queries over the TDs' Things, interaction
+ * affordances, and forms (e.g. "all the actions of type X that can be invoked over CoAP").
+ * <p>
+ * The directory assigns an integer identifier to every form of every registered TD (and to every
+ * Thing, for queries that only constrain the Thing) and maintains inverted indexes from Thing types,
+ * affordance types, affordance kinds, operation types, protocols, and content types to
+ * <code>java.util.BitSet</code>s of identifiers. A query intersects the bitsets of its constraints,
+ * such that all the constraints are evaluated on the same form. Identifiers of removed TDs are
+ * recycled, which keeps the bitsets dense.
+ * <p>
+ * TDs are registered with a key chosen by the caller (e.g. the URI of the Thing). The directory is
+ * thread-safe: queries run concurrently, while registrations and removals are exclusive.
+ */
+public class TDDirectory {
+  private final Map<String, ThingDescription> tds;
+  private final Map<String, int[]> idsByKey;
+
+  private final List<Entry> entries;
+  private final BitSet thingIds;
+  private final BitSet freeIds;
+
+  private final Map<Dimension, Map<String, BitSet>> indexes;
+
+  private final ReadWriteLock lock;
+
+  public TDDirectory() {
+    this.tds = new HashMap<>();
+    this.idsByKey = new HashMap<>();
+
+    this.entries = new ArrayList<>();
+    this.thingIds = new BitSet();
+    this.freeIds = new BitSet();
+
+    this.indexes = new EnumMap<>(Dimension.class);
+    for (Dimension dimension : Dimension.values()) {
+      indexes.put(dimension, new HashMap<>());
+    }
+
+    this.lock = new ReentrantReadWriteLock();
+  }
+
+  /**
+   * Registers a TD with the given key. If a TD was already registered with the same key, it is
+   * replaced.
+   *
+   * @param key the key of the TD
+   * @param td the TD to register
+   */
+  public void add(String key, ThingDescription td) {
+    lock.writeLock().lock();
+    try {
+      removeEntries(key);
+
+      List<Integer> ids = new ArrayList<>();
+      ids.add(addEntry(new Entry(key, td, null, null)));
+
+      addAffordances(key, td, td.getProperties(), ids);
+      addAffordances(key, td, td.getActions(), ids);
+      addAffordances(key, td, td.getEvents(), ids);
+
+      tds.put(key, td);
+      idsByKey.put(key, ids.stream().mapToInt(Integer::intValue).toArray());
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Removes the TD registered with the given key, if any.
+   *
+   * @param key the key of the TD
+   * @return an <code>Optional</code> with the removed TD (empty if not found)
+   */
+  public Optional<ThingDescription> remove(String key) {
+    lock.writeLock().lock();
+    try {
+      removeEntries(key);
+      return Optional.ofNullable(tds.remove(key));
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public Optional<ThingDescription> get(String key) {
+    lock.readLock().lock();
+    try {
+      return Optional.ofNullable(tds.get(key));
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return tds.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Creates a new query over this directory.
+   *
+   * @return the query builder
+   */
+  public Query query() {
+    return new Query();
+  }
+
+  private <T extends InteractionAffordance> void addAffordances(String key, ThingDescription td,
+                                                                List<T> affordances, List<Integer> ids) {
+    for (T affordance : affordances) {
+      for (Form form : affordance.getForms()) {
+        ids.add(addEntry(new Entry(key, td, affordance, form)));
+      }
+    }
+  }
+
+  private int addEntry(Entry entry) {
+    int id = freeIds.nextSetBit(0);
+
+    if (id < 0) {
+      id = entries.size();
+      entries.add(entry);
+    } else {
+      freeIds.clear(id);
+      entries.set(id, entry);
+    }
+
+    for (String type : entry.td.getSemanticTypes()) {
+      index(entry, Dimension.THING_TYPE, type, id);
+    }
+
+    if (entry.affordance == null) {
+      thingIds.set(id);
+    } else {
+      index(entry, Dimension.AFFORDANCE_KIND, getKind(entry.affordance), id);
+
+      for (String type : entry.affordance.getSemanticTypes()) {
+        index(entry, Dimension.AFFORDANCE_TYPE, type, id);
+      }
+
+      for (String operationType : entry.form.getOperationTypes()) {
+        index(entry, Dimension.OPERATION_TYPE, operationType, id);
+      }
+
+      index(entry, Dimension.CONTENT_TYPE, entry.form.getContentType(), id);
+
+      Optional<String> protocol = entry.form.getProtocol();
+      if (protocol.isPresent()) {
+        index(entry, Dimension.PROTOCOL, protocol.get(), id);
+      }
+    }
+
+    return id;
+  }
+
+  private void removeEntries(String key) {
+    int[] ids = idsByKey.remove(key);
+    if (ids == null) {
+      return;
+    }
+
+    for (int id : ids) {
+      Entry entry = entries.get(id);
+
+      // Only the bitsets the entry was indexed in need to be updated
+      for (int i = 0; i < entry.dimensions.size(); i++) {
+        Map<String, BitSet> index = indexes.get(entry.dimensions.get(i));
+        String value = entry.values.get(i);
+        BitSet bits = index.get(value);
+
+        bits.clear(id);
+        if (bits.isEmpty()) {
+          index.remove(value);
+        }
+      }
+
+      thingIds.clear(id);
+      freeIds.set(id);
+      entries.set(id, null);
+    }
+  }
+
+  private void index(Entry entry, Dimension dimension, String value, int id) {
+    BitSet bits = indexes.get(dimension).computeIfAbsent(value, k -> new BitSet());
+
+    if (!bits.get(id)) {
+      bits.set(id);
+      entry.dimensions.add(dimension);
+      entry.values.add(value);
+    }
+  }
+
+  private static String getKind(InteractionAffordance affordance) {
+    if (affordance instanceof PropertyAffordance) {
+      return InteractionAffordance.PROPERTY;
+    } else if (affordance instanceof ActionAffordance) {
+      return InteractionAffordance.ACTION;
+    } else if (affordance instanceof EventAffordance) {
+      return InteractionAffordance.EVENT;
+    }
+
+    return affordance.getClass().getName();
+  }
+
+  private enum Dimension {
+    THING_TYPE,
+    AFFORDANCE_KIND,
+    AFFORDANCE_TYPE,
+    OPERATION_TYPE,
+    PROTOCOL,
+    CONTENT_TYPE
+  }
+
+  private static final class Entry {
+    private final String key;
+    private final ThingDescription td;
+    private final InteractionAffordance affordance;
+    private final Form form;
+
+    // The index keys of the entry, used to remove it from the indexes
+    private final List<Dimension> dimensions;
+    private final List<String> values;
+
+    private Entry(String key, ThingDescription td, InteractionAffordance affordance, Form form) {
+      this.key = key;
+      this.td = td;
+      this.affordance = affordance;
+      this.form = form;
+      this.dimensions = new ArrayList<>();
+      this.values = new ArrayList<>();
+    }
+  }
+
+  /**
+   * A match of a query: a form of an interaction affordance of a registered TD.
+   */
+  public static final class Match {
+    private final String key;
+    private final ThingDescription td;
+    private final InteractionAffordance affordance;
+    private final Form form;
+
+    private Match(Entry entry) {
+      this.key = entry.key;
+      this.td = entry.td;
+      this.affordance = entry.affordance;
+      this.form = entry.form;
+    }
+
+    public String getKey() {
+      return key;
+    }
+
+    public ThingDescription getThingDescription() {
+      return td;
+    }
+
+    public InteractionAffordance getAffordance() {
+      return affordance;
+    }
+
+    public Form getForm() {
+      return form;
+    }
+  }
+
+  /**
+   * Helper class used to construct and run a conjunctive query over a <code>TDDirectory</code>.
+   * Constraints on affordances and forms are evaluated on the same form, e.g. a query for the
+   * operation type <code>td:invokeAction</code> and the protocol <code>CoAP</code> matches only
+   * actions with a CoAP form for invoking the action.
+   * <p>
+   * Implements a fluent API.
+   */
+  public final class Query {
+    private final Map<Dimension, List<String>> constraints;
+    private boolean affordanceRequired;
+
+    private Query() {
+      this.constraints = new EnumMap<>(Dimension.class);
+      this.affordanceRequired = false;
+    }
+
+    public Query withThingType(String type) {
+      return with(Dimension.THING_TYPE, type, false);
+    }
+
+    public Query withProperty() {
+      return with(Dimension.AFFORDANCE_KIND, InteractionAffordance.PROPERTY, true);
+    }
+
+    public Query withAction() {
+      return with(Dimension.AFFORDANCE_KIND, InteractionAffordance.ACTION, true);
+    }
+
+    public Query withEvent() {
+      return with(Dimension.AFFORDANCE_KIND, InteractionAffordance.EVENT, true);
+    }
+
+    public Query withAffordanceType(String type) {
+      return with(Dimension.AFFORDANCE_TYPE, type, true);
+    }
+
+    public Query withOperationType(String operationType) {
+      return with(Dimension.OPERATION_TYPE, operationType, true);
+    }
+
+    public Query withProtocol(String protocol) {
+      return with(Dimension.PROTOCOL, protocol, true);
+    }
+
+    public Query withContentType(String contentType) {
+      return with(Dimension.CONTENT_TYPE, contentType, true);
+    }
+
+    /**
+     * Runs the query and returns the matching forms. If the query does not constrain affordances or
+     * forms, one match is returned per matching Thing (with no affordance and no form).
+     *
+     * @return the list of matches
+     */
+    public List<Match> findMatches() {
+      lock.readLock().lock();
+      try {
+        BitSet ids = evaluate();
+        List<Match> matches = new ArrayList<>(ids.cardinality());
+
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+          matches.add(new Match(entries.get(id)));
+        }
+
+        return matches;
+      } finally {
+        lock.readLock().unlock();
+      }
+    }
+
+    /**
+     * Runs the query and returns the TDs with at least one match.
+     *
+     * @return the list of matching TDs
+     */
+    public List<ThingDescription> findThings() {
+      lock.readLock().lock();
+      try {
+        BitSet ids = evaluate();
+        Set<String> keys = new LinkedHashSet<>();
+        List<ThingDescription> things = new ArrayList<>();
+
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+          Entry entry = entries.get(id);
+
+          if (keys.add(entry.key)) {
+            things.add(entry.td);
+          }
+        }
+
+        return things;
+      } finally {
+        lock.readLock().unlock();
+      }
+    }
+
+    /**
+     * Runs the query and returns the number of matches.
+     *
+     * @return the number of matches
+     */
+    public int count() {
+      lock.readLock().lock();
+      try {
+        return evaluate().cardinality();
+      } finally {
+        lock.readLock().unlock();
+      }
+    }
+
+    private Query with(Dimension dimension, String value, boolean onAffordance) {
+      constraints.computeIfAbsent(dimension, k -> new ArrayList<>()).add(value);
+      affordanceRequired |= onAffordance;
+      return this;
+    }
+
+    private BitSet evaluate() {
+      List<BitSet> sets = new ArrayList<>();
+
+      for (Map.Entry<Dimension, List<String>> constraint : constraints.entrySet()) {
+        Map<String, BitSet> index = indexes.get(constraint.getKey());
+
+        for (String value : constraint.getValue()) {
+          BitSet bits = index.get(value);
+
+          if (bits == null) {
+            return new BitSet();
+          }
+
+          sets.add(bits);
+        }
+      }
+
+      if (sets.isEmpty()) {
+        return (BitSet) thingIds.clone();
+      }
+
+      // Start from the most selective constraint
+      sets.sort(Comparator.comparingInt(BitSet::cardinality));
+
+      BitSet result = (BitSet) sets.get(0).clone();
+      for (int i = 1; i < sets.size() && !result.isEmpty(); i++) {
+        result.and(sets.get(i));
+      }
+
+      // Queries that only constrain the Thing match the Thing entries
+      if (!affordanceRequired) {
+        result.and(thingIds);
+      }
+
+      return result;
+    }
+  }
+}
@@ -0,0 +1,24 @@
+package ch.unisg.ics.interactions.wot.td.io;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Computes digests of TD representations, used to detect identical representations without parsing
+ * them.
+ */
+final class ContentDigest {
+
+  private static final String ALGORITHM = "SHA-256";
+
+  static byte[] of(String content) {
+    try {
+      return MessageDigest.getInstance(ALGORITHM).digest(content.getBytes(StandardCharsets.UTF_8));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(ALGORITHM + " is not supported by this JVM.", e);
+    }
+  }
+
+  private ContentDigest() { }
+}
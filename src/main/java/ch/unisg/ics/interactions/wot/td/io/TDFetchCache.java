@@ -0,0 +1,269 @@
+package ch.unisg.ics.interactions.wot.td.io;
+
+import ch.unisg.ics.interactions.wot.td.ThingDescription;
+import ch.unisg.ics.interactions.wot.td.ThingDescription.TDFormat;
+import org.apache.hc.client5.http.HttpResponseException;
+import org.apache.hc.client5.http.fluent.Request;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.ParseException;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A cache for TDs retrieved over HTTP, keyed by URL. The cache stores the parsed
+ * <code>ThingDescription</code> together with the validators sent by the server
+ * (<code>ETag</code> and <code>Last-Modified</code>):
+ * <ul>
+ *   <li>a TD is served from the cache without any request as long as it is fresh with respect to
+ *   the <code>max-age</code> directive of the <code>Cache-Control</code> header</li>
+ *   <li>stale TDs are revalidated with a conditional request; a <code>304 Not Modified</code>
+ *   response refreshes the cached entry without re-parsing the TD</li>
+ *   <li>if the server does not support validators, the representation is parsed only if its content
+ *   differs from the cached one</li>
+ * </ul>
+ * Memory is bounded by evicting the least recently used entries once the capacity is reached.
+ */
+public class TDFetchCache {
+
+  /**
+   * Default value for the maximum number of cached TDs.
+   */
+  public static final int DEFAULT_CAPACITY = 256;
+
+  private static final String MAX_AGE = "max-age";
+  private static final String NO_CACHE = "no-cache";
+  private static final String NO_STORE = "no-store";
+
+  private final Map<String, Entry> entries;
+
+  public TDFetchCache() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Creates a cache that holds at most <code>capacity</code> TDs.
+   *
+   * @param capacity the maximum number of cached TDs
+   */
+  public TDFetchCache(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("The capacity of the cache must be positive.");
+    }
+
+    this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        return size() > capacity;
+      }
+    };
+  }
+
+  /**
+   * Retrieves the TD available at the given URL, either from the cache or from the network.
+   *
+   * @param format the format of the TD representation
+   * @param url the URL of the TD
+   * @return the thing description
+   * @throws IOException if an I/O error occurs or if the server responds with an error status
+   */
+  public ThingDescription fetch(TDFormat format, String url) throws IOException {
+    Entry cached = lookup(url);
+
+    if (cached != null && cached.format != format) {
+      cached = null;
+    }
+
+    if (cached != null && cached.isFresh(System.currentTimeMillis())) {
+      return cached.td;
+    }
+
+    Request request = Request.get(url);
+
+    if (cached != null) {
+      if (cached.etag.isPresent()) {
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, cached.etag.get());
+      }
+
+      if (cached.lastModified.isPresent()) {
+        request.addHeader(HttpHeaders.IF_MODIFIED_SINCE, cached.lastModified.get());
+      }
+    }
+
+    FetchResult result = request.execute().handleResponse(FetchResult::fromResponse);
+
+    if (result.status == HttpStatus.SC_NOT_MODIFIED) {
+      if (cached == null) {
+        throw new IOException("Unexpected 304 response for an unconditional request: " + url);
+      }
+
+      // A 304 response may omit the validators, in which case the cached ones remain valid
+      Optional<String> etag = result.etag.isPresent() ? result.etag : cached.etag;
+      Optional<String> lastModified = result.lastModified.isPresent() ? result.lastModified
+        : cached.lastModified;
+
+      return store(url, format, result, cached.td, cached.digest, etag, lastModified);
+    }
+
+    byte[] digest = ContentDigest.of(result.content);
+    ThingDescription td = (cached != null && Arrays.equals(cached.digest, digest)) ? cached.td
+      : TDGraphReader.readFromString(format, result.content);
+
+    return store(url, format, result, td, digest, result.etag, result.lastModified);
+  }
+
+  /**
+   * Removes the TD cached for the given URL, if any.
+   *
+   * @param url the URL of the TD
+   */
+  public void invalidate(String url) {
+    synchronized (entries) {
+      entries.remove(url);
+    }
+  }
+
+  /**
+   * Removes all cached TDs.
+   */
+  public void clear() {
+    synchronized (entries) {
+      entries.clear();
+    }
+  }
+
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  public boolean contains(String url) {
+    synchronized (entries) {
+      return entries.containsKey(url);
+    }
+  }
+
+  private Entry lookup(String url) {
+    synchronized (entries) {
+      return entries.get(url);
+    }
+  }
+
+  private ThingDescription store(String url, TDFormat format, FetchResult result, ThingDescription td,
+                                 byte[] digest, Optional<String> etag, Optional<String> lastModified) {
+    synchronized (entries) {
+      if (result.noStore) {
+        entries.remove(url);
+      } else {
+        entries.put(url, new Entry(format, td, digest, etag, lastModified,
+          System.currentTimeMillis() + result.maxAgeMillis));
+      }
+    }
+
+    return td;
+  }
+
+  private static final class Entry {
+    private final TDFormat format;
+    private final ThingDescription td;
+    private final byte[] digest;
+    private final Optional<String> etag;
+    private final Optional<String> lastModified;
+    private final long expiresAt;
+
+    private Entry(TDFormat format, ThingDescription td, byte[] digest, Optional<String> etag,
+                  Optional<String> lastModified, long expiresAt) {
+      this.format = format;
+      this.td = td;
+      this.digest = digest;
+      this.etag = etag;
+      this.lastModified = lastModified;
+      this.expiresAt = expiresAt;
+    }
+
+    private boolean isFresh(long now) {
+      return now < expiresAt;
+    }
+  }
+
+  private static final class FetchResult {
+    private final int status;
+    private final String content;
+    private final Optional<String> etag;
+    private final Optional<String> lastModified;
+    private final long maxAgeMillis;
+    private final boolean noStore;
+
+    private FetchResult(int status, String content, Optional<String> etag, Optional<String> lastModified,
+                        long maxAgeMillis, boolean noStore) {
+      this.status = status;
+      this.content = content;
+      this.etag = etag;
+      this.lastModified = lastModified;
+      this.maxAgeMillis = maxAgeMillis;
+      this.noStore = noStore;
+    }
+
+    private static FetchResult fromResponse(ClassicHttpResponse response) throws IOException {
+      int status = response.getCode();
+
+      if (status != HttpStatus.SC_NOT_MODIFIED && (status < 200 || status >= 300)) {
+        EntityUtils.consume(response.getEntity());
+        throw new HttpResponseException(status, response.getReasonPhrase());
+      }
+
+      String content = null;
+      if (status != HttpStatus.SC_NOT_MODIFIED) {
+        if (response.getEntity() == null) {
+          throw new IOException("Missing TD representation in response.");
+        }
+
+        try {
+          content = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
+        } catch (ParseException e) {
+          throw new IOException(e);
+        }
+      }
+
+      long maxAgeMillis = 0;
+      boolean noCache = false;
+      boolean noStore = false;
+
+      for (Header header : response.getHeaders(HttpHeaders.CACHE_CONTROL)) {
+        for (String directive : header.getValue().split(",")) {
+          String d = directive.trim().toLowerCase(Locale.ENGLISH);
+
+          if (d.equals(NO_STORE)) {
+            noStore = true;
+          } else if (d.equals(NO_CACHE)) {
+            noCache = true;
+          } else if (d.startsWith(MAX_AGE + "=")) {
+            try {
+              maxAgeMillis = Long.parseLong(d.substring(MAX_AGE.length() + 1).replace("\"", "")) * 1000;
+            } catch (NumberFormatException e) {
+              maxAgeMillis = 0;
+            }
+          }
+        }
+      }
+
+      return new FetchResult(status, content, headerValue(response, HttpHeaders.ETAG),
+        headerValue(response, HttpHeaders.LAST_MODIFIED), noCache ? 0 : Math.max(0, maxAgeMillis), noStore);
+    }
+
+    private static Optional<String> headerValue(ClassicHttpResponse response, String name) {
+      Header header = response.getFirstHeader(name);
+      return header == null ? Optional.empty() : Optional.of(header.getValue());
+    }
+  }
+}
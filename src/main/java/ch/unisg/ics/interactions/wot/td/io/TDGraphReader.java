@@ -21,7 +21,6 @@ import java.io.IOException;
 import java.io.StringReader;
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.sql.Timestamp;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -43,6 +42,21 @@ public class TDGraphReader {
     return readFromString(format, representation);
   }
 
+  /**
+   * Returns the TD available at the given URL using a {@link TDFetchCache}: the TD is retrieved over
+   * the network (and parsed) only if the cached copy is missing, stale, or changed on the server.
+   *
+   * @param format the format of the TD representation
+   * @param url the URL of the TD
+   * @param cache the cache used to store and revalidate TDs
+   * @return the thing description
+   * @throws IOException if an I/O error occurs or if the server responds with an error status
+   */
+  public static ThingDescription readFromURL(TDFormat format, String url, TDFetchCache cache)
+      throws IOException {
+    return cache.fetch(format, url);
+  }
+
   /**
    * Returns a ThingDescription object based on the path parameter that points to a file. Should the path be invalid
    * or if the file does not exist, an IOException is thrown.
@@ -66,6 +80,21 @@ public class TDGraphReader {
       reader = new TDGraphReader(RDFFormat.JSONLD, representation);
     }
 
+    return read(reader);
+  }
+
+  /**
+   * Returns a ThingDescription object based on an RDF graph that contains the thing description
+   * (e.g. a graph retrieved from an RDF store). IRIs in the graph are expected to be absolute.
+   *
+   * @param graph the RDF graph of the thing description
+   * @return the thing description
+   */
+  public static ThingDescription readFromModel(Model graph) {
+    return read(new TDGraphReader(graph));
+  }
+
+  private static ThingDescription read(TDGraphReader reader) {
     ThingDescription.Builder tdBuilder = new ThingDescription.Builder(reader.readThingTitle())
       .addSemanticTypes(reader.readThingTypes())
       .addSecuritySchemes(reader.readSecuritySchemes())
@@ -87,6 +116,20 @@ public class TDGraphReader {
     return tdBuilder.build();
   }
 
+  /**
+   * Returns the TD for the given representation using a {@link TDParseCache}: the representation is
+   * parsed only if no identical representation was read before through the same cache.
+   *
+   * @param format the format of the TD representation
+   * @param representation the TD representation
+   * @param cache the cache of parsed TDs
+   * @return the thing description
+   */
+  public static ThingDescription readFromString(TDFormat format, String representation,
+      TDParseCache cache) {
+    return cache.read(format, representation);
+  }
+
   TDGraphReader(RDFFormat format, String representation) {
     loadModel(format, representation, "");
 
@@ -95,8 +138,17 @@ public class TDGraphReader {
       loadModel(format, representation, baseURI.get());
     }
 
+    thingId = readThingId();
+  }
+
+  TDGraphReader(Model model) {
+    this.model = model;
+    thingId = readThingId();
+  }
+
+  private Resource readThingId() {
     try {
-      thingId = Models.subject(model.filter(null, rdf.createIRI(TD.hasSecurityConfiguration),
+      return Models.subject(model.filter(null, rdf.createIRI(TD.hasSecurityConfiguration),
           null)).get();
     } catch (NoSuchElementException e) {
       throw new InvalidTDException("Missing mandatory security definitions.", e);
@@ -165,7 +217,7 @@ public class TDGraphReader {
       throw new InvalidTDException("Missing mandatory security configuration.");
     }
 
-    Map<String, SecurityScheme> schemes = new HashMap<String, SecurityScheme>();
+    Map<Resource, SecurityScheme> schemes = new LinkedHashMap<Resource, SecurityScheme>();
 
     for (Resource schemeId : schemeIds) {
       SecurityScheme scheme;
@@ -194,14 +246,83 @@ public class TDGraphReader {
           throw new InvalidTDException("Unknown type of security scheme");
         }
 
-        String securityName = getUniqueSecurityName(scheme.getSchemeName());
-        schemes.put(securityName, scheme);
+        schemes.put(schemeId, scheme);
       } catch (Exception e) {
         throw new InvalidTDException("Invalid security scheme configuration", e);
       }
     }
 
-    return schemes;
+    return nameSecuritySchemes(schemes);
+  }
+
+  /*
+   * Security definition names are not preserved in the RDF graph. To keep parsing repeatable, names
+   * are derived deterministically: schemes identified by an IRI are named after its local name, and
+   * schemes identified by blank nodes are named after their scheme name (e.g. "basic"). If several
+   * schemes end up with the same name, they are ordered by their content and suffixed with an index
+   * (e.g. "basic_1", "basic_2").
+   */
+  private Map<String, SecurityScheme> nameSecuritySchemes(Map<Resource, SecurityScheme> schemes) {
+    Map<String, List<Map.Entry<Resource, SecurityScheme>>> candidates = new TreeMap<>();
+
+    for (Map.Entry<Resource, SecurityScheme> entry : schemes.entrySet()) {
+      String name = entry.getValue().getSchemeName();
+
+      if (entry.getKey() instanceof IRI) {
+        String localName = ((IRI) entry.getKey()).getLocalName();
+        if (!localName.isEmpty()) {
+          name = localName;
+        }
+      }
+
+      candidates.computeIfAbsent(name, k -> new ArrayList<>()).add(entry);
+    }
+
+    Map<String, SecurityScheme> names = new HashMap<String, SecurityScheme>();
+
+    for (Map.Entry<String, List<Map.Entry<Resource, SecurityScheme>>> candidate : candidates.entrySet()) {
+      List<Map.Entry<Resource, SecurityScheme>> entries = candidate.getValue();
+
+      if (entries.size() == 1) {
+        names.put(candidate.getKey(), entries.get(0).getValue());
+        continue;
+      }
+
+      entries.sort(Comparator.comparing(entry -> getCanonicalKey(entry.getKey(), entry.getValue())));
+
+      int index = 1;
+      for (Map.Entry<Resource, SecurityScheme> entry : entries) {
+        String name = candidate.getKey() + "_" + index++;
+        while (candidates.containsKey(name) || names.containsKey(name)) {
+          name = candidate.getKey() + "_" + index++;
+        }
+
+        names.put(name, entry.getValue());
+      }
+    }
+
+    return names;
+  }
+
+  private String getCanonicalKey(Resource schemeId, SecurityScheme scheme) {
+    StringBuilder key = new StringBuilder(scheme.getSchemeName());
+
+    if (schemeId instanceof IRI) {
+      key.append('|').append(schemeId.stringValue());
+    }
+
+    key.append('|').append(new TreeSet<>(scheme.getSemanticTypes()));
+
+    for (Map.Entry<String, Object> conf : new TreeMap<>(scheme.getConfiguration()).entrySet()) {
+      Object value = conf.getValue();
+      if (value instanceof Collection) {
+        value = ((Collection<?>) value).stream().map(String::valueOf).sorted().collect(Collectors.toList());
+      }
+
+      key.append('|').append(conf.getKey()).append('=').append(value);
+    }
+
+    return key.toString();
   }
 
   private SecurityScheme readTokenBasedSecurityScheme(TokenBasedSecurityScheme.Builder<?, ?> schemeBuilder, Resource schemeId,
@@ -635,10 +756,4 @@ public class TDGraphReader {
     return new StringReader(newStr);
   }
 
-  private String getUniqueSecurityName(String securitySchemeName) {
-    Timestamp timestamp = new Timestamp(System.currentTimeMillis());
-    Date date = new Date();
-    return securitySchemeName + "_" + timestamp.getTime();
-  }
-
 }
@@ -38,6 +38,16 @@ public class TDGraphWriter {
     return new TDGraphWriter(td).write();
   }
 
+  /**
+   * Converts a TD to an RDF graph, e.g. to store the TD in an RDF store.
+   *
+   * @param td the thing description
+   * @return the RDF graph of the thing description
+   */
+  public static Model toModel(ThingDescription td) {
+    return new TDGraphWriter(td).toModel();
+  }
+
   /**
    * Sets a prefix binding for a given namespace.
    *
@@ -51,6 +61,10 @@ public class TDGraphWriter {
   }
 
   public String write() {
+    return ReadWriteUtils.writeToString(RDFFormat.TURTLE, toModel());
+  }
+
+  public Model toModel() {
     return this.addTypes()
       .addTitle()
       .addSecurity()
@@ -59,7 +73,7 @@ public class TDGraphWriter {
       .addActions()
       .addEvents()
       .addGraph()
-      .write(RDFFormat.TURTLE);
+      .getModel();
   }
 
   private Model getModel() {
@@ -288,10 +302,6 @@ public class TDGraphWriter {
     }
   }
 
-  private String write(RDFFormat format) {
-    return ReadWriteUtils.writeToString(format, getModel());
-  }
-
   private String conversion(String str){
     String newStr = "";
     for (int i = 0; i<str.length();i++){
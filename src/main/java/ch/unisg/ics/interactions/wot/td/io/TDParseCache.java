@@ -0,0 +1,153 @@
+package ch.unisg.ics.interactions.wot.td.io;
+
+import ch.unisg.ics.interactions.wot.td.ThingDescription;
+import ch.unisg.ics.interactions.wot.td.ThingDescription.TDFormat;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An opt-in cache for parsed TDs, keyed by a content digest of the TD representation and its format.
+ * Reading a representation that was already parsed returns the previously constructed
+ * <code>ThingDescription</code>, such that receiving the same TD several times (e.g. for
+ * re-registrations or heartbeats) costs a hash computation instead of an RDF parse.
+ * <p>
+ * The size of the cache is bounded: the least recently used TDs are evicted first. The cache keeps
+ * track of hits, misses, and evictions, which can be used to monitor its effectiveness.
+ */
+public class TDParseCache {
+
+  /**
+   * Default value for the maximum number of cached TDs.
+   */
+  public static final int DEFAULT_CAPACITY = 1024;
+
+  private final Map<Key, ThingDescription> entries;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  public TDParseCache() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Creates a cache that holds at most <code>capacity</code> TDs.
+   *
+   * @param capacity the maximum number of cached TDs
+   */
+  public TDParseCache(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("The capacity of the cache must be positive.");
+    }
+
+    this.entries = new LinkedHashMap<Key, ThingDescription>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, ThingDescription> eldest) {
+        if (size() > capacity) {
+          evictions.increment();
+          return true;
+        }
+
+        return false;
+      }
+    };
+  }
+
+  /**
+   * Returns the TD for the given representation, which is parsed only if no TD was cached for an
+   * identical representation in the same format.
+   *
+   * @param format the format of the TD representation
+   * @param representation the TD representation
+   * @return the thing description
+   */
+  public ThingDescription read(TDFormat format, String representation) {
+    Key key = new Key(format, ContentDigest.of(representation));
+
+    ThingDescription td;
+    synchronized (entries) {
+      td = entries.get(key);
+    }
+
+    if (td != null) {
+      hits.increment();
+      return td;
+    }
+
+    misses.increment();
+    td = TDGraphReader.readFromString(format, representation);
+
+    synchronized (entries) {
+      ThingDescription concurrent = entries.putIfAbsent(key, td);
+      return concurrent == null ? td : concurrent;
+    }
+  }
+
+  /**
+   * Removes all cached TDs. Statistics are not reset.
+   */
+  public void clear() {
+    synchronized (entries) {
+      entries.clear();
+    }
+  }
+
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  public long getEvictionCount() {
+    return evictions.sum();
+  }
+
+  /**
+   * Gets the ratio of reads served from the cache.
+   *
+   * @return the hit rate, between 0 and 1 (0 if no TD was read yet)
+   */
+  public double getHitRate() {
+    long h = hits.sum();
+    long total = h + misses.sum();
+    return total == 0 ? 0 : (double) h / total;
+  }
+
+  private static final class Key {
+    private final TDFormat format;
+    private final byte[] digest;
+    private final int hash;
+
+    private Key(TDFormat format, byte[] digest) {
+      this.format = format;
+      this.digest = digest;
+      this.hash = 31 * format.hashCode() + Arrays.hashCode(digest);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof Key)) return false;
+
+      Key other = (Key) o;
+      return format == other.format && Arrays.equals(digest, other.digest);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+}
@@ -0,0 +1,533 @@
+package ch.unisg.ics.interactions.wot.td.io;
+
+import ch.unisg.ics.interactions.wot.td.ThingDescription;
+import ch.unisg.ics.interactions.wot.td.affordances.ActionAffordance;
+import ch.unisg.ics.interactions.wot.td.affordances.EventAffordance;
+import ch.unisg.ics.interactions.wot.td.affordances.Form;
+import ch.unisg.ics.interactions.wot.td.affordances.InteractionAffordance;
+import ch.unisg.ics.interactions.wot.td.affordances.PropertyAffordance;
+import ch.unisg.ics.interactions.wot.td.schemas.*;
+import ch.unisg.ics.interactions.wot.td.security.*;
+import ch.unisg.ics.interactions.wot.td.security.DigestSecurityScheme.QualityOfProtection;
+import ch.unisg.ics.interactions.wot.td.security.TokenBasedSecurityScheme.TokenLocation;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static ch.unisg.ics.interactions.wot.td.io.TDSnapshotWriter.*;
+
+/**
+ * A reader for TDs serialized with a {@link TDSnapshotWriter}. Reading a snapshot instantiates the
+ * TD directly from its binary representation, without any RDF parsing. Strings that occur several
+ * times in a TD (e.g. IRIs of operation types) are shared by all the objects of the TD.
+ * <p>
+ * Snapshots with an unknown magic number or a newer format version are rejected with an
+ * {@link InvalidTDException}.
+ */
+public class TDSnapshotReader {
+  private static final TokenLocation[] TOKEN_LOCATIONS = TokenLocation.values();
+  private static final QualityOfProtection[] QOP_VALUES = QualityOfProtection.values();
+
+  private final byte[] bytes;
+  private int position;
+  private String[] strings;
+
+  private TDSnapshotReader(byte[] bytes) {
+    this.bytes = bytes;
+    this.position = 0;
+  }
+
+  /**
+   * Reads a TD from a binary snapshot.
+   *
+   * @param snapshot the snapshot
+   * @return the thing description
+   * @throws InvalidTDException if the snapshot is not valid
+   */
+  public static ThingDescription read(byte[] snapshot) {
+    try {
+      return new TDSnapshotReader(snapshot).readSnapshot();
+    } catch (IndexOutOfBoundsException e) {
+      throw new InvalidTDException("Truncated TD snapshot.", e);
+    } catch (IllegalArgumentException e) {
+      // Corrupt values rejected by the builders (e.g. a negative number of items)
+      throw new InvalidTDException("Corrupt TD snapshot.", e);
+    }
+  }
+
+  /**
+   * Reads a TD from a stream that contains a binary snapshot. The stream is read until its end, but
+   * is not closed.
+   *
+   * @param in the input stream
+   * @return the thing description
+   * @throws IOException if an I/O error occurs reading from the stream
+   */
+  public static ThingDescription read(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+
+    int count;
+    while ((count = in.read(buffer)) != -1) {
+      out.write(buffer, 0, count);
+    }
+
+    return read(out.toByteArray());
+  }
+
+  private ThingDescription readSnapshot() {
+    for (byte b : MAGIC) {
+      if (bytes[position++] != b) {
+        throw new InvalidTDException("Not a TD snapshot.");
+      }
+    }
+
+    int version = readVarInt();
+    if (version > VERSION) {
+      throw new InvalidTDException("Unsupported TD snapshot version: " + version);
+    }
+
+    strings = new String[readCount()];
+    for (int i = 0; i < strings.length; i++) {
+      int length = readCount();
+      strings[i] = new String(bytes, position, length, StandardCharsets.UTF_8);
+      position += length;
+    }
+
+    ThingDescription.Builder builder = new ThingDescription.Builder(readString());
+
+    Optional<String> thingURI = readOptionalString();
+    if (thingURI.isPresent()) {
+      builder.addThingURI(thingURI.get());
+    }
+
+    Optional<String> baseURI = readOptionalString();
+    if (baseURI.isPresent()) {
+      builder.addBaseURI(baseURI.get());
+    }
+
+    builder.addSemanticTypes(readStrings(new HashSet<>()));
+
+    int definitionCount = readCount();
+    for (int i = 0; i < definitionCount; i++) {
+      String name = readString();
+      boolean applied = readBoolean();
+      builder.addSecurityScheme(name, readSecurityScheme(), applied);
+    }
+
+    int propertyCount = readCount();
+    for (int i = 0; i < propertyCount; i++) {
+      builder.addProperty(readProperty());
+    }
+
+    int actionCount = readCount();
+    for (int i = 0; i < actionCount; i++) {
+      builder.addAction(readAction());
+    }
+
+    int eventCount = readCount();
+    for (int i = 0; i < eventCount; i++) {
+      builder.addEvent(readEvent());
+    }
+
+    return builder.build();
+  }
+
+  private PropertyAffordance readProperty() {
+    PropertyAffordance.Builder builder = new PropertyAffordance.Builder(readString(), readForms());
+    readAffordance(builder);
+
+    builder.addDataSchema(readSchema());
+    if (readBoolean()) {
+      builder.addObserve();
+    }
+
+    return builder.build();
+  }
+
+  private ActionAffordance readAction() {
+    ActionAffordance.Builder builder = new ActionAffordance.Builder(readString(), readForms());
+    readAffordance(builder);
+
+    Optional<DataSchema> input = readOptionalSchema();
+    if (input.isPresent()) {
+      builder.addInputSchema(input.get());
+    }
+
+    Optional<DataSchema> output = readOptionalSchema();
+    if (output.isPresent()) {
+      builder.addOutputSchema(output.get());
+    }
+
+    return builder.build();
+  }
+
+  private EventAffordance readEvent() {
+    EventAffordance.Builder builder = new EventAffordance.Builder(readString(), readForms());
+    readAffordance(builder);
+
+    Optional<DataSchema> subscription = readOptionalSchema();
+    if (subscription.isPresent()) {
+      builder.addSubscriptionSchema(subscription.get());
+    }
+
+    Optional<DataSchema> notification = readOptionalSchema();
+    if (notification.isPresent()) {
+      builder.addNotificationSchema(notification.get());
+    }
+
+    Optional<DataSchema> cancellation = readOptionalSchema();
+    if (cancellation.isPresent()) {
+      builder.addCancellationSchema(cancellation.get());
+    }
+
+    return builder.build();
+  }
+
+  // The name and the forms are read first, as they are required by the affordance builders, which
+  // is why they come first in a snapshot
+  private void readAffordance(InteractionAffordance.Builder<?, ?> builder) {
+    Optional<String> title = readOptionalString();
+    if (title.isPresent()) {
+      builder.addTitle(title.get());
+    }
+
+    builder.addSemanticTypes(readStrings(new ArrayList<>()));
+
+    if (readBoolean()) {
+      builder.addUriVariables(readSchemas());
+    }
+  }
+
+  private List<Form> readForms() {
+    int count = readCount();
+    List<Form> forms = new ArrayList<>(count);
+
+    for (int i = 0; i < count; i++) {
+      Form.Builder builder = new Form.Builder(readString())
+        .setContentType(readString())
+        .addOperationTypes(readStrings(new HashSet<>()));
+
+      Optional<String> subProtocol = readOptionalString();
+      if (subProtocol.isPresent()) {
+        builder.addSubProtocol(subProtocol.get());
+      }
+
+      Optional<String> methodName = readOptionalString();
+      if (methodName.isPresent()) {
+        builder.setMethodName(methodName.get());
+      }
+
+      int propertyCount = readCount();
+      for (int j = 0; j < propertyCount; j++) {
+        builder.addProperty(readString(), readValue());
+      }
+
+      forms.add(builder.build());
+    }
+
+    return forms;
+  }
+
+  private Object readValue() {
+    int type = readVarInt();
+
+    switch (type) {
+      case VALUE_STRING:
+        return readString();
+      case VALUE_BOOLEAN:
+        return readBoolean();
+      case VALUE_LONG:
+        return readLong();
+      case VALUE_DOUBLE:
+        return Double.longBitsToDouble(readLong());
+      default:
+        throw new InvalidTDException("Unknown value type in TD snapshot: " + type);
+    }
+  }
+
+  private Optional<DataSchema> readOptionalSchema() {
+    return readBoolean() ? Optional.of(readSchema()) : Optional.empty();
+  }
+
+  private Map<String, DataSchema> readSchemas() {
+    int count = readCount();
+    Map<String, DataSchema> schemas = new HashMap<>();
+
+    for (int i = 0; i < count; i++) {
+      schemas.put(readString(), readSchema());
+    }
+
+    return schemas;
+  }
+
+  private List<DataSchema> readSchemaList() {
+    int count = readCount();
+    List<DataSchema> schemas = new ArrayList<>(count);
+
+    for (int i = 0; i < count; i++) {
+      schemas.add(readSchema());
+    }
+
+    return schemas;
+  }
+
+  private DataSchema readSchema() {
+    int type = readVarInt();
+
+    DataSchema.JsonSchemaBuilder<?, ?> builder;
+    switch (type) {
+      case SCHEMA_DATA:
+        builder = new DataSchema.Builder();
+        break;
+      case SCHEMA_OBJECT:
+        builder = new ObjectSchema.Builder();
+        break;
+      case SCHEMA_ARRAY:
+        builder = new ArraySchema.Builder();
+        break;
+      case SCHEMA_NUMBER:
+        builder = new NumberSchema.Builder();
+        break;
+      case SCHEMA_INTEGER:
+        builder = new IntegerSchema.Builder();
+        break;
+      case SCHEMA_STRING:
+        builder = new StringSchema.Builder();
+        break;
+      case SCHEMA_BOOLEAN:
+        builder = new BooleanSchema.Builder();
+        break;
+      case SCHEMA_NULL:
+        builder = new NullSchema.Builder();
+        break;
+      default:
+        throw new InvalidTDException("Unknown data schema type in TD snapshot: " + type);
+    }
+
+    builder.addSemanticTypes(readStrings(new HashSet<>()));
+    builder.addEnum(readStrings(new HashSet<>()));
+
+    Optional<String> contentMediaType = readOptionalString();
+    if (contentMediaType.isPresent()) {
+      builder.setContentMediaType(contentMediaType.get());
+    }
+
+    List<DataSchema> validSchemas = readSchemaList();
+    if (!validSchemas.isEmpty()) {
+      builder.oneOf(validSchemas.toArray(new DataSchema[0]));
+    }
+
+    if (builder instanceof ObjectSchema.Builder) {
+      ObjectSchema.Builder objectBuilder = (ObjectSchema.Builder) builder;
+
+      for (Map.Entry<String, DataSchema> property : readSchemas().entrySet()) {
+        objectBuilder.addProperty(property.getKey(), property.getValue());
+      }
+
+      objectBuilder.addRequiredProperties(readStrings(new ArrayList<>()).toArray(new String[0]));
+    } else if (builder instanceof ArraySchema.Builder) {
+      ArraySchema.Builder arrayBuilder = (ArraySchema.Builder) builder;
+
+      for (DataSchema item : readSchemaList()) {
+        arrayBuilder.addItem(item);
+      }
+
+      if (readBoolean()) {
+        arrayBuilder.addMinItems(readVarInt());
+      }
+
+      if (readBoolean()) {
+        arrayBuilder.addMaxItems(readVarInt());
+      }
+    } else if (builder instanceof NumberSchema.Builder) {
+      NumberSchema.Builder numberBuilder = (NumberSchema.Builder) builder;
+
+      if (readBoolean()) {
+        numberBuilder.addMinimum(Double.longBitsToDouble(readLong()));
+      }
+
+      if (readBoolean()) {
+        numberBuilder.addMaximum(Double.longBitsToDouble(readLong()));
+      }
+    } else if (builder instanceof IntegerSchema.Builder) {
+      IntegerSchema.Builder integerBuilder = (IntegerSchema.Builder) builder;
+
+      if (readBoolean()) {
+        integerBuilder.addMinimum((int) Double.longBitsToDouble(readLong()));
+      }
+
+      if (readBoolean()) {
+        integerBuilder.addMaximum((int) Double.longBitsToDouble(readLong()));
+      }
+    }
+
+    return builder.build();
+  }
+
+  private SecurityScheme readSecurityScheme() {
+    int type = readVarInt();
+
+    if (type == SECURITY_NOSEC) {
+      readStrings(new HashSet<>());
+      return SecurityScheme.getNoSecurityScheme();
+    }
+
+    Set<String> semanticTypes = readStrings(new HashSet<>());
+
+    if (type == SECURITY_PSK) {
+      PSKSecurityScheme.Builder builder = new PSKSecurityScheme.Builder();
+      builder.addSemanticTypes(semanticTypes);
+
+      Optional<String> identity = readOptionalString();
+      if (identity.isPresent()) {
+        builder.addIdentity(identity.get());
+      }
+
+      return builder.build();
+    }
+
+    if (type == SECURITY_OAUTH2) {
+      OAuth2SecurityScheme.Builder builder = new OAuth2SecurityScheme.Builder(readString());
+      builder.addSemanticTypes(semanticTypes);
+
+      Optional<String> authorization = readOptionalString();
+      if (authorization.isPresent()) {
+        builder.addAuthorization(authorization.get());
+      }
+
+      Optional<String> token = readOptionalString();
+      if (token.isPresent()) {
+        builder.addToken(token.get());
+      }
+
+      Optional<String> refresh = readOptionalString();
+      if (refresh.isPresent()) {
+        builder.addRefresh(refresh.get());
+      }
+
+      if (readBoolean()) {
+        builder.addScopes(readStrings(new HashSet<>()));
+      }
+
+      return builder.build();
+    }
+
+    TokenBasedSecurityScheme.Builder<?, ?> builder;
+    switch (type) {
+      case SECURITY_APIKEY:
+        builder = new APIKeySecurityScheme.Builder();
+        break;
+      case SECURITY_BASIC:
+        builder = new BasicSecurityScheme.Builder();
+        break;
+      case SECURITY_DIGEST:
+        builder = new DigestSecurityScheme.Builder();
+        break;
+      case SECURITY_BEARER:
+        builder = new BearerSecurityScheme.Builder();
+        break;
+      default:
+        throw new InvalidTDException("Unknown security scheme type in TD snapshot: " + type);
+    }
+
+    builder.addSemanticTypes(semanticTypes);
+    builder.addTokenLocation(readEnum(TOKEN_LOCATIONS));
+
+    Optional<String> tokenName = readOptionalString();
+    if (tokenName.isPresent()) {
+      builder.addTokenName(tokenName.get());
+    }
+
+    if (builder instanceof DigestSecurityScheme.Builder) {
+      ((DigestSecurityScheme.Builder) builder).addQoP(readEnum(QOP_VALUES));
+    } else if (builder instanceof BearerSecurityScheme.Builder) {
+      BearerSecurityScheme.Builder bearerBuilder = (BearerSecurityScheme.Builder) builder;
+      bearerBuilder.addAlg(readString());
+      bearerBuilder.addFormat(readString());
+
+      Optional<String> authorization = readOptionalString();
+      if (authorization.isPresent()) {
+        bearerBuilder.addAuthorization(authorization.get());
+      }
+    }
+
+    return builder.build();
+  }
+
+  private String readString() {
+    return readStringAt(readVarInt());
+  }
+
+  private Optional<String> readOptionalString() {
+    int index = readVarInt();
+    return index == 0 ? Optional.empty() : Optional.of(readStringAt(index - 1));
+  }
+
+  private String readStringAt(int index) {
+    if (index < 0 || index >= strings.length) {
+      throw new InvalidTDException("Invalid string reference in TD snapshot: " + index);
+    }
+    return strings[index];
+  }
+
+  private <T extends Collection<String>> T readStrings(T values) {
+    int count = readCount();
+    for (int i = 0; i < count; i++) {
+      values.add(readString());
+    }
+    return values;
+  }
+
+  private <T> T readEnum(T[] values) {
+    int ordinal = readVarInt();
+    if (ordinal < 0 || ordinal >= values.length) {
+      throw new InvalidTDException("Invalid value in TD snapshot: " + ordinal);
+    }
+    return values[ordinal];
+  }
+
+  private boolean readBoolean() {
+    return bytes[position++] != 0;
+  }
+
+  /**
+   * Reads the number of elements (or bytes) that follow. Each element takes at least one byte, so a
+   * count larger than the rest of the snapshot means that the snapshot is truncated or corrupt.
+   */
+  private int readCount() {
+    int count = readVarInt();
+
+    if (count < 0 || count > bytes.length - position) {
+      throw new InvalidTDException("Truncated TD snapshot.");
+    }
+
+    return count;
+  }
+
+  private int readVarInt() {
+    int value = 0;
+
+    for (int shift = 0; shift < 35; shift += 7) {
+      byte b = bytes[position++];
+      value |= (b & 0x7f) << shift;
+
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+
+    throw new InvalidTDException("Malformed integer in TD snapshot.");
+  }
+
+  private long readLong() {
+    long value = 0;
+    for (int i = 0; i < 8; i++) {
+      value = (value << 8) | (bytes[position++] & 0xff);
+    }
+    return value;
+  }
+}
@@ -0,0 +1,386 @@
+package ch.unisg.ics.interactions.wot.td.io;
+
+import ch.unisg.ics.interactions.wot.td.ThingDescription;
+import ch.unisg.ics.interactions.wot.td.affordances.*;
+import ch.unisg.ics.interactions.wot.td.schemas.*;
+import ch.unisg.ics.interactions.wot.td.security.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * A writer for serializing TDs in a compact binary snapshot format, which can be read back with a
+ * {@link TDSnapshotReader} without any RDF parsing (e.g. for fast warm starts or for replicating TDs
+ * between nodes).
+ * <p>
+ * A snapshot starts with a magic number and a format version, followed by a table of all the
+ * strings used in the TD (such that repeated IRIs are stored only once) and by the TD itself.
+ * Integers are written as variable-length quantities. Snapshots capture the object model of a TD:
+ * the additional RDF graph of a TD (see {@link ThingDescription#getGraph()}) is not part of the
+ * snapshot.
+ */
+public class TDSnapshotWriter {
+  static final byte[] MAGIC = new byte[]{'W', 'o', 'T', 'S'};
+  static final int VERSION = 1;
+
+  static final int SCHEMA_DATA = 0;
+  static final int SCHEMA_OBJECT = 1;
+  static final int SCHEMA_ARRAY = 2;
+  static final int SCHEMA_NUMBER = 3;
+  static final int SCHEMA_INTEGER = 4;
+  static final int SCHEMA_STRING = 5;
+  static final int SCHEMA_BOOLEAN = 6;
+  static final int SCHEMA_NULL = 7;
+
+  static final int SECURITY_NOSEC = 0;
+  static final int SECURITY_APIKEY = 1;
+  static final int SECURITY_BASIC = 2;
+  static final int SECURITY_DIGEST = 3;
+  static final int SECURITY_BEARER = 4;
+  static final int SECURITY_PSK = 5;
+  static final int SECURITY_OAUTH2 = 6;
+
+  static final int VALUE_STRING = 0;
+  static final int VALUE_BOOLEAN = 1;
+  static final int VALUE_LONG = 2;
+  static final int VALUE_DOUBLE = 3;
+
+  private final ThingDescription td;
+  private final Map<String, Integer> strings;
+  private final Buffer body;
+
+  public TDSnapshotWriter(ThingDescription td) {
+    this.td = td;
+    this.strings = new LinkedHashMap<>();
+    this.body = new Buffer(1024);
+  }
+
+  public static byte[] write(ThingDescription td) {
+    return new TDSnapshotWriter(td).write();
+  }
+
+  /**
+   * Serializes the TD as a binary snapshot.
+   *
+   * @return the snapshot
+   * @throws IllegalArgumentException if the TD uses data schemas or security schemes that are not
+   * defined by this library
+   */
+  public byte[] write() {
+    writeThing();
+
+    Buffer out = new Buffer(body.size + 512);
+    out.writeBytes(MAGIC, MAGIC.length);
+    out.writeVarInt(VERSION);
+
+    out.writeVarInt(strings.size());
+    for (String value : strings.keySet()) {
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      out.writeVarInt(bytes.length);
+      out.writeBytes(bytes, bytes.length);
+    }
+
+    out.writeBytes(body.bytes, body.size);
+    return Arrays.copyOf(out.bytes, out.size);
+  }
+
+  public void write(OutputStream out) throws IOException {
+    out.write(write());
+  }
+
+  private void writeThing() {
+    writeString(td.getTitle());
+    writeOptionalString(td.getThingURI());
+    writeOptionalString(td.getBaseURI());
+    writeStrings(td.getSemanticTypes());
+
+    Map<String, SecurityScheme> definitions = td.getSecurityDefinitions();
+    body.writeVarInt(definitions.size());
+    for (Map.Entry<String, SecurityScheme> definition : new TreeMap<>(definitions).entrySet()) {
+      writeString(definition.getKey());
+      body.writeBoolean(td.getSecuritySchemes().contains(definition.getValue()));
+      writeSecurityScheme(definition.getValue());
+    }
+
+    body.writeVarInt(td.getProperties().size());
+    for (PropertyAffordance property : td.getProperties()) {
+      writeAffordance(property);
+      writeSchema(property.getDataSchema());
+      body.writeBoolean(property.isObservable());
+    }
+
+    body.writeVarInt(td.getActions().size());
+    for (ActionAffordance action : td.getActions()) {
+      writeAffordance(action);
+      writeOptionalSchema(action.getInputSchema());
+      writeOptionalSchema(action.getOutputSchema());
+    }
+
+    body.writeVarInt(td.getEvents().size());
+    for (EventAffordance event : td.getEvents()) {
+      writeAffordance(event);
+      writeOptionalSchema(event.getSubscriptionSchema());
+      writeOptionalSchema(event.getNotificationSchema());
+      writeOptionalSchema(event.getCancellationSchema());
+    }
+  }
+
+  private void writeAffordance(InteractionAffordance affordance) {
+    writeString(affordance.getName());
+
+    body.writeVarInt(affordance.getForms().size());
+    for (Form form : affordance.getForms()) {
+      writeForm(form);
+    }
+
+    writeOptionalString(affordance.getTitle());
+    writeStrings(affordance.getSemanticTypes());
+
+    Optional<Map<String, DataSchema>> uriVariables = affordance.getUriVariables();
+    body.writeBoolean(uriVariables.isPresent());
+    if (uriVariables.isPresent()) {
+      writeSchemas(uriVariables.get());
+    }
+  }
+
+  private void writeForm(Form form) {
+    writeString(form.getTarget());
+    writeString(form.getContentType());
+    writeStrings(form.getOperationTypes());
+    writeOptionalString(form.getSubProtocol());
+    writeOptionalString(form.getMethodName());
+
+    Map<String, Object> properties = form.getAdditionalProperties();
+    body.writeVarInt(properties.size());
+    for (Map.Entry<String, Object> property : properties.entrySet()) {
+      writeString(property.getKey());
+      writeValue(property.getValue());
+    }
+  }
+
+  private void writeValue(Object value) {
+    if (value instanceof String) {
+      body.writeVarInt(VALUE_STRING);
+      writeString((String) value);
+    } else if (value instanceof Boolean) {
+      body.writeVarInt(VALUE_BOOLEAN);
+      body.writeBoolean((Boolean) value);
+    } else if (value instanceof Long || value instanceof Integer || value instanceof Short
+        || value instanceof Byte) {
+      body.writeVarInt(VALUE_LONG);
+      body.writeLong(((Number) value).longValue());
+    } else if (value instanceof Number) {
+      body.writeVarInt(VALUE_DOUBLE);
+      body.writeLong(Double.doubleToLongBits(((Number) value).doubleValue()));
+    } else {
+      throw new IllegalArgumentException("Unsupported value in form: " + value);
+    }
+  }
+
+  private void writeOptionalSchema(Optional<DataSchema> schema) {
+    body.writeBoolean(schema.isPresent());
+    if (schema.isPresent()) {
+      writeSchema(schema.get());
+    }
+  }
+
+  private void writeSchemas(Map<String, DataSchema> schemas) {
+    body.writeVarInt(schemas.size());
+    for (Map.Entry<String, DataSchema> entry : schemas.entrySet()) {
+      writeString(entry.getKey());
+      writeSchema(entry.getValue());
+    }
+  }
+
+  private void writeSchemaList(List<DataSchema> schemas) {
+    body.writeVarInt(schemas.size());
+    for (DataSchema schema : schemas) {
+      writeSchema(schema);
+    }
+  }
+
+  private void writeSchema(DataSchema schema) {
+    Class<?> schemaClass = schema.getClass();
+
+    if (schemaClass == ObjectSchema.class) {
+      body.writeVarInt(SCHEMA_OBJECT);
+    } else if (schemaClass == ArraySchema.class) {
+      body.writeVarInt(SCHEMA_ARRAY);
+    } else if (schemaClass == NumberSchema.class) {
+      body.writeVarInt(SCHEMA_NUMBER);
+    } else if (schemaClass == IntegerSchema.class) {
+      body.writeVarInt(SCHEMA_INTEGER);
+    } else if (schemaClass == StringSchema.class) {
+      body.writeVarInt(SCHEMA_STRING);
+    } else if (schemaClass == BooleanSchema.class) {
+      body.writeVarInt(SCHEMA_BOOLEAN);
+    } else if (schemaClass == NullSchema.class) {
+      body.writeVarInt(SCHEMA_NULL);
+    } else if (schemaClass == DataSchema.class) {
+      body.writeVarInt(SCHEMA_DATA);
+    } else {
+      throw new IllegalArgumentException("Unsupported data schema: " + schemaClass.getName());
+    }
+
+    writeStrings(schema.getSemanticTypes());
+    writeStrings(schema.getEnumeration());
+    writeOptionalString(schema.getContentMediaType());
+    writeSchemaList(schema.getValidSchemas());
+
+    if (schema instanceof ObjectSchema) {
+      ObjectSchema objectSchema = (ObjectSchema) schema;
+      writeSchemas(objectSchema.getProperties());
+      writeStrings(objectSchema.getRequiredProperties());
+    } else if (schema instanceof ArraySchema) {
+      ArraySchema arraySchema = (ArraySchema) schema;
+      writeSchemaList(arraySchema.getItems());
+      writeOptionalInt(arraySchema.getMinItems());
+      writeOptionalInt(arraySchema.getMaxItems());
+    } else if (schema instanceof NumberSchema) {
+      NumberSchema numberSchema = (NumberSchema) schema;
+      writeOptionalDouble(numberSchema.getMinimum());
+      writeOptionalDouble(numberSchema.getMaximum());
+    }
+  }
+
+  private void writeSecurityScheme(SecurityScheme scheme) {
+    if (scheme instanceof APIKeySecurityScheme) {
+      body.writeVarInt(SECURITY_APIKEY);
+    } else if (scheme instanceof BasicSecurityScheme) {
+      body.writeVarInt(SECURITY_BASIC);
+    } else if (scheme instanceof DigestSecurityScheme) {
+      body.writeVarInt(SECURITY_DIGEST);
+    } else if (scheme instanceof BearerSecurityScheme) {
+      body.writeVarInt(SECURITY_BEARER);
+    } else if (scheme instanceof PSKSecurityScheme) {
+      body.writeVarInt(SECURITY_PSK);
+    } else if (scheme instanceof OAuth2SecurityScheme) {
+      body.writeVarInt(SECURITY_OAUTH2);
+    } else if (SecurityScheme.NOSEC.equals(scheme.getSchemeName())) {
+      body.writeVarInt(SECURITY_NOSEC);
+    } else {
+      throw new IllegalArgumentException("Unsupported security scheme: " + scheme.getSchemeName());
+    }
+
+    writeStrings(scheme.getSemanticTypes());
+
+    if (scheme instanceof TokenBasedSecurityScheme) {
+      TokenBasedSecurityScheme tokenScheme = (TokenBasedSecurityScheme) scheme;
+      body.writeVarInt(tokenScheme.getTokenLocation().ordinal());
+      writeOptionalString(tokenScheme.getTokenName());
+    }
+
+    if (scheme instanceof DigestSecurityScheme) {
+      body.writeVarInt(((DigestSecurityScheme) scheme).getQoP().ordinal());
+    } else if (scheme instanceof BearerSecurityScheme) {
+      BearerSecurityScheme bearerScheme = (BearerSecurityScheme) scheme;
+      writeString(bearerScheme.getAlg());
+      writeString(bearerScheme.getFormat());
+      writeOptionalString(bearerScheme.getAuthorization());
+    } else if (scheme instanceof PSKSecurityScheme) {
+      writeOptionalString(((PSKSecurityScheme) scheme).getIdentity());
+    } else if (scheme instanceof OAuth2SecurityScheme) {
+      OAuth2SecurityScheme oauthScheme = (OAuth2SecurityScheme) scheme;
+      writeString(oauthScheme.getFlow());
+      writeOptionalString(oauthScheme.getAuthorization());
+      writeOptionalString(oauthScheme.getToken());
+      writeOptionalString(oauthScheme.getRefresh());
+
+      body.writeBoolean(oauthScheme.getScopes().isPresent());
+      if (oauthScheme.getScopes().isPresent()) {
+        writeStrings(oauthScheme.getScopes().get());
+      }
+    }
+  }
+
+  private void writeString(String value) {
+    body.writeVarInt(intern(value));
+  }
+
+  // Optional strings are written as (index + 1), 0 stands for an empty Optional
+  private void writeOptionalString(Optional<String> value) {
+    body.writeVarInt(value.isPresent() ? intern(value.get()) + 1 : 0);
+  }
+
+  private int intern(String value) {
+    Integer index = strings.get(value);
+
+    if (index == null) {
+      index = strings.size();
+      strings.put(value, index);
+    }
+
+    return index;
+  }
+
+  private void writeStrings(Collection<String> values) {
+    body.writeVarInt(values.size());
+    for (String value : values) {
+      writeString(value);
+    }
+  }
+
+  private void writeOptionalInt(Optional<Integer> value) {
+    body.writeBoolean(value.isPresent());
+    if (value.isPresent()) {
+      body.writeVarInt(value.get());
+    }
+  }
+
+  private void writeOptionalDouble(Optional<Double> value) {
+    body.writeBoolean(value.isPresent());
+    if (value.isPresent()) {
+      body.writeLong(Double.doubleToLongBits(value.get()));
+    }
+  }
+
+  private static final class Buffer {
+    private byte[] bytes;
+    private int size;
+
+    private Buffer(int capacity) {
+      this.bytes = new byte[capacity];
+      this.size = 0;
+    }
+
+    private void ensureCapacity(int additional) {
+      if (size + additional > bytes.length) {
+        bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + additional));
+      }
+    }
+
+    private void writeBoolean(boolean value) {
+      ensureCapacity(1);
+      bytes[size++] = (byte) (value ? 1 : 0);
+    }
+
+    private void writeVarInt(int value) {
+      if (value < 0) {
+        throw new IllegalArgumentException("Negative values are not supported: " + value);
+      }
+
+      ensureCapacity(5);
+
+      while ((value & ~0x7f) != 0) {
+        bytes[size++] = (byte) ((value & 0x7f) | 0x80);
+        value >>>= 7;
+      }
+      bytes[size++] = (byte) value;
+    }
+
+    private void writeLong(long value) {
+      ensureCapacity(8);
+      for (int i = 56; i >= 0; i -= 8) {
+        bytes[size++] = (byte) (value >>> i);
+      }
+    }
+
+    private void writeBytes(byte[] values, int length) {
+      ensureCapacity(length);
+      System.arraycopy(values, 0, bytes, size, length);
+      size += length;
+    }
+  }
+}
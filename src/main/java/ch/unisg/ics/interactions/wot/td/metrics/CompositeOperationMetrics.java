@@ -0,0 +1,72 @@
+package ch.unisg.ics.interactions.wot.td.metrics;
+
+import ch.unisg.ics.interactions.wot.td.bindings.Response.ResponseStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Forwards notifications to several {@link OperationMetrics} implementations (see
+ * {@link OperationMetrics#compose(OperationMetrics...)}).
+ */
+class CompositeOperationMetrics implements OperationMetrics {
+  private final List<OperationMetrics> delegates;
+
+  CompositeOperationMetrics(List<OperationMetrics> delegates) {
+    this.delegates = new ArrayList<>();
+
+    for (OperationMetrics delegate : delegates) {
+      if (delegate.isEnabled()) {
+        this.delegates.add(delegate);
+      }
+    }
+  }
+
+  @Override
+  public boolean isEnabled() {
+    return !delegates.isEmpty();
+  }
+
+  @Override
+  public void onRequestSent(OperationKey key, long payloadSize) {
+    for (OperationMetrics delegate : delegates) {
+      delegate.onRequestSent(key, payloadSize);
+    }
+  }
+
+  @Override
+  public void onFirstResponse(OperationKey key, ResponseStatus status, long latency,
+      long payloadSize) {
+    for (OperationMetrics delegate : delegates) {
+      delegate.onFirstResponse(key, status, latency, payloadSize);
+    }
+  }
+
+  @Override
+  public void onNotification(OperationKey key, ResponseStatus status, long payloadSize) {
+    for (OperationMetrics delegate : delegates) {
+      delegate.onNotification(key, status, payloadSize);
+    }
+  }
+
+  @Override
+  public void onError(OperationKey key, long elapsed) {
+    for (OperationMetrics delegate : delegates) {
+      delegate.onError(key, elapsed);
+    }
+  }
+
+  @Override
+  public void onTimeout(OperationKey key, long elapsed) {
+    for (OperationMetrics delegate : delegates) {
+      delegate.onTimeout(key, elapsed);
+    }
+  }
+
+  @Override
+  public void onTimings(OperationKey key, PhaseTimings timings) {
+    for (OperationMetrics delegate : delegates) {
+      delegate.onTimings(key, timings);
+    }
+  }
+}
@@ -0,0 +1,109 @@
+package ch.unisg.ics.interactions.wot.td.metrics;
+
+import javax.management.*;
+import java.lang.management.ManagementFactory;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Exports the stats of a {@link MetricsRecorder} as MXBeans (see {@link OperationStatsMXBean}), one
+ * per operation key. Object names have the form:
+ * <code>ch.unisg.ics.interactions.wot.td:type=Operation,thing=...,affordance=...,protocol=...,operation=...</code>
+ */
+public class JmxMetricsExporter implements AutoCloseable {
+  private final static Logger LOGGER = Logger.getLogger(JmxMetricsExporter.class.getCanonicalName());
+
+  public static final String DEFAULT_DOMAIN = "ch.unisg.ics.interactions.wot.td";
+
+  private final MetricsRecorder recorder;
+  private final MBeanServer server;
+  private final String domain;
+  private final Map<OperationKey, ObjectName> registered = new ConcurrentHashMap<>();
+  private final Consumer<OperationStats> listener = this::register;
+
+  /**
+   * Creates an exporter to the platform MBean server.
+   *
+   * @param recorder the recorder of the stats to export
+   */
+  public JmxMetricsExporter(MetricsRecorder recorder) {
+    this(recorder, ManagementFactory.getPlatformMBeanServer(), DEFAULT_DOMAIN);
+  }
+
+  public JmxMetricsExporter(MetricsRecorder recorder, MBeanServer server, String domain) {
+    this.recorder = recorder;
+    this.server = server;
+    this.domain = domain;
+  }
+
+  /**
+   * Registers MXBeans for all the existing stats of the recorder, and for all stats created later.
+   *
+   * @return this exporter
+   */
+  public JmxMetricsExporter start() {
+    recorder.addStatsListener(listener);
+    return this;
+  }
+
+  /**
+   * Gets the name of the MXBean that exports the stats with the given key.
+   *
+   * @param key the operation key
+   * @return the object name
+   */
+  public ObjectName getObjectName(OperationKey key) {
+    Hashtable<String, String> properties = new Hashtable<>();
+    properties.put("type", "Operation");
+    properties.put("thing", ObjectName.quote(key.getThing()));
+    properties.put("affordance", ObjectName.quote(key.getAffordance()));
+    properties.put("protocol", ObjectName.quote(key.getProtocol()));
+    properties.put("operation", ObjectName.quote(localName(key.getOperationType())));
+
+    try {
+      return new ObjectName(domain, properties);
+    } catch (MalformedObjectNameException e) {
+      throw new IllegalArgumentException("Invalid object name for " + key, e);
+    }
+  }
+
+  /**
+   * Stops exporting new stats and unregisters all the MXBeans registered by this exporter.
+   */
+  @Override
+  public void close() {
+    recorder.removeStatsListener(listener);
+
+    for (ObjectName name : registered.values()) {
+      try {
+        server.unregisterMBean(name);
+      } catch (InstanceNotFoundException | MBeanRegistrationException e) {
+        LOGGER.log(Level.FINE, "Could not unregister " + name, e);
+      }
+    }
+
+    registered.clear();
+  }
+
+  private void register(OperationStats stats) {
+    ObjectName name = getObjectName(stats.getKey());
+
+    try {
+      server.registerMBean(stats, name);
+      registered.put(stats.getKey(), name);
+    } catch (InstanceAlreadyExistsException e) {
+      LOGGER.log(Level.WARNING, "An MBean is already registered as " + name);
+    } catch (MBeanRegistrationException | NotCompliantMBeanException e) {
+      LOGGER.log(Level.WARNING, "Could not register " + name, e);
+    }
+  }
+
+  private static String localName(String operationType) {
+    int i = Math.max(operationType.lastIndexOf('#'), operationType.lastIndexOf('/'));
+    return operationType.substring(i + 1);
+  }
+}
@@ -0,0 +1,47 @@
+package ch.unisg.ics.interactions.wot.td.metrics;
+
+import java.util.Objects;
+
+/**
+ * Registry of the {@link OperationMetrics} implementation used by all operations. By default,
+ * {@link OperationMetrics#NOOP} is used and instrumentation costs nothing.
+ * <p>
+ * Operations read the registry when they are created: registering an implementation does not
+ * affect operations that are already pending.
+ */
+public final class Metrics {
+  private static volatile OperationMetrics operationMetrics = OperationMetrics.NOOP;
+
+  /**
+   * Registers the implementation notified of all subsequent operations.
+   *
+   * @param metrics the implementation to register
+   */
+  public static void register(OperationMetrics metrics) {
+    operationMetrics = Objects.requireNonNull(metrics);
+  }
+
+  /**
+   * Registers a new {@link MetricsRecorder}.
+   *
+   * @return the registered recorder
+   */
+  public static MetricsRecorder enableRecording() {
+    MetricsRecorder recorder = new MetricsRecorder();
+    register(recorder);
+    return recorder;
+  }
+
+  /**
+   * Restores the no-op implementation.
+   */
+  public static void disable() {
+    operationMetrics = OperationMetrics.NOOP;
+  }
+
+  public static OperationMetrics getOperationMetrics() {
+    return operationMetrics;
+  }
+
+  private Metrics() { }
+}
@@ -0,0 +1,114 @@
+package ch.unisg.ics.interactions.wot.td.metrics;
+
+import ch.unisg.ics.interactions.wot.td.bindings.Response.ResponseStatus;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * An {@link OperationMetrics} implementation that records metrics in memory, in one
+ * {@link OperationStats} per {@link OperationKey}. Stats can be read directly, or exported with a
+ * {@link JmxMetricsExporter}.
+ */
+public class MetricsRecorder implements OperationMetrics {
+  private final ConcurrentMap<OperationKey, OperationStats> stats = new ConcurrentHashMap<>();
+  private final List<Consumer<OperationStats>> listeners = new CopyOnWriteArrayList<>();
+
+  @Override
+  public void onRequestSent(OperationKey key, long payloadSize) {
+    getOrCreateStats(key).recordRequest(payloadSize);
+  }
+
+  @Override
+  public void onFirstResponse(OperationKey key, ResponseStatus status, long latency,
+      long payloadSize) {
+    getOrCreateStats(key).recordFirstResponse(status, latency, payloadSize);
+  }
+
+  @Override
+  public void onNotification(OperationKey key, ResponseStatus status, long payloadSize) {
+    getOrCreateStats(key).recordNotification(payloadSize);
+  }
+
+  @Override
+  public void onError(OperationKey key, long elapsed) {
+    getOrCreateStats(key).recordError(elapsed);
+  }
+
+  @Override
+  public void onTimeout(OperationKey key, long elapsed) {
+    getOrCreateStats(key).recordTimeout();
+  }
+
+  /**
+   * Gets the stats recorded for the given key.
+   *
+   * @param key the operation key
+   * @return an <code>Optional</code> with the stats (empty if no operation was recorded)
+   */
+  public Optional<OperationStats> getStats(OperationKey key) {
+    return Optional.ofNullable(stats.get(key));
+  }
+
+  public Collection<OperationStats> getAllStats() {
+    return new ArrayList<>(stats.values());
+  }
+
+  /**
+   * Gets the stats of all the keys that match a predicate, e.g. all the operations on a Thing or
+   * with a given protocol.
+   *
+   * @param filter the predicate on operation keys
+   * @return the list of matching stats
+   */
+  public List<OperationStats> getStats(Predicate<OperationKey> filter) {
+    List<OperationStats> matches = new ArrayList<>();
+
+    for (OperationStats s : stats.values()) {
+      if (filter.test(s.getKey())) {
+        matches.add(s);
+      }
+    }
+
+    return matches;
+  }
+
+  /**
+   * Registers a listener notified when stats are created for a new key. The listener is called
+   * immediately for all existing stats.
+   *
+   * @param listener the listener
+   */
+  public void addStatsListener(Consumer<OperationStats> listener) {
+    listeners.add(listener);
+    stats.values().forEach(listener);
+  }
+
+  public void removeStatsListener(Consumer<OperationStats> listener) {
+    listeners.remove(listener);
+  }
+
+  private OperationStats getOrCreateStats(OperationKey key) {
+    OperationStats s = stats.get(key);
+    if (s != null) {
+      return s;
+    }
+
+    OperationStats created = new OperationStats(key);
+    s = stats.putIfAbsent(key, created);
+
+    if (s == null) {
+      listeners.forEach(listener -> listener.accept(created));
+      return created;
+    }
+
+    return s;
+  }
+}
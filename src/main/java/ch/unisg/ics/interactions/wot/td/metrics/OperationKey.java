@@ -0,0 +1,103 @@
+package ch.unisg.ics.interactions.wot.td.metrics;
+
+import ch.unisg.ics.interactions.wot.td.affordances.Form;
+
+import java.net.URI;
+import java.util.Objects;
+
+/**
+ * Identifies the operations for which metrics are aggregated: operations on the same Thing and
+ * affordance, with the same protocol and operation type, share the same key.
+ * <p>
+ * If the Thing and the affordance of an operation are not known (operations are bound to forms,
+ * not to affordances), they default to the authority and the path of the form's target.
+ */
+public final class OperationKey {
+  private final String thing;
+  private final String affordance;
+  private final String protocol;
+  private final String operationType;
+
+  public OperationKey(String thing, String affordance, String protocol, String operationType) {
+    this.thing = Objects.requireNonNull(thing);
+    this.affordance = Objects.requireNonNull(affordance);
+    this.protocol = Objects.requireNonNull(protocol);
+    this.operationType = Objects.requireNonNull(operationType);
+  }
+
+  /**
+   * Creates the default key for an operation built from the given form.
+   *
+   * @param form the form of the operation
+   * @param operationType the operation type
+   * @return the operation key
+   */
+  public static OperationKey forForm(Form form, String operationType) {
+    String target = form.getTarget();
+    String thing = target;
+    String affordance = "";
+    String protocol = "";
+
+    try {
+      URI uri = URI.create(target);
+      thing = uri.getAuthority() == null ? target : uri.getAuthority();
+      affordance = uri.getPath() == null ? "" : uri.getPath();
+      protocol = uri.getScheme() == null ? "" : uri.getScheme();
+    } catch (IllegalArgumentException e) {
+      // Targets with unexpanded URI templates are not valid URIs: the whole target is used
+    }
+
+    return new OperationKey(thing, affordance, form.getProtocol().orElse(protocol), operationType);
+  }
+
+  /**
+   * Creates a key for the given Thing and affordance with the protocol and the operation type of
+   * another key.
+   *
+   * @param thing the name of the Thing (e.g. its title or URI)
+   * @param affordance the name of the affordance
+   * @return the new operation key
+   */
+  public OperationKey withLabels(String thing, String affordance) {
+    return new OperationKey(thing, affordance, protocol, operationType);
+  }
+
+  public String getThing() {
+    return thing;
+  }
+
+  public String getAffordance() {
+    return affordance;
+  }
+
+  public String getProtocol() {
+    return protocol;
+  }
+
+  public String getOperationType() {
+    return operationType;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+
+    OperationKey other = (OperationKey) o;
+    return thing.equals(other.thing)
+      && affordance.equals(other.affordance)
+      && protocol.equals(other.protocol)
+      && operationType.equals(other.operationType);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(thing, affordance, protocol, operationType);
+  }
+
+  @Override
+  public String toString() {
+    return "[OperationKey] Thing: " + thing + ", Affordance: " + affordance + ", Protocol: "
+      + protocol + ", Operation type: " + operationType;
+  }
+}
@@ -0,0 +1,103 @@
+package ch.unisg.ics.interactions.wot.td.metrics;
+
+import ch.unisg.ics.interactions.wot.td.bindings.Response.ResponseStatus;
+
+import java.util.Arrays;
+
+/**
+ * Service provider interface for instrumenting operations. Implementations are registered with
+ * {@link Metrics#register(OperationMetrics)} and are notified by
+ * {@link ch.unisg.ics.interactions.wot.td.bindings.BaseOperation BaseOperation} and the protocol
+ * bindings of the lifecycle of every operation created afterwards.
+ * <p>
+ * Methods are called on the threads of the protocol bindings: implementations must be thread-safe
+ * and must not block. Payload sizes are in bytes, and are negative if unknown. Durations are in
+ * nanoseconds, and are negative if unknown (e.g. if the request was not sent through a binding).
+ */
+public interface OperationMetrics {
+
+  /**
+   * A no-op implementation, used when no implementation is registered. Operations do not compute
+   * keys nor notify anything when this implementation is used.
+   */
+  OperationMetrics NOOP = new OperationMetrics() {
+    @Override
+    public boolean isEnabled() {
+      return false;
+    }
+  };
+
+  /**
+   * Checks if this implementation records anything.
+   *
+   * @return false if operations can skip instrumentation altogether
+   */
+  default boolean isEnabled() {
+    return true;
+  }
+
+  /**
+   * Called when the request that starts an operation was sent.
+   *
+   * @param key the key of the operation
+   * @param payloadSize the size of the request payload
+   */
+  default void onRequestSent(OperationKey key, long payloadSize) { }
+
+  /**
+   * Called when the first response of an operation is received.
+   *
+   * @param key the key of the operation
+   * @param status the status of the response
+   * @param latency the time between the request and the response
+   * @param payloadSize the size of the response payload
+   */
+  default void onFirstResponse(OperationKey key, ResponseStatus status, long latency,
+      long payloadSize) { }
+
+  /**
+   * Called when a subsequent response of an operation is received (e.g. a notification during an
+   * <code>observeProperty</code> operation).
+   *
+   * @param key the key of the operation
+   * @param status the status of the response
+   * @param payloadSize the size of the response payload
+   */
+  default void onNotification(OperationKey key, ResponseStatus status, long payloadSize) { }
+
+  /**
+   * Called when an operation fails (e.g. if the connection to the Thing is lost).
+   *
+   * @param key the key of the operation
+   * @param elapsed the time between the request and the failure, or a negative value if the
+   * operation already received a response
+   */
+  default void onError(OperationKey key, long elapsed) { }
+
+  /**
+   * Called when no response was received before the timeout of an operation.
+   *
+   * @param key the key of the operation
+   * @param elapsed the time between the request and the timeout
+   */
+  default void onTimeout(OperationKey key, long elapsed) { }
+
+  /**
+   * Called once per operation with the phase timings of its first exchange, after the first
+   * response, the failure, or the timeout of the operation was notified.
+   *
+   * @param key the key of the operation
+   * @param timings the phase timings of the exchange
+   */
+  default void onTimings(OperationKey key, PhaseTimings timings) { }
+
+  /**
+   * Creates an implementation that notifies several implementations, in order.
+   *
+   * @param metrics the implementations to notify
+   * @return the composite implementation
+   */
+  static OperationMetrics compose(OperationMetrics... metrics) {
+    return new CompositeOperationMetrics(Arrays.asList(metrics));
+  }
+}
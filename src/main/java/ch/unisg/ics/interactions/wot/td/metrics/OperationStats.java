@@ -0,0 +1,240 @@
+package ch.unisg.ics.interactions.wot.td.metrics;
+
+import ch.unisg.ics.interactions.wot.td.bindings.Response.ResponseStatus;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics recorded by a {@link MetricsRecorder} for the operations with a given
+ * {@link OperationKey}: latency and response size histograms, counters of requests, responses,
+ * errors, and timeouts, and the number of operations waiting for a first response. All counters are
+ * lock-free.
+ */
+public class OperationStats implements OperationStatsMXBean {
+  private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final OperationKey key;
+
+  private final LatencyHistogram latencies = new LatencyHistogram();
+  private final LatencyHistogram responseSizes = new LatencyHistogram();
+
+  private final LongAdder requests = new LongAdder();
+  private final LongAdder requestBytes = new LongAdder();
+  private final LongAdder notifications = new LongAdder();
+  private final LongAdder errors = new LongAdder();
+  private final LongAdder timeouts = new LongAdder();
+  private final LongAdder inFlight = new LongAdder();
+  private final Map<ResponseStatus, LongAdder> responses = new EnumMap<>(ResponseStatus.class);
+
+  OperationStats(OperationKey key) {
+    this.key = key;
+
+    for (ResponseStatus status : ResponseStatus.values()) {
+      responses.put(status, new LongAdder());
+    }
+  }
+
+  public OperationKey getKey() {
+    return key;
+  }
+
+  @Override
+  public String getThing() {
+    return key.getThing();
+  }
+
+  @Override
+  public String getAffordance() {
+    return key.getAffordance();
+  }
+
+  @Override
+  public String getProtocol() {
+    return key.getProtocol();
+  }
+
+  @Override
+  public String getOperationType() {
+    return key.getOperationType();
+  }
+
+  /**
+   * Gets the histogram of the latencies of first responses, in nanoseconds.
+   *
+   * @return the latency histogram
+   */
+  public LatencyHistogram getLatencies() {
+    return latencies;
+  }
+
+  /**
+   * Gets the histogram of the sizes of response payloads (including notifications), in bytes.
+   *
+   * @return the size histogram
+   */
+  public LatencyHistogram getResponseSizes() {
+    return responseSizes;
+  }
+
+  @Override
+  public long getRequestCount() {
+    return requests.sum();
+  }
+
+  @Override
+  public long getResponseCount() {
+    long count = 0;
+    for (LongAdder adder : responses.values()) {
+      count += adder.sum();
+    }
+    return count;
+  }
+
+  /**
+   * Gets the number of first responses with the given status.
+   *
+   * @param status the response status
+   * @return the number of responses
+   */
+  public long getResponseCount(ResponseStatus status) {
+    return responses.get(status).sum();
+  }
+
+  @Override
+  public long getNotificationCount() {
+    return notifications.sum();
+  }
+
+  @Override
+  public long getErrorCount() {
+    return errors.sum();
+  }
+
+  @Override
+  public long getTimeoutCount() {
+    return timeouts.sum();
+  }
+
+  @Override
+  public long getInFlightCount() {
+    return inFlight.sum();
+  }
+
+  /**
+   * Gets the ratio of operations that failed, timed out, or received a first response with an
+   * error status, among the operations that completed.
+   *
+   * @return the error rate, between 0 and 1
+   */
+  @Override
+  public double getErrorRate() {
+    long ok = responses.get(ResponseStatus.OK).sum();
+    long failed = getResponseCount() - ok + errors.sum() + timeouts.sum();
+    long completed = ok + failed;
+
+    return completed == 0 ? 0 : (double) failed / completed;
+  }
+
+  @Override
+  public double getMeanLatencyMillis() {
+    return latencies.getMean() / NANOS_PER_MILLI;
+  }
+
+  @Override
+  public double getMedianLatencyMillis() {
+    return latencies.getPercentile(50) / NANOS_PER_MILLI;
+  }
+
+  @Override
+  public double get95thPercentileLatencyMillis() {
+    return latencies.getPercentile(95) / NANOS_PER_MILLI;
+  }
+
+  @Override
+  public double get99thPercentileLatencyMillis() {
+    return latencies.getPercentile(99) / NANOS_PER_MILLI;
+  }
+
+  @Override
+  public double getMaxLatencyMillis() {
+    return latencies.getMax() / NANOS_PER_MILLI;
+  }
+
+  @Override
+  public long getRequestBytes() {
+    return requestBytes.sum();
+  }
+
+  @Override
+  public long getResponseBytes() {
+    return responseSizes.getSum();
+  }
+
+  @Override
+  public double getMeanResponseSize() {
+    return responseSizes.getMean();
+  }
+
+  /**
+   * Clears all the metrics, except the number of operations in flight.
+   */
+  @Override
+  public void reset() {
+    latencies.reset();
+    responseSizes.reset();
+    requests.reset();
+    requestBytes.reset();
+    notifications.reset();
+    errors.reset();
+    timeouts.reset();
+    responses.values().forEach(LongAdder::reset);
+  }
+
+  void recordRequest(long payloadSize) {
+    requests.increment();
+    inFlight.increment();
+
+    if (payloadSize > 0) {
+      requestBytes.add(payloadSize);
+    }
+  }
+
+  void recordFirstResponse(ResponseStatus status, long latency, long payloadSize) {
+    responses.get(status).increment();
+    latencies.record(latency);
+    responseSizes.record(payloadSize);
+
+    if (latency >= 0) {
+      inFlight.decrement();
+    }
+  }
+
+  void recordNotification(long payloadSize) {
+    notifications.increment();
+    responseSizes.record(payloadSize);
+  }
+
+  void recordError(long elapsed) {
+    errors.increment();
+
+    if (elapsed >= 0) {
+      inFlight.decrement();
+    }
+  }
+
+  void recordTimeout() {
+    timeouts.increment();
+    inFlight.decrement();
+  }
+
+  @Override
+  public String toString() {
+    return String.format("[OperationStats] %s, Requests: %d, In flight: %d, Errors: %d, "
+        + "Timeouts: %d, Latency (ms): mean %.3f, p50 %.3f, p99 %.3f, max %.3f", key, getRequestCount(),
+      getInFlightCount(), getErrorCount(), getTimeoutCount(), getMeanLatencyMillis(),
+      getMedianLatencyMillis(), get99thPercentileLatencyMillis(), getMaxLatencyMillis());
+  }
+}
@@ -0,0 +1,48 @@
+package ch.unisg.ics.interactions.wot.td.metrics;
+
+/**
+ * Management interface of {@link OperationStats}, exposed by {@link JmxMetricsExporter}. Latencies
+ * are in milliseconds and sizes in bytes.
+ */
+public interface OperationStatsMXBean {
+
+  String getThing();
+
+  String getAffordance();
+
+  String getProtocol();
+
+  String getOperationType();
+
+  long getRequestCount();
+
+  long getResponseCount();
+
+  long getNotificationCount();
+
+  long getErrorCount();
+
+  long getTimeoutCount();
+
+  long getInFlightCount();
+
+  double getErrorRate();
+
+  double getMeanLatencyMillis();
+
+  double getMedianLatencyMillis();
+
+  double get95thPercentileLatencyMillis();
+
+  double get99thPercentileLatencyMillis();
+
+  double getMaxLatencyMillis();
+
+  long getRequestBytes();
+
+  long getResponseBytes();
+
+  double getMeanResponseSize();
+
+  void reset();
+}
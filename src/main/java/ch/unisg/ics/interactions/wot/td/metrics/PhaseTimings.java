@@ -0,0 +1,258 @@
+package ch.unisg.ics.interactions.wot.td.metrics;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timestamps of the phases of a request/response exchange (DNS lookup, connection, TLS/DTLS
+ * handshake, request, retransmissions, response, and payload decoding), recorded by the protocol
+ * bindings. Timestamps are offsets in nanoseconds from the start of the exchange (when the request
+ * is handed over to the binding).
+ * <p>
+ * Phases that do not apply to a binding (e.g. DNS lookups for CoAP, or retransmissions for HTTP)
+ * are simply not recorded. Phases that are recorded several times (e.g. retransmissions) keep all
+ * their timestamps, up to a maximum of {@value #MAX_EVENTS} events per exchange.
+ */
+public class PhaseTimings {
+
+  /**
+   * Maximum number of events recorded per exchange (such that long-lived exchanges, e.g. CoAP
+   * observations, do not grow indefinitely).
+   */
+  public static final int MAX_EVENTS = 64;
+
+  public enum Phase {
+    STARTED,
+    DNS_LOOKUP_STARTED,
+    DNS_LOOKUP_COMPLETED,
+    CONNECTING,
+    HANDSHAKE_STARTED,
+    HANDSHAKE_RETRANSMITTED,
+    HANDSHAKE_COMPLETED,
+    REQUEST_SENT,
+    REQUEST_RETRANSMITTED,
+    ACKNOWLEDGED,
+    RESPONSE_HEADERS_RECEIVED,
+    RESPONSE_RECEIVED,
+    PAYLOAD_DECODED,
+    FAILED,
+    TIMED_OUT
+  }
+
+  /**
+   * A phase and its offset from the start of the exchange.
+   */
+  public static final class Event {
+    private final Phase phase;
+    private final long offset;
+
+    Event(Phase phase, long offset) {
+      this.phase = phase;
+      this.offset = offset;
+    }
+
+    public Phase getPhase() {
+      return phase;
+    }
+
+    public long getOffset() {
+      return offset;
+    }
+
+    @Override
+    public String toString() {
+      return phase + "@" + formatMillis(offset);
+    }
+  }
+
+  private final List<Event> events = new ArrayList<>();
+  // Volatile so that marks of exchanges that are not recorded do not take the lock
+  private volatile long startedAt = -1;
+
+  /**
+   * Starts (or restarts) recording an exchange: previous events are discarded.
+   */
+  public synchronized void start() {
+    events.clear();
+    startedAt = System.nanoTime();
+    events.add(new Event(Phase.STARTED, 0));
+  }
+
+  /**
+   * Records that a phase was reached now. Phases are ignored if the exchange was not started.
+   *
+   * @param phase the phase
+   */
+  public void mark(Phase phase) {
+    if (startedAt < 0) {
+      return;
+    }
+
+    synchronized (this) {
+      if (events.size() < MAX_EVENTS) {
+        events.add(new Event(phase, System.nanoTime() - startedAt));
+      }
+    }
+  }
+
+  public boolean isStarted() {
+    return startedAt >= 0;
+  }
+
+  /**
+   * Gets a copy of the events recorded so far, which is not affected by the phases recorded later
+   * (or by a restart).
+   *
+   * @return the copy
+   */
+  public synchronized PhaseTimings snapshot() {
+    PhaseTimings copy = new PhaseTimings();
+    copy.events.addAll(events);
+    copy.startedAt = startedAt;
+    return copy;
+  }
+
+  public synchronized List<Event> getEvents() {
+    return new ArrayList<>(events);
+  }
+
+  /**
+   * Gets the offset of the first occurrence of a phase.
+   *
+   * @param phase the phase
+   * @return an <code>Optional</code> with the offset in nanoseconds (empty if not recorded)
+   */
+  public synchronized Optional<Long> getOffset(Phase phase) {
+    for (Event event : events) {
+      if (event.phase == phase) {
+        return Optional.of(event.offset);
+      }
+    }
+
+    return Optional.empty();
+  }
+
+  /**
+   * Gets the number of times a phase was recorded (e.g. the number of retransmissions).
+   *
+   * @param phase the phase
+   * @return the number of events for the phase
+   */
+  public synchronized int getCount(Phase phase) {
+    int count = 0;
+
+    for (Event event : events) {
+      if (event.phase == phase) {
+        count++;
+      }
+    }
+
+    return count;
+  }
+
+  /**
+   * Gets the time between the first occurrences of two phases.
+   *
+   * @param from the first phase
+   * @param to the second phase
+   * @return an <code>Optional</code> with the duration in nanoseconds (empty if one of the phases
+   * was not recorded)
+   */
+  public synchronized Optional<Long> getDuration(Phase from, Phase to) {
+    Optional<Long> start = getOffset(from);
+    Optional<Long> end = getOffset(to);
+
+    if (start.isPresent() && end.isPresent()) {
+      return Optional.of(end.get() - start.get());
+    }
+
+    return Optional.empty();
+  }
+
+  /**
+   * Gets the offset of the last recorded event.
+   *
+   * @return the elapsed time in nanoseconds
+   */
+  public synchronized long getElapsed() {
+    return events.isEmpty() ? 0 : events.get(events.size() - 1).offset;
+  }
+
+  /**
+   * Gets the duration of the steps of the exchange that could be computed from the recorded
+   * phases, in order:
+   * <ul>
+   *   <li><code>dns</code>: DNS lookup</li>
+   *   <li><code>connect</code>: from the end of the lookup to the handshake or request</li>
+   *   <li><code>handshake</code>: TLS or DTLS handshake</li>
+   *   <li><code>firstByte</code>: from the request to the first bytes of the response</li>
+   *   <li><code>transfer</code>: from the response headers to the complete response</li>
+   *   <li><code>decode</code>: decoding of the response payload</li>
+   * </ul>
+   *
+   * @return the durations in nanoseconds, by step name
+   */
+  public synchronized Map<String, Long> getBreakdown() {
+    Map<String, Long> breakdown = new LinkedHashMap<>();
+
+    Phase connectStart = getOffset(Phase.DNS_LOOKUP_COMPLETED).isPresent()
+      ? Phase.DNS_LOOKUP_COMPLETED : Phase.STARTED;
+    Phase connectEnd = getOffset(Phase.HANDSHAKE_STARTED).isPresent()
+      ? Phase.HANDSHAKE_STARTED : Phase.REQUEST_SENT;
+    Phase firstByte = getOffset(Phase.RESPONSE_HEADERS_RECEIVED).isPresent()
+      ? Phase.RESPONSE_HEADERS_RECEIVED : Phase.RESPONSE_RECEIVED;
+
+    putDuration(breakdown, "dns", Phase.DNS_LOOKUP_STARTED, Phase.DNS_LOOKUP_COMPLETED);
+    if (getOffset(Phase.CONNECTING).isPresent() || getOffset(Phase.DNS_LOOKUP_COMPLETED).isPresent()) {
+      putDuration(breakdown, "connect", connectStart, connectEnd);
+    }
+    putDuration(breakdown, "handshake", Phase.HANDSHAKE_STARTED, Phase.HANDSHAKE_COMPLETED);
+    putDuration(breakdown, "firstByte", Phase.REQUEST_SENT, firstByte);
+    putDuration(breakdown, "transfer", Phase.RESPONSE_HEADERS_RECEIVED, Phase.RESPONSE_RECEIVED);
+    putDuration(breakdown, "decode", Phase.RESPONSE_RECEIVED, Phase.PAYLOAD_DECODED);
+
+    return breakdown;
+  }
+
+  /**
+   * Returns a one-line summary of the exchange, e.g.
+   * <code>dns=1.204ms, connect=0.532ms, firstByte=12.310ms, decode=0.087ms, total=14.250ms</code>.
+   */
+  @Override
+  public synchronized String toString() {
+    StringBuilder builder = new StringBuilder();
+
+    for (Map.Entry<String, Long> step : getBreakdown().entrySet()) {
+      builder.append(step.getKey()).append('=').append(formatMillis(step.getValue())).append(", ");
+    }
+
+    int retransmissions = getCount(Phase.REQUEST_RETRANSMITTED);
+    if (retransmissions > 0) {
+      builder.append("retransmissions=").append(retransmissions).append(", ");
+    }
+
+    int handshakeRetransmissions = getCount(Phase.HANDSHAKE_RETRANSMITTED);
+    if (handshakeRetransmissions > 0) {
+      builder.append("handshakeRetransmissions=").append(handshakeRetransmissions).append(", ");
+    }
+
+    if (getOffset(Phase.FAILED).isPresent()) {
+      builder.append("failed, ");
+    } else if (getOffset(Phase.TIMED_OUT).isPresent()) {
+      builder.append("timed out, ");
+    }
+
+    return builder.append("total=").append(formatMillis(getElapsed())).toString();
+  }
+
+  private void putDuration(Map<String, Long> breakdown, String name, Phase from, Phase to) {
+    Optional<Long> duration = getDuration(from, to);
+    if (duration.isPresent()) {
+      breakdown.put(name, duration.get());
+    }
+  }
+
+  private static String formatMillis(long nanos) {
+    return String.format(Locale.ROOT, "%.3fms", (double) nanos / TimeUnit.MILLISECONDS.toNanos(1));
+  }
+}
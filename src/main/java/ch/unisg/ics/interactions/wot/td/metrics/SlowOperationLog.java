@@ -0,0 +1,139 @@
+package ch.unisg.ics.interactions.wot.td.metrics;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An {@link OperationMetrics} implementation that logs the phase timings of the exchanges that
+ * took longer than a threshold (including failed and timed out exchanges), and keeps the most
+ * recent ones in memory. It can be combined with a {@link MetricsRecorder} using
+ * {@link OperationMetrics#compose(OperationMetrics...)}.
+ */
+public class SlowOperationLog implements OperationMetrics {
+  private final static Logger LOGGER = Logger.getLogger(SlowOperationLog.class.getCanonicalName());
+
+  public static final int DEFAULT_CAPACITY = 100;
+
+  /**
+   * A slow exchange: the key of the operation and the full breakdown of the exchange, as recorded
+   * when the exchange was found to be slow.
+   */
+  public static final class Entry {
+    private final long timestamp;
+    private final OperationKey key;
+    private final PhaseTimings timings;
+
+    Entry(long timestamp, OperationKey key, PhaseTimings timings) {
+      this.timestamp = timestamp;
+      this.key = key;
+      this.timings = timings;
+    }
+
+    /**
+     * Gets the time at which the slow exchange was recorded.
+     *
+     * @return the time in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+      return timestamp;
+    }
+
+    public OperationKey getKey() {
+      return key;
+    }
+
+    public PhaseTimings getTimings() {
+      return timings;
+    }
+
+    @Override
+    public String toString() {
+      return "[SlowOperation] " + key + ", " + timings;
+    }
+  }
+
+  private final long thresholdNanos;
+  private final int capacity;
+  private final Level level;
+  private final Deque<Entry> entries;
+
+  /**
+   * Creates a log for the exchanges that take longer than the given threshold. Slow exchanges are
+   * logged with the <code>WARNING</code> level, and the {@value #DEFAULT_CAPACITY} most recent
+   * ones are kept in memory.
+   *
+   * @param threshold the threshold
+   * @param unit the time unit of the threshold
+   */
+  public SlowOperationLog(long threshold, TimeUnit unit) {
+    this(threshold, unit, DEFAULT_CAPACITY, Level.WARNING);
+  }
+
+  /**
+   * Creates a log for the exchanges that take longer than the given threshold.
+   *
+   * @param threshold the threshold
+   * @param unit the time unit of the threshold
+   * @param capacity the number of slow exchanges kept in memory
+   * @param level the level used to log slow exchanges
+   */
+  public SlowOperationLog(long threshold, TimeUnit unit, int capacity, Level level) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException("The capacity cannot be negative: " + capacity);
+    }
+
+    this.thresholdNanos = unit.toNanos(threshold);
+    this.capacity = capacity;
+    this.level = level;
+    this.entries = new ArrayDeque<>(capacity);
+  }
+
+  public long getThreshold(TimeUnit unit) {
+    return unit.convert(thresholdNanos, TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public void onTimings(OperationKey key, PhaseTimings timings) {
+    if (timings.getElapsed() < thresholdNanos) {
+      return;
+    }
+
+    // The timings of an operation are restarted by its next exchange
+    Entry entry = new Entry(System.currentTimeMillis(), key, timings.snapshot());
+
+    if (capacity > 0) {
+      synchronized (entries) {
+        if (entries.size() == capacity) {
+          entries.removeFirst();
+        }
+        entries.addLast(entry);
+      }
+    }
+
+    if (LOGGER.isLoggable(level)) {
+      LOGGER.log(level, entry.toString());
+    }
+  }
+
+  /**
+   * Gets the most recent slow exchanges, from the oldest to the most recent.
+   *
+   * @return the list of slow exchanges
+   */
+  public List<Entry> getEntries() {
+    synchronized (entries) {
+      return new ArrayList<>(entries);
+    }
+  }
+
+  public void clear() {
+    synchronized (entries) {
+      entries.clear();
+    }
+  }
+}
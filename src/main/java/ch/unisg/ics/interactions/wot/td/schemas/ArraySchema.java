@@ -1,5 +1,6 @@
 package ch.unisg.ics.interactions.wot.td.schemas;
 
+import ch.unisg.ics.interactions.wot.td.Fingerprint;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonPrimitive;
@@ -112,6 +113,26 @@ public class ArraySchema extends DataSchema {
     return itemSchema;
   }
 
+  @Override
+  protected void addToFingerprint(Fingerprint.Builder builder) {
+    super.addToFingerprint(builder);
+    builder.addFingerprints(items).add(minItems).add(maxItems);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!super.equals(o)) return false;
+
+    ArraySchema other = (ArraySchema) o;
+    return items.equals(other.items) && minItems.equals(other.minItems)
+      && maxItems.equals(other.maxItems);
+  }
+
+  @Override
+  public int hashCode() {
+    return super.hashCode();
+  }
+
   public static final class Builder extends DataSchema.JsonSchemaBuilder<ArraySchema, ArraySchema.Builder> {
     final private List<DataSchema> items;
     private Optional<Integer> minItems;
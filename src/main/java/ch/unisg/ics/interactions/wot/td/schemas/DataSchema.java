@@ -1,12 +1,13 @@
 package ch.unisg.ics.interactions.wot.td.schemas;
 
+import ch.unisg.ics.interactions.wot.td.Fingerprint;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 
 import java.lang.reflect.ParameterizedType;
 import java.util.*;
 
-public class DataSchema {
+public class DataSchema implements Fingerprint.Fingerprinted {
   public static final String OBJECT = "object";
   public static final String ARRAY = "array";
 
@@ -24,6 +25,9 @@ public class DataSchema {
   private final Optional<String> contentMediaType;
   private final List<DataSchema> dataSchemas;
 
+  private volatile Fingerprint fingerprint;
+  private volatile SchemaSerializer serializer;
+
   protected DataSchema(Set<String> semanticTypes, Set<String> enumeration,
                        Optional<String> contentMediaType, List<DataSchema> dataSchemas) {
     this(DataSchema.DATA, semanticTypes, enumeration, contentMediaType, dataSchemas);
@@ -107,6 +111,70 @@ public class DataSchema {
     return schemas;
   }
 
+  /**
+   * Gets the fingerprint of this schema, which is computed from its content on first access.
+   *
+   * @return the fingerprint of the schema
+   */
+  @Override
+  public Fingerprint getFingerprint() {
+    Fingerprint f = fingerprint;
+    if (f == null) {
+      Fingerprint.Builder builder = new Fingerprint.Builder();
+      addToFingerprint(builder);
+      f = builder.build();
+      fingerprint = f;
+    }
+    return f;
+  }
+
+  /**
+   * Gets the JSON serializer compiled from this schema, which is compiled on first access.
+   *
+   * @return the serializer of values of this schema
+   */
+  public SchemaSerializer getSerializer() {
+    SchemaSerializer s = serializer;
+    if (s == null) {
+      s = SchemaSerializer.compile(this);
+      serializer = s;
+    }
+    return s;
+  }
+
+  /**
+   * Adds the content of this schema to a fingerprint. Subclasses that define additional
+   * keywords should override this method (and call the super method).
+   *
+   * @param builder the fingerprint builder
+   */
+  protected void addToFingerprint(Fingerprint.Builder builder) {
+    builder.add(datatype)
+      .addUnordered(semanticTypes)
+      .addUnordered(enumeration)
+      .add(contentMediaType)
+      .addFingerprints(dataSchemas);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+
+    DataSchema other = (DataSchema) o;
+    return getFingerprint().equals(other.getFingerprint())
+      && datatype.equals(other.datatype)
+      && semanticTypes.equals(other.semanticTypes)
+      && enumeration.equals(other.enumeration)
+      && contentMediaType.equals(other.contentMediaType)
+      && dataSchemas.equals(other.dataSchemas);
+  }
+
+  @Override
+  public int hashCode() {
+    return getFingerprint().hashCode();
+  }
+
   public static DataSchema getEmptySchema() {
     Set<String> semanticTypes = Collections.unmodifiableSet(new HashSet<String>());
     Set<String> enumeration = Collections.unmodifiableSet(new HashSet<String>());
@@ -1,5 +1,6 @@
 package ch.unisg.ics.interactions.wot.td.schemas;
 
+import ch.unisg.ics.interactions.wot.td.Fingerprint;
 import com.google.gson.JsonElement;
 
 import java.util.List;
@@ -41,6 +42,25 @@ public class NumberSchema extends DataSchema {
     return element.getAsDouble();
   }
 
+  @Override
+  protected void addToFingerprint(Fingerprint.Builder builder) {
+    super.addToFingerprint(builder);
+    builder.add(minimum).add(maximum);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!super.equals(o)) return false;
+
+    NumberSchema other = (NumberSchema) o;
+    return minimum.equals(other.minimum) && maximum.equals(other.maximum);
+  }
+
+  @Override
+  public int hashCode() {
+    return super.hashCode();
+  }
+
   public static final class Builder extends DataSchema.JsonSchemaBuilder<NumberSchema, NumberSchema.Builder> {
     private Optional<Double> minimum;
     private Optional<Double> maximum;
@@ -1,17 +1,19 @@
 package ch.unisg.ics.interactions.wot.td.schemas;
 
+import ch.unisg.ics.interactions.wot.td.Fingerprint;
 import ch.unisg.ics.interactions.wot.td.io.InvalidTDException;
 import ch.unisg.ics.interactions.wot.td.vocabularies.JSONSchema;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class ObjectSchema extends DataSchema {
   final private Map<String, DataSchema> properties;
   final private List<String> required;
 
+  private volatile MappingPlan mappingPlan;
+
   protected ObjectSchema(Set<String> semanticTypes, Set<String> enumeration,
                          Optional<String> contentMediaType, List<DataSchema> dataSchemas,
                          Map<String, DataSchema> properties, List<String> required) {
@@ -33,31 +35,20 @@ public class ObjectSchema extends DataSchema {
     }
 
     JsonObject objPayload = element.getAsJsonObject();
-    Map<String, Object> data = new HashMap<String, Object>();
+    MappingPlan.Entry[] entries = getMappingPlan().entries;
+    Map<String, Object> data = new HashMap<String, Object>(entries.length * 4 / 3 + 1);
 
-    for (String propName : properties.keySet()) {
-      JsonElement prop = objPayload.get(propName);
+    for (MappingPlan.Entry entry : entries) {
+      JsonElement prop = objPayload.get(entry.name);
       if (prop == null) {
-        if (hasRequiredProperty(propName)) {
-          throw new IllegalArgumentException("Missing required property: " + propName);
+        if (entry.required) {
+          throw new IllegalArgumentException("Missing required property: " + entry.name);
         }
 
         continue;
       }
 
-      DataSchema propSchema = properties.get(propName);
-
-      // Filter out data schema tags, if any
-      List<String> tags = propSchema.getSemanticTypes().stream().filter(tag ->
-        !tag.startsWith(JSONSchema.PREFIX)).collect(Collectors.toList());
-
-      if (tags.isEmpty()) {
-        data.put(propName, properties.get(propName).parseJson(prop));
-      } else {
-        // Currently returns one semantic tag; TODO: handle multiple semantic tags
-        String semanticType = tags.get(0);
-        data.put(semanticType, properties.get(propName).parseJson(prop));
-      }
+      data.put(entry.key, entry.schema.parseJson(prop));
     }
 
     return data;
@@ -65,31 +56,22 @@ public class ObjectSchema extends DataSchema {
 
   @SuppressWarnings("unchecked")
   public Map<String, Object> instantiate(Map<String, Object> values) {
+    MappingPlan plan = getMappingPlan();
     Map<String, Object> instance = new HashMap<String, Object>();
 
     // TODO: handle semantic arrays
     // TODO: handle semantic arrays with semantic elements
 
-    for (String tag : values.keySet()) {
-      Optional<String> propertyName = getFirstPropertyNameBySemnaticType(tag);
-      Optional<String> name = Optional.empty();
-
-      if (propertyName.isPresent()) {
-        name = propertyName;
-      } else if (properties.containsKey(tag)) {
-        name = Optional.of(tag);
+    for (Map.Entry<String, Object> value : values.entrySet()) {
+      MappingPlan.Entry entry = plan.get(value.getKey());
+      if (entry == null) {
+        continue;
       }
 
-      if (name.isPresent()) {
-        Optional<DataSchema> property = getProperty(name.get());
-        if (property.isPresent() && property.get().getDatatype().equals(DataSchema.OBJECT)
-          && values.get(tag) instanceof Map) {
-          ObjectSchema propertySchema = (ObjectSchema) property.get();
-          Map propertyMap = propertySchema.instantiate((Map) values.get(tag));
-          instance.put(name.get(), propertyMap);
-        } else {
-          instance.put(name.get(), values.get(tag));
-        }
+      if (entry.nested != null && value.getValue() instanceof Map) {
+        instance.put(entry.name, entry.nested.instantiate((Map) value.getValue()));
+      } else {
+        instance.put(entry.name, value.getValue());
       }
     }
 
@@ -102,13 +84,8 @@ public class ObjectSchema extends DataSchema {
   }
 
   public Optional<String> getFirstPropertyNameBySemnaticType(String type) {
-    for (Map.Entry<String, DataSchema> property : properties.entrySet()) {
-      if (property.getValue().isA(type)) {
-        return Optional.of(property.getKey());
-      }
-    }
-
-    return Optional.empty();
+    MappingPlan.Entry entry = getMappingPlan().bySemanticType.get(type);
+    return (entry == null) ? Optional.empty() : Optional.of(entry.name);
   }
 
   public Map<String, DataSchema> getProperties() {
@@ -120,7 +97,105 @@ public class ObjectSchema extends DataSchema {
   }
 
   public boolean hasRequiredProperty(String propName) {
-    return required.contains(propName);
+    MappingPlan.Entry entry = getMappingPlan().byName.get(propName);
+    return entry != null && entry.required;
+  }
+
+  /**
+   * Gets the plan that maps the properties of this schema to the keys of semantic payloads (see
+   * {@link #parseJson(JsonElement)} and {@link #instantiate(Map)}). The plan is computed on first
+   * use, and then shared by all payloads.
+   */
+  private MappingPlan getMappingPlan() {
+    MappingPlan p = mappingPlan;
+    if (p == null) {
+      p = new MappingPlan(properties, required);
+      mappingPlan = p;
+    }
+    return p;
+  }
+
+  @Override
+  protected void addToFingerprint(Fingerprint.Builder builder) {
+    super.addToFingerprint(builder);
+    builder.addFingerprints(properties).addUnordered(required);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!super.equals(o)) return false;
+
+    ObjectSchema other = (ObjectSchema) o;
+    return properties.equals(other.properties)
+      && new HashSet<>(required).equals(new HashSet<>(other.required));
+  }
+
+  @Override
+  public int hashCode() {
+    return super.hashCode();
+  }
+
+  /**
+   * Immutable mapping between the properties of an object schema and the keys of semantic payloads.
+   * The key of a property is its first semantic type that is not a JSON Schema type, or its name if
+   * it has no such type. Keys of semantic payloads are resolved to properties first by semantic
+   * type (in the iteration order of the properties), and then by name.
+   */
+  private static final class MappingPlan {
+    private final Entry[] entries;
+    private final Map<String, Entry> byName;
+    private final Map<String, Entry> bySemanticType;
+
+    MappingPlan(Map<String, DataSchema> properties, List<String> required) {
+      Set<String> requiredNames = new HashSet<>(required);
+
+      this.entries = new Entry[properties.size()];
+      this.byName = new HashMap<>(properties.size() * 4 / 3 + 1);
+      this.bySemanticType = new HashMap<>();
+
+      int i = 0;
+      for (Map.Entry<String, DataSchema> property : properties.entrySet()) {
+        Entry entry = new Entry(property.getKey(), property.getValue(),
+          requiredNames.contains(property.getKey()));
+
+        entries[i++] = entry;
+        byName.put(entry.name, entry);
+        for (String type : property.getValue().getSemanticTypes()) {
+          bySemanticType.putIfAbsent(type, entry);
+        }
+      }
+    }
+
+    Entry get(String key) {
+      Entry entry = bySemanticType.get(key);
+      return (entry == null) ? byName.get(key) : entry;
+    }
+
+    private static final class Entry {
+      private final String name;
+      private final String key;
+      private final DataSchema schema;
+      private final ObjectSchema nested;
+      private final boolean required;
+
+      Entry(String name, DataSchema schema, boolean required) {
+        this.name = name;
+        this.schema = schema;
+        this.nested = schema instanceof ObjectSchema ? (ObjectSchema) schema : null;
+        this.required = required;
+
+        // Data schema tags are not semantic keys; currently only one semantic tag is used as key
+        // TODO: handle multiple semantic tags
+        String semanticKey = name;
+        for (String tag : schema.getSemanticTypes()) {
+          if (!tag.startsWith(JSONSchema.PREFIX)) {
+            semanticKey = tag;
+            break;
+          }
+        }
+        this.key = semanticKey;
+      }
+    }
   }
 
   public static final class Builder extends DataSchema.JsonSchemaBuilder<ObjectSchema, ObjectSchema.Builder> {
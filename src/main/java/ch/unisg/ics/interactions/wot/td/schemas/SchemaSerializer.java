@@ -0,0 +1,629 @@
+package ch.unisg.ics.interactions.wot.td.schemas;
+
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * JSON serializer compiled from a {@link DataSchema}: the properties of object schemas (with their
+ * names encoded in advance) and the schemas of array items are resolved once, and values are
+ * written as UTF-8 directly into a per-thread buffer that is reused across calls. The output is the
+ * same as with Gson's default configuration (e.g. <code>null</code> members are omitted and HTML
+ * characters are escaped).
+ * <p>
+ * The schema only drives the serialization: values that do not match it (e.g. members that are not
+ * declared in an object schema) are serialized according to their Java type, and values that are
+ * not JSON values (e.g. Java beans) are serialized with Gson.
+ * <p>
+ * Serializers are thread-safe. The serializer of a schema is available through
+ * {@link DataSchema#getSerializer()}.
+ * <p>
+ * Values that are not held in maps and lists (e.g. the classes of generated clients) are written
+ * with an {@link Encoder}, through the same buffer and escapes (see {@link #encode(Object, Encoder)}).
+ */
+public final class SchemaSerializer {
+
+  /**
+   * Buffers that grow beyond this size (in bytes) are not kept for reuse
+   */
+  static final int MAX_POOLED_BUFFER_SIZE = 64 * 1024;
+
+  private static final SchemaSerializer GENERIC = new SchemaSerializer(new ValueWriter());
+
+  private static final Gson GSON = new Gson();
+
+  private static final ThreadLocal<Buffer> BUFFERS = ThreadLocal.withInitial(Buffer::new);
+
+  private static final byte[] NULL = bytes("null");
+  private static final byte[] TRUE = bytes("true");
+  private static final byte[] FALSE = bytes("false");
+  private static final byte[] HEX = bytes("0123456789abcdef");
+
+  private final ValueWriter writer;
+
+  /**
+   * Encoder of a value as JSON, written to a {@link JsonOutput}.
+   *
+   * @param <T> the type of the encoded values
+   */
+  public interface Encoder<T> {
+    void encode(JsonOutput out, T value);
+  }
+
+  private SchemaSerializer(ValueWriter writer) {
+    this.writer = writer;
+  }
+
+  /**
+   * Compiles a serializer from a data schema.
+   *
+   * @param schema the schema of the values to serialize
+   * @return the serializer
+   */
+  public static SchemaSerializer compile(DataSchema schema) {
+    return new SchemaSerializer(compileWriter(schema));
+  }
+
+  /**
+   * Gets a serializer that writes values according to their Java type only.
+   *
+   * @return the serializer
+   */
+  public static SchemaSerializer generic() {
+    return GENERIC;
+  }
+
+  /**
+   * Serializes a value to JSON.
+   *
+   * @param value the value
+   * @return the UTF-8 encoding of the JSON value
+   */
+  public byte[] toByteArray(Object value) {
+    Buffer buffer = acquire();
+    try {
+      writer.write(value, buffer);
+      return buffer.toByteArray();
+    } finally {
+      release(buffer);
+    }
+  }
+
+  /**
+   * Serializes a value to JSON and writes it to an output stream.
+   *
+   * @param value the value
+   * @param out the output stream
+   * @throws IOException if the output stream could not be written
+   */
+  public void writeTo(Object value, OutputStream out) throws IOException {
+    Buffer buffer = acquire();
+    try {
+      writer.write(value, buffer);
+      out.write(buffer.bytes, 0, buffer.size);
+    } finally {
+      release(buffer);
+    }
+  }
+
+  /**
+   * Serializes a value to a JSON string.
+   *
+   * @param value the value
+   * @return the JSON value
+   */
+  public String toJson(Object value) {
+    Buffer buffer = acquire();
+    try {
+      writer.write(value, buffer);
+      return new String(buffer.bytes, 0, buffer.size, StandardCharsets.UTF_8);
+    } finally {
+      release(buffer);
+    }
+  }
+
+  /**
+   * Serializes a value to JSON with an encoder.
+   *
+   * @param value the value
+   * @param encoder the encoder of the value
+   * @param <T> the type of the value
+   * @return the UTF-8 encoding of the JSON value
+   */
+  public static <T> byte[] encode(T value, Encoder<? super T> encoder) {
+    Buffer buffer = acquire();
+    try {
+      encoder.encode(new JsonOutput(buffer), value);
+      return buffer.toByteArray();
+    } finally {
+      release(buffer);
+    }
+  }
+
+  private static Buffer acquire() {
+    Buffer buffer = BUFFERS.get();
+
+    if (buffer.inUse) {
+      // Reentrant call (e.g. from a value's toString), use a buffer of its own
+      return new Buffer();
+    }
+
+    buffer.inUse = true;
+    buffer.size = 0;
+    return buffer;
+  }
+
+  private static void release(Buffer buffer) {
+    if (buffer != BUFFERS.get()) {
+      // The own buffer of a reentrant call is not pooled
+      return;
+    }
+
+    buffer.inUse = false;
+
+    if (buffer.bytes.length > MAX_POOLED_BUFFER_SIZE) {
+      BUFFERS.remove();
+    }
+  }
+
+  // Package-level access, used for testing
+  static Buffer getPooledBuffer() {
+    return BUFFERS.get();
+  }
+
+  private static ValueWriter compileWriter(DataSchema schema) {
+    switch (schema.getDatatype()) {
+      case DataSchema.OBJECT:
+        return new ObjectWriter((ObjectSchema) schema);
+      case DataSchema.ARRAY:
+        return new ArrayWriter((ArraySchema) schema);
+      case DataSchema.STRING:
+        return new StringWriter();
+      case DataSchema.INTEGER:
+      case DataSchema.NUMBER:
+        return new NumberWriter();
+      default:
+        return new ValueWriter();
+    }
+  }
+
+  private static byte[] bytes(String s) {
+    return s.getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Growable byte buffer, reused by the serializers of a thread.
+   */
+  static final class Buffer {
+    private byte[] bytes = new byte[512];
+    private int size = 0;
+    private boolean inUse = false;
+
+    void write(int b) {
+      ensureCapacity(1);
+      bytes[size++] = (byte) b;
+    }
+
+    void write(byte[] b) {
+      ensureCapacity(b.length);
+      System.arraycopy(b, 0, bytes, size, b.length);
+      size += b.length;
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(bytes, size);
+    }
+
+    private void ensureCapacity(int extra) {
+      if (size + extra > bytes.length) {
+        bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+      }
+    }
+  }
+
+  /**
+   * Output of an {@link Encoder}. Callers are responsible for the structure of the JSON value (e.g.
+   * separators between members), while strings and numbers are written as by the serializers.
+   */
+  public static final class JsonOutput {
+    private final Buffer buffer;
+
+    private JsonOutput(Buffer buffer) {
+      this.buffer = buffer;
+    }
+
+    /**
+     * Encodes the name of an object member, followed by a colon, so that it can be written with
+     * {@link #writeRaw(byte[])}.
+     *
+     * @param name the name of the member
+     * @return the UTF-8 encoding of the name
+     */
+    public static byte[] encodeName(String name) {
+      Buffer out = new Buffer();
+      ValueWriter.writeString(name, out);
+      out.write(':');
+      return out.toByteArray();
+    }
+
+    /**
+     * Writes a structural character (e.g. <code>{</code> or <code>,</code>).
+     *
+     * @param c the character, which must be ASCII
+     */
+    public void writeRaw(char c) {
+      buffer.write(c);
+    }
+
+    /**
+     * Writes JSON that is already encoded as UTF-8 (e.g. by {@link #encodeName(String)}).
+     *
+     * @param json the encoded JSON
+     */
+    public void writeRaw(byte[] json) {
+      buffer.write(json);
+    }
+
+    public void writeString(String value) {
+      ValueWriter.writeString(value, buffer);
+    }
+
+    public void writeLong(long value) {
+      ValueWriter.writeLong(value, buffer);
+    }
+
+    /**
+     * Writes a JSON number.
+     *
+     * @param value the value
+     * @throws IllegalArgumentException if the value is not finite
+     */
+    public void writeDouble(double value) {
+      if (Double.isNaN(value) || Double.isInfinite(value)) {
+        throw new IllegalArgumentException(value + " is not a valid double value as per JSON "
+          + "specification.");
+      }
+
+      String s = Double.toString(value);
+      for (int i = 0; i < s.length(); i++) {
+        buffer.write(s.charAt(i));
+      }
+    }
+
+    public void writeBoolean(boolean value) {
+      buffer.write(value ? TRUE : FALSE);
+    }
+
+    /**
+     * Writes a value according to its Java type.
+     *
+     * @param value the value
+     */
+    public void writeValue(Object value) {
+      ValueWriter.writeValue(value, buffer);
+    }
+  }
+
+  /**
+   * Writes values according to their Java type.
+   */
+  private static class ValueWriter {
+
+    void write(Object value, Buffer out) {
+      writeValue(value, out);
+    }
+
+    static void writeValue(Object value, Buffer out) {
+      if (value == null) {
+        out.write(NULL);
+      } else if (value instanceof String) {
+        writeString((String) value, out);
+      } else if (value instanceof Number) {
+        writeNumber((Number) value, out);
+      } else if (value instanceof Boolean) {
+        out.write((Boolean) value ? TRUE : FALSE);
+      } else if (value instanceof Map) {
+        writeMap((Map<?, ?>) value, out);
+      } else if (value instanceof List) {
+        List<?> list = (List<?>) value;
+        out.write('[');
+        for (int i = 0; i < list.size(); i++) {
+          if (i > 0) {
+            out.write(',');
+          }
+          writeValue(list.get(i), out);
+        }
+        out.write(']');
+      } else {
+        out.write(bytes(GSON.toJson(value)));
+      }
+    }
+
+    static void writeMap(Map<?, ?> map, Buffer out) {
+      out.write('{');
+      boolean first = true;
+      for (Map.Entry<?, ?> entry : map.entrySet()) {
+        if (entry.getValue() == null) {
+          continue;
+        }
+        if (!first) {
+          out.write(',');
+        }
+        first = false;
+        writeString(String.valueOf(entry.getKey()), out);
+        out.write(':');
+        writeValue(entry.getValue(), out);
+      }
+      out.write('}');
+    }
+
+    static void writeNumber(Number value, Buffer out) {
+      if (value instanceof Long || value instanceof Integer || value instanceof Short
+          || value instanceof Byte) {
+        writeLong(value.longValue(), out);
+        return;
+      }
+
+      if (value instanceof Double || value instanceof Float) {
+        double d = value.doubleValue();
+        if (Double.isNaN(d) || Double.isInfinite(d)) {
+          throw new IllegalArgumentException(value + " is not a valid double value as per JSON "
+            + "specification.");
+        }
+      } else if (!(value instanceof BigInteger) && !(value instanceof BigDecimal)) {
+        // Other number types (e.g. LazilyParsedNumber) are written as Gson would write them
+        out.write(bytes(GSON.toJson(value)));
+        return;
+      }
+
+      String s = value.toString();
+      for (int i = 0; i < s.length(); i++) {
+        out.write(s.charAt(i));
+      }
+    }
+
+    static void writeLong(long value, Buffer out) {
+      if (value == Long.MIN_VALUE) {
+        out.write(bytes(Long.toString(value)));
+        return;
+      }
+
+      if (value < 0) {
+        out.write('-');
+        value = -value;
+      }
+
+      out.ensureCapacity(19);
+      int start = out.size;
+      do {
+        out.bytes[out.size++] = (byte) ('0' + value % 10);
+        value /= 10;
+      } while (value > 0);
+
+      // Digits were written in reverse order
+      for (int i = start, j = out.size - 1; i < j; i++, j--) {
+        byte b = out.bytes[i];
+        out.bytes[i] = out.bytes[j];
+        out.bytes[j] = b;
+      }
+    }
+
+    /**
+     * Writes a JSON string with the escapes of Gson's default (HTML-safe) configuration.
+     */
+    static void writeString(String s, Buffer out) {
+      out.write('"');
+
+      for (int i = 0; i < s.length(); i++) {
+        char c = s.charAt(i);
+
+        if (c < 0x80) {
+          switch (c) {
+            case '"': out.write('\\'); out.write('"'); break;
+            case '\\': out.write('\\'); out.write('\\'); break;
+            case '\t': out.write('\\'); out.write('t'); break;
+            case '\b': out.write('\\'); out.write('b'); break;
+            case '\n': out.write('\\'); out.write('n'); break;
+            case '\r': out.write('\\'); out.write('r'); break;
+            case '\f': out.write('\\'); out.write('f'); break;
+            case '<': case '>': case '&': case '=': case '\'':
+              writeUnicodeEscape(c, out);
+              break;
+            default:
+              if (c < 0x20) {
+                writeUnicodeEscape(c, out);
+              } else {
+                out.write(c);
+              }
+          }
+        } else if (c < 0x800) {
+          out.write(0xc0 | (c >> 6));
+          out.write(0x80 | (c & 0x3f));
+        } else if (c == 0x2028 || c == 0x2029) {
+          writeUnicodeEscape(c, out);
+        } else if (Character.isHighSurrogate(c) && i + 1 < s.length()
+            && Character.isLowSurrogate(s.charAt(i + 1))) {
+          int cp = Character.toCodePoint(c, s.charAt(++i));
+          out.write(0xf0 | (cp >> 18));
+          out.write(0x80 | ((cp >> 12) & 0x3f));
+          out.write(0x80 | ((cp >> 6) & 0x3f));
+          out.write(0x80 | (cp & 0x3f));
+        } else if (Character.isSurrogate(c)) {
+          // Unpaired surrogates are replaced, as with String.getBytes
+          out.write('?');
+        } else {
+          out.write(0xe0 | (c >> 12));
+          out.write(0x80 | ((c >> 6) & 0x3f));
+          out.write(0x80 | (c & 0x3f));
+        }
+      }
+
+      out.write('"');
+    }
+
+    private static void writeUnicodeEscape(char c, Buffer out) {
+      out.write('\\');
+      out.write('u');
+      out.write(HEX[(c >> 12) & 0xf]);
+      out.write(HEX[(c >> 8) & 0xf]);
+      out.write(HEX[(c >> 4) & 0xf]);
+      out.write(HEX[c & 0xf]);
+    }
+  }
+
+  private static final class StringWriter extends ValueWriter {
+
+    @Override
+    void write(Object value, Buffer out) {
+      if (value instanceof String) {
+        writeString((String) value, out);
+      } else {
+        writeValue(value, out);
+      }
+    }
+  }
+
+  private static final class NumberWriter extends ValueWriter {
+
+    @Override
+    void write(Object value, Buffer out) {
+      if (value instanceof Number) {
+        writeNumber((Number) value, out);
+      } else {
+        writeValue(value, out);
+      }
+    }
+  }
+
+  private static final class ArrayWriter extends ValueWriter {
+    private final ValueWriter[] items;
+
+    ArrayWriter(ArraySchema schema) {
+      items = new ValueWriter[schema.getItems().size()];
+      for (int i = 0; i < items.length; i++) {
+        items[i] = compileWriter(schema.getItems().get(i));
+      }
+    }
+
+    @Override
+    void write(Object value, Buffer out) {
+      if (!(value instanceof List)) {
+        writeValue(value, out);
+        return;
+      }
+
+      List<?> list = (List<?>) value;
+
+      // A single item schema applies to all items, several item schemas to items at their position
+      boolean tuple = items.length > 1 && items.length == list.size();
+
+      out.write('[');
+      for (int i = 0; i < list.size(); i++) {
+        if (i > 0) {
+          out.write(',');
+        }
+
+        if (items.length == 1) {
+          items[0].write(list.get(i), out);
+        } else if (tuple) {
+          items[i].write(list.get(i), out);
+        } else {
+          writeValue(list.get(i), out);
+        }
+      }
+      out.write(']');
+    }
+  }
+
+  private static final class ObjectWriter extends ValueWriter {
+    private final String[] names;
+    private final byte[][] encodedNames;
+    private final ValueWriter[] properties;
+
+    ObjectWriter(ObjectSchema schema) {
+      int count = schema.getProperties().size();
+      names = new String[count];
+      encodedNames = new byte[count][];
+      properties = new ValueWriter[count];
+
+      int i = 0;
+      for (Map.Entry<String, DataSchema> property : schema.getProperties().entrySet()) {
+        names[i] = property.getKey();
+
+        Buffer name = new Buffer();
+        writeString(property.getKey(), name);
+        name.write(':');
+        encodedNames[i] = name.toByteArray();
+
+        properties[i] = compileWriter(property.getValue());
+        i++;
+      }
+    }
+
+    @Override
+    void write(Object value, Buffer out) {
+      if (!(value instanceof Map)) {
+        writeValue(value, out);
+        return;
+      }
+
+      Map<?, ?> map = (Map<?, ?>) value;
+      int declared = 0;
+
+      out.write('{');
+      boolean first = true;
+
+      for (int i = 0; i < names.length; i++) {
+        Object member = map.get(names[i]);
+        if (member == null) {
+          if (map.containsKey(names[i])) {
+            declared++;
+          }
+          continue;
+        }
+
+        declared++;
+        if (!first) {
+          out.write(',');
+        }
+        first = false;
+
+        out.write(encodedNames[i]);
+        properties[i].write(member, out);
+      }
+
+      if (declared < map.size()) {
+        // Members that are not declared in the schema
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+          if (entry.getValue() == null || isDeclared(entry.getKey())) {
+            continue;
+          }
+          if (!first) {
+            out.write(',');
+          }
+          first = false;
+
+          writeString(String.valueOf(entry.getKey()), out);
+          out.write(':');
+          writeValue(entry.getValue(), out);
+        }
+      }
+
+      out.write('}');
+    }
+
+    private boolean isDeclared(Object key) {
+      for (String name : names) {
+        if (name.equals(key)) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+}
@@ -1,10 +1,11 @@
 package ch.unisg.ics.interactions.wot.td.security;
 
+import ch.unisg.ics.interactions.wot.td.Fingerprint;
 import ch.unisg.ics.interactions.wot.td.vocabularies.WoTSec;
 
 import java.util.*;
 
-public abstract class SecurityScheme {
+public abstract class SecurityScheme implements Fingerprint.Fingerprinted {
 
   public static final String NOSEC = "nosec";
   public static final String BASIC = "basic";
@@ -18,6 +19,8 @@ public abstract class SecurityScheme {
   private final Map<String, Object> configuration;
   private final Set<String> semanticTypes;
 
+  private volatile Fingerprint fingerprint;
+
   protected SecurityScheme(String schemeName, Map<String, Object> configuration,
                            Set<String> semanticTypes) {
     this.schemeName = schemeName;
@@ -49,6 +52,47 @@ public abstract class SecurityScheme {
     return semanticTypes;
   }
 
+  /**
+   * Gets the fingerprint of this security scheme, which is computed from its name, configuration,
+   * and semantic types on first access.
+   *
+   * @return the fingerprint of the security scheme
+   */
+  @Override
+  public Fingerprint getFingerprint() {
+    Fingerprint f = fingerprint;
+    if (f == null) {
+      f = new Fingerprint.Builder()
+        .add(schemeName)
+        .addValues(configuration)
+        .addUnordered(semanticTypes)
+        .build();
+      fingerprint = f;
+    }
+    return f;
+  }
+
+  /**
+   * Two security schemes are equal if they are of the same type and have the same configuration and
+   * semantic types (all the parameters of a security scheme are part of its configuration).
+   */
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (!(o instanceof SecurityScheme)) return false;
+
+    SecurityScheme other = (SecurityScheme) o;
+    return getFingerprint().equals(other.getFingerprint())
+      && schemeName.equals(other.schemeName)
+      && configuration.equals(other.configuration)
+      && semanticTypes.equals(other.semanticTypes);
+  }
+
+  @Override
+  public int hashCode() {
+    return getFingerprint().hashCode();
+  }
+
   public static SecurityScheme getNoSecurityScheme() {
     Set<String> semanticTypes = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(WoTSec.NoSecurityScheme)));
     Map<String, Object> configuration = Collections.unmodifiableMap(new HashMap<>());
@@ -0,0 +1,190 @@
+package ch.unisg.ics.interactions.wot.td.store;
+
+import ch.unisg.ics.interactions.wot.td.ThingDescription;
+import ch.unisg.ics.interactions.wot.td.io.TDGraphReader;
+import ch.unisg.ics.interactions.wot.td.io.TDGraphWriter;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.LinkedHashModel;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.repository.Repository;
+import org.eclipse.rdf4j.repository.RepositoryConnection;
+import org.eclipse.rdf4j.repository.RepositoryResult;
+import org.eclipse.rdf4j.repository.sail.SailRepository;
+import org.eclipse.rdf4j.sail.nativerdf.NativeStore;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A durable store for TDs backed by an RDF4J repository (by default, a <code>NativeStore</code> in a
+ * local data directory). Each TD is stored in its own named graph, identified by the URI of the
+ * Thing, such that a TD can be retrieved, replaced, or removed without touching the other TDs.
+ * <p>
+ * Opening a store does not read any TD: <code>ThingDescription</code> objects are rebuilt from their
+ * named graphs on first access and kept in memory afterwards, such that restart time does not depend
+ * on the number of stored TDs.
+ */
+public class TDStore implements AutoCloseable {
+
+  /**
+   * The indexes used by the default <code>NativeStore</code>: the context index is used for
+   * retrieving the named graph of a Thing.
+   */
+  public static final String NATIVE_STORE_INDEXES = "spoc,posc,cspo";
+
+  private final Repository repository;
+  private final Map<String, ThingDescription> tds;
+  private final ValueFactory rdf = SimpleValueFactory.getInstance();
+
+  /**
+   * Opens (or creates) a store persisted in the given directory.
+   *
+   * @param dataDir the data directory of the store
+   */
+  public TDStore(File dataDir) {
+    this(new SailRepository(new NativeStore(dataDir, NATIVE_STORE_INDEXES)));
+  }
+
+  /**
+   * Creates a store backed by the given RDF4J repository. The repository is initialized if needed,
+   * and it is shut down when the store is closed.
+   *
+   * @param repository the RDF4J repository
+   */
+  public TDStore(Repository repository) {
+    this.repository = repository;
+    this.tds = new ConcurrentHashMap<>();
+
+    if (!repository.isInitialized()) {
+      repository.init();
+    }
+  }
+
+  /**
+   * Stores a TD in the named graph identified by the URI of its Thing. If a TD was already stored
+   * for the same Thing, it is replaced.
+   *
+   * @param td the TD to store, which must have a Thing URI
+   * @throws IllegalArgumentException if the TD does not have a Thing URI
+   */
+  public void put(ThingDescription td) {
+    if (!td.getThingURI().isPresent()) {
+      throw new IllegalArgumentException("Only TDs with a Thing URI can be stored.");
+    }
+
+    String thingURI = td.getThingURI().get();
+    IRI graphId = rdf.createIRI(thingURI);
+    Model graph = TDGraphWriter.toModel(td);
+
+    synchronized (this) {
+      try (RepositoryConnection connection = repository.getConnection()) {
+        connection.begin();
+        connection.clear(graphId);
+        connection.add(graph, graphId);
+        connection.commit();
+      }
+
+      tds.put(thingURI, td);
+    }
+  }
+
+  /**
+   * Gets the TD of the Thing with the given URI. The TD is rebuilt from its named graph on first
+   * access.
+   *
+   * @param thingURI the URI of the Thing
+   * @return an <code>Optional</code> with the TD (empty if not found)
+   */
+  public Optional<ThingDescription> get(String thingURI) {
+    ThingDescription td = tds.get(thingURI);
+    if (td != null) {
+      return Optional.of(td);
+    }
+
+    Model graph = new LinkedHashModel();
+
+    synchronized (this) {
+      td = tds.get(thingURI);
+      if (td != null) {
+        return Optional.of(td);
+      }
+
+      try (RepositoryConnection connection = repository.getConnection();
+           RepositoryResult<Statement> statements = connection.getStatements(null, null, null, false,
+             rdf.createIRI(thingURI))) {
+
+        // Statements are added to the default graph of the TD model
+        for (Statement statement : statements) {
+          graph.add(statement.getSubject(), statement.getPredicate(), statement.getObject());
+        }
+      }
+
+      if (graph.isEmpty()) {
+        return Optional.empty();
+      }
+
+      td = TDGraphReader.readFromModel(graph);
+      tds.put(thingURI, td);
+    }
+
+    return Optional.of(td);
+  }
+
+  /**
+   * Checks if a TD is stored for the Thing with the given URI. The TD is not rebuilt.
+   *
+   * @param thingURI the URI of the Thing
+   * @return true if a TD is stored for the Thing
+   */
+  public boolean contains(String thingURI) {
+    if (tds.containsKey(thingURI)) {
+      return true;
+    }
+
+    try (RepositoryConnection connection = repository.getConnection()) {
+      return connection.hasStatement(null, null, null, false, rdf.createIRI(thingURI));
+    }
+  }
+
+  /**
+   * Gets the URIs of all the Things with a stored TD. The TDs are not rebuilt.
+   *
+   * @return the set of Thing URIs
+   */
+  public Set<String> getThingURIs() {
+    Set<String> thingURIs = new HashSet<>();
+
+    try (RepositoryConnection connection = repository.getConnection();
+         RepositoryResult<Resource> contexts = connection.getContextIDs()) {
+      for (Resource context : contexts) {
+        thingURIs.add(context.stringValue());
+      }
+    }
+
+    return thingURIs;
+  }
+
+  /**
+   * Removes the TD of the Thing with the given URI, if any.
+   *
+   * @param thingURI the URI of the Thing
+   */
+  public synchronized void remove(String thingURI) {
+    try (RepositoryConnection connection = repository.getConnection()) {
+      connection.clear(rdf.createIRI(thingURI));
+    }
+
+    tds.remove(thingURI);
+  }
+
+  @Override
+  public void close() {
+    tds.clear();
+    repository.shutDown();
+  }
+}
@@ -5,6 +5,8 @@ import ch.unisg.ics.interactions.wot.td.affordances.EventAffordance;
 import ch.unisg.ics.interactions.wot.td.affordances.Form;
 import ch.unisg.ics.interactions.wot.td.affordances.PropertyAffordance;
 import ch.unisg.ics.interactions.wot.td.io.InvalidTDException;
+import ch.unisg.ics.interactions.wot.td.io.TDGraphReader;
+import ch.unisg.ics.interactions.wot.td.io.TDGraphWriter;
 import ch.unisg.ics.interactions.wot.td.security.APIKeySecurityScheme;
 import ch.unisg.ics.interactions.wot.td.security.SecurityScheme;
 import ch.unisg.ics.interactions.wot.td.vocabularies.TD;
@@ -241,4 +243,59 @@ public class ThingDescriptionTest {
     Optional<EventAffordance> unknownEvent = commonTd.getFirstEventBySemanticType("ex:NoAlarm");
     assertFalse(unknownEvent.isPresent());
   }
+
+  @Test
+  public void testEqualsAfterRoundTrip() {
+    ThingDescription td = TDGraphReader.readFromString(ThingDescription.TDFormat.RDF_TURTLE,
+      TDGraphWriter.write(commonTd));
+    ThingDescription sameTd = TDGraphReader.readFromString(ThingDescription.TDFormat.RDF_TURTLE,
+      TDGraphWriter.write(td));
+
+    assertNotSame(td, sameTd);
+    assertEquals(td.getFingerprint(), sameTd.getFingerprint());
+    assertEquals(td, sameTd);
+    assertEquals(td.hashCode(), sameTd.hashCode());
+  }
+
+  @Test
+  public void testEqualsIgnoresAffordanceOrder() {
+    ThingDescription td = new ThingDescription.Builder("A Thing")
+      .addSecurityScheme("nosec_sc", SecurityScheme.getNoSecurityScheme())
+      .addProperty(commonTd.getProperties().get(1))
+      .addProperty(commonTd.getProperties().get(0))
+      .addAction(commonTd.getActions().get(1))
+      .addAction(commonTd.getActions().get(0))
+      .addEvent(commonTd.getEvents().get(1))
+      .addEvent(commonTd.getEvents().get(0))
+      .build();
+
+    assertEquals(commonTd.getFingerprint(), td.getFingerprint());
+    assertEquals(commonTd, td);
+  }
+
+  @Test
+  public void testFingerprintChangesWithContent() {
+    PropertyAffordance prop = new PropertyAffordance.Builder("temp",
+      new Form.Builder("http://example.org/prop0")
+        .addOperationType(TD.readProperty)
+        .addOperationType(TD.writeProperty)
+        .build())
+      .addSemanticType("ex:Temp")
+      .addSemanticType("ex:Value")
+      .build();
+
+    assertNotEquals(commonTd.getProperties().get(0).getFingerprint(), prop.getFingerprint());
+    assertNotEquals(commonTd.getProperties().get(0), prop);
+
+    ThingDescription td = new ThingDescription.Builder("A Thing")
+      .addSecurityScheme("nosec_sc", SecurityScheme.getNoSecurityScheme())
+      .addProperty(prop)
+      .addProperty(commonTd.getProperties().get(1))
+      .addActions(commonTd.getActions())
+      .addEvents(commonTd.getEvents())
+      .build();
+
+    assertNotEquals(commonTd.getFingerprint(), td.getFingerprint());
+    assertNotEquals(commonTd, td);
+  }
 }
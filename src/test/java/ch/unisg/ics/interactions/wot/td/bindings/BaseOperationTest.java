@@ -2,6 +2,7 @@ package ch.unisg.ics.interactions.wot.td.bindings;
 
 import ch.unisg.ics.interactions.wot.td.affordances.Form;
 import ch.unisg.ics.interactions.wot.td.affordances.Link;
+import ch.unisg.ics.interactions.wot.td.metrics.PhaseTimings.Phase;
 import ch.unisg.ics.interactions.wot.td.schemas.IntegerSchema;
 import ch.unisg.ics.interactions.wot.td.schemas.NumberSchema;
 import org.junit.Test;
@@ -9,9 +10,12 @@ import org.junit.Test;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.*;
 
 public class BaseOperationTest {
 
@@ -91,6 +95,27 @@ public class BaseOperationTest {
 
   }
 
+  /**
+   * Operation whose exchange only ends when it is aborted.
+   */
+  private class PendingOperation extends DummyOperation {
+
+    private final AtomicInteger aborts = new AtomicInteger();
+    private volatile Runnable onAbort = () -> {};
+
+    @Override
+    public void sendRequest() {
+      onRequestSent(0);
+    }
+
+    @Override
+    protected void abort() {
+      aborts.incrementAndGet();
+      onAbort.run();
+    }
+
+  }
+
   private class DummyResponseCallback implements ResponseCallback {
 
     private String state = "init";
@@ -201,6 +226,143 @@ public class BaseOperationTest {
     assertTrue(t2 - t1 < 1.2 * delay);
   }
 
+  @Test
+  public void testTimeoutUnits() {
+    DummyOperation op = new DummyOperation();
+    assertEquals(BaseOperation.DEFAULT_TIMEOUT, op.getTimeout(TimeUnit.SECONDS));
+
+    op.setTimeout(2);
+    assertEquals(2000, op.getTimeout(TimeUnit.MILLISECONDS));
+
+    op.setTimeout(250, TimeUnit.MILLISECONDS);
+    assertEquals(250, op.getTimeout(TimeUnit.MILLISECONDS));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeTimeout() {
+    new DummyOperation().setTimeout(-1, TimeUnit.MILLISECONDS);
+  }
+
+  @Test
+  public void testDeadlineAbortsExchange() throws Exception {
+    PendingOperation op = new PendingOperation();
+    op.setTimeout(150, TimeUnit.MILLISECONDS);
+
+    CountDownLatch failed = new CountDownLatch(1);
+    op.registerResponseCallback(new ResponseCallback() {
+      @Override
+      public void onResponse(Response response) {
+        fail("The response should be dropped");
+      }
+
+      @Override
+      public void onError() {
+        failed.countDown();
+      }
+    });
+
+    long t1 = System.currentTimeMillis();
+    op.sendRequest();
+
+    // The deadline expires on the timer, without a blocked caller
+    assertTrue(failed.await(2, TimeUnit.SECONDS));
+    long t2 = System.currentTimeMillis();
+
+    assertTrue(t2 - t1 >= 140);
+    assertTrue(t2 - t1 < 1000);
+    assertEquals(1, op.aborts.get());
+
+    try {
+      op.getResponse();
+      fail("The operation should have timed out");
+    } catch (NoResponseException e) {
+      // expected
+    }
+
+    // A late response is dropped
+    op.onResponse(new DummyResponse(op));
+    assertEquals(1, op.aborts.get());
+  }
+
+  @Test
+  public void testGetResponseWaitsForDeadline() throws IOException {
+    PendingOperation op = new PendingOperation();
+    op.setTimeout(200, TimeUnit.MILLISECONDS);
+
+    long t1 = System.currentTimeMillis();
+    op.sendRequest();
+
+    try {
+      op.getResponse();
+      fail("The operation should have timed out");
+    } catch (NoResponseException e) {
+      long t2 = System.currentTimeMillis();
+      assertTrue(t2 - t1 >= 190);
+      assertTrue(t2 - t1 < 1000);
+    }
+
+    assertEquals(1, op.aborts.get());
+  }
+
+  @Test
+  public void testResponseCancelsDeadline() throws Exception {
+    PendingOperation op = new PendingOperation();
+    op.setTimeout(100, TimeUnit.MILLISECONDS);
+
+    op.sendRequest();
+    op.onResponse(new DummyResponse(op));
+    assertEquals(Response.ResponseStatus.OK, op.getResponse().getStatus());
+
+    Thread.sleep(300);
+    assertEquals(0, op.aborts.get());
+  }
+
+  @Test
+  public void testResponseRacingDeadlineDropped() throws Exception {
+    PendingOperation op = new PendingOperation();
+    op.setTimeout(50, TimeUnit.MILLISECONDS);
+
+    // The response and the error of the binding arrive once the deadline expired
+    op.onAbort = () -> {
+      op.onResponse(new DummyResponse(op));
+      op.onError();
+    };
+
+    List<String> events = new CopyOnWriteArrayList<>();
+    CountDownLatch failed = new CountDownLatch(1);
+    op.registerResponseCallback(new ResponseCallback() {
+      @Override
+      public void onResponse(Response response) {
+        events.add("response");
+      }
+
+      @Override
+      public void onError() {
+        events.add("error");
+        failed.countDown();
+      }
+    });
+
+    op.sendRequest();
+    assertTrue(failed.await(2, TimeUnit.SECONDS));
+    Thread.sleep(50);
+
+    assertEquals(Collections.singletonList("error"), events);
+  }
+
+  @Test
+  public void testNoPhasesWithoutMetrics() {
+    PendingOperation op = new PendingOperation();
+    op.setTimeout(0);
+
+    op.sendRequest();
+    op.getPhaseTimings().mark(Phase.RESPONSE_RECEIVED);
+    op.onResponse(new DummyResponse(op));
+
+    assertFalse(op.getPhaseTimings().isStarted());
+    assertTrue(op.getPhaseTimings().getEvents().isEmpty());
+  }
+
   @Test
   public void testCallback() {
     BaseOperation op = new DummyOperation();
@@ -0,0 +1,65 @@
+package ch.unisg.ics.interactions.wot.td.bindings;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class HashedWheelTimerTest {
+
+  @Test
+  public void testTimeoutsExpireInOrder() throws InterruptedException {
+    try (HashedWheelTimer timer = new HashedWheelTimer(5, TimeUnit.MILLISECONDS, 8)) {
+      List<Integer> expired = Collections.synchronizedList(new ArrayList<>());
+      CountDownLatch latch = new CountDownLatch(3);
+
+      long start = System.nanoTime();
+      // 200 ms spans several rotations of the wheel (8 buckets of 5 ms)
+      timer.newTimeout(() -> { expired.add(3); latch.countDown(); }, 200, TimeUnit.MILLISECONDS);
+      timer.newTimeout(() -> { expired.add(1); latch.countDown(); }, 10, TimeUnit.MILLISECONDS);
+      timer.newTimeout(() -> { expired.add(2); latch.countDown(); }, 60, TimeUnit.MILLISECONDS);
+
+      assertTrue(latch.await(5, TimeUnit.SECONDS));
+      assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(200));
+      assertEquals(3, expired.size());
+      assertEquals(Integer.valueOf(1), expired.get(0));
+      assertEquals(Integer.valueOf(2), expired.get(1));
+      assertEquals(Integer.valueOf(3), expired.get(2));
+      assertEquals(0, timer.getPendingTimeouts());
+    }
+  }
+
+  @Test
+  public void testCancel() throws InterruptedException {
+    try (HashedWheelTimer timer = new HashedWheelTimer(5, TimeUnit.MILLISECONDS, 8)) {
+      CountDownLatch cancelledLatch = new CountDownLatch(1);
+      CountDownLatch latch = new CountDownLatch(1);
+
+      HashedWheelTimer.Timeout cancelled = timer.newTimeout(cancelledLatch::countDown, 20,
+        TimeUnit.MILLISECONDS);
+      HashedWheelTimer.Timeout timeout = timer.newTimeout(latch::countDown, 50, TimeUnit.MILLISECONDS);
+
+      assertTrue(cancelled.cancel());
+      assertFalse(cancelled.cancel());
+      assertEquals(1, timer.getPendingTimeouts());
+
+      assertTrue(latch.await(5, TimeUnit.SECONDS));
+      assertFalse(cancelledLatch.await(50, TimeUnit.MILLISECONDS));
+      assertTrue(cancelled.isCancelled());
+      assertTrue(timeout.isExpired());
+      assertFalse(timeout.cancel());
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testStoppedTimer() {
+    HashedWheelTimer timer = new HashedWheelTimer();
+    timer.stop();
+    timer.newTimeout(() -> { }, 1, TimeUnit.SECONDS);
+  }
+}
@@ -0,0 +1,286 @@
+package ch.unisg.ics.interactions.wot.td.bindings.coap;
+
+import ch.unisg.ics.interactions.wot.td.affordances.Form;
+import ch.unisg.ics.interactions.wot.td.bindings.NoResponseException;
+import ch.unisg.ics.interactions.wot.td.bindings.Response;
+import ch.unisg.ics.interactions.wot.td.vocabularies.TD;
+import org.eclipse.californium.core.CoapResource;
+import org.eclipse.californium.core.CoapServer;
+import org.eclipse.californium.core.coap.BlockOption;
+import org.eclipse.californium.core.coap.CoAP.ResponseCode;
+import org.eclipse.californium.core.coap.Request;
+import org.eclipse.californium.core.network.CoapEndpoint;
+import org.eclipse.californium.core.network.Endpoint;
+import org.eclipse.californium.core.network.config.NetworkConfig;
+import org.eclipse.californium.core.network.interceptors.MessageInterceptorAdapter;
+import org.eclipse.californium.core.network.stack.AbstractLayer;
+import org.eclipse.californium.core.network.stack.CoapUdpStack;
+import org.eclipse.californium.core.network.stack.Layer;
+import org.eclipse.californium.core.server.resources.CoapExchange;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+public class TDCoapBlockwiseTransferTest {
+  private static final byte[] FIRMWARE = new byte[5000];
+
+  static {
+    for (int i = 0; i < FIRMWARE.length; i++) {
+      FIRMWARE[i] = (byte) i;
+    }
+  }
+
+  private CoapServer server;
+  private FirmwareResource resource;
+  private BlockRecorder recorder;
+  private Endpoint endpoint;
+  private String target;
+
+  @Before
+  public void init() {
+    NetworkConfig config = NetworkConfig.createStandardWithoutFile();
+    CoapEndpoint serverEndpoint = new CoapEndpoint.Builder()
+      .setNetworkConfig(config)
+      .setInetSocketAddress(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))
+      .build();
+
+    recorder = new BlockRecorder();
+    serverEndpoint.addInterceptor(recorder);
+
+    resource = new FirmwareResource();
+    server = new CoapServer(config);
+    server.addEndpoint(serverEndpoint);
+    server.add(resource);
+    server.start();
+
+    target = "coap://127.0.0.1:" + serverEndpoint.getAddress().getPort() + "/firmware";
+    endpoint = TDCoapBlockwiseTransfer.createEndpoint(NetworkConfig.createStandardWithoutFile());
+  }
+
+  @After
+  public void tearDown() {
+    endpoint.destroy();
+    server.destroy();
+  }
+
+  @Test
+  public void testStreamResponse() throws IOException, NoResponseException {
+    TDCoapOperation operation = newOperation("GET", TD.readProperty);
+    List<Integer> blockSizes = new ArrayList<>();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    operation.setBlockSize(256);
+    operation.setResponseBlockHandler((block, offset, last) -> {
+      assertEquals(out.size(), offset);
+      assertEquals(offset + block.length == FIRMWARE.length, last);
+      blockSizes.add(block.length);
+      out.write(block);
+    });
+    operation.sendRequest();
+
+    Response response = operation.getResponse();
+    assertEquals(Response.ResponseStatus.OK, response.getStatus());
+    assertArrayEquals(FIRMWARE, out.toByteArray());
+    assertEquals(20, blockSizes.size());
+    assertTrue(blockSizes.stream().allMatch(size -> size <= 256));
+    assertTrue(recorder.block2.stream().allMatch(block -> block.getSize() == 256));
+  }
+
+  @Test
+  public void testStreamRequest() throws IOException, NoResponseException {
+    TDCoapOperation operation = newOperation("PUT", TD.invokeAction);
+    operation.setBlockSize(128);
+    operation.setPayloadStream(new ByteArrayInputStream(FIRMWARE));
+    operation.sendRequest();
+
+    Response response = operation.getResponse();
+    assertEquals(Response.ResponseStatus.OK, response.getStatus());
+    assertArrayEquals(FIRMWARE, resource.uploaded);
+    assertEquals(40, recorder.block1.size());
+    assertTrue(recorder.block1.stream().allMatch(block -> block.getSize() == 128));
+  }
+
+  @Test
+  public void testStreamNotReadOnEndpointThreads() throws IOException, NoResponseException {
+    List<String> readers = new CopyOnWriteArrayList<>();
+    InputStream payload = new FilterInputStream(new ByteArrayInputStream(FIRMWARE)) {
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        readers.add(Thread.currentThread().getName());
+        return super.read(b, off, len);
+      }
+    };
+
+    TDCoapOperation operation = newOperation("PUT", TD.invokeAction);
+    operation.setBlockSize(1024);
+    operation.setPayloadStream(payload);
+    operation.sendRequest();
+
+    Response response = operation.getResponse();
+    assertEquals(Response.ResponseStatus.OK, response.getStatus());
+    assertArrayEquals(FIRMWARE, resource.uploaded);
+    assertFalse(readers.isEmpty());
+    assertTrue(readers.toString(), readers.stream().noneMatch(name -> name.contains("CoapEndpoint")));
+  }
+
+  @Test
+  public void testServerBlockSizeNegotiation() throws IOException, NoResponseException {
+    NetworkConfig config = NetworkConfig.createStandardWithoutFile();
+    // The server handles block options itself
+    CoapEndpoint rawEndpoint = new CoapEndpoint.Builder()
+      .setNetworkConfig(config)
+      .setInetSocketAddress(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))
+      .setCoapStackFactory((protocol, c, outbox, argument) -> new CoapUdpStack(c, outbox) {
+        @Override
+        protected Layer createBlockwiseLayer(NetworkConfig config) {
+          return new AbstractLayer() { };
+        }
+      })
+      .build();
+
+    LogResource logs = new LogResource(64);
+    CoapServer rawServer = new CoapServer(config);
+    rawServer.addEndpoint(rawEndpoint);
+    rawServer.add(logs);
+    rawServer.start();
+
+    try {
+      target = "coap://127.0.0.1:" + rawEndpoint.getAddress().getPort() + "/logs";
+
+      TDCoapOperation operation = newOperation("POST", TD.invokeAction);
+      operation.setPayloadStream(new ByteArrayInputStream(FIRMWARE));
+      operation.sendRequest();
+
+      assertEquals(Response.ResponseStatus.OK, operation.getResponse().getStatus());
+      assertArrayEquals(FIRMWARE, logs.upload.toByteArray());
+      assertEquals(512, logs.blocks.get(0).getSize());
+      // The second block starts after the first block of 512 bytes
+      assertEquals(8, logs.blocks.get(1).getNum());
+      assertTrue(logs.blocks.stream().skip(1).allMatch(block -> block.getSize() == 64));
+    } finally {
+      rawServer.destroy();
+    }
+  }
+
+  @Test
+  public void testAbortedByHandler() throws IOException {
+    TDCoapOperation operation = newOperation("GET", TD.readProperty);
+    operation.setResponseBlockHandler((block, offset, last) -> {
+      throw new IOException("Disk full");
+    });
+    operation.sendRequest();
+
+    try {
+      operation.getResponse();
+      fail("The transfer should have been aborted");
+    } catch (NoResponseException e) {
+      // expected
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidBlockSize() {
+    newOperation("GET", TD.readProperty).setBlockSize(100);
+  }
+
+  private TDCoapOperation newOperation(String method, String operationType) {
+    Form form = new Form.Builder(target)
+      .setMethodName(method)
+      .setContentType("application/octet-stream")
+      .addOperationType(operationType)
+      .build();
+
+    TDCoapOperation operation = new TDCoapOperation(form, operationType);
+    operation.setBlockwiseEndpoint(endpoint);
+    operation.setTimeout(5);
+
+    return operation;
+  }
+
+  private static class FirmwareResource extends CoapResource {
+    private volatile byte[] uploaded;
+
+    FirmwareResource() {
+      super("firmware");
+    }
+
+    @Override
+    public void handleGET(CoapExchange exchange) {
+      exchange.respond(ResponseCode.CONTENT, FIRMWARE);
+    }
+
+    @Override
+    public void handlePUT(CoapExchange exchange) {
+      uploaded = exchange.getRequestPayload();
+      exchange.respond(ResponseCode.CHANGED);
+    }
+  }
+
+  /**
+   * A resource that accepts payloads block by block and asks for smaller blocks.
+   */
+  private static class LogResource extends CoapResource {
+    private final ByteArrayOutputStream upload = new ByteArrayOutputStream();
+    private final List<BlockOption> blocks = new CopyOnWriteArrayList<>();
+    private final int preferredSzx;
+
+    LogResource(int preferredBlockSize) {
+      super("logs");
+      this.preferredSzx = BlockOption.size2Szx(preferredBlockSize);
+    }
+
+    @Override
+    public void handlePOST(CoapExchange exchange) {
+      BlockOption block1 = exchange.getRequestOptions().getBlock1();
+      blocks.add(block1);
+
+      if (block1.getOffset() != upload.size()) {
+        exchange.respond(ResponseCode.REQUEST_ENTITY_INCOMPLETE);
+        return;
+      }
+
+      byte[] payload = exchange.getRequestPayload();
+      upload.write(payload, 0, payload.length);
+
+      if (block1.isM()) {
+        org.eclipse.californium.core.coap.Response response =
+          new org.eclipse.californium.core.coap.Response(ResponseCode.CONTINUE);
+        response.getOptions().setBlock1(Math.min(block1.getSzx(), preferredSzx), true, block1.getNum());
+        exchange.respond(response);
+      } else {
+        exchange.respond(ResponseCode.CHANGED);
+      }
+    }
+  }
+
+  /**
+   * Records the block options of the requests received by the server.
+   */
+  private static class BlockRecorder extends MessageInterceptorAdapter {
+    private final List<BlockOption> block1 = new CopyOnWriteArrayList<>();
+    private final List<BlockOption> block2 = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void receiveRequest(Request request) {
+      if (request.getOptions().hasBlock1()) {
+        block1.add(request.getOptions().getBlock1());
+      }
+      if (request.getOptions().hasBlock2()) {
+        block2.add(request.getOptions().getBlock2());
+      }
+    }
+  }
+}
@@ -0,0 +1,44 @@
+package ch.unisg.ics.interactions.wot.td.bindings.coap;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TDCoapNotificationOrderTest {
+
+  @Test
+  public void testSequenceOrder() {
+    TDCoapNotificationOrder order = new TDCoapNotificationOrder();
+
+    assertTrue(order.accept(5, 0));
+    assertTrue(order.accept(6, 1));
+    assertFalse(order.accept(4, 2));
+    assertFalse(order.accept(6, 3));
+    assertEquals(6, order.getLastSequence());
+  }
+
+  @Test
+  public void testSequenceWrapAround() {
+    TDCoapNotificationOrder order = new TDCoapNotificationOrder();
+
+    assertTrue(order.accept((1 << 24) - 2, 0));
+    assertTrue(order.accept(1, 1));
+    assertFalse(order.accept((1 << 24) - 1, 2));
+  }
+
+  @Test
+  public void testOldNotificationsAreFresh() {
+    TDCoapNotificationOrder order = new TDCoapNotificationOrder();
+
+    assertTrue(order.accept(1000, 0));
+    // e.g. the Thing rebooted and restarted its sequence numbers
+    assertFalse(order.accept(2, TimeUnit.SECONDS.toNanos(60)));
+    assertTrue(order.accept(2, TimeUnit.SECONDS.toNanos(129)));
+
+    order.reset();
+    assertTrue(order.isEmpty());
+    assertTrue(order.accept(1, TimeUnit.SECONDS.toNanos(130)));
+  }
+}
@@ -7,6 +7,7 @@ import org.eclipse.californium.core.coap.OptionSet;
 import org.eclipse.californium.core.coap.Response;
 import org.junit.Test;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -27,6 +28,21 @@ public class TDCoapResponseTest {
     assertFalse(testResponse.getPayload().isPresent());
   }
 
+  @Test
+  public void testRetryAfter() {
+    Response response = new Response(ResponseCode.SERVICE_UNAVAILABLE);
+    response.getOptions().setMaxAge(30);
+    TDCoapResponse testResponse = new TDCoapResponse(response, null);
+
+    assertEquals(30, testResponse.getMaxAge());
+    assertEquals(Duration.ofSeconds(30), testResponse.getRetryAfter().get());
+
+    // The default Max-Age applies if the option is absent
+    assertEquals(Duration.ofSeconds(60), new TDCoapResponse(new Response(ResponseCode.SERVICE_UNAVAILABLE),
+      null).getRetryAfter().get());
+    assertFalse(new TDCoapResponse(new Response(ResponseCode.CONTENT), null).getRetryAfter().isPresent());
+  }
+
   @Test
   public void testBooleanPayload() {
     Response response = new Response(ResponseCode.VALID);
@@ -239,6 +255,44 @@ public class TDCoapResponseTest {
     new TDCoapResponse(response, null).getPayloadAsArray(schema);
   }
 
+  @Test
+  public void testPrimitiveNumberPayload() {
+    Response response = new Response(ResponseCode.CONTENT);
+    response.setPayload("-42");
+
+    TDCoapResponse testResponse = new TDCoapResponse(response, null);
+    assertEquals(-42, testResponse.getPayloadAsLongValue());
+    assertEquals(-42.0, testResponse.getPayloadAsDoubleValue(), 0);
+  }
+
+  @Test
+  public void testDoubleArrayPayload() {
+    Response response = new Response(ResponseCode.CONTENT);
+    response.setPayload("[0.5, 1, -2.75]");
+
+    ArraySchema schema = new ArraySchema.Builder()
+      .addItem(new NumberSchema.Builder().build())
+      .build();
+
+    assertArrayEquals(new double[] {0.5, 1, -2.75},
+      new TDCoapResponse(response, null).getPayloadAsDoubleArray(schema), 0);
+  }
+
+  @Test
+  public void testLongArrayPayload() {
+    Response response = new Response(ResponseCode.CONTENT);
+    response.setPayload("[255, 128, 0]");
+
+    ArraySchema schema = new ArraySchema.Builder()
+      .addItem(new IntegerSchema.Builder().build())
+      .addMinItems(3)
+      .addMaxItems(3)
+      .build();
+
+    assertArrayEquals(new long[] {255, 128, 0},
+      new TDCoapResponse(response, null).getPayloadAsLongArray(schema));
+  }
+
 
   @Test
   public void testResponseOptions() {
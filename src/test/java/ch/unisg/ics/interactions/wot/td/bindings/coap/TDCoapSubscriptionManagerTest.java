@@ -0,0 +1,280 @@
+package ch.unisg.ics.interactions.wot.td.bindings.coap;
+
+import ch.unisg.ics.interactions.wot.td.affordances.Form;
+import ch.unisg.ics.interactions.wot.td.bindings.Response;
+import ch.unisg.ics.interactions.wot.td.bindings.ResponseCallback;
+import ch.unisg.ics.interactions.wot.td.vocabularies.COV;
+import ch.unisg.ics.interactions.wot.td.vocabularies.TD;
+import org.eclipse.californium.core.CoapResource;
+import org.eclipse.californium.core.CoapServer;
+import org.eclipse.californium.core.coap.CoAP.ResponseCode;
+import org.eclipse.californium.core.network.CoapEndpoint;
+import org.eclipse.californium.core.network.config.NetworkConfig;
+import org.eclipse.californium.core.server.resources.CoapExchange;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class TDCoapSubscriptionManagerTest {
+  private CoapServer server;
+  private TemperatureResource resource;
+  private TDCoapSubscriptionManager manager;
+  private String target;
+
+  @Before
+  public void init() {
+    NetworkConfig config = NetworkConfig.createStandardWithoutFile();
+    CoapEndpoint serverEndpoint = new CoapEndpoint.Builder()
+      .setNetworkConfig(config)
+      .setInetSocketAddress(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))
+      .build();
+
+    resource = new TemperatureResource();
+    server = new CoapServer(config);
+    server.addEndpoint(serverEndpoint);
+    server.add(resource);
+    server.start();
+
+    target = "coap://127.0.0.1:" + serverEndpoint.getAddress().getPort() + "/temperature";
+    manager = new TDCoapSubscriptionManager(new CoapEndpoint.Builder().setNetworkConfig(config).build());
+  }
+
+  @After
+  public void tearDown() {
+    manager.close();
+    server.destroy();
+  }
+
+  @Test
+  public void testSharedObserveRelation() throws InterruptedException {
+    Form form = observeForm("application/json");
+    Subscriber first = new Subscriber(2);
+    Subscriber second = new Subscriber(2);
+
+    TDCoapSubscription firstSubscription = manager.subscribe(form, first);
+    assertTrue(first.awaitNotifications(1));
+
+    TDCoapSubscription secondSubscription = manager.subscribe(form, second);
+    // The latest notification is delivered to new subscribers
+    assertEquals(1, second.notifications.size());
+
+    resource.setValue("21.5");
+    assertTrue(first.awaitNotifications(2));
+    assertTrue(second.awaitNotifications(2));
+
+    assertEquals(1, resource.registrations.get());
+    assertEquals(1, manager.getObservationCount());
+    assertEquals(2, manager.getSubscriberCount(form));
+    assertEquals("21.5", manager.getLatest(form).get().getPayloadAsString());
+    assertEquals("21.5", secondSubscription.getLatest().get().getPayloadAsString());
+
+    firstSubscription.cancel();
+    assertEquals(1, manager.getObservationCount());
+    assertEquals(1, resource.getObserverCount());
+
+    secondSubscription.cancel();
+    assertEquals(0, manager.getObservationCount());
+    assertFalse(manager.getLatest(form).isPresent());
+
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (resource.getObserverCount() > 0 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(0, resource.getObserverCount());
+  }
+
+  @Test
+  public void testRelationPerContentFormat() throws InterruptedException {
+    Subscriber json = new Subscriber(1);
+    Subscriber text = new Subscriber(1);
+
+    manager.subscribe(observeForm("application/json"), json);
+    manager.subscribe(observeForm("text/plain"), text);
+
+    assertTrue(json.awaitNotifications(1));
+    assertTrue(text.awaitNotifications(1));
+    assertEquals(2, manager.getObservationCount());
+    assertEquals(2, resource.registrations.get());
+  }
+
+  @Test
+  public void testReregistersAfterMaxAge() throws InterruptedException {
+    manager.close();
+    manager = new TDCoapSubscriptionManager.Builder()
+      .setEndpoint(new CoapEndpoint.Builder()
+        .setNetworkConfig(NetworkConfig.createStandardWithoutFile())
+        .build())
+      .setReregistrationBackoff(100, TimeUnit.MILLISECONDS)
+      .build();
+
+    Form form = observeForm("application/json");
+    Subscriber subscriber = new Subscriber(2);
+    resource.maxAge = 1;
+
+    manager.subscribe(form, subscriber);
+    assertTrue(subscriber.awaitNotifications(1));
+    assertEquals(TDCoapRelationHealth.State.ACTIVE, manager.getHealth(form).get().getState());
+
+    // The Thing forgets its observers, e.g. after a reboot
+    resource.clearObserveRelations();
+    assertEquals(0, resource.getObserverCount());
+
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (resource.getObserverCount() == 0 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(1, resource.getObserverCount());
+
+    resource.setValue("22.0");
+    assertTrue(subscriber.awaitNotifications(2));
+
+    TDCoapRelationHealth health = manager.getHealth(form).get();
+    assertTrue(health.getReregistrationCount() >= 1);
+    assertTrue(health.getNotificationCount() >= 2);
+    assertEquals(0, health.getStaleNotificationCount());
+    assertEquals(1, health.getSubscriberCount());
+    assertTrue(health.getLastSequenceNumber().isPresent());
+    assertTrue(health.getTimeSinceLastNotification(TimeUnit.SECONDS).get() < 5);
+    assertEquals(1, manager.getHealth().size());
+  }
+
+  @Test
+  public void testLateSubscriberNotifiedInOrder() throws InterruptedException {
+    Form form = observeForm("application/json");
+    Subscriber first = new Subscriber(2);
+    manager.subscribe(form, first);
+    assertTrue(first.awaitNotifications(1));
+
+    // The resource changes while the latest notification is replayed to the late subscriber
+    List<String> values = new CopyOnWriteArrayList<>();
+    CountDownLatch received = new CountDownLatch(2);
+    manager.subscribe(form, new Subscriber(1) {
+      @Override
+      public void onResponse(Response response) {
+        if (values.isEmpty() && received.getCount() == 2) {
+          new Thread(() -> resource.setValue("21.5")).start();
+          try {
+            Thread.sleep(300);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        values.add(((TDCoapResponse) response).getPayloadAsString());
+        received.countDown();
+      }
+    });
+
+    assertTrue(received.await(5, TimeUnit.SECONDS));
+    assertTrue(first.awaitNotifications(2));
+    Thread.sleep(100);
+    assertEquals(Arrays.asList("20.0", "21.5"), values);
+  }
+
+  @Test
+  public void testErrorNotificationEndsRelation() throws InterruptedException {
+    Form form = observeForm("application/json");
+    Subscriber subscriber = new Subscriber(2, true);
+
+    manager.subscribe(form, subscriber);
+    assertTrue(subscriber.awaitNotifications(1));
+
+    // The resource is removed: the Thing sends a 4.04 notification (RFC 7641, Section 3.2)
+    resource.clearAndNotifyObserveRelations(ResponseCode.NOT_FOUND);
+
+    assertTrue(subscriber.awaitNotifications(2));
+    assertTrue(subscriber.failed.await(5, TimeUnit.SECONDS));
+    assertEquals(Response.ResponseStatus.CONSUMER_ERROR, subscriber.notifications.get(1).getStatus());
+
+    assertEquals(0, manager.getObservationCount());
+    assertFalse(manager.getHealth(form).isPresent());
+    assertFalse(manager.getLatest(form).isPresent());
+  }
+
+  private Form observeForm(String contentType) {
+    return new Form.Builder(target)
+      .setMethodName("GET")
+      .setContentType(contentType)
+      .addOperationType(TD.observeProperty)
+      .addSubProtocol(COV.observe)
+      .build();
+  }
+
+  private static class Subscriber implements ResponseCallback {
+    private final List<Response> notifications = new CopyOnWriteArrayList<>();
+    private final CountDownLatch failed = new CountDownLatch(1);
+    private final CountDownLatch[] latches;
+    private final boolean failureExpected;
+
+    Subscriber(int expected) {
+      this(expected, false);
+    }
+
+    Subscriber(int expected, boolean failureExpected) {
+      this.failureExpected = failureExpected;
+      latches = new CountDownLatch[expected];
+      for (int i = 0; i < expected; i++) {
+        latches[i] = new CountDownLatch(i + 1);
+      }
+    }
+
+    boolean awaitNotifications(int count) throws InterruptedException {
+      return latches[count - 1].await(5, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void onResponse(Response response) {
+      notifications.add(response);
+      for (CountDownLatch latch : latches) {
+        latch.countDown();
+      }
+    }
+
+    @Override
+    public void onError() {
+      failed.countDown();
+      if (!failureExpected) {
+        fail("The observe relation should not fail");
+      }
+    }
+  }
+
+  private static class TemperatureResource extends CoapResource {
+    private final AtomicInteger registrations = new AtomicInteger();
+    private volatile String value = "20.0";
+    private volatile long maxAge = 60;
+
+    TemperatureResource() {
+      super("temperature");
+      setObservable(true);
+      getAttributes().setObservable();
+    }
+
+    void setValue(String value) {
+      this.value = value;
+      changed();
+    }
+
+    @Override
+    public void handleGET(CoapExchange exchange) {
+      Integer observe = exchange.getRequestOptions().getObserve();
+      if (observe != null && observe == 0 && !exchange.advanced().getRequest().isDuplicate()
+          && exchange.advanced().getRelation() != null
+          && !exchange.advanced().getRelation().isEstablished()) {
+        registrations.incrementAndGet();
+      }
+      exchange.setMaxAge(maxAge);
+      exchange.respond(value);
+    }
+  }
+}
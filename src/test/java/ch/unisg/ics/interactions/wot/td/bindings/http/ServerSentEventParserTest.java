@@ -0,0 +1,86 @@
+package ch.unisg.ics.interactions.wot.td.bindings.http;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+public class ServerSentEventParserTest {
+
+  @Test
+  public void testEventsSplitAcrossChunks() {
+    Recorder recorder = new Recorder();
+    ServerSentEventParser parser = new ServerSentEventParser(recorder);
+
+    parser.feed(": keep-alive\n\nevent: overheat\nid: 4");
+    parser.feed("2\ndata: {\"temperature\"");
+    parser.feed(": 85}\n\r\ndata: first\r\ndata:second\r");
+    parser.feed("\n\n");
+
+    assertEquals(2, recorder.events.size());
+
+    assertEquals(Optional.of("overheat"), recorder.events.get(0).type);
+    assertEquals(Optional.of("42"), recorder.events.get(0).id);
+    assertEquals("{\"temperature\": 85}", recorder.events.get(0).data);
+
+    // The type is reset after each event, the last event ID is not
+    assertEquals(Optional.empty(), recorder.events.get(1).type);
+    assertEquals(Optional.of("42"), recorder.events.get(1).id);
+    assertEquals("first\nsecond", recorder.events.get(1).data);
+  }
+
+  @Test
+  public void testFieldsWithoutData() {
+    Recorder recorder = new Recorder();
+    ServerSentEventParser parser = new ServerSentEventParser(recorder, Optional.of("7"));
+
+    parser.feed("retry: 250\nevent: ping\n\nretry: soon\nid\n\ndata\n\n");
+
+    assertEquals(1, recorder.events.size());
+    assertEquals("", recorder.events.get(0).data);
+    assertEquals(Optional.empty(), recorder.events.get(0).id);
+    assertEquals(1, recorder.retries.size());
+    assertEquals(Long.valueOf(250), recorder.retries.get(0));
+  }
+
+  @Test
+  public void testIncompleteEventNotDispatched() {
+    Recorder recorder = new Recorder();
+    ServerSentEventParser parser = new ServerSentEventParser(recorder);
+
+    parser.feed("id: 1\ndata: partial\n");
+
+    assertTrue(recorder.events.isEmpty());
+    assertEquals(Optional.of("1"), parser.getLastEventId());
+  }
+
+  private static class Event {
+    private final Optional<String> type;
+    private final Optional<String> id;
+    private final String data;
+
+    Event(Optional<String> type, Optional<String> id, String data) {
+      this.type = type;
+      this.id = id;
+      this.data = data;
+    }
+  }
+
+  private static class Recorder implements ServerSentEventParser.Listener {
+    private final List<Event> events = new ArrayList<>();
+    private final List<Long> retries = new ArrayList<>();
+
+    @Override
+    public void onEvent(Optional<String> type, Optional<String> id, String data) {
+      events.add(new Event(type, id, data));
+    }
+
+    @Override
+    public void onRetry(long millis) {
+      retries.add(millis);
+    }
+  }
+}
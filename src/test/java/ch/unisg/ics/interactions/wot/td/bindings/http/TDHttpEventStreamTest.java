@@ -0,0 +1,264 @@
+package ch.unisg.ics.interactions.wot.td.bindings.http;
+
+import ch.unisg.ics.interactions.wot.td.affordances.Form;
+import ch.unisg.ics.interactions.wot.td.bindings.ProtocolBindings;
+import ch.unisg.ics.interactions.wot.td.bindings.Response;
+import ch.unisg.ics.interactions.wot.td.bindings.ResponseCallback;
+import ch.unisg.ics.interactions.wot.td.vocabularies.TD;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpConnection;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.impl.Http1StreamListener;
+import org.apache.hc.core5.http.impl.bootstrap.HttpServer;
+import org.apache.hc.core5.http.impl.bootstrap.ServerBootstrap;
+import org.apache.hc.core5.http.io.entity.EntityTemplate;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.io.CloseMode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class TDHttpEventStreamTest {
+  private static final ContentType EVENT_STREAM = ContentType.create("text/event-stream", StandardCharsets.UTF_8);
+
+  private HttpServer server;
+  private final CountDownLatch streamClosed = new CountDownLatch(1);
+  private final List<String> lastEventIds = new CopyOnWriteArrayList<>();
+  private final AtomicInteger polls = new AtomicInteger();
+  private final AtomicInteger busyPolls = new AtomicInteger();
+  private final Set<HttpConnection> pollConnections = ConcurrentHashMap.newKeySet();
+
+  @Before
+  public void startServer() throws IOException {
+    server = ServerBootstrap.bootstrap()
+      .setListenerPort(0)
+      .setStreamListener(new Http1StreamListener() {
+        @Override
+        public void onRequestHead(HttpConnection connection, HttpRequest request) {
+          if (request.getPath().startsWith("/lamp/status")) {
+            pollConnections.add(connection);
+          }
+        }
+
+        @Override
+        public void onResponseHead(HttpConnection connection, HttpResponse response) { }
+
+        @Override
+        public void onExchangeComplete(HttpConnection connection, boolean keepAlive) { }
+      })
+      .register("/lamp/overheating", (request, response, context) ->
+        response.setEntity(new EntityTemplate(-1, EVENT_STREAM, null, out -> {
+          write(out, ": connected\n\n");
+          write(out, "event: overheating\nid: 1\ndata: {\"temperature\": 85}\n\n");
+          write(out, "event: overheating\nid: 2\ndata: {\"temperature\":\n");
+          write(out, "data:  90}\n\n");
+          try {
+            streamClosed.await(5, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        })))
+      .register("/lamp/toggled", (request, response, context) -> {
+        Header lastEventId = request.getFirstHeader("Last-Event-ID");
+        lastEventIds.add(lastEventId == null ? "" : lastEventId.getValue());
+
+        String events = lastEventId == null ? "retry: 50\nid: 7\ndata: true\n\n" : "data: false\n\n";
+        response.setEntity(new EntityTemplate(-1, EVENT_STREAM, null, out -> write(out, events)));
+      })
+      .register("/lamp/status", (request, response, context) -> {
+        int poll = polls.incrementAndGet();
+        if (poll % 2 == 0) {
+          // No change during the poll
+          response.setCode(HttpStatus.SC_NO_CONTENT);
+        } else {
+          response.setEntity(new StringEntity("{\"on\": " + (poll % 4 == 1) + "}",
+            ContentType.APPLICATION_JSON));
+        }
+      })
+      .register("/lamp/busy", (request, response, context) -> {
+        busyPolls.incrementAndGet();
+        response.setCode(HttpStatus.SC_SERVICE_UNAVAILABLE);
+        response.setHeader("Retry-After", "0");
+      })
+      .register("*", (request, response, context) -> {
+        response.setCode(HttpStatus.SC_NOT_FOUND);
+        response.setEntity(new StringEntity("Not found", ContentType.TEXT_PLAIN));
+      })
+      .create();
+    server.start();
+  }
+
+  @After
+  public void stopServer() {
+    streamClosed.countDown();
+    server.close(CloseMode.IMMEDIATE);
+  }
+
+  @Test
+  public void testDefaultSubProtocol() {
+    Form form = new Form.Builder(uri("/lamp/overheating"))
+      .addOperationType(TD.subscribeEvent)
+      .build();
+
+    assertEquals(Optional.of("GET"), form.getMethodName(TD.subscribeEvent));
+    assertEquals(Optional.of(TDHttpBinding.SSE_SUBPROTOCOL), form.getSubProtocol(TD.subscribeEvent));
+  }
+
+  @Test
+  public void testSubscribeEventWithServerSentEvents() throws Exception {
+    Form form = new Form.Builder(uri("/lamp/overheating"))
+      .addOperationType(TD.subscribeEvent)
+      .build();
+
+    TDHttpOperation operation = (TDHttpOperation) ProtocolBindings.getBinding(form)
+      .bind(form, TD.subscribeEvent);
+    Subscriber subscriber = new Subscriber(2);
+    operation.registerResponseCallback(subscriber);
+    operation.sendRequest();
+
+    // Events are delivered while the stream is still open
+    assertTrue(subscriber.latch.await(5, TimeUnit.SECONDS));
+    operation.cancel();
+
+    TDHttpEventResponse first = (TDHttpEventResponse) subscriber.events.get(0);
+    TDHttpEventResponse second = (TDHttpEventResponse) subscriber.events.get(1);
+
+    assertEquals(Optional.of("overheating"), first.getEventType());
+    assertEquals(Optional.of("1"), first.getEventId());
+    assertEquals(85L, ((Map<?, ?>) first.getPayload().get()).get("temperature"));
+    assertEquals(Optional.of("2"), second.getEventId());
+    assertEquals(90L, ((Map<?, ?>) second.getPayload().get()).get("temperature"));
+    assertEquals(Response.ResponseStatus.OK, second.getStatus());
+    assertTrue(operation.isCancelled());
+  }
+
+  @Test
+  public void testReconnectWithLastEventId() throws Exception {
+    Form form = new Form.Builder(uri("/lamp/toggled"))
+      .addOperationType(TD.subscribeEvent)
+      .addSubProtocol(TDHttpBinding.SSE_SUBPROTOCOL)
+      .build();
+
+    TDHttpOperation operation = new TDHttpOperation(form, TD.subscribeEvent);
+    Subscriber subscriber = new Subscriber(2);
+    operation.registerResponseCallback(subscriber);
+    operation.sendRequest();
+
+    assertTrue(subscriber.latch.await(5, TimeUnit.SECONDS));
+    operation.cancel();
+
+    assertEquals(true, subscriber.events.get(0).getPayload().get());
+    assertEquals(false, subscriber.events.get(1).getPayload().get());
+    assertEquals("", lastEventIds.get(0));
+    assertEquals("7", lastEventIds.get(1));
+  }
+
+  @Test
+  public void testObservePropertyWithLongPolling() throws Exception {
+    Form form = new Form.Builder(uri("/lamp/status"))
+      .addOperationType(TD.observeProperty)
+      .addSubProtocol(TDHttpBinding.LONGPOLL_SUBPROTOCOL)
+      .build();
+
+    TDHttpOperation operation = new TDHttpOperation(form, TD.observeProperty);
+    Subscriber subscriber = new Subscriber(3);
+    operation.registerResponseCallback(subscriber);
+    operation.sendRequest();
+
+    assertTrue(subscriber.latch.await(5, TimeUnit.SECONDS));
+    operation.cancel();
+
+    // Polls that time out without a change are not passed on
+    assertEquals(true, ((Map<?, ?>) subscriber.events.get(0).getPayload().get()).get("on"));
+    assertEquals(false, ((Map<?, ?>) subscriber.events.get(1).getPayload().get()).get("on"));
+    assertEquals(true, ((Map<?, ?>) subscriber.events.get(2).getPayload().get()).get("on"));
+    assertTrue(polls.get() >= 5);
+    // Polls reuse persistent connections (the next poll may be sent before the connection of the
+    // previous poll is released)
+    assertTrue(pollConnections.size() <= 2);
+  }
+
+  @Test
+  public void testErrorResponseEndsSubscription() throws Exception {
+    Form form = new Form.Builder(uri("/lamp/unknown"))
+      .addOperationType(TD.subscribeEvent)
+      .build();
+
+    TDHttpOperation operation = new TDHttpOperation(form, TD.subscribeEvent);
+    operation.sendRequest();
+
+    Response response = operation.getResponse();
+    assertEquals(Response.ResponseStatus.CONSUMER_ERROR, response.getStatus());
+    assertFalse(response instanceof TDHttpEventResponse);
+    assertEquals("Not found", response.getPayload().get());
+  }
+
+  @Test
+  public void testErrorResponseEndsLongPolling() throws Exception {
+    Form form = new Form.Builder(uri("/lamp/busy"))
+      .addOperationType(TD.observeProperty)
+      .addSubProtocol(TDHttpBinding.LONGPOLL_SUBPROTOCOL)
+      .build();
+
+    TDHttpOperation operation = new TDHttpOperation(form, TD.observeProperty);
+    operation.sendRequest();
+
+    Response response = operation.getResponse();
+    assertEquals(Response.ResponseStatus.THING_ERROR, response.getStatus());
+    assertEquals(Optional.of(Duration.ZERO), response.getRetryAfter());
+
+    // The server is not polled again, despite the Retry-After header (the HTTP client may have
+    // retried the request itself before the response was passed on)
+    int count = busyPolls.get();
+    Thread.sleep(300);
+    assertEquals(count, busyPolls.get());
+  }
+
+  private String uri(String path) {
+    return "http://localhost:" + server.getLocalPort() + path;
+  }
+
+  private static void write(OutputStream out, String text) throws IOException {
+    out.write(text.getBytes(StandardCharsets.UTF_8));
+    out.flush();
+  }
+
+  private static class Subscriber implements ResponseCallback {
+    private final List<Response> events = new CopyOnWriteArrayList<>();
+    private final CountDownLatch latch;
+
+    Subscriber(int expected) {
+      this.latch = new CountDownLatch(expected);
+    }
+
+    @Override
+    public void onResponse(Response response) {
+      events.add(response);
+      latch.countDown();
+    }
+
+    @Override
+    public void onError() {
+      fail("The subscription should not fail");
+    }
+  }
+}
@@ -19,6 +19,7 @@ import org.junit.Test;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 import static org.junit.Assert.*;
@@ -184,6 +185,24 @@ public class TDHttpOperationTest {
     assertUserSchemaPayload(request);
   }
 
+  @Test
+  public void testObjectPayloadEncodedInUTF8() {
+    Map<String, Object> payloadVariables = new HashMap<String, Object>();
+    payloadVariables.put("first_name", "Zo\u00e9");
+    payloadVariables.put("last_name", "M\u00fcller");
+
+    TDHttpOperation r = new TDHttpOperation(FORM, TD.invokeAction);
+    r.setPayload(USER_SCHEMA, payloadVariables);
+
+    byte[] body = r.getRequest().getBodyBytes();
+    JsonObject payload = JsonParser.parseString(new String(body, StandardCharsets.UTF_8))
+      .getAsJsonObject();
+    assertEquals("Zo\u00e9", payload.get("first_name").getAsString());
+    assertEquals("M\u00fcller", payload.get("last_name").getAsString());
+
+    assertEquals(new String(body, StandardCharsets.UTF_8), r.getPayloadAsString());
+  }
+
   @Test
   public void testInvalidBooleanPayload() {
     Exception ex = assertThrows(IllegalArgumentException.class, () -> {
@@ -0,0 +1,73 @@
+package ch.unisg.ics.interactions.wot.td.bindings.http;
+
+import ch.unisg.ics.interactions.wot.td.affordances.Form;
+import ch.unisg.ics.interactions.wot.td.bindings.NoResponseException;
+import ch.unisg.ics.interactions.wot.td.bindings.Response;
+import ch.unisg.ics.interactions.wot.td.metrics.Metrics;
+import ch.unisg.ics.interactions.wot.td.metrics.PhaseTimings;
+import ch.unisg.ics.interactions.wot.td.metrics.PhaseTimings.Phase;
+import ch.unisg.ics.interactions.wot.td.metrics.SlowOperationLog;
+import ch.unisg.ics.interactions.wot.td.vocabularies.TD;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.impl.bootstrap.HttpServer;
+import org.apache.hc.core5.http.impl.bootstrap.ServerBootstrap;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.io.CloseMode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import static org.junit.Assert.*;
+
+public class TDHttpPhaseTimingsTest {
+  private HttpServer server;
+
+  @Before
+  public void startServer() throws IOException {
+    server = ServerBootstrap.bootstrap()
+      .setListenerPort(0)
+      .register("*", (request, response, context) ->
+        response.setEntity(new StringEntity("{\"on\": true}", ContentType.APPLICATION_JSON)))
+      .create();
+    server.start();
+  }
+
+  @After
+  public void stopServer() {
+    Metrics.disable();
+    server.close(CloseMode.IMMEDIATE);
+  }
+
+  @Test
+  public void testPhasesAttachedToResponse() throws IOException, NoResponseException {
+    SlowOperationLog log = new SlowOperationLog(0, TimeUnit.MILLISECONDS, 10, Level.FINE);
+    Metrics.register(log);
+
+    Form form = new Form.Builder("http://localhost:" + server.getLocalPort() + "/lamp/status")
+      .setMethodName("GET")
+      .addOperationType(TD.readProperty)
+      .build();
+
+    TDHttpOperation operation = new TDHttpOperation(form, TD.readProperty);
+    operation.sendRequest();
+    Response response = operation.getResponse();
+
+    assertEquals(Response.ResponseStatus.OK, response.getStatus());
+    assertTrue(response.getPhaseTimings().isPresent());
+
+    PhaseTimings timings = response.getPhaseTimings().get();
+    assertTrue(timings.getOffset(Phase.DNS_LOOKUP_COMPLETED).isPresent());
+    assertTrue(timings.getDuration(Phase.REQUEST_SENT, Phase.RESPONSE_HEADERS_RECEIVED).get() >= 0);
+    assertTrue(timings.getDuration(Phase.RESPONSE_HEADERS_RECEIVED, Phase.RESPONSE_RECEIVED).get() >= 0);
+    assertTrue(timings.getDuration(Phase.RESPONSE_RECEIVED, Phase.PAYLOAD_DECODED).get() >= 0);
+    assertTrue(timings.getBreakdown().containsKey("firstByte"));
+
+    assertEquals(1, log.getEntries().size());
+    assertEquals(timings.getEvents().size(),
+      log.getEntries().get(0).getTimings().getEvents().size());
+  }
+}
@@ -6,6 +6,10 @@ import org.apache.hc.core5.http.ContentType;
 import org.apache.hc.core5.http.HttpStatus;
 import org.junit.Test;
 
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -170,6 +174,99 @@ public class TDHttpResponseTest {
     new TDHttpResponse(response, null).getPayloadAsArray(schema);
   }
 
+  @Test
+  public void testPrimitiveNumberPayload() {
+    assertEquals(101.005, new TDHttpResponse(constructHttpResponse(" 101.005\n"), null)
+      .getPayloadAsDoubleValue(), 0);
+    assertEquals(-2.5e-7, new TDHttpResponse(constructHttpResponse("-2.5E-7"), null)
+      .getPayloadAsDoubleValue(), 0);
+    assertEquals(1e20, new TDHttpResponse(constructHttpResponse("100000000000000000000"), null)
+      .getPayloadAsDoubleValue(), 0);
+
+    assertEquals(-101, new TDHttpResponse(constructHttpResponse("-101"), null)
+      .getPayloadAsLongValue());
+    assertEquals(Long.MAX_VALUE, new TDHttpResponse(constructHttpResponse(Long.MAX_VALUE), null)
+      .getPayloadAsLongValue());
+    assertEquals(Long.MIN_VALUE, new TDHttpResponse(constructHttpResponse(Long.MIN_VALUE), null)
+      .getPayloadAsLongValue());
+    assertEquals(1000, new TDHttpResponse(constructHttpResponse("1e3"), null)
+      .getPayloadAsLongValue());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPrimitiveIntegerPayloadWithFraction() {
+    new TDHttpResponse(constructHttpResponse("1.5"), null).getPayloadAsLongValue();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPrimitiveNumberPayloadNotANumber() {
+    new TDHttpResponse(constructHttpResponse("\"12\""), null).getPayloadAsDoubleValue();
+  }
+
+  @Test
+  public void testDoubleArrayPayload() {
+    SimpleHttpResponse response = constructHttpResponse("[21.5, -3, 1.25e2, 0 ]");
+
+    ArraySchema schema = new ArraySchema.Builder()
+        .addItem(new NumberSchema.Builder().build())
+        .build();
+
+    TDHttpResponse tdResponse = new TDHttpResponse(response, null);
+    assertArrayEquals(new double[] {21.5, -3, 125, 0}, tdResponse.getPayloadAsDoubleArray(schema), 0);
+
+    // The boxed representation is still available
+    assertEquals(4, tdResponse.getPayloadAsArray(schema).size());
+  }
+
+  @Test
+  public void testLongArrayPayload() {
+    StringBuilder json = new StringBuilder("[");
+    long[] expected = new long[100];
+    for (int i = 0; i < expected.length; i++) {
+      expected[i] = (i % 2 == 0 ? 1 : -1) * i * 1000000007L;
+      json.append(i == 0 ? "" : ",").append(expected[i]);
+    }
+    json.append("]");
+
+    ArraySchema schema = new ArraySchema.Builder()
+        .addItem(new IntegerSchema.Builder().build())
+        .addMaxItems(100)
+        .build();
+
+    assertArrayEquals(expected, new TDHttpResponse(constructHttpResponse(json), null)
+      .getPayloadAsLongArray(schema));
+    assertArrayEquals(new long[0], new TDHttpResponse(constructHttpResponse("[ ]"), null)
+      .getPayloadAsLongArray(schema));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testLongArrayPayloadWithNumberItems() {
+    ArraySchema schema = new ArraySchema.Builder()
+        .addItem(new NumberSchema.Builder().build())
+        .build();
+
+    new TDHttpResponse(constructHttpResponse("[1, 2]"), null).getPayloadAsLongArray(schema);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDoubleArrayMinItemsPayload() {
+    ArraySchema schema = new ArraySchema.Builder()
+        .addItem(new NumberSchema.Builder().build())
+        .addMinItems(3)
+        .build();
+
+    new TDHttpResponse(constructHttpResponse("[1.5, 2.5]"), null).getPayloadAsDoubleArray(schema);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDoubleArrayMalformedPayload() {
+    ArraySchema schema = new ArraySchema.Builder()
+        .addItem(new NumberSchema.Builder().build())
+        .build();
+
+    new TDHttpResponse(constructHttpResponse("[1.5, 2.5"), null).getPayloadAsDoubleArray(schema);
+  }
+
   @Test
   public void testArbitraryJSONPayload() {
     SimpleHttpResponse response = constructHttpResponse("[" + USER_PAYLOAD + "]");
@@ -193,6 +290,26 @@ public class TDHttpResponseTest {
     assertEquals("application/json", headers.get("Content-Type"));
   }
 
+  @Test
+  public void testRetryAfter() {
+    SimpleHttpResponse response = SimpleHttpResponse.create(HttpStatus.SC_SERVICE_UNAVAILABLE);
+    response.addHeader("Retry-After", "120");
+    assertEquals(Duration.ofSeconds(120), new TDHttpResponse(response, null).getRetryAfter().get());
+
+    response = SimpleHttpResponse.create(HttpStatus.SC_TOO_MANY_REQUESTS);
+    response.addHeader("Retry-After", DateTimeFormatter.RFC_1123_DATE_TIME
+      .format(ZonedDateTime.now(ZoneOffset.UTC).plusMinutes(5)));
+    Duration delay = new TDHttpResponse(response, null).getRetryAfter().get();
+    assertTrue(delay.getSeconds() > 240 && delay.getSeconds() <= 300);
+
+    response = SimpleHttpResponse.create(HttpStatus.SC_OK);
+    response.addHeader("Retry-After", "120");
+    assertFalse(new TDHttpResponse(response, null).getRetryAfter().isPresent());
+
+    response = SimpleHttpResponse.create(HttpStatus.SC_SERVICE_UNAVAILABLE);
+    assertFalse(new TDHttpResponse(response, null).getRetryAfter().isPresent());
+  }
+
   private SimpleHttpResponse constructHttpResponse(Object payload) {
     SimpleHttpResponse response = SimpleHttpResponse.create(HttpStatus.SC_OK);
     response.setBody(String.valueOf(payload), ContentType.APPLICATION_JSON);
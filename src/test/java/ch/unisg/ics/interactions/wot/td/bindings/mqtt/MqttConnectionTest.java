@@ -0,0 +1,76 @@
+package ch.unisg.ics.interactions.wot.td.bindings.mqtt;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class MqttConnectionTest {
+
+  @Test
+  public void testPacketRoundTrip() throws IOException {
+    byte[] body = new byte[20000];
+    body[19999] = 1;
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    MqttConnection.writePacket(out, 3, 0, body);
+
+    MqttConnection.Packet packet = MqttConnection.readPacket(
+      new ByteArrayInputStream(out.toByteArray()));
+    assertEquals(3, packet.type);
+    assertArrayEquals(body, packet.body);
+  }
+
+  @Test(expected = IOException.class)
+  public void testRemainingLengthWithFiveBytes() throws IOException {
+    byte[] packet = new byte[] {0x30, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x07};
+    MqttConnection.readPacket(new ByteArrayInputStream(packet));
+  }
+
+  @Test
+  public void testLingeringPacketsFailWhenConnectionDropped() throws Exception {
+    try (MqttStandInBroker broker = new MqttStandInBroker()) {
+      // Packets linger long enough for the connection to be dropped while a batch is forming
+      MqttConnection connection = MqttConnection.open(URI.create(broker.uri("")), "test", 0, 5000,
+        1000, new MqttConnection.Listener() {
+          @Override
+          public void onPublish(String topic, byte[] payload) { }
+
+          @Override
+          public void onClose(Optional<IOException> cause) { }
+        });
+
+      CompletableFuture<Void> first = connection.publish("lamp/status", bytes("on"), false);
+      Thread.sleep(100);
+      CompletableFuture<Void> second = connection.publish("lamp/status", bytes("off"), false);
+
+      broker.dropConnections();
+
+      assertFailed(first);
+      assertFailed(second);
+      assertFalse(connection.isOpen());
+    }
+  }
+
+  private static void assertFailed(CompletableFuture<Void> written) throws Exception {
+    try {
+      written.get(2, TimeUnit.SECONDS);
+      fail("The packet should not be written");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof IOException);
+    }
+  }
+
+  private static byte[] bytes(String s) {
+    return s.getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,174 @@
+package ch.unisg.ics.interactions.wot.td.bindings.mqtt;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process MQTT broker that stands in for a real broker: it routes published messages (QoS 0)
+ * to the subscribers of matching topic filters, and refuses subscriptions to topic filters that
+ * start with <code>forbidden</code>. Received control packets are recorded.
+ */
+class MqttStandInBroker implements Closeable {
+
+  private final ServerSocket serverSocket;
+  private final List<Connection> connections = new CopyOnWriteArrayList<>();
+  private final AtomicInteger acceptedConnections = new AtomicInteger();
+
+  /**
+   * Control packets received, e.g. <code>SUBSCRIBE lamp/overheating</code> (recorded once handled)
+   */
+  final BlockingQueue<String> received = new LinkedBlockingQueue<>();
+
+  /**
+   * Messages published by clients, as <code>topic: payload</code>
+   */
+  final BlockingQueue<String> published = new LinkedBlockingQueue<>();
+
+  MqttStandInBroker() throws IOException {
+    serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+
+    Thread acceptor = new Thread(this::accept, "mqtt-stand-in-acceptor");
+    acceptor.setDaemon(true);
+    acceptor.start();
+  }
+
+  String uri(String topic) {
+    return "mqtt://localhost:" + serverSocket.getLocalPort() + "/" + topic;
+  }
+
+  int getAcceptedConnections() {
+    return acceptedConnections.get();
+  }
+
+  /**
+   * Publishes a message to the subscribers of matching topic filters.
+   */
+  void publish(String topic, String payload) throws IOException {
+    byte[] message = payload.getBytes(StandardCharsets.UTF_8);
+
+    for (Connection connection : connections) {
+      if (connection.subscriptions.stream().anyMatch(f -> TDMqttClient.topicMatches(f, topic))) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        MqttConnection.writeString(body, topic);
+        body.write(message, 0, message.length);
+        connection.send(MqttConnection.PUBLISH, 0, body.toByteArray());
+      }
+    }
+  }
+
+  /**
+   * Drops all connections without a DISCONNECT packet.
+   */
+  void dropConnections() throws IOException {
+    for (Connection connection : connections) {
+      connection.socket.close();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    serverSocket.close();
+    dropConnections();
+  }
+
+  private void accept() {
+    try {
+      while (true) {
+        Socket socket = serverSocket.accept();
+        acceptedConnections.incrementAndGet();
+
+        Connection connection = new Connection(socket);
+        connections.add(connection);
+
+        Thread handler = new Thread(connection::run, "mqtt-stand-in-connection");
+        handler.setDaemon(true);
+        handler.start();
+      }
+    } catch (IOException e) {
+      // The broker is closed
+    }
+  }
+
+  private final class Connection {
+    private final Socket socket;
+    private final Set<String> subscriptions = new CopyOnWriteArraySet<>();
+    private OutputStream out;
+
+    Connection(Socket socket) {
+      this.socket = socket;
+    }
+
+    synchronized void send(int type, int flags, byte[] body) throws IOException {
+      MqttConnection.writePacket(out, type, flags, body);
+      out.flush();
+    }
+
+    private void run() {
+      try {
+        InputStream in = new BufferedInputStream(socket.getInputStream());
+        out = new BufferedOutputStream(socket.getOutputStream());
+
+        while (true) {
+          MqttConnection.Packet packet = MqttConnection.readPacket(in);
+          handle(packet);
+        }
+      } catch (IOException e) {
+        // The connection is closed
+      } finally {
+        connections.remove(this);
+      }
+    }
+
+    private void handle(MqttConnection.Packet packet) throws IOException {
+      switch (packet.type) {
+        case MqttConnection.CONNECT:
+          received.add("CONNECT");
+          send(MqttConnection.CONNACK, 0, new byte[] { 0, 0 });
+          break;
+        case MqttConnection.PUBLISH:
+          String topic = MqttConnection.readString(packet.body, 0);
+          int offset = 2 + MqttConnection.readShort(packet.body, 0);
+          String payload = new String(packet.body, offset, packet.body.length - offset,
+            StandardCharsets.UTF_8);
+          published.add(topic + ": " + payload);
+          publish(topic, payload);
+          break;
+        case MqttConnection.SUBSCRIBE:
+          String filter = MqttConnection.readString(packet.body, 2);
+          boolean refused = filter.startsWith("forbidden");
+          if (!refused) {
+            subscriptions.add(filter);
+          }
+          send(MqttConnection.SUBACK, 0, new byte[] { packet.body[0], packet.body[1],
+            (byte) (refused ? 0x80 : 0) });
+          received.add("SUBSCRIBE " + filter);
+          break;
+        case MqttConnection.UNSUBSCRIBE:
+          String unsubscribed = MqttConnection.readString(packet.body, 2);
+          subscriptions.remove(unsubscribed);
+          send(MqttConnection.UNSUBACK, 0, new byte[] { packet.body[0], packet.body[1] });
+          received.add("UNSUBSCRIBE " + unsubscribed);
+          break;
+        case MqttConnection.PINGREQ:
+          send(MqttConnection.PINGRESP, 0, new byte[0]);
+          break;
+        case MqttConnection.DISCONNECT:
+          received.add("DISCONNECT");
+          socket.close();
+          break;
+        default:
+          received.add("UNEXPECTED " + packet.type);
+      }
+    }
+  }
+}
@@ -0,0 +1,240 @@
+package ch.unisg.ics.interactions.wot.td.bindings.mqtt;
+
+import ch.unisg.ics.interactions.wot.td.affordances.Form;
+import ch.unisg.ics.interactions.wot.td.bindings.NoResponseException;
+import ch.unisg.ics.interactions.wot.td.bindings.Operation;
+import ch.unisg.ics.interactions.wot.td.bindings.ProtocolBindings;
+import ch.unisg.ics.interactions.wot.td.bindings.Response;
+import ch.unisg.ics.interactions.wot.td.bindings.ResponseCallback;
+import ch.unisg.ics.interactions.wot.td.vocabularies.TD;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TDMqttOperationTest {
+
+  private MqttStandInBroker broker;
+  private TDMqttClient client;
+
+  @Before
+  public void setUp() throws IOException {
+    broker = new MqttStandInBroker();
+    client = new TDMqttClient();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    client.close();
+    broker.close();
+  }
+
+  @Test
+  public void testBindingRegistered() throws Exception {
+    Form form = new Form.Builder(broker.uri("lamp/overheating"))
+      .addOperationType(TD.subscribeEvent)
+      .addOperationType(TD.invokeAction)
+      .build();
+
+    assertEquals("MQTT", form.getProtocol().get());
+    assertEquals(Optional.of(TDMqttBinding.SUBSCRIBE), form.getMethodName(TD.subscribeEvent));
+    assertEquals(Optional.of(TDMqttBinding.PUBLISH), form.getMethodName(TD.invokeAction));
+
+    Operation operation = ProtocolBindings.getBinding(form).bind(form, TD.subscribeEvent);
+    assertTrue(operation instanceof TDMqttOperation);
+    assertEquals("lamp/overheating", ((TDMqttOperation) operation).getTopic());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnsupportedOperationType() {
+    Form form = new Form.Builder(broker.uri("lamp/status"))
+      .addOperationType(TD.readProperty)
+      .build();
+
+    new TDMqttOperation(form, TD.readProperty, client);
+  }
+
+  @Test
+  public void testSubscriptionsShareConnectionAndTopic() throws Exception {
+    Form form = new Form.Builder(broker.uri("lamp/overheating"))
+      .addOperationType(TD.subscribeEvent)
+      .build();
+
+    Subscriber first = new Subscriber(2);
+    Subscriber second = new Subscriber(2);
+
+    TDMqttOperation firstOp = subscribe(form, first);
+    TDMqttOperation secondOp = subscribe(form, second);
+
+    assertEquals("CONNECT", broker.received.poll(1, TimeUnit.SECONDS));
+    assertEquals("SUBSCRIBE lamp/overheating", broker.received.poll(1, TimeUnit.SECONDS));
+
+    // Messages are fanned out to both subscribers
+    broker.publish("lamp/overheating", "{\"temperature\": 85}");
+    broker.publish("lamp/overheating", "90");
+
+    assertTrue(first.latch.await(5, TimeUnit.SECONDS));
+    assertTrue(second.latch.await(5, TimeUnit.SECONDS));
+
+    TDMqttResponse response = (TDMqttResponse) first.responses.get(0);
+    assertEquals(Optional.of("lamp/overheating"), response.getTopic());
+    assertEquals(85L, ((Map<?, ?>) response.getPayload().get()).get("temperature"));
+    assertEquals(90L, second.responses.get(1).getPayload().get());
+
+    // The topic is unsubscribed when the last subscriber is cancelled
+    firstOp.cancel();
+    secondOp.cancel();
+
+    assertEquals("UNSUBSCRIBE lamp/overheating", broker.received.poll(1, TimeUnit.SECONDS));
+    assertEquals(1, broker.getAcceptedConnections());
+    assertEquals(1, client.getConnectionCount());
+  }
+
+  @Test
+  public void testSubscribeWithWildcard() throws Exception {
+    Form form = new Form.Builder(broker.uri("lamp/%2B/status"))
+      .addOperationType(TD.observeProperty)
+      .build();
+
+    Subscriber subscriber = new Subscriber(1);
+    TDMqttOperation operation = subscribe(form, subscriber);
+
+    assertEquals("CONNECT", broker.received.poll(1, TimeUnit.SECONDS));
+    assertEquals("SUBSCRIBE lamp/+/status", broker.received.poll(1, TimeUnit.SECONDS));
+
+    broker.publish("lamp/7/status", "\"on\"");
+
+    assertTrue(subscriber.latch.await(5, TimeUnit.SECONDS));
+    TDMqttResponse response = (TDMqttResponse) subscriber.responses.get(0);
+    assertEquals(Optional.of("lamp/7/status"), response.getTopic());
+    assertEquals("on", response.getPayloadAsString());
+
+    operation.cancel();
+  }
+
+  @Test
+  public void testPublishesAreBatched() throws Exception {
+    TDMqttClient lingering = new TDMqttClient(200);
+
+    Form form = new Form.Builder(broker.uri("lamp/brightness"))
+      .addOperationType(TD.writeProperty)
+      .build();
+
+    try {
+      List<TDMqttOperation> operations = new ArrayList<>();
+      for (int i = 0; i < 20; i++) {
+        TDMqttOperation operation = new TDMqttOperation(form, TD.writeProperty, lingering);
+        operation.setPayload(i);
+        operations.add(operation);
+      }
+
+      for (TDMqttOperation operation : operations) {
+        operation.sendRequest();
+      }
+
+      for (TDMqttOperation operation : operations) {
+        Response response = operation.getResponse();
+        assertEquals(Response.ResponseStatus.OK, response.getStatus());
+        assertFalse(response.getPayload().isPresent());
+      }
+
+      for (int i = 0; i < 20; i++) {
+        assertEquals("lamp/brightness: " + i, broker.published.poll(1, TimeUnit.SECONDS));
+      }
+
+      assertTrue(lingering.getBroker(form.getTarget()).connection().getFlushCount() <= 2);
+    } finally {
+      lingering.close();
+    }
+  }
+
+  @Test(expected = NoResponseException.class)
+  public void testRefusedSubscription() throws Exception {
+    Form form = new Form.Builder(broker.uri("forbidden/topic"))
+      .addOperationType(TD.subscribeEvent)
+      .build();
+
+    TDMqttOperation operation = new TDMqttOperation(form, TD.subscribeEvent, client);
+    operation.setTimeout(5);
+    operation.sendRequest();
+
+    operation.getResponse();
+  }
+
+  @Test
+  public void testConnectionLossNotifiesSubscribers() throws Exception {
+    Form form = new Form.Builder(broker.uri("lamp/overheating"))
+      .addOperationType(TD.subscribeEvent)
+      .build();
+
+    CountDownLatch failed = new CountDownLatch(1);
+    TDMqttOperation operation = new TDMqttOperation(form, TD.subscribeEvent, client);
+    operation.registerResponseCallback(new ResponseCallback() {
+      @Override
+      public void onResponse(Response response) { }
+
+      @Override
+      public void onError() {
+        failed.countDown();
+      }
+    });
+    operation.sendRequest();
+
+    assertEquals("CONNECT", broker.received.poll(1, TimeUnit.SECONDS));
+    assertEquals("SUBSCRIBE lamp/overheating", broker.received.poll(1, TimeUnit.SECONDS));
+    broker.dropConnections();
+
+    assertTrue(failed.await(5, TimeUnit.SECONDS));
+    assertEquals(0, client.getConnectionCount());
+  }
+
+  @Test
+  public void testTopicMatches() {
+    assertTrue(TDMqttClient.topicMatches("lamp/overheating", "lamp/overheating"));
+    assertTrue(TDMqttClient.topicMatches("lamp/+/status", "lamp/7/status"));
+    assertTrue(TDMqttClient.topicMatches("lamp/#", "lamp"));
+    assertTrue(TDMqttClient.topicMatches("lamp/#", "lamp/7/status"));
+    assertTrue(TDMqttClient.topicMatches("#", "lamp/7"));
+
+    assertFalse(TDMqttClient.topicMatches("lamp/+", "lamp/7/status"));
+    assertFalse(TDMqttClient.topicMatches("lamp/+/status", "lamp/status"));
+    assertFalse(TDMqttClient.topicMatches("lamp/overheating", "lamp/overheating/now"));
+    assertFalse(TDMqttClient.topicMatches("#", "$SYS/uptime"));
+  }
+
+  private TDMqttOperation subscribe(Form form, Subscriber subscriber) throws IOException {
+    TDMqttOperation operation = new TDMqttOperation(form, form.getOperationTypes().iterator().next(),
+      client);
+    operation.registerResponseCallback(subscriber);
+    operation.sendRequest();
+
+    return operation;
+  }
+
+  private static class Subscriber implements ResponseCallback {
+    private final List<Response> responses = new CopyOnWriteArrayList<>();
+    private final CountDownLatch latch;
+
+    Subscriber(int expected) {
+      this.latch = new CountDownLatch(expected);
+    }
+
+    @Override
+    public void onResponse(Response response) {
+      responses.add(response);
+      latch.countDown();
+    }
+
+    @Override
+    public void onError() {
+      fail("The subscription should not fail");
+    }
+  }
+}
@@ -0,0 +1,108 @@
+package ch.unisg.ics.interactions.wot.td.bindings.resilience;
+
+import ch.unisg.ics.interactions.wot.td.affordances.Form;
+import ch.unisg.ics.interactions.wot.td.bindings.resilience.CircuitBreaker.State;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class CircuitBreakerTest {
+  private final AtomicLong clock = new AtomicLong();
+
+  private CircuitBreaker.Builder builder() {
+    return new CircuitBreaker.Builder()
+      .setFailureThreshold(3)
+      .setOpenDuration(10, TimeUnit.SECONDS)
+      .setClock(clock::get);
+  }
+
+  @Test
+  public void testOpensAfterConsecutiveFailures() {
+    CircuitBreaker breaker = builder().build("http://example.org");
+
+    breaker.onFailure();
+    breaker.onFailure();
+    breaker.onSuccess();
+    breaker.onFailure();
+    breaker.onFailure();
+    assertEquals(State.CLOSED, breaker.getState());
+    assertTrue(breaker.tryAcquire());
+
+    breaker.onFailure();
+    assertEquals(State.OPEN, breaker.getState());
+    assertFalse(breaker.tryAcquire());
+  }
+
+  @Test
+  public void testHalfOpenProbe() {
+    CircuitBreaker breaker = builder().build("http://example.org");
+    List<State> transitions = new ArrayList<>();
+    breaker.addListener((b, from, to) -> transitions.add(to));
+
+    for (int i = 0; i < 3; i++) {
+      breaker.onFailure();
+    }
+
+    clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+    assertTrue(breaker.tryAcquire());
+    assertFalse(breaker.tryAcquire());
+
+    // The probe fails: the breaker opens again
+    breaker.onFailure();
+    assertEquals(State.OPEN, breaker.getState());
+
+    clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+    assertTrue(breaker.tryAcquire());
+    breaker.onSuccess();
+
+    assertEquals(State.CLOSED, breaker.getState());
+    assertEquals(0, breaker.getConsecutiveFailures());
+    assertEquals(5, transitions.size());
+    assertEquals(State.OPEN, transitions.get(0));
+    assertEquals(State.HALF_OPEN, transitions.get(1));
+    assertEquals(State.CLOSED, transitions.get(4));
+  }
+
+  @Test
+  public void testRegistryPerEndpoint() {
+    CircuitBreakerRegistry registry = new CircuitBreakerRegistry(builder());
+    List<String> opened = new ArrayList<>();
+    registry.addListener((breaker, from, to) -> opened.add(breaker.getEndpoint()));
+
+    CircuitBreaker lamp = registry.getBreaker(new Form.Builder("http://lamp.example.org:8080/status").build());
+    assertSame(lamp, registry.getBreaker(new Form.Builder("http://lamp.example.org:8080/toggle").build()));
+    assertNotSame(lamp, registry.getBreaker("coap://lamp.example.org"));
+    assertEquals("http://lamp.example.org:8080", lamp.getEndpoint());
+
+    for (int i = 0; i < 3; i++) {
+      lamp.onFailure();
+    }
+
+    assertEquals(1, opened.size());
+    assertEquals("http://lamp.example.org:8080", opened.get(0));
+    assertEquals(2, registry.getBreakers().size());
+  }
+
+  @Test
+  public void testRetryPolicyBackoff() {
+    RetryPolicy policy = new RetryPolicy.Builder()
+      .setBackoff(100, 400, TimeUnit.MILLISECONDS)
+      .build();
+
+    for (int i = 0; i < 100; i++) {
+      assertTrue(policy.getBackoff(2, TimeUnit.MILLISECONDS) <= 100);
+      assertTrue(policy.getBackoff(3, TimeUnit.MILLISECONDS) <= 200);
+      assertTrue(policy.getBackoff(10, TimeUnit.MILLISECONDS) <= 400);
+    }
+
+    assertTrue(policy.canRetry("https://www.w3.org/2019/wot/td#readProperty", 2));
+    assertFalse(policy.canRetry("https://www.w3.org/2019/wot/td#readProperty", 3));
+    assertFalse(policy.canRetry("https://www.w3.org/2019/wot/td#invokeAction", 1));
+    assertFalse(RetryPolicy.NONE.isRetryable("https://www.w3.org/2019/wot/td#readProperty"));
+  }
+}
@@ -0,0 +1,196 @@
+package ch.unisg.ics.interactions.wot.td.bindings.resilience;
+
+import ch.unisg.ics.interactions.wot.td.affordances.Form;
+import ch.unisg.ics.interactions.wot.td.bindings.Operation;
+import ch.unisg.ics.interactions.wot.td.bindings.Response;
+import ch.unisg.ics.interactions.wot.td.bindings.ResponseCallback;
+import ch.unisg.ics.interactions.wot.td.bindings.resilience.ConcurrencyLimiter.Permit;
+import ch.unisg.ics.interactions.wot.td.vocabularies.TD;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class ConcurrencyLimiterTest {
+  private final AtomicLong clock = new AtomicLong();
+
+  @Test
+  public void testFifoAdmission() throws Exception {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder()
+      .setInitialLimit(2)
+      .setLimitBounds(2, 2)
+      .setMaxQueueLength(2)
+      .build("coap://sensor.example.org");
+
+    Permit first = limiter.acquire().get();
+    Permit second = limiter.acquire().get();
+    CompletableFuture<Permit> third = limiter.acquire();
+    CompletableFuture<Permit> fourth = limiter.acquire();
+
+    assertFalse(third.isDone());
+    assertFalse(limiter.tryAcquire().isPresent());
+    assertEquals(2, limiter.getInFlight());
+    assertEquals(2, limiter.getQueueLength());
+
+    try {
+      limiter.acquire().get();
+      fail("The queue should be full");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof AdmissionRejectedException);
+    }
+
+    first.release();
+    assertTrue(third.isDone());
+    assertFalse(fourth.isDone());
+
+    // Releasing a permit twice has no effect
+    first.release();
+    assertFalse(fourth.isDone());
+
+    second.release();
+    assertTrue(fourth.isDone());
+    assertEquals(0, limiter.getQueueLength());
+    assertEquals(2, limiter.getInFlight());
+  }
+
+  @Test
+  public void testCancelledWaiterIsSkipped() throws Exception {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder()
+      .setLimitBounds(1, 1)
+      .build("coap://sensor.example.org");
+
+    Permit permit = limiter.acquire().get();
+    CompletableFuture<Permit> cancelled = limiter.acquire();
+    CompletableFuture<Permit> next = limiter.acquire();
+
+    cancelled.cancel(false);
+    permit.release();
+
+    assertTrue(next.isDone() && !next.isCompletedExceptionally());
+    assertEquals(1, limiter.getInFlight());
+  }
+
+  @Test
+  public void testAdditiveIncreaseMultiplicativeDecrease() {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder()
+      .setInitialLimit(4)
+      .setLimitBounds(1, 8)
+      .setLatencyThreshold(100, TimeUnit.MILLISECONDS)
+      .setClock(clock::get)
+      .build("http://lamp.example.org");
+
+    // A busy endpoint that responds in time: the limit grows additively
+    for (int round = 0; round < 3; round++) {
+      List<Permit> permits = acquireAll(limiter);
+      clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(10));
+      permits.forEach(permit -> permit.onResponse(response(Optional.empty())));
+    }
+    assertEquals(5, limiter.getLimit());
+
+    // An endpoint that is not saturated does not increase the limit
+    limiter.tryAcquire().get().onResponse(response(Optional.empty()));
+    assertEquals(5, limiter.getLimit());
+
+    // Slow responses to requests sent in the same round decrease the limit once
+    List<Permit> permits = acquireAll(limiter);
+    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+    permits.forEach(permit -> permit.onResponse(response(Optional.empty())));
+    assertEquals(2, limiter.getLimit());
+
+    permits = acquireAll(limiter);
+    permits.forEach(Permit::onDropped);
+    assertEquals(1, limiter.getLimit());
+
+    permits = acquireAll(limiter);
+    permits.forEach(Permit::onDropped);
+    assertEquals(1, limiter.getLimit());
+  }
+
+  @Test
+  public void testBackOff() throws Exception {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder()
+      .setLimitBounds(2, 2)
+      .build("http://lamp.example.org");
+
+    Permit permit = limiter.acquire().get();
+    permit.onResponse(response(Optional.of(Duration.ofMillis(200))));
+
+    assertTrue(limiter.getBackoffRemaining(TimeUnit.MILLISECONDS) > 0);
+    assertFalse(limiter.tryAcquire().isPresent());
+
+    long start = System.nanoTime();
+    CompletableFuture<Permit> waiter = limiter.acquire();
+    assertFalse(waiter.isDone());
+
+    waiter.get(5, TimeUnit.SECONDS);
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(150));
+    assertEquals(0, limiter.getBackoffRemaining(TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void testAdmissionController() throws Exception {
+    AdmissionController controller = new AdmissionController(new ConcurrencyLimiter.Builder()
+      .setLimitBounds(1, 1));
+    Form form = new Form.Builder("http://lamp.example.org/toggle").build();
+
+    Operation first = stubOperation(form);
+    Operation second = stubOperation(form);
+
+    CompletableFuture<Response> firstResponse = controller.submit(first);
+    CompletableFuture<Response> secondResponse = controller.submit(second);
+
+    verify(first).sendRequest();
+    verify(second, never()).sendRequest();
+    assertEquals(1, controller.getLimiter(form).getQueueLength());
+
+    respond(first);
+    assertTrue(firstResponse.isDone());
+    verify(second).sendRequest();
+
+    respond(second);
+    assertNotNull(secondResponse.get(1, TimeUnit.SECONDS));
+    assertEquals(0, controller.findLimiter("http://lamp.example.org").get().getInFlight());
+  }
+
+  private List<Permit> acquireAll(ConcurrencyLimiter limiter) {
+    List<Permit> permits = new ArrayList<>();
+    Optional<Permit> permit;
+
+    while ((permit = limiter.tryAcquire()).isPresent()) {
+      permits.add(permit.get());
+    }
+
+    return permits;
+  }
+
+  private static Operation stubOperation(Form form) {
+    Operation operation = mock(Operation.class);
+    when(operation.getForm()).thenReturn(form);
+    when(operation.getOperationType()).thenReturn(TD.invokeAction);
+    return operation;
+  }
+
+  private static void respond(Operation operation) {
+    ArgumentCaptor<ResponseCallback> callback = ArgumentCaptor.forClass(ResponseCallback.class);
+    verify(operation, atLeastOnce()).registerResponseCallback(callback.capture());
+    callback.getAllValues().forEach(c -> c.onResponse(response(Optional.empty())));
+  }
+
+  private static Response response(Optional<Duration> retryAfter) {
+    Response response = mock(Response.class);
+    when(response.getStatus()).thenReturn(retryAfter.isPresent()
+      ? Response.ResponseStatus.THING_ERROR : Response.ResponseStatus.OK);
+    when(response.getPayload()).thenReturn(Optional.empty());
+    when(response.getRetryAfter()).thenReturn(retryAfter);
+    when(response.getPhaseTimings()).thenReturn(Optional.empty());
+    return response;
+  }
+}
@@ -0,0 +1,283 @@
+package ch.unisg.ics.interactions.wot.td.bindings.resilience;
+
+import ch.unisg.ics.interactions.wot.td.affordances.Form;
+import ch.unisg.ics.interactions.wot.td.bindings.BaseOperation;
+import ch.unisg.ics.interactions.wot.td.bindings.NoResponseException;
+import ch.unisg.ics.interactions.wot.td.bindings.Operation;
+import ch.unisg.ics.interactions.wot.td.bindings.Response;
+import ch.unisg.ics.interactions.wot.td.bindings.Response.ResponseStatus;
+import ch.unisg.ics.interactions.wot.td.bindings.ResponseCallback;
+import ch.unisg.ics.interactions.wot.td.schemas.DataSchema;
+import ch.unisg.ics.interactions.wot.td.vocabularies.TD;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class ResilientOperationTest {
+  private static final Form FORM = new Form.Builder("http://lamp.example.org/status")
+    .setMethodName("GET")
+    .addOperationType(TD.readProperty)
+    .addOperationType(TD.invokeAction)
+    .build();
+
+  private static final RetryPolicy FAST_RETRIES = new RetryPolicy.Builder()
+    .setMaxAttempts(3)
+    .setBackoff(1, 5, TimeUnit.MILLISECONDS)
+    .build();
+
+  @Test
+  public void testRetryIdempotentOperation() throws IOException {
+    List<Object> payloads = new ArrayList<>();
+    Iterator<Operation> attempts = Arrays.asList(stubOperation(null, payloads),
+      stubOperation(ResponseStatus.THING_ERROR, payloads), stubOperation(ResponseStatus.OK, payloads))
+      .iterator();
+
+    ResilientOperation operation = new ResilientOperation.Builder(FORM, TD.readProperty)
+      .setOperationFactory(attempts::next)
+      .setRetryPolicy(FAST_RETRIES)
+      .setCircuitBreakers(new CircuitBreakerRegistry())
+      .build();
+    operation.setPayload("on");
+    operation.sendRequest();
+
+    assertEquals(ResponseStatus.OK, operation.getResponse().getStatus());
+    assertEquals(3, operation.getAttempts());
+    assertEquals(Arrays.asList("on", "on", "on"), payloads);
+    assertEquals(CircuitBreaker.State.CLOSED, operation.getCircuitBreaker().getState());
+  }
+
+  @Test
+  public void testNoRetryForNonIdempotentOperation() throws IOException {
+    Operation attempt = stubOperation(ResponseStatus.THING_ERROR, null);
+
+    ResilientOperation operation = new ResilientOperation.Builder(FORM, TD.invokeAction)
+      .setOperationFactory(() -> attempt)
+      .setRetryPolicy(FAST_RETRIES)
+      .setCircuitBreakers(new CircuitBreakerRegistry())
+      .build();
+    operation.sendRequest();
+
+    assertEquals(ResponseStatus.THING_ERROR, operation.getResponse().getStatus());
+    assertEquals(1, operation.getAttempts());
+  }
+
+  @Test
+  public void testAttemptTimeout() throws IOException {
+    Iterator<Operation> attempts = Arrays.asList(stubOperation(null, null, false),
+      stubOperation(null, null, false)).iterator();
+
+    ResilientOperation operation = new ResilientOperation.Builder(FORM, TD.readProperty)
+      .setOperationFactory(attempts::next)
+      .setRetryPolicy(new RetryPolicy.Builder().setMaxAttempts(2)
+        .setBackoff(0, 0, TimeUnit.MILLISECONDS).build())
+      .setCircuitBreakers(new CircuitBreakerRegistry())
+      .setAttemptTimeout(50, TimeUnit.MILLISECONDS)
+      .build();
+
+    List<String> events = new ArrayList<>();
+    operation.registerResponseCallback(new ResponseCallback() {
+      @Override
+      public void onResponse(Response response) {
+        events.add("response");
+      }
+
+      @Override
+      public void onError() {
+        events.add("error");
+      }
+    });
+
+    long start = System.nanoTime();
+    operation.sendRequest();
+
+    try {
+      operation.getResponse();
+      fail("The operation should time out");
+    } catch (NoResponseException e) {
+      assertEquals(2, operation.getAttempts());
+      assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+      assertEquals(Collections.singletonList("error"), events);
+    }
+  }
+
+  @Test
+  public void testTimedOutAttemptsAborted() throws Exception {
+    List<HangingOperation> operations = new ArrayList<>();
+
+    ResilientOperation operation = new ResilientOperation.Builder(FORM, TD.readProperty)
+      .setOperationFactory(() -> {
+        HangingOperation hanging = new HangingOperation();
+        operations.add(hanging);
+        return hanging;
+      })
+      .setRetryPolicy(new RetryPolicy.Builder().setMaxAttempts(2)
+        .setBackoff(0, 0, TimeUnit.MILLISECONDS).build())
+      .setCircuitBreakers(new CircuitBreakerRegistry())
+      .setAttemptTimeout(50, TimeUnit.MILLISECONDS)
+      .build();
+    operation.sendRequest();
+
+    try {
+      operation.getResponse();
+      fail("The operation should time out");
+    } catch (NoResponseException e) {
+      assertEquals(2, operations.size());
+    }
+
+    // Each attempt gets the attempt timeout as deadline, and is aborted when it expires
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+    while (operations.stream().anyMatch(o -> o.aborts.get() == 0) && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    for (HangingOperation hanging : operations) {
+      assertEquals(TimeUnit.MILLISECONDS.toNanos(50), hanging.getTimeout(TimeUnit.NANOSECONDS));
+      assertEquals(1, hanging.aborts.get());
+    }
+  }
+
+  @Test
+  public void testFailFastWhenBreakerOpen() throws IOException {
+    CircuitBreakerRegistry breakers = new CircuitBreakerRegistry(new CircuitBreaker.Builder()
+      .setFailureThreshold(2));
+
+    Iterator<Operation> attempts = Arrays.asList(stubOperation(null, null), stubOperation(null, null),
+      stubOperation(null, null)).iterator();
+
+    ResilientOperation.Builder builder = new ResilientOperation.Builder(FORM, TD.readProperty)
+      .setOperationFactory(attempts::next)
+      .setRetryPolicy(RetryPolicy.NONE)
+      .setCircuitBreakers(breakers);
+
+    for (int i = 0; i < 2; i++) {
+      ResilientOperation operation = builder.build();
+      operation.sendRequest();
+      try {
+        operation.getResponse();
+        fail("The operation should fail");
+      } catch (NoResponseException e) {
+        assertFalse(e instanceof CircuitBreakerOpenException);
+      }
+    }
+
+    ResilientOperation rejected = builder.build();
+    try {
+      rejected.sendRequest();
+      fail("The breaker should be open");
+    } catch (CircuitBreakerOpenException e) {
+      assertEquals("http://lamp.example.org", e.getEndpoint());
+      assertEquals(0, rejected.getAttempts());
+    }
+  }
+
+  /**
+   * Mocks an operation that responds (or fails, if the status is null) as soon as it is sent.
+   */
+  private static Operation stubOperation(ResponseStatus status, List<Object> payloads, boolean responds)
+      throws IOException {
+    Operation operation = mock(Operation.class);
+    List<ResponseCallback> callbacks = new ArrayList<>();
+    AtomicReference<Object> payload = new AtomicReference<>();
+
+    when(operation.getForm()).thenReturn(FORM);
+    when(operation.getOperationType()).thenReturn(TD.readProperty);
+    doAnswer(invocation -> callbacks.add((ResponseCallback) invocation.getArguments()[0]))
+      .when(operation).registerResponseCallback(any(ResponseCallback.class));
+    doAnswer(invocation -> callbacks.remove((ResponseCallback) invocation.getArguments()[0]))
+      .when(operation).unregisterResponseCallback(any(ResponseCallback.class));
+    doAnswer(invocation -> {
+      payload.set(invocation.getArguments()[0]);
+      return null;
+    }).when(operation).setPayload(any());
+    doAnswer(invocation -> {
+      payload.set(invocation.getArguments()[1]);
+      return null;
+    }).when(operation).setPayload(any(DataSchema.class), any());
+
+    doAnswer(invocation -> {
+      if (payloads != null) {
+        payloads.add(payload.get());
+      }
+
+      if (responds) {
+        for (ResponseCallback callback : callbacks) {
+          if (status == null) {
+            callback.onError();
+          } else {
+            callback.onResponse(response(operation, status));
+          }
+        }
+      }
+      return null;
+    }).when(operation).sendRequest();
+
+    return operation;
+  }
+
+  private static Operation stubOperation(ResponseStatus status, List<Object> payloads) throws IOException {
+    return stubOperation(status, payloads, true);
+  }
+
+  private static Response response(Operation operation, ResponseStatus status) {
+    Response response = mock(Response.class);
+    when(response.getOperation()).thenReturn(operation);
+    when(response.getStatus()).thenReturn(status);
+    when(response.getPayload()).thenReturn(Optional.empty());
+    when(response.getRetryAfter()).thenReturn(Optional.empty());
+    when(response.getPhaseTimings()).thenReturn(Optional.empty());
+    return response;
+  }
+
+  private static class HangingOperation extends BaseOperation {
+    private final AtomicInteger aborts = new AtomicInteger();
+
+    HangingOperation() {
+      super(FORM, TD.readProperty);
+    }
+
+    @Override
+    public void sendRequest() {
+      onRequestSent(0);
+    }
+
+    @Override
+    protected void abort() {
+      aborts.incrementAndGet();
+    }
+
+    @Override
+    protected Object getPayload() {
+      return null;
+    }
+
+    @Override
+    protected void setObjectPayload(Map<String, Object> payload) {
+    }
+
+    @Override
+    protected void setArrayPayload(List<Object> payload) {
+    }
+
+    @Override
+    protected void setStringPayload(String payload) {
+    }
+
+    @Override
+    protected void setBooleanPayload(Boolean payload) {
+    }
+
+    @Override
+    protected void setIntegerPayload(Long payload) {
+    }
+
+    @Override
+    protected void setNumberPayload(Double payload) {
+    }
+  }
+}
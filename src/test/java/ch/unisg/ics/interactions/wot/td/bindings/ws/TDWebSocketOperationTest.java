@@ -0,0 +1,260 @@
+package ch.unisg.ics.interactions.wot.td.bindings.ws;
+
+import ch.unisg.ics.interactions.wot.td.affordances.Form;
+import ch.unisg.ics.interactions.wot.td.bindings.NoResponseException;
+import ch.unisg.ics.interactions.wot.td.bindings.Operation;
+import ch.unisg.ics.interactions.wot.td.bindings.ProtocolBindings;
+import ch.unisg.ics.interactions.wot.td.bindings.Response;
+import ch.unisg.ics.interactions.wot.td.bindings.ResponseCallback;
+import ch.unisg.ics.interactions.wot.td.vocabularies.TD;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TDWebSocketOperationTest {
+
+  private WebSocketStandInServer server;
+  private TDWebSocketClient client;
+
+  @Before
+  public void setUp() throws IOException {
+    server = new WebSocketStandInServer();
+    server.properties.put("status", new JsonPrimitive("idle"));
+    server.properties.put("slow", new JsonPrimitive(1));
+
+    client = new TDWebSocketClient();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    client.close();
+    server.close();
+  }
+
+  @Test
+  public void testBindingRegistered() throws Exception {
+    Form form = new Form.Builder(server.uri("/lamp"))
+      .addOperationType(TD.readProperty)
+      .build();
+
+    assertEquals("WebSocket", form.getProtocol().get());
+
+    Operation operation = ProtocolBindings.getBinding(form).bind(form, TD.readProperty);
+    assertTrue(operation instanceof TDWebSocketOperation);
+  }
+
+  @Test
+  public void testOperationsShareConnection() throws Exception {
+    Form form = new Form.Builder(server.uri("/lamp"))
+      .addOperationType(TD.readProperty)
+      .addOperationType(TD.writeProperty)
+      .addOperationType(TD.invokeAction)
+      .build();
+
+    TDWebSocketOperation write = operation(form, TD.writeProperty, "brightness");
+    write.setPayload(42);
+    write.sendRequest();
+    Response written = write.getResponse();
+    assertEquals(Response.ResponseStatus.OK, written.getStatus());
+    assertFalse(written.getPayload().isPresent());
+
+    TDWebSocketOperation read = operation(form, TD.readProperty, "brightness");
+    read.sendRequest();
+    assertEquals(42L, ((TDWebSocketResponse) read.getResponse()).getPayloadAsInteger().longValue());
+
+    Map<String, Object> input = new HashMap<>();
+    input.put("color", "red");
+
+    TDWebSocketOperation invoke = operation(form, TD.invokeAction, "setColor");
+    invoke.setPayload(input);
+    invoke.sendRequest();
+
+    Map<?, ?> output = (Map<?, ?>) invoke.getResponse().getPayload().get();
+    assertEquals(input, output.get("input"));
+
+    JsonObject request = server.requests.poll(1, TimeUnit.SECONDS);
+    assertEquals("writeproperty", request.get(TDWebSocketBinding.OPERATION).getAsString());
+    assertEquals(form.getTarget(), request.get(TDWebSocketBinding.HREF).getAsString());
+
+    assertEquals(1, server.getAcceptedConnections());
+    assertEquals(1, client.getConnectionCount());
+  }
+
+  @Test
+  public void testResponsesCorrelatedByMessageId() throws Exception {
+    Form form = new Form.Builder(server.uri("/lamp"))
+      .addOperationType(TD.readProperty)
+      .build();
+
+    TDWebSocketOperation slow = operation(form, TD.readProperty, "slow");
+    TDWebSocketOperation fast = operation(form, TD.readProperty, "status");
+    assertNotEquals(slow.getMessageId(), fast.getMessageId());
+
+    List<String> order = new CopyOnWriteArrayList<>();
+    slow.registerResponseCallback(new Recorder(order, "slow"));
+    fast.registerResponseCallback(new Recorder(order, "fast"));
+
+    slow.sendRequest();
+    fast.sendRequest();
+
+    assertEquals(1L, slow.getResponse().getPayload().get());
+    assertEquals("idle", fast.getResponse().getPayload().get());
+    // The slow response does not block the fast one
+    assertEquals("fast", order.get(0));
+    assertEquals(1, server.getAcceptedConnections());
+  }
+
+  @Test
+  public void testSubscribeEvent() throws Exception {
+    Form form = new Form.Builder(server.uri("/lamp"))
+      .addOperationType(TD.subscribeEvent)
+      .build();
+
+    TDWebSocketOperation subscribe = operation(form, TD.subscribeEvent, "overheating");
+    List<Response> events = new CopyOnWriteArrayList<>();
+    CountDownLatch received = new CountDownLatch(2);
+    subscribe.registerResponseCallback(new ResponseCallback() {
+      @Override
+      public void onResponse(Response response) {
+        events.add(response);
+        received.countDown();
+      }
+
+      @Override
+      public void onError() {
+        fail("The subscription should not fail");
+      }
+    });
+    subscribe.sendRequest();
+
+    assertNotNull(server.requests.poll(1, TimeUnit.SECONDS));
+    server.emit("overheating", new JsonPrimitive(85));
+    server.emit("overheating", new JsonPrimitive(90));
+
+    assertTrue(received.await(5, TimeUnit.SECONDS));
+    assertEquals(85L, events.get(0).getPayload().get());
+    assertEquals(90L, events.get(1).getPayload().get());
+
+    subscribe.cancel();
+
+    JsonObject cancellation = server.requests.poll(1, TimeUnit.SECONDS);
+    assertEquals("unsubscribeevent", cancellation.get(TDWebSocketBinding.OPERATION).getAsString());
+    assertEquals(subscribe.getMessageId(), cancellation.get(TDWebSocketBinding.MESSAGE_ID).getAsString());
+    assertTrue(server.subscriptions.isEmpty());
+  }
+
+  @Test
+  public void testErrorResponse() throws Exception {
+    Form form = new Form.Builder(server.uri("/lamp"))
+      .addOperationType(TD.readProperty)
+      .build();
+
+    TDWebSocketOperation read = operation(form, TD.readProperty, "unknown");
+    read.sendRequest();
+
+    TDWebSocketResponse response = (TDWebSocketResponse) read.getResponse();
+    assertEquals(Response.ResponseStatus.CONSUMER_ERROR, response.getStatus());
+    assertEquals(Integer.valueOf(404), response.getStatusCode().get());
+    assertEquals("Unknown property: unknown", response.getError().get());
+  }
+
+  @Test(expected = NoResponseException.class)
+  public void testConnectionLossFailsPendingOperations() throws Exception {
+    Form form = new Form.Builder(server.uri("/lamp"))
+      .addOperationType(TD.readProperty)
+      .build();
+
+    TDWebSocketOperation read = operation(form, TD.readProperty, "hang");
+    read.setTimeout(5);
+    read.sendRequest();
+
+    assertNotNull(server.requests.poll(1, TimeUnit.SECONDS));
+    server.dropConnections();
+
+    try {
+      read.getResponse();
+    } finally {
+      // The next operation opens a new connection
+      TDWebSocketOperation next = operation(form, TD.readProperty, "status");
+      next.sendRequest();
+      assertEquals("idle", next.getResponse().getPayload().get());
+      assertEquals(2, server.getAcceptedConnections());
+    }
+  }
+
+  @Test
+  public void testUnreachableEndpointDoesNotBlockOthers() throws Exception {
+    // Accepts TCP connections (in its backlog) but never answers the handshake
+    try (ServerSocket silent = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+         TDWebSocketClient slowClient = new TDWebSocketClient(3000)) {
+      CountDownLatch failed = new CountDownLatch(1);
+      Thread connecting = new Thread(() -> {
+        try {
+          slowClient.getChannel("ws://localhost:" + silent.getLocalPort() + "/thing");
+        } catch (IOException e) {
+          failed.countDown();
+        }
+      });
+      connecting.start();
+      Thread.sleep(200);
+
+      Form form = new Form.Builder(server.uri("/lamp"))
+        .addOperationType(TD.readProperty)
+        .build();
+
+      long start = System.nanoTime();
+      TDWebSocketOperation read = new TDWebSocketOperation(form, TD.readProperty, slowClient)
+        .setAffordanceName("status");
+      read.sendRequest();
+      assertEquals(Response.ResponseStatus.OK, read.getResponse().getStatus());
+      assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000);
+
+      assertTrue(failed.await(5, TimeUnit.SECONDS));
+      assertEquals(1, slowClient.getConnectionCount());
+    }
+  }
+
+  @Test
+  public void testOperationName() {
+    assertEquals("readproperty", TDWebSocketOperation.getOperationName(TD.readProperty));
+    assertEquals("unobserveproperty", TDWebSocketOperation.getOperationName(TD.unobserveProperty));
+  }
+
+  private TDWebSocketOperation operation(Form form, String operationType, String name) {
+    return new TDWebSocketOperation(form, operationType, client).setAffordanceName(name);
+  }
+
+  private static class Recorder implements ResponseCallback {
+    private final List<String> order;
+    private final String label;
+
+    Recorder(List<String> order, String label) {
+      this.order = order;
+      this.label = label;
+    }
+
+    @Override
+    public void onResponse(Response response) {
+      order.add(label);
+    }
+
+    @Override
+    public void onError() {
+      fail("The operation should not fail");
+    }
+  }
+}
@@ -0,0 +1,191 @@
+package ch.unisg.ics.interactions.wot.td.bindings.ws;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ProtocolException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class WebSocketConnectionTest {
+
+  @Test
+  public void testFrameRoundTrip() throws IOException {
+    byte[] payload = new byte[70000];
+    payload[69999] = 'x';
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    WebSocketConnection.writeFrame(out, 0x1, payload, true);
+
+    WebSocketConnection.Frame frame = WebSocketConnection.readFrame(
+      new ByteArrayInputStream(out.toByteArray()));
+    assertArrayEquals(payload, frame.payload);
+  }
+
+  @Test(expected = IOException.class)
+  public void testNegativeFrameLength() throws IOException {
+    byte[] frame = new byte[] {(byte) 0x81, 127, (byte) 0x80, 0, 0, 0, 0, 0, 0, 1, 'x'};
+    WebSocketConnection.readFrame(new ByteArrayInputStream(frame));
+  }
+
+  @Test(expected = IOException.class)
+  public void testOversizedFrame() throws IOException {
+    byte[] frame = new byte[] {(byte) 0x81, 127, 0, 0, 0, 1, 0, 0, 0, 0};
+    WebSocketConnection.readFrame(new ByteArrayInputStream(frame));
+  }
+
+  @Test(expected = ProtocolException.class)
+  public void testOversizedControlFrame() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    WebSocketConnection.writeFrame(out, WebSocketConnection.OP_PING, new byte[126], false);
+    WebSocketConnection.readFrame(new ByteArrayInputStream(out.toByteArray()));
+  }
+
+  @Test(expected = ProtocolException.class)
+  public void testFragmentedControlFrame() throws IOException {
+    byte[] frame = new byte[] {(byte) WebSocketConnection.OP_PING, 0};
+    WebSocketConnection.readFrame(new ByteArrayInputStream(frame));
+  }
+
+  @Test
+  public void testFragmentedMessage() throws Exception {
+    try (WebSocketStandInServer server = new WebSocketStandInServer()) {
+      Receiver receiver = new Receiver();
+      WebSocketConnection connection = WebSocketConnection.open(URI.create(server.uri("/")), 5000, receiver);
+
+      server.sendRaw(concat(
+        frame(false, WebSocketConnection.OP_TEXT, "Hello, "),
+        frame(true, WebSocketConnection.OP_PING, ""),
+        frame(true, WebSocketConnection.OP_CONTINUATION, "world")));
+
+      assertEquals("Hello, world", receiver.messages.get(5, TimeUnit.SECONDS));
+      assertTrue(connection.isOpen());
+      connection.close();
+    }
+  }
+
+  @Test
+  public void testMaskedFrameFailsConnection() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    WebSocketConnection.writeFrame(out, WebSocketConnection.OP_TEXT, bytes("masked"), true);
+
+    assertProtocolError(out.toByteArray());
+  }
+
+  @Test
+  public void testContinuationWithoutMessageFailsConnection() throws Exception {
+    assertProtocolError(frame(true, WebSocketConnection.OP_CONTINUATION, "orphan"));
+  }
+
+  @Test
+  public void testInterleavedMessageFailsConnection() throws Exception {
+    assertProtocolError(concat(
+      frame(false, WebSocketConnection.OP_TEXT, "first"),
+      frame(true, WebSocketConnection.OP_TEXT, "second")));
+  }
+
+  @Test
+  public void testOversizedHandshakeHeader() throws Exception {
+    char[] value = new char[WebSocketConnection.MAX_HEADER_SIZE];
+    Arrays.fill(value, 'x');
+
+    try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+      Thread server = new Thread(() -> {
+        try (Socket socket = serverSocket.accept()) {
+          socket.getOutputStream().write(bytes("HTTP/1.1 101 Switching Protocols\r\n"
+            + "X-Padding: " + new String(value) + "\r\n\r\n"));
+          socket.getOutputStream().flush();
+          socket.getInputStream().read();
+        } catch (IOException e) {
+          // The client closed the connection
+        }
+      });
+      server.setDaemon(true);
+      server.start();
+
+      try {
+        WebSocketConnection.open(URI.create("ws://localhost:" + serverSocket.getLocalPort() + "/"), 5000,
+          new Receiver());
+        fail("The handshake should fail");
+      } catch (IOException e) {
+        assertTrue(e.getMessage().contains("maximum header size"));
+      }
+    }
+  }
+
+  @Test
+  public void testAcceptKey() {
+    // Example of RFC 6455
+    assertEquals("s3pPLMBiTxaQ9kYGzzhZRbK+xOo=",
+      WebSocketConnection.acceptKey("dGhlIHNhbXBsZSBub25jZQ=="));
+  }
+
+  private void assertProtocolError(byte[] frames) throws Exception {
+    try (WebSocketStandInServer server = new WebSocketStandInServer()) {
+      Receiver receiver = new Receiver();
+      WebSocketConnection connection = WebSocketConnection.open(URI.create(server.uri("/")), 5000, receiver);
+
+      server.sendRaw(frames);
+
+      Optional<IOException> cause = receiver.closed.get(5, TimeUnit.SECONDS);
+      assertTrue(cause.isPresent());
+      assertTrue(cause.get() instanceof ProtocolException);
+      assertFalse(connection.isOpen());
+      assertTrue(receiver.received.isEmpty());
+
+      // The connection is failed with status 1002
+      assertArrayEquals(new byte[] {0x03, (byte) 0xEA}, server.closeFrames.poll(5, TimeUnit.SECONDS));
+    }
+  }
+
+  private static byte[] frame(boolean fin, int opcode, String payload) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    WebSocketConnection.writeFrame(out, opcode, bytes(payload), false);
+
+    byte[] frame = out.toByteArray();
+    if (!fin) {
+      frame[0] &= 0x7F;
+    }
+    return frame;
+  }
+
+  private static byte[] concat(byte[]... frames) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (byte[] frame : frames) {
+      out.write(frame, 0, frame.length);
+    }
+    return out.toByteArray();
+  }
+
+  private static byte[] bytes(String s) {
+    return s.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static class Receiver implements WebSocketConnection.Listener {
+    private final List<String> received = new CopyOnWriteArrayList<>();
+    private final CompletableFuture<String> messages = new CompletableFuture<>();
+    private final CompletableFuture<Optional<IOException>> closed = new CompletableFuture<>();
+
+    @Override
+    public void onText(String text) {
+      received.add(text);
+      messages.complete(text);
+    }
+
+    @Override
+    public void onClose(Optional<IOException> cause) {
+      closed.complete(cause);
+    }
+  }
+}
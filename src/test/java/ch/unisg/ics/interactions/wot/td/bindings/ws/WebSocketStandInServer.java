@@ -0,0 +1,260 @@
+package ch.unisg.ics.interactions.wot.td.bindings.ws;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process WebSocket server that stands in for a Thing: properties can be read and written,
+ * actions echo their input, and events are emitted to subscribers with {@link #emit(String, JsonElement)}.
+ * Reads of the property <code>slow</code> are answered after a delay, and reads of the property
+ * <code>hang</code> are never answered.
+ */
+class WebSocketStandInServer implements Closeable {
+
+  private final ServerSocket serverSocket;
+  private final List<Connection> connections = new CopyOnWriteArrayList<>();
+  private final AtomicInteger acceptedConnections = new AtomicInteger();
+
+  final Map<String, JsonElement> properties = new ConcurrentHashMap<>();
+  final Map<String, Subscription> subscriptions = new ConcurrentHashMap<>();
+  final BlockingQueue<JsonObject> requests = new LinkedBlockingQueue<>();
+  final BlockingQueue<byte[]> closeFrames = new LinkedBlockingQueue<>();
+
+  private final ScheduledExecutorService delayed = Executors.newSingleThreadScheduledExecutor();
+
+  static final class Subscription {
+    final String messageId;
+    final String name;
+    final Connection connection;
+
+    Subscription(String messageId, String name, Connection connection) {
+      this.messageId = messageId;
+      this.name = name;
+      this.connection = connection;
+    }
+  }
+
+  WebSocketStandInServer() throws IOException {
+    serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+
+    Thread acceptor = new Thread(this::accept, "ws-stand-in-acceptor");
+    acceptor.setDaemon(true);
+    acceptor.start();
+  }
+
+  String uri(String path) {
+    return "ws://localhost:" + serverSocket.getLocalPort() + path;
+  }
+
+  int getAcceptedConnections() {
+    return acceptedConnections.get();
+  }
+
+  void emit(String name, JsonElement data) throws IOException {
+    for (Subscription subscription : subscriptions.values()) {
+      if (subscription.name.equals(name)) {
+        JsonObject message = new JsonObject();
+        message.addProperty(TDWebSocketBinding.MESSAGE_ID, subscription.messageId);
+        message.add(TDWebSocketBinding.DATA, data);
+        subscription.connection.send(message);
+      }
+    }
+  }
+
+  /**
+   * Writes raw bytes (e.g. malformed frames) to all connections.
+   */
+  void sendRaw(byte[] bytes) throws IOException {
+    for (Connection connection : connections) {
+      connection.sendRaw(bytes);
+    }
+  }
+
+  /**
+   * Drops all connections without a closing handshake.
+   */
+  void dropConnections() throws IOException {
+    for (Connection connection : connections) {
+      connection.socket.close();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    delayed.shutdownNow();
+    serverSocket.close();
+    dropConnections();
+  }
+
+  private void accept() {
+    try {
+      while (true) {
+        Socket socket = serverSocket.accept();
+        acceptedConnections.incrementAndGet();
+
+        Connection connection = new Connection(socket);
+        connections.add(connection);
+
+        Thread handler = new Thread(connection::run, "ws-stand-in-connection");
+        handler.setDaemon(true);
+        handler.start();
+      }
+    } catch (IOException e) {
+      // The server is closed
+    }
+  }
+
+  final class Connection {
+    private final Socket socket;
+    private OutputStream out;
+
+    Connection(Socket socket) {
+      this.socket = socket;
+    }
+
+    synchronized void send(JsonObject message) throws IOException {
+      WebSocketConnection.writeFrame(out, WebSocketConnection.OP_TEXT,
+        message.toString().getBytes(StandardCharsets.UTF_8), false);
+    }
+
+    synchronized void sendRaw(byte[] bytes) throws IOException {
+      out.write(bytes);
+      out.flush();
+    }
+
+    private void run() {
+      try {
+        InputStream in = new BufferedInputStream(socket.getInputStream());
+        out = new BufferedOutputStream(socket.getOutputStream());
+
+        handshake(in);
+
+        while (true) {
+          WebSocketConnection.Frame frame = WebSocketConnection.readFrame(in);
+
+          if (frame.opcode == WebSocketConnection.OP_CLOSE) {
+            closeFrames.add(frame.payload);
+            synchronized (this) {
+              WebSocketConnection.writeFrame(out, WebSocketConnection.OP_CLOSE, frame.payload, false);
+            }
+            socket.close();
+            return;
+          }
+
+          if (frame.opcode == WebSocketConnection.OP_TEXT) {
+            JsonObject request = JsonParser.parseString(new String(frame.payload, StandardCharsets.UTF_8))
+              .getAsJsonObject();
+            handle(request);
+            requests.add(request);
+          }
+        }
+      } catch (IOException e) {
+        // The connection is closed
+      } finally {
+        connections.remove(this);
+      }
+    }
+
+    private void handshake(InputStream in) throws IOException {
+      String key = null;
+      String line;
+
+      while (!(line = readLine(in)).isEmpty()) {
+        if (line.toLowerCase().startsWith("sec-websocket-key:")) {
+          key = line.substring(line.indexOf(':') + 1).trim();
+        }
+      }
+
+      String response = "HTTP/1.1 101 Switching Protocols\r\n"
+        + "Upgrade: websocket\r\n"
+        + "Connection: Upgrade\r\n"
+        + "Sec-WebSocket-Accept: " + WebSocketConnection.acceptKey(key) + "\r\n\r\n";
+
+      out.write(response.getBytes(StandardCharsets.US_ASCII));
+      out.flush();
+    }
+
+    private void handle(JsonObject request) throws IOException {
+      String messageId = request.get(TDWebSocketBinding.MESSAGE_ID).getAsString();
+      String operation = request.get(TDWebSocketBinding.OPERATION).getAsString();
+      String name = request.has(TDWebSocketBinding.NAME)
+        ? request.get(TDWebSocketBinding.NAME).getAsString() : "";
+
+      JsonObject response = new JsonObject();
+      response.addProperty(TDWebSocketBinding.MESSAGE_ID, messageId);
+
+      switch (operation) {
+        case "readproperty":
+          if (name.equals("hang")) {
+            return;
+          }
+          if (!properties.containsKey(name)) {
+            response.addProperty(TDWebSocketBinding.STATUS, 404);
+            response.addProperty(TDWebSocketBinding.ERROR, "Unknown property: " + name);
+            break;
+          }
+          response.add(TDWebSocketBinding.DATA, properties.get(name));
+          if (name.equals("slow")) {
+            delayed.schedule(() -> {
+              send(response);
+              return null;
+            }, 200, TimeUnit.MILLISECONDS);
+            return;
+          }
+          break;
+        case "writeproperty":
+          properties.put(name, request.get(TDWebSocketBinding.DATA));
+          response.addProperty(TDWebSocketBinding.STATUS, 204);
+          break;
+        case "invokeaction":
+          JsonObject result = new JsonObject();
+          result.add("input", request.has(TDWebSocketBinding.DATA)
+            ? request.get(TDWebSocketBinding.DATA) : new JsonPrimitive(""));
+          response.add(TDWebSocketBinding.DATA, result);
+          break;
+        case "subscribeevent":
+        case "observeproperty":
+          subscriptions.put(messageId, new Subscription(messageId, name, this));
+          return;
+        case "unsubscribeevent":
+        case "unobserveproperty":
+          subscriptions.remove(messageId);
+          return;
+        default:
+          response.addProperty(TDWebSocketBinding.STATUS, 400);
+          response.addProperty(TDWebSocketBinding.ERROR, "Unsupported operation: " + operation);
+      }
+
+      send(response);
+    }
+  }
+
+  private static String readLine(InputStream in) throws IOException {
+    StringBuilder line = new StringBuilder();
+    int c;
+
+    while ((c = in.read()) >= 0 && c != '\n') {
+      if (c != '\r') {
+        line.append((char) c);
+      }
+    }
+
+    if (c < 0) {
+      throw new EOFException();
+    }
+
+    return line.toString();
+  }
+}
@@ -0,0 +1,322 @@
+package ch.unisg.ics.interactions.wot.td.clients;
+
+import ch.unisg.ics.interactions.wot.td.ThingDescription;
+import ch.unisg.ics.interactions.wot.td.affordances.Form;
+import ch.unisg.ics.interactions.wot.td.affordances.PropertyAffordance;
+import ch.unisg.ics.interactions.wot.td.bindings.BaseOperation;
+import ch.unisg.ics.interactions.wot.td.bindings.HashedWheelTimer;
+import ch.unisg.ics.interactions.wot.td.bindings.Operation;
+import ch.unisg.ics.interactions.wot.td.bindings.Response;
+import ch.unisg.ics.interactions.wot.td.bindings.ResponseCallback;
+import ch.unisg.ics.interactions.wot.td.vocabularies.TD;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class PropertyPollerTest {
+  private static final String STATUS = "http://lamp.example.org/status";
+  private static final String BRIGHTNESS = "http://lamp.example.org/brightness";
+
+  private final Map<String, AtomicInteger> polls = new ConcurrentHashMap<>();
+
+  private static final ThingDescription LAMP = new ThingDescription.Builder("Lamp")
+    .addThingURI("http://example.org/lamp")
+    .addProperty(property("status", STATUS))
+    .addProperty(property("brightness", BRIGHTNESS))
+    .build();
+
+  @Test
+  public void testDeliversOnlyChanges() throws InterruptedException {
+    List<Object> values = Collections.synchronizedList(new ArrayList<>());
+    CountDownLatch latch = new CountDownLatch(2);
+
+    try (PropertyPoller poller = poller(count -> count < 3 ? "on" : "off").build()) {
+      poller.subscribe(LAMP, "status", (property, value) -> {
+        values.add(value);
+        latch.countDown();
+      });
+
+      assertTrue(latch.await(5, TimeUnit.SECONDS));
+      assertTrue(polls.get(STATUS).get() >= 4);
+      assertEquals(Arrays.asList("on", "off"), values);
+    }
+  }
+
+  @Test
+  public void testIntervalGrowsWhenUnchanged() throws InterruptedException {
+    List<Object> values = Collections.synchronizedList(new ArrayList<>());
+
+    try (PropertyPoller poller = poller(count -> 21.5).build()) {
+      PropertyPoller.PollingSubscription subscription = poller.subscribe(LAMP, "brightness",
+        (property, value) -> values.add(value));
+
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (subscription.getInterval(TimeUnit.MILLISECONDS) < 80 && System.nanoTime() < deadline) {
+        Thread.sleep(10);
+      }
+
+      assertEquals(80, subscription.getInterval(TimeUnit.MILLISECONDS));
+      assertEquals(Collections.singletonList(21.5), values);
+      assertEquals(Optional.of(21.5), subscription.getLastValue());
+    }
+  }
+
+  @Test
+  public void testBatchesPollsPerThing() throws InterruptedException {
+    HashedWheelTimer timer = new HashedWheelTimer(5, TimeUnit.MILLISECONDS, 64);
+    CountDownLatch latch = new CountDownLatch(2);
+
+    try (PropertyPoller poller = poller(count -> count).setTimer(timer).build()) {
+      poller.subscribe(LAMP, "status", (property, value) -> latch.countDown());
+      poller.subscribe(LAMP, "brightness", (property, value) -> latch.countDown());
+
+      // The properties of the Thing share a single timeout
+      assertEquals(1, timer.getPendingTimeouts());
+      assertEquals(2, poller.getSubscriptions().size());
+
+      assertTrue(latch.await(5, TimeUnit.SECONDS));
+      assertEquals("http://example.org/lamp", poller.getSubscriptions().get(0).getThing());
+    } finally {
+      timer.stop();
+    }
+  }
+
+  @Test
+  public void testTimeout() throws InterruptedException {
+    CountDownLatch latch = new CountDownLatch(1);
+
+    try (PropertyPoller poller = poller(count -> null)
+        .setOperationFactory(form -> stubOperation(form, null))
+        .setTimeout(30, TimeUnit.MILLISECONDS)
+        .build()) {
+      poller.subscribe(LAMP.getPropertyByName("status").get(), new PropertyValueListener() {
+        @Override
+        public void onValue(PropertyAffordance property, Object value) {
+          fail("No value should be delivered");
+        }
+
+        @Override
+        public void onError(PropertyAffordance property, Optional<Response> response) {
+          assertFalse(response.isPresent());
+          latch.countDown();
+        }
+      });
+
+      assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+  }
+
+  @Test
+  public void testTimedOutPollAborted() throws InterruptedException {
+    CountDownLatch latch = new CountDownLatch(1);
+    List<HangingOperation> operations = new CopyOnWriteArrayList<>();
+
+    try (PropertyPoller poller = poller(count -> null)
+        .setOperationFactory(form -> {
+          HangingOperation operation = new HangingOperation(form);
+          operations.add(operation);
+          return operation;
+        })
+        .setTimeout(30, TimeUnit.MILLISECONDS)
+        .build()) {
+      poller.subscribe(LAMP, "status", new PropertyValueListener() {
+        @Override
+        public void onValue(PropertyAffordance property, Object value) {
+          fail("No value should be delivered");
+        }
+
+        @Override
+        public void onError(PropertyAffordance property, Optional<Response> response) {
+          latch.countDown();
+        }
+      });
+
+      assertTrue(latch.await(5, TimeUnit.SECONDS));
+      assertEquals(1, operations.get(0).aborts.get());
+    }
+  }
+
+  @Test
+  public void testNoTimeout() throws InterruptedException {
+    AtomicInteger errors = new AtomicInteger();
+    List<HangingOperation> operations = new CopyOnWriteArrayList<>();
+
+    try (PropertyPoller poller = poller(count -> null)
+        .setOperationFactory(form -> {
+          HangingOperation operation = new HangingOperation(form);
+          operations.add(operation);
+          return operation;
+        })
+        .setTimeout(0, TimeUnit.MILLISECONDS)
+        .build()) {
+      poller.subscribe(LAMP, "status", new PropertyValueListener() {
+        @Override
+        public void onValue(PropertyAffordance property, Object value) {
+          fail("No value should be delivered");
+        }
+
+        @Override
+        public void onError(PropertyAffordance property, Optional<Response> response) {
+          errors.incrementAndGet();
+        }
+      });
+
+      Thread.sleep(200);
+
+      // The first poll is still in flight
+      assertEquals(0, errors.get());
+      assertEquals(1, operations.size());
+      assertEquals(0, operations.get(0).aborts.get());
+    }
+  }
+
+  @Test
+  public void testCancel() throws InterruptedException {
+    HashedWheelTimer timer = new HashedWheelTimer(5, TimeUnit.MILLISECONDS, 64);
+    CountDownLatch latch = new CountDownLatch(1);
+
+    try (PropertyPoller poller = poller(count -> count).setTimer(timer).build()) {
+      PropertyPoller.PollingSubscription subscription = poller.subscribe(LAMP, "status",
+        (property, value) -> latch.countDown());
+
+      assertTrue(latch.await(5, TimeUnit.SECONDS));
+      subscription.cancel();
+
+      int count = polls.get(STATUS).get();
+      Thread.sleep(100);
+
+      assertTrue(subscription.isCancelled());
+      assertEquals(count, polls.get(STATUS).get());
+      assertTrue(poller.getSubscriptions().isEmpty());
+      assertEquals(0, timer.getPendingTimeouts());
+    } finally {
+      timer.stop();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPropertyWithoutReadForm() {
+    try (PropertyPoller poller = new PropertyPoller.Builder().build()) {
+      poller.subscribe(new PropertyAffordance.Builder("status", new Form.Builder(STATUS)
+        .addOperationType(TD.writeProperty).build()).build(), (property, value) -> { });
+    }
+  }
+
+  private PropertyPoller.Builder poller(Function<Integer, Object> values) {
+    return new PropertyPoller.Builder()
+      .setIntervalBounds(10, 80, TimeUnit.MILLISECONDS)
+      .setGrowthFactor(2)
+      .setOperationFactory(form -> stubOperation(form, values));
+  }
+
+  private static PropertyAffordance property(String name, String target) {
+    return new PropertyAffordance.Builder(name, new Form.Builder(target)
+      .addOperationType(TD.readProperty)
+      .build())
+      .build();
+  }
+
+  /**
+   * Mocks an operation that responds as soon as it is sent with a value computed from the number
+   * of previous polls of the same target, or never responds if no values are given.
+   */
+  private Operation stubOperation(Form form, Function<Integer, Object> values) {
+    Operation operation = mock(Operation.class);
+    List<ResponseCallback> callbacks = new CopyOnWriteArrayList<>();
+
+    when(operation.getForm()).thenReturn(form);
+    when(operation.getOperationType()).thenReturn(TD.readProperty);
+    doAnswer(invocation -> callbacks.add((ResponseCallback) invocation.getArguments()[0]))
+      .when(operation).registerResponseCallback(any(ResponseCallback.class));
+    doAnswer(invocation -> callbacks.remove((ResponseCallback) invocation.getArguments()[0]))
+      .when(operation).unregisterResponseCallback(any(ResponseCallback.class));
+
+    try {
+      doAnswer(invocation -> {
+        int count = polls.computeIfAbsent(form.getTarget(), target -> new AtomicInteger())
+          .getAndIncrement();
+
+        if (values != null) {
+          Response response = response(operation, values.apply(count));
+          callbacks.forEach(callback -> callback.onResponse(response));
+        }
+        return null;
+      }).when(operation).sendRequest();
+    } catch (IOException e) {
+      // Not thrown while stubbing
+      throw new AssertionError(e);
+    }
+
+    return operation;
+  }
+
+  /**
+   * An operation that never responds, and counts the aborts of its exchange.
+   */
+  private static class HangingOperation extends BaseOperation {
+    private final AtomicInteger aborts = new AtomicInteger();
+
+    HangingOperation(Form form) {
+      super(form, TD.readProperty);
+    }
+
+    @Override
+    public void sendRequest() {
+      onRequestSent(0);
+    }
+
+    @Override
+    protected void abort() {
+      aborts.incrementAndGet();
+    }
+
+    @Override
+    protected Object getPayload() {
+      return null;
+    }
+
+    @Override
+    protected void setObjectPayload(Map<String, Object> payload) {
+    }
+
+    @Override
+    protected void setArrayPayload(List<Object> payload) {
+    }
+
+    @Override
+    protected void setStringPayload(String payload) {
+    }
+
+    @Override
+    protected void setBooleanPayload(Boolean payload) {
+    }
+
+    @Override
+    protected void setIntegerPayload(Long payload) {
+    }
+
+    @Override
+    protected void setNumberPayload(Double payload) {
+    }
+  }
+
+  private static Response response(Operation operation, Object payload) {
+    Response response = mock(Response.class);
+    when(response.getOperation()).thenReturn(operation);
+    when(response.getStatus()).thenReturn(Response.ResponseStatus.OK);
+    when(response.getPayload()).thenReturn(Optional.ofNullable(payload));
+    when(response.getRetryAfter()).thenReturn(Optional.empty());
+    when(response.getPhaseTimings()).thenReturn(Optional.empty());
+    return response;
+  }
+}
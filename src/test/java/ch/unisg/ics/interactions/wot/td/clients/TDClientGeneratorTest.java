@@ -0,0 +1,263 @@
+package ch.unisg.ics.interactions.wot.td.clients;
+
+import ch.unisg.ics.interactions.wot.td.ThingDescription;
+import ch.unisg.ics.interactions.wot.td.ThingDescription.TDFormat;
+import ch.unisg.ics.interactions.wot.td.io.TDGraphReader;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.impl.bootstrap.HttpServer;
+import org.apache.hc.core5.http.impl.bootstrap.ServerBootstrap;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.io.CloseMode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.*;
+
+public class TDClientGeneratorTest {
+
+  private static final String LAMP_TD = "@prefix td: <https://www.w3.org/2019/wot/td#> .\n" +
+    "@prefix hctl: <https://www.w3.org/2019/wot/hypermedia#> .\n" +
+    "@prefix wotsec: <https://www.w3.org/2019/wot/security#> .\n" +
+    "@prefix js: <https://www.w3.org/2019/wot/json-schema#> .\n" +
+    "@prefix ex: <http://example.org/> .\n" +
+    "\n" +
+    "ex:lamp a td:Thing ; \n" +
+    "    td:title \"smart lamp\" ;\n" +
+    "    td:hasSecurityConfiguration [ a wotsec:NoSecurityScheme ] ;\n" +
+    "    td:hasPropertyAffordance [\n" +
+    "        a td:PropertyAffordance, js:IntegerSchema ; \n" +
+    "        td:name \"brightness\" ; \n" +
+    "        td:hasForm [ hctl:hasTarget <%1$s/brightness> ] ; \n" +
+    "    ] ;\n" +
+    "    td:hasPropertyAffordance [\n" +
+    "        a td:PropertyAffordance, js:ObjectSchema ; \n" +
+    "        td:name \"status\" ; \n" +
+    "        js:properties [ a js:BooleanSchema ; js:propertyName \"on\" ] ;\n" +
+    "        js:properties [ a js:NumberSchema ; js:propertyName \"level\" ] ;\n" +
+    "        js:properties [ a js:StringSchema ; js:propertyName \"color-name\" ] ;\n" +
+    "        js:required \"on\" ;\n" +
+    "        td:hasForm [ hctl:hasTarget <%1$s/status> ] ; \n" +
+    "    ] ;\n" +
+    "    td:hasActionAffordance [\n" +
+    "        a td:ActionAffordance ;\n" +
+    "        td:name \"fade\" ; \n" +
+    "        td:hasForm [ hctl:hasTarget <%1$s/fade> ] ; \n" +
+    "        td:hasInputSchema [ \n" +
+    "            a js:ObjectSchema ;\n" +
+    "            js:properties [ a js:IntegerSchema ; js:propertyName \"target\" ] ;\n" +
+    "            js:properties [\n" +
+    "                a js:ArraySchema ;\n" +
+    "                js:propertyName \"steps\" ;\n" +
+    "                js:items [ a js:NumberSchema ] ;\n" +
+    "            ] ;\n" +
+    "            js:required \"target\" ;\n" +
+    "        ] ; \n" +
+    "        td:hasOutputSchema [ \n" +
+    "            a js:ObjectSchema ;\n" +
+    "            js:properties [ a js:BooleanSchema ; js:propertyName \"reached\" ] ;\n" +
+    "        ] ; \n" +
+    "    ] .\n";
+
+  private static final String CONFIG_TD = "@prefix td: <https://www.w3.org/2019/wot/td#> .\n" +
+    "@prefix hctl: <https://www.w3.org/2019/wot/hypermedia#> .\n" +
+    "@prefix wotsec: <https://www.w3.org/2019/wot/security#> .\n" +
+    "@prefix js: <https://www.w3.org/2019/wot/json-schema#> .\n" +
+    "@prefix ex: <http://example.org/> .\n" +
+    "\n" +
+    "ex:device a td:Thing ; \n" +
+    "    td:title \"device\" ;\n" +
+    "    td:hasSecurityConfiguration [ a wotsec:NoSecurityScheme ] ;\n" +
+    "    td:hasPropertyAffordance [\n" +
+    "        a td:PropertyAffordance, js:ObjectSchema ; \n" +
+    "        td:name \"config\" ; \n" +
+    "        js:properties [ a js:BooleanSchema ; js:propertyName \"active\" ] ;\n" +
+    "        js:properties [ a js:BooleanSchema ; js:propertyName \"hasActive\" ] ;\n" +
+    "        js:properties [ a js:StringSchema ; js:propertyName \"NAME_ACTIVE\" ] ;\n" +
+    "        td:hasForm [ hctl:hasTarget <%1$s/config> ] ; \n" +
+    "    ] .\n";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private final Map<String, String> responses = new ConcurrentHashMap<>();
+  private final Map<String, String> requests = new ConcurrentHashMap<>();
+
+  private HttpServer server;
+  private ThingDescription td;
+
+  @Before
+  public void init() throws IOException {
+    server = ServerBootstrap.bootstrap()
+      .setListenerPort(0)
+      .register("*", (request, response, context) -> {
+        String path = request.getPath();
+        if (request.getEntity() != null) {
+          requests.put(path, EntityUtils.toString(request.getEntity(), StandardCharsets.UTF_8));
+        }
+        response.setEntity(new StringEntity(responses.getOrDefault(path, ""),
+          ContentType.APPLICATION_JSON));
+      })
+      .create();
+    server.start();
+
+    td = TDGraphReader.readFromString(TDFormat.RDF_TURTLE,
+      String.format(LAMP_TD, "http://localhost:" + server.getLocalPort()));
+  }
+
+  @After
+  public void stopServer() {
+    server.close(CloseMode.IMMEDIATE);
+  }
+
+  @Test
+  public void testNames() {
+    assertEquals("FirstName", TDClientGenerator.toTypeName("first_name"));
+    assertEquals("T3dModel", TDClientGenerator.toTypeName("3d model"));
+    assertEquals("colorName", TDClientGenerator.toIdentifier("color-name"));
+    assertEquals("class_", TDClientGenerator.toIdentifier("class"));
+  }
+
+  @Test
+  public void testGenerateSource() {
+    TDClientGenerator generator = new TDClientGenerator("com.example.things");
+    String source = generator.generate(td);
+
+    assertEquals("SmartLampClient", generator.getClassName(td));
+    assertTrue(source.startsWith("package com.example.things;"));
+    assertTrue(source.contains("public class SmartLampClient extends GeneratedClient"));
+    assertTrue(source.contains("public long readBrightness()"));
+    assertTrue(source.contains("public void writeBrightness(long value)"));
+    assertTrue(source.contains("public Status readStatus()"));
+    assertTrue(source.contains("public FadeOutput invokeFade(FadeInput input)"));
+    assertTrue(source.contains("public double[] getSteps()"));
+  }
+
+  @Test
+  public void testGenerateFile() throws IOException {
+    Path file = new TDClientGenerator("com.example.things").generate(td, folder.getRoot().toPath());
+
+    assertEquals(folder.getRoot().toPath().resolve("com/example/things/SmartLampClient.java"), file);
+    assertTrue(file.toFile().isFile());
+  }
+
+  @Test
+  public void testGeneratedClient() throws Exception {
+    Class<?> clientClass = compile(new TDClientGenerator("things"), "things.SmartLampClient");
+    Object client = clientClass.getConstructor(ThingDescription.class).newInstance(td);
+
+    responses.put("/brightness", "42");
+    assertEquals(42L, clientClass.getMethod("readBrightness").invoke(client));
+
+    clientClass.getMethod("writeBrightness", long.class).invoke(client, 7L);
+    assertEquals("7", requests.get("/brightness"));
+
+    responses.put("/status", "{\"on\": true, \"level\": 0.5, \"unknown\": [1, 2], \"color-name\": null}");
+    Object status = clientClass.getMethod("readStatus").invoke(client);
+    assertEquals(true, status.getClass().getMethod("isOn").invoke(status));
+    assertEquals(0.5, status.getClass().getMethod("getLevel").invoke(status));
+    assertEquals(true, status.getClass().getMethod("hasLevel").invoke(status));
+    assertNull(status.getClass().getMethod("getColorName").invoke(status));
+
+    Class<?> inputClass = clientClass.getClassLoader().loadClass("things.SmartLampClient$FadeInput");
+    Object input = inputClass.getConstructor().newInstance();
+    inputClass.getMethod("setTarget", long.class).invoke(input, 80L);
+    inputClass.getMethod("setSteps", double[].class).invoke(input, (Object) new double[] {0.5, 1});
+
+    responses.put("/fade", "{\"reached\": true}");
+    Object output = clientClass.getMethod("invokeFade", inputClass).invoke(client, input);
+    assertEquals(true, output.getClass().getMethod("isReached").invoke(output));
+    assertEquals(JsonParser.parseString("{\"steps\": [0.5, 1.0], \"target\": 80}"),
+      JsonParser.parseString(requests.get("/fade")));
+  }
+
+  @Test
+  public void testMissingRequiredProperty() throws Exception {
+    Class<?> clientClass = compile(new TDClientGenerator("things"), "things.SmartLampClient");
+    Object client = clientClass.getConstructor(ThingDescription.class).newInstance(td);
+    Method readStatus = clientClass.getMethod("readStatus");
+
+    responses.put("/status", "{\"level\": 0.5}");
+    try {
+      readStatus.invoke(client);
+      fail("Expected an IOException");
+    } catch (InvocationTargetException e) {
+      assertTrue(e.getCause() instanceof IOException);
+    }
+  }
+
+  @Test
+  public void testPropertyNamedAsPresenceFlag() throws Exception {
+    ThingDescription configTd = TDGraphReader.readFromString(TDFormat.RDF_TURTLE,
+      String.format(CONFIG_TD, "http://localhost:" + server.getLocalPort()));
+
+    Class<?> clientClass = compile(new TDClientGenerator("things"), configTd,
+      "things.DeviceClient");
+    Object client = clientClass.getConstructor(ThingDescription.class).newInstance(configTd);
+
+    Class<?> configClass = clientClass.getClassLoader().loadClass("things.DeviceClient$Config");
+    Object config = configClass.getConstructor().newInstance();
+    configClass.getMethod("setActive", boolean.class).invoke(config, true);
+    configClass.getMethod("setNAMEACTIVE", String.class).invoke(config, "<main>");
+
+    assertEquals(true, configClass.getMethod("hasActive").invoke(config));
+    assertEquals(false, configClass.getMethod("hasHasActive").invoke(config));
+
+    clientClass.getMethod("writeConfig", configClass).invoke(client, config);
+    assertEquals("{\"NAME_ACTIVE\":\"\\u003cmain\\u003e\",\"active\":true}",
+      requests.get("/config"));
+
+    responses.put("/config", "{\"active\": false, \"hasActive\": true}");
+    Object read = clientClass.getMethod("readConfig").invoke(client);
+    assertEquals(false, configClass.getMethod("isActive").invoke(read));
+    assertEquals(true, configClass.getMethod("isHasActive").invoke(read));
+    assertEquals(true, configClass.getMethod("hasHasActive").invoke(read));
+  }
+
+  private Class<?> compile(TDClientGenerator generator, String className) throws Exception {
+    return compile(generator, td, className);
+  }
+
+  private Class<?> compile(TDClientGenerator generator, ThingDescription td, String className)
+      throws Exception {
+    File sourceDir = folder.newFolder("src");
+    File classDir = folder.newFolder("classes");
+    Path file = generator.generate(td, sourceDir.toPath());
+
+    String classPath = location(GeneratedClient.class) + File.pathSeparator
+      + location(JsonReader.class);
+
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    ByteArrayOutputStream errors = new ByteArrayOutputStream();
+    int result = compiler.run(null, null, errors, "-classpath", classPath, "-d",
+      classDir.getPath(), file.toString());
+    assertEquals(errors.toString(), 0, result);
+
+    URLClassLoader loader = new URLClassLoader(new URL[] { classDir.toURI().toURL() },
+      getClass().getClassLoader());
+    return loader.loadClass(className);
+  }
+
+  private static String location(Class<?> type) throws Exception {
+    return new File(type.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+  }
+}
@@ -0,0 +1,242 @@
+package ch.unisg.ics.interactions.wot.td.diff;
+
+import ch.unisg.ics.interactions.wot.td.ThingDescription;
+import ch.unisg.ics.interactions.wot.td.affordances.ActionAffordance;
+import ch.unisg.ics.interactions.wot.td.affordances.EventAffordance;
+import ch.unisg.ics.interactions.wot.td.affordances.Form;
+import ch.unisg.ics.interactions.wot.td.affordances.InteractionAffordance;
+import ch.unisg.ics.interactions.wot.td.affordances.PropertyAffordance;
+import ch.unisg.ics.interactions.wot.td.schemas.IntegerSchema;
+import ch.unisg.ics.interactions.wot.td.schemas.NumberSchema;
+import ch.unisg.ics.interactions.wot.td.security.APIKeySecurityScheme;
+import ch.unisg.ics.interactions.wot.td.security.SecurityScheme;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TDDiffTest {
+
+  private PropertyAffordance temp;
+  private PropertyAffordance humidity;
+  private ActionAffordance setTemp;
+  private EventAffordance overheating;
+
+  private ThingDescription td;
+
+  @Before
+  public void init() {
+    temp = new PropertyAffordance.Builder("temp",
+      new Form.Builder("http://example.org/temp").build())
+      .addDataSchema(new NumberSchema.Builder().build())
+      .addSemanticType("ex:Temp")
+      .build();
+
+    humidity = new PropertyAffordance.Builder("humidity",
+      new Form.Builder("http://example.org/humidity").build())
+      .addDataSchema(new NumberSchema.Builder().build())
+      .build();
+
+    setTemp = new ActionAffordance.Builder("setTemp",
+      new Form.Builder("http://example.org/setTemp").build())
+      .addInputSchema(new NumberSchema.Builder().build())
+      .build();
+
+    overheating = new EventAffordance.Builder("overheating",
+      new Form.Builder("http://example.org/overheating").build())
+      .build();
+
+    td = thing("My Thing")
+      .addProperty(temp)
+      .addProperty(humidity)
+      .addAction(setTemp)
+      .addEvent(overheating)
+      .build();
+  }
+
+  @Test
+  public void testNoChanges() {
+    ThingDescription sameTd = thing("My Thing")
+      .addProperty(humidity)
+      .addProperty(temp)
+      .addAction(setTemp)
+      .addEvent(overheating)
+      .build();
+
+    TDDiff diff = TDDiff.compute(td, sameTd);
+    assertTrue(diff.isEmpty());
+    assertTrue(diff.getChangedProperties().isEmpty());
+  }
+
+  @Test
+  public void testAddedAndRemovedAffordances() {
+    ActionAffordance open = new ActionAffordance.Builder("open",
+      new Form.Builder("http://example.org/open").build())
+      .build();
+
+    ThingDescription newTd = thing("My Thing")
+      .addProperty(temp)
+      .addAction(setTemp)
+      .addAction(open)
+      .build();
+
+    TDDiff diff = TDDiff.compute(td, newTd);
+    assertFalse(diff.isEmpty());
+
+    assertEquals(1, diff.getRemovedProperties().size());
+    assertEquals("humidity", diff.getRemovedProperties().get(0).getName());
+    assertTrue(diff.getAddedProperties().isEmpty());
+    assertTrue(diff.getChangedProperties().isEmpty());
+
+    assertEquals(1, diff.getAddedActions().size());
+    assertEquals("open", diff.getAddedActions().get(0).getName());
+    assertTrue(diff.getChangedActions().isEmpty());
+
+    assertEquals(1, diff.getRemovedEvents().size());
+    assertFalse(diff.isSecurityChanged());
+    assertFalse(diff.isMetadataChanged());
+  }
+
+  @Test
+  public void testChangedForms() {
+    PropertyAffordance movedTemp = new PropertyAffordance.Builder("temp",
+      new Form.Builder("http://example.org/v2/temp").build())
+      .addDataSchema(new NumberSchema.Builder().build())
+      .addSemanticType("ex:Temp")
+      .build();
+
+    TDDiff diff = TDDiff.compute(td, thing("My Thing")
+      .addProperty(movedTemp)
+      .addProperty(humidity)
+      .addAction(setTemp)
+      .addEvent(overheating)
+      .build());
+
+    assertEquals(1, diff.getChangedProperties().size());
+
+    AffordanceChange<PropertyAffordance> change = diff.getChangedProperties().get(0);
+    assertEquals("temp", change.getName());
+    assertSame(temp, change.getOldAffordance());
+    assertSame(movedTemp, change.getNewAffordance());
+    assertTrue(change.isFormsChanged());
+    assertFalse(change.isSchemasChanged());
+    assertFalse(change.isMetadataChanged());
+  }
+
+  @Test
+  public void testChangedSchemas() {
+    ActionAffordance newSetTemp = new ActionAffordance.Builder("setTemp",
+      new Form.Builder("http://example.org/setTemp").build())
+      .addInputSchema(new IntegerSchema.Builder().build())
+      .build();
+
+    TDDiff diff = TDDiff.compute(td, thing("My Thing")
+      .addProperty(temp)
+      .addProperty(humidity)
+      .addAction(newSetTemp)
+      .addEvent(overheating)
+      .build());
+
+    assertTrue(diff.getChangedProperties().isEmpty());
+    assertEquals(1, diff.getChangedActions().size());
+    assertFalse(diff.getChangedActions().get(0).isFormsChanged());
+    assertTrue(diff.getChangedActions().get(0).isSchemasChanged());
+  }
+
+  @Test
+  public void testChangedSecurityAndMetadata() {
+    ThingDescription newTd = new ThingDescription.Builder("My Renamed Thing")
+      .addSecurityScheme("apikey", new APIKeySecurityScheme.Builder().build())
+      .addProperty(temp)
+      .addProperty(humidity)
+      .addAction(setTemp)
+      .addEvent(overheating)
+      .build();
+
+    TDDiff diff = TDDiff.compute(td, newTd);
+
+    assertTrue(diff.isSecurityChanged());
+    assertTrue(diff.getAddedSecurityDefinitions().containsKey("apikey"));
+    assertTrue(diff.getRemovedSecurityDefinitions().containsKey("nosec_sc"));
+    assertTrue(diff.isMetadataChanged());
+    assertTrue(diff.getChangedProperties().isEmpty());
+  }
+
+  @Test
+  public void testTrackerNotifiesListeners() {
+    TDChangeTracker tracker = new TDChangeTracker();
+    RecordingListener listener = new RecordingListener();
+    tracker.addListener(listener);
+
+    tracker.update("thing", td);
+    assertEquals(4, listener.added.size());
+
+    listener.clear();
+    tracker.update("thing", thing("My Thing")
+      .addProperty(temp)
+      .addProperty(humidity)
+      .addAction(setTemp)
+      .addEvent(overheating)
+      .build());
+    assertTrue(listener.added.isEmpty());
+    assertTrue(listener.changed.isEmpty());
+
+    PropertyAffordance observableHumidity = new PropertyAffordance.Builder("humidity",
+      new Form.Builder("http://example.org/humidity").build())
+      .addDataSchema(new NumberSchema.Builder().build())
+      .addObserve()
+      .build();
+
+    tracker.update("thing", thing("My Thing")
+      .addProperty(temp)
+      .addProperty(observableHumidity)
+      .addAction(setTemp)
+      .build());
+
+    assertEquals(1, listener.changed.size());
+    assertTrue(listener.changed.get(0).isMetadataChanged());
+    assertEquals(1, listener.removed.size());
+    assertSame(overheating, listener.removed.get(0));
+
+    listener.clear();
+    tracker.remove("thing");
+    assertEquals(3, listener.removed.size());
+    assertFalse(tracker.get("thing").isPresent());
+  }
+
+  private ThingDescription.Builder thing(String title) {
+    return new ThingDescription.Builder(title)
+      .addSecurityScheme("nosec_sc", SecurityScheme.getNoSecurityScheme());
+  }
+
+  private static class RecordingListener implements TDChangeListener {
+    private final List<InteractionAffordance> added = new ArrayList<>();
+    private final List<InteractionAffordance> removed = new ArrayList<>();
+    private final List<AffordanceChange<?>> changed = new ArrayList<>();
+
+    @Override
+    public void onAffordanceAdded(ThingDescription td, InteractionAffordance affordance) {
+      added.add(affordance);
+    }
+
+    @Override
+    public void onAffordanceRemoved(ThingDescription td, InteractionAffordance affordance) {
+      removed.add(affordance);
+    }
+
+    @Override
+    public void onAffordanceChanged(ThingDescription td,
+                                    AffordanceChange<? extends InteractionAffordance> change) {
+      changed.add(change);
+    }
+
+    private void clear() {
+      added.clear();
+      removed.clear();
+      changed.clear();
+    }
+  }
+}
@@ -0,0 +1,115 @@
+package ch.unisg.ics.interactions.wot.td.directory;
+
+import ch.unisg.ics.interactions.wot.td.ThingDescription;
+import ch.unisg.ics.interactions.wot.td.affordances.ActionAffordance;
+import ch.unisg.ics.interactions.wot.td.affordances.Form;
+import ch.unisg.ics.interactions.wot.td.affordances.PropertyAffordance;
+import ch.unisg.ics.interactions.wot.td.vocabularies.TD;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class TDDirectoryTest {
+  private static final String LAMP = "http://example.org/#Lamp";
+  private static final String SENSOR = "http://example.org/#Sensor";
+  private static final String TOGGLE = "http://example.org/#Toggle";
+  private static final String TEMPERATURE = "http://example.org/#Temperature";
+
+  private TDDirectory directory;
+
+  @Before
+  public void init() {
+    directory = new TDDirectory();
+
+    directory.add("lamp-http", lamp("http://example.org/lamp/toggle"));
+    directory.add("lamp-coap", lamp("coap://example.org/lamp/toggle"));
+
+    directory.add("sensor", new ThingDescription.Builder("Sensor")
+      .addSemanticType(SENSOR)
+      .addProperty(new PropertyAffordance.Builder("temperature",
+        new Form.Builder("coap://example.org/sensor/temperature")
+          .addOperationType(TD.readProperty)
+          .build())
+        .addSemanticType(TEMPERATURE)
+        .build())
+      .build());
+  }
+
+  @Test
+  public void testQueryByThingType() {
+    List<ThingDescription> lamps = directory.query().withThingType(LAMP).findThings();
+    assertEquals(2, lamps.size());
+
+    List<TDDirectory.Match> matches = directory.query().withThingType(SENSOR).findMatches();
+    assertEquals(1, matches.size());
+    assertEquals("sensor", matches.get(0).getKey());
+    assertNull(matches.get(0).getAffordance());
+  }
+
+  @Test
+  public void testConjunctiveQuery() {
+    List<TDDirectory.Match> matches = directory.query()
+      .withAction()
+      .withAffordanceType(TOGGLE)
+      .withOperationType(TD.invokeAction)
+      .withProtocol("CoAP")
+      .findMatches();
+
+    assertEquals(1, matches.size());
+    assertEquals("lamp-coap", matches.get(0).getKey());
+    assertEquals("toggle", matches.get(0).getAffordance().getName());
+    assertEquals("coap://example.org/lamp/toggle", matches.get(0).getForm().getTarget());
+
+    assertEquals(2, directory.query().withProtocol("CoAP").count());
+    assertEquals(0, directory.query().withProperty().withAffordanceType(TOGGLE).count());
+    assertEquals(0, directory.query().withThingType(SENSOR).withAction().count());
+    assertEquals(0, directory.query().withAffordanceType("http://example.org/#Unknown").count());
+  }
+
+  @Test
+  public void testQueryWithoutConstraints() {
+    assertEquals(3, directory.query().count());
+  }
+
+  @Test
+  public void testReplaceAndRemove() {
+    directory.add("lamp-coap", lamp("http://example.org/other-lamp/toggle"));
+
+    assertEquals(3, directory.size());
+    assertEquals(0, directory.query().withAffordanceType(TOGGLE).withProtocol("CoAP").count());
+    assertEquals(2, directory.query().withAffordanceType(TOGGLE).withProtocol("HTTP").count());
+
+    assertTrue(directory.remove("lamp-http").isPresent());
+    assertFalse(directory.remove("lamp-http").isPresent());
+
+    assertEquals(2, directory.size());
+    assertEquals(Arrays.asList("lamp-coap"), directory.query().withThingType(LAMP).findMatches()
+      .stream().map(TDDirectory.Match::getKey).collect(Collectors.toList()));
+  }
+
+  @Test
+  public void testIdentifiersAreRecycled() {
+    for (int i = 0; i < 100; i++) {
+      directory.add("lamp-" + i, lamp("http://example.org/lamp/" + i));
+      directory.remove("lamp-" + i);
+    }
+
+    assertEquals(3, directory.size());
+    assertEquals(2, directory.query().withThingType(LAMP).count());
+    assertEquals(1, directory.query().withAffordanceType(TOGGLE).withProtocol("HTTP").count());
+  }
+
+  private ThingDescription lamp(String target) {
+    return new ThingDescription.Builder("Lamp")
+      .addSemanticType(LAMP)
+      .addAction(new ActionAffordance.Builder("toggle", new Form.Builder(target).build())
+        .addSemanticType(TOGGLE)
+        .build())
+      .build();
+  }
+}
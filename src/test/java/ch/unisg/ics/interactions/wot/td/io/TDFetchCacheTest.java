@@ -0,0 +1,166 @@
+package ch.unisg.ics.interactions.wot.td.io;
+
+import ch.unisg.ics.interactions.wot.td.ThingDescription;
+import ch.unisg.ics.interactions.wot.td.ThingDescription.TDFormat;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.hc.client5.http.HttpResponseException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class TDFetchCacheTest {
+
+  private static final String TD_TEMPLATE =
+    "@prefix td: <https://www.w3.org/2019/wot/td#> .\n" +
+      "@prefix wotsec: <https://www.w3.org/2019/wot/security#> .\n" +
+      "\n" +
+      "<http://example.org/#thing> a td:Thing ;\n" +
+      "    td:title \"%s\" ;\n" +
+      "    td:hasSecurityConfiguration [ a wotsec:NoSecurityScheme ] .\n";
+
+  private HttpServer server;
+  private AtomicInteger requests;
+  private AtomicInteger conditionalRequests;
+
+  private volatile String title;
+  private volatile String etag;
+  private volatile String cacheControl;
+
+  @Before
+  public void init() throws IOException {
+    requests = new AtomicInteger();
+    conditionalRequests = new AtomicInteger();
+
+    title = "My Thing";
+    etag = null;
+    cacheControl = null;
+
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/td", this::handle);
+    server.createContext("/missing", exchange -> {
+      exchange.sendResponseHeaders(404, -1);
+      exchange.close();
+    });
+    server.start();
+  }
+
+  @After
+  public void tearDown() {
+    server.stop(0);
+  }
+
+  @Test
+  public void testFetchAndCache() throws IOException {
+    TDFetchCache cache = new TDFetchCache();
+    cacheControl = "max-age=60";
+
+    ThingDescription td = TDGraphReader.readFromURL(TDFormat.RDF_TURTLE, getURL("/td"), cache);
+    assertEquals("My Thing", td.getTitle());
+
+    ThingDescription cached = cache.fetch(TDFormat.RDF_TURTLE, getURL("/td"));
+    assertSame(td, cached);
+    assertEquals(1, requests.get());
+  }
+
+  @Test
+  public void testRevalidateWithETag() throws IOException {
+    TDFetchCache cache = new TDFetchCache();
+    etag = "\"v1\"";
+
+    ThingDescription td = cache.fetch(TDFormat.RDF_TURTLE, getURL("/td"));
+    ThingDescription revalidated = cache.fetch(TDFormat.RDF_TURTLE, getURL("/td"));
+
+    assertSame(td, revalidated);
+    assertEquals(2, requests.get());
+    assertEquals(1, conditionalRequests.get());
+
+    title = "My Updated Thing";
+    etag = "\"v2\"";
+
+    ThingDescription updated = cache.fetch(TDFormat.RDF_TURTLE, getURL("/td"));
+    assertNotSame(td, updated);
+    assertEquals("My Updated Thing", updated.getTitle());
+  }
+
+  @Test
+  public void testNoReparseWithoutValidators() throws IOException {
+    TDFetchCache cache = new TDFetchCache();
+
+    ThingDescription td = cache.fetch(TDFormat.RDF_TURTLE, getURL("/td"));
+    ThingDescription unchanged = cache.fetch(TDFormat.RDF_TURTLE, getURL("/td"));
+
+    assertSame(td, unchanged);
+    assertEquals(2, requests.get());
+    assertEquals(0, conditionalRequests.get());
+  }
+
+  @Test
+  public void testNoStore() throws IOException {
+    TDFetchCache cache = new TDFetchCache();
+    cacheControl = "no-store";
+
+    cache.fetch(TDFormat.RDF_TURTLE, getURL("/td"));
+    assertFalse(cache.contains(getURL("/td")));
+  }
+
+  @Test
+  public void testLRUEviction() throws IOException {
+    TDFetchCache cache = new TDFetchCache(1);
+
+    cache.fetch(TDFormat.RDF_TURTLE, getURL("/td"));
+    cache.fetch(TDFormat.RDF_TURTLE, getURL("/td?other"));
+
+    assertEquals(1, cache.size());
+    assertFalse(cache.contains(getURL("/td")));
+    assertTrue(cache.contains(getURL("/td?other")));
+  }
+
+  @Test(expected = HttpResponseException.class)
+  public void testErrorStatus() throws IOException {
+    new TDFetchCache().fetch(TDFormat.RDF_TURTLE, getURL("/missing"));
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    requests.incrementAndGet();
+
+    String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+    if (ifNoneMatch != null) {
+      conditionalRequests.incrementAndGet();
+    }
+
+    if (cacheControl != null) {
+      exchange.getResponseHeaders().add("Cache-Control", cacheControl);
+    }
+
+    if (etag != null) {
+      exchange.getResponseHeaders().add("ETag", etag);
+
+      if (etag.equals(ifNoneMatch)) {
+        exchange.sendResponseHeaders(304, -1);
+        exchange.close();
+        return;
+      }
+    }
+
+    byte[] body = String.format(TD_TEMPLATE, title).getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().add("Content-Type", "text/turtle");
+    exchange.sendResponseHeaders(200, body.length);
+
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+
+  private String getURL(String path) {
+    return "http://localhost:" + server.getAddress().getPort() + path;
+  }
+}
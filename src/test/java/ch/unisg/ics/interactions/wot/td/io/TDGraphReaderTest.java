@@ -795,6 +795,58 @@ public class TDGraphReaderTest {
       .getSemanticTypes().contains(WoTSec.APIKeySecurityScheme)));
   }
 
+  @Test
+  public void testReadSecuritySchemesOfSameType() {
+    String testTD = PREFIXES +
+      "\n" +
+      "<http://example.org/#thing> a td:Thing ;\n" +
+      "    dct:title \"My Thing\" ;\n" +
+      "    td:hasSecurityConfiguration [ a wotsec:APIKeySecurityScheme ; wotsec:name \"key-a\" ] ;\n" +
+      "    td:hasSecurityConfiguration [ a wotsec:APIKeySecurityScheme ; wotsec:name \"key-b\" ] ;\n" +
+      "    td:hasSecurityConfiguration [ a wotsec:BasicSecurityScheme ] .";
+
+    Map<String, SecurityScheme> schemes = new TDGraphReader(RDFFormat.TURTLE, testTD).readSecuritySchemes();
+
+    assertEquals(3, schemes.size());
+    assertTrue(schemes.containsKey("basic"));
+    assertEquals("key-a", ((APIKeySecurityScheme) schemes.get("apikey_1")).getTokenName().get());
+    assertEquals("key-b", ((APIKeySecurityScheme) schemes.get("apikey_2")).getTokenName().get());
+  }
+
+  @Test
+  public void testReadSecuritySchemeNamesAreRepeatable() {
+    String testTD = PREFIXES +
+      "\n" +
+      "<http://example.org/#thing> a td:Thing ;\n" +
+      "    dct:title \"My Thing\" ;\n" +
+      "    td:hasSecurityConfiguration [ a wotsec:APIKeySecurityScheme ; wotsec:name \"key-b\" ] ;\n" +
+      "    td:hasSecurityConfiguration [ a wotsec:APIKeySecurityScheme ; wotsec:name \"key-a\" ] ;\n" +
+      "    td:hasSecurityConfiguration [ a wotsec:NoSecurityScheme ] .";
+
+    Map<String, SecurityScheme> first = new TDGraphReader(RDFFormat.TURTLE, testTD).readSecuritySchemes();
+    Map<String, SecurityScheme> second = new TDGraphReader(RDFFormat.TURTLE, testTD).readSecuritySchemes();
+
+    assertEquals(first.keySet(), second.keySet());
+    for (String name : first.keySet()) {
+      assertEquals(first.get(name).getConfiguration(), second.get(name).getConfiguration());
+    }
+  }
+
+  @Test
+  public void testReadSecuritySchemeNamedByIRI() {
+    String testTD = PREFIXES +
+      "\n" +
+      "<http://example.org/#thing> a td:Thing ;\n" +
+      "    dct:title \"My Thing\" ;\n" +
+      "    td:hasSecurityConfiguration <http://example.org/#basic_sc> .\n" +
+      "<http://example.org/#basic_sc> a wotsec:BasicSecurityScheme .";
+
+    Map<String, SecurityScheme> schemes = new TDGraphReader(RDFFormat.TURTLE, testTD).readSecuritySchemes();
+
+    assertEquals(1, schemes.size());
+    assertTrue(schemes.get("basic_sc") instanceof BasicSecurityScheme);
+  }
+
   @Test
   public void testReadOneSimpleProperty() {
     TDGraphReader reader = new TDGraphReader(RDFFormat.TURTLE, TEST_SIMPLE_TD);
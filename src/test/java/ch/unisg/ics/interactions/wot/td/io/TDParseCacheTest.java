@@ -0,0 +1,61 @@
+package ch.unisg.ics.interactions.wot.td.io;
+
+import ch.unisg.ics.interactions.wot.td.ThingDescription;
+import ch.unisg.ics.interactions.wot.td.ThingDescription.TDFormat;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TDParseCacheTest {
+
+  private static final String TD_TEMPLATE =
+    "@prefix td: <https://www.w3.org/2019/wot/td#> .\n" +
+      "@prefix wotsec: <https://www.w3.org/2019/wot/security#> .\n" +
+      "\n" +
+      "<http://example.org/#thing> a td:Thing ;\n" +
+      "    td:title \"%s\" ;\n" +
+      "    td:hasSecurityConfiguration [ a wotsec:NoSecurityScheme ] .\n";
+
+  @Test
+  public void testIdenticalRepresentations() {
+    TDParseCache cache = new TDParseCache();
+
+    ThingDescription td = TDGraphReader.readFromString(TDFormat.RDF_TURTLE,
+      String.format(TD_TEMPLATE, "My Thing"), cache);
+    ThingDescription same = TDGraphReader.readFromString(TDFormat.RDF_TURTLE,
+      String.format(TD_TEMPLATE, "My Thing"), cache);
+
+    assertEquals("My Thing", td.getTitle());
+    assertSame(td, same);
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+    assertEquals(0.5, cache.getHitRate(), 0.001);
+  }
+
+  @Test
+  public void testDifferentRepresentations() {
+    TDParseCache cache = new TDParseCache();
+
+    ThingDescription td = cache.read(TDFormat.RDF_TURTLE, String.format(TD_TEMPLATE, "My Thing"));
+    ThingDescription other = cache.read(TDFormat.RDF_TURTLE, String.format(TD_TEMPLATE, "My Other Thing"));
+
+    assertNotSame(td, other);
+    assertEquals("My Other Thing", other.getTitle());
+    assertEquals(0, cache.getHitCount());
+    assertEquals(2, cache.size());
+  }
+
+  @Test
+  public void testEviction() {
+    TDParseCache cache = new TDParseCache(1);
+
+    ThingDescription td = cache.read(TDFormat.RDF_TURTLE, String.format(TD_TEMPLATE, "My Thing"));
+    cache.read(TDFormat.RDF_TURTLE, String.format(TD_TEMPLATE, "My Other Thing"));
+    ThingDescription reparsed = cache.read(TDFormat.RDF_TURTLE, String.format(TD_TEMPLATE, "My Thing"));
+
+    assertNotSame(td, reparsed);
+    assertEquals(1, cache.size());
+    assertEquals(2, cache.getEvictionCount());
+    assertEquals(0, cache.getHitRate(), 0.001);
+  }
+}
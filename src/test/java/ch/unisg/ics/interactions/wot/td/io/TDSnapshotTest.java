@@ -0,0 +1,150 @@
+package ch.unisg.ics.interactions.wot.td.io;
+
+import ch.unisg.ics.interactions.wot.td.ThingDescription;
+import ch.unisg.ics.interactions.wot.td.ThingDescription.TDFormat;
+import ch.unisg.ics.interactions.wot.td.affordances.ActionAffordance;
+import ch.unisg.ics.interactions.wot.td.affordances.EventAffordance;
+import ch.unisg.ics.interactions.wot.td.affordances.Form;
+import ch.unisg.ics.interactions.wot.td.affordances.PropertyAffordance;
+import ch.unisg.ics.interactions.wot.td.schemas.*;
+import ch.unisg.ics.interactions.wot.td.security.*;
+import ch.unisg.ics.interactions.wot.td.security.DigestSecurityScheme.QualityOfProtection;
+import ch.unisg.ics.interactions.wot.td.security.TokenBasedSecurityScheme.TokenLocation;
+import ch.unisg.ics.interactions.wot.td.vocabularies.COV;
+import ch.unisg.ics.interactions.wot.td.vocabularies.TD;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+public class TDSnapshotTest {
+
+  @Test
+  public void testRoundTripFromTurtle() throws IOException {
+    String representation = new String(Files.readAllBytes(Paths.get("samples/forkliftRobot.ttl")),
+      StandardCharsets.UTF_8);
+    ThingDescription td = TDGraphReader.readFromString(TDFormat.RDF_TURTLE, representation);
+
+    byte[] snapshot = TDSnapshotWriter.write(td);
+    ThingDescription copy = TDSnapshotReader.read(snapshot);
+
+    assertEquals(td.getFingerprint(), copy.getFingerprint());
+    assertEquals(td, copy);
+    assertFalse(copy.getGraph().isPresent());
+    assertTrue(snapshot.length < representation.getBytes(StandardCharsets.UTF_8).length);
+  }
+
+  @Test
+  public void testRoundTripAllElements() throws IOException {
+    DataSchema position = new ObjectSchema.Builder()
+      .addSemanticType("http://example.org/#Position")
+      .addProperty("x", new NumberSchema.Builder().addMinimum(-1.5).addMaximum(1.5).build())
+      .addProperty("y", new IntegerSchema.Builder().addMinimum(-10).addMaximum(10).build())
+      .addProperty("tags", new ArraySchema.Builder()
+        .addItem(new StringSchema.Builder().addEnum(new HashSet<>(Arrays.asList("a", "b"))).build())
+        .addMinItems(1)
+        .addMaxItems(3)
+        .build())
+      .addProperty("valid", new BooleanSchema.Builder().build())
+      .addProperty("nothing", new NullSchema.Builder().build())
+      .addRequiredProperties("x", "y")
+      .build();
+
+    ThingDescription td = new ThingDescription.Builder("Robot")
+      .addThingURI("http://example.org/robot")
+      .addBaseURI("http://example.org/")
+      .addSemanticType("http://example.org/#Robot")
+      .addSecurityScheme("apikey", new APIKeySecurityScheme.Builder()
+        .addToken(TokenLocation.HEADER, "X-API-Key").build())
+      .addSecurityScheme("basic", new BasicSecurityScheme.Builder().build(), false)
+      .addSecurityScheme("digest", new DigestSecurityScheme.Builder()
+        .addQoP(QualityOfProtection.AUTH_INT).build(), false)
+      .addSecurityScheme("bearer", new BearerSecurityScheme.Builder()
+        .addAuthorization("http://example.org/auth").build(), false)
+      .addSecurityScheme("psk", new PSKSecurityScheme.Builder().addIdentity("robot").build(), false)
+      .addSecurityScheme("oauth2", new OAuth2SecurityScheme.Builder("code")
+        .addToken("http://example.org/token")
+        .addScope("read")
+        .build(), false)
+      .addProperty(new PropertyAffordance.Builder("position",
+        new Form.Builder("coap://example.org/robot/position")
+          .addOperationType(TD.observeProperty)
+          .addSubProtocol(COV.observe)
+          .setContentType("application/cbor")
+          .addProperty("http://example.org/#priority", "high")
+          .build())
+        .addDataSchema(position)
+        .addObserve()
+        .addTitle("Position")
+        .build())
+      .addAction(new ActionAffordance.Builder("move",
+        new Form.Builder("http://example.org/robot/{direction}").build())
+        .addUriVariable("direction", new StringSchema.Builder().build())
+        .addInputSchema(position)
+        .addOutputSchema(new DataSchema.Builder()
+          .oneOf(new StringSchema.Builder().build(), new NumberSchema.Builder().build())
+          .build())
+        .addSemanticType("http://example.org/#Move")
+        .build())
+      .addEvent(new EventAffordance.Builder("collision",
+        new Form.Builder("http://example.org/robot/collisions").build())
+        .addNotificationSchema(position)
+        .build())
+      .build();
+
+    ThingDescription copy = TDSnapshotReader.read(new ByteArrayInputStream(TDSnapshotWriter.write(td)));
+
+    assertEquals(td, copy);
+    assertEquals(6, copy.getSecurityDefinitions().size());
+    assertEquals(1, copy.getSecuritySchemes().size());
+    assertEquals(td.getProperties().get(0).getForms().get(0).getAdditionalProperties(),
+      copy.getProperties().get(0).getForms().get(0).getAdditionalProperties());
+  }
+
+  @Test(expected = InvalidTDException.class)
+  public void testInvalidMagicNumber() {
+    TDSnapshotReader.read("@prefix td: <https://www.w3.org/2019/wot/td#> ."
+      .getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testTruncatedSnapshot() throws IOException {
+    String representation = new String(Files.readAllBytes(Paths.get("samples/forkliftRobot.ttl")),
+      StandardCharsets.UTF_8);
+    byte[] snapshot = TDSnapshotWriter.write(TDGraphReader.readFromString(TDFormat.RDF_TURTLE,
+      representation));
+
+    for (int length = 0; length < snapshot.length; length++) {
+      try {
+        TDSnapshotReader.read(Arrays.copyOf(snapshot, length));
+        fail("Snapshot truncated to " + length + " bytes was read");
+      } catch (InvalidTDException e) {
+        // Expected
+      }
+    }
+  }
+
+  @Test(expected = InvalidTDException.class)
+  public void testCorruptStringCount() {
+    byte[] snapshot = TDSnapshotWriter.write(new ThingDescription.Builder("My Thing").build());
+
+    // The string count follows the magic number and the version: make it a huge varint
+    byte[] corrupt = new byte[snapshot.length + 4];
+    System.arraycopy(snapshot, 0, corrupt, 0, TDSnapshotWriter.MAGIC.length + 1);
+    int offset = TDSnapshotWriter.MAGIC.length + 1;
+    corrupt[offset] = (byte) 0xff;
+    corrupt[offset + 1] = (byte) 0xff;
+    corrupt[offset + 2] = (byte) 0xff;
+    corrupt[offset + 3] = (byte) 0xff;
+    corrupt[offset + 4] = 0x0f;
+
+    TDSnapshotReader.read(corrupt);
+  }
+}
@@ -0,0 +1,51 @@
+package ch.unisg.ics.interactions.wot.td.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+  @Test
+  public void testBucketBounds() {
+    for (long value : new long[] {0, 1, 7, 8, 9, 15, 16, 17, 1000, 123456789, Long.MAX_VALUE}) {
+      int index = LatencyHistogram.indexOf(value);
+      long upperBound = LatencyHistogram.upperBoundOf(index);
+
+      assertTrue(upperBound >= value);
+      assertTrue(upperBound - value <= value / 8);
+
+      if (index > 0) {
+        assertTrue(LatencyHistogram.upperBoundOf(index - 1) < value);
+      }
+    }
+  }
+
+  @Test
+  public void testPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+
+    for (long i = 1; i <= 1000; i++) {
+      histogram.record(i * 1000);
+    }
+    histogram.record(-1);
+
+    assertEquals(1000, histogram.getCount());
+    assertEquals(1000000, histogram.getMax());
+    assertEquals(500500, histogram.getMean(), 0.001);
+    assertEquals(500000, histogram.getPercentile(50), 500000 / 8);
+    assertEquals(990000, histogram.getPercentile(99), 990000 / 8);
+    assertEquals(1000000, histogram.getPercentile(100));
+  }
+
+  @Test
+  public void testReset() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(42);
+    histogram.reset();
+
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getPercentile(99));
+    assertEquals(0, histogram.getMax());
+  }
+}
@@ -0,0 +1,192 @@
+package ch.unisg.ics.interactions.wot.td.metrics;
+
+import ch.unisg.ics.interactions.wot.td.affordances.Form;
+import ch.unisg.ics.interactions.wot.td.bindings.BaseOperation;
+import ch.unisg.ics.interactions.wot.td.bindings.NoResponseException;
+import ch.unisg.ics.interactions.wot.td.bindings.Operation;
+import ch.unisg.ics.interactions.wot.td.bindings.Response;
+import ch.unisg.ics.interactions.wot.td.vocabularies.TD;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class MetricsRecorderTest {
+  private static final Form FORM = new Form.Builder("http://example.org:8080/lamp/status")
+    .setMethodName("GET")
+    .addOperationType(TD.readProperty)
+    .build();
+
+  private MetricsRecorder recorder;
+
+  @Before
+  public void enableRecording() {
+    recorder = Metrics.enableRecording();
+  }
+
+  @After
+  public void disableRecording() {
+    Metrics.disable();
+  }
+
+  @Test
+  public void testDefaultKey() {
+    StubOperation op = new StubOperation();
+    OperationKey key = op.getMetricsKey();
+
+    assertEquals("example.org:8080", key.getThing());
+    assertEquals("/lamp/status", key.getAffordance());
+    assertEquals("HTTP", key.getProtocol());
+    assertEquals(TD.readProperty, key.getOperationType());
+
+    op.setMetricsLabels("lamp", "status");
+    assertEquals(new OperationKey("lamp", "status", "HTTP", TD.readProperty), op.getMetricsKey());
+  }
+
+  @Test
+  public void testRecordResponses() throws NoResponseException {
+    StubOperation op = new StubOperation();
+    op.sendRequest(12);
+    assertEquals(1, stats(op).getInFlightCount());
+
+    op.respond(Response.ResponseStatus.OK, 30);
+    op.respond(Response.ResponseStatus.OK, 40);
+
+    OperationStats stats = stats(op);
+    assertEquals(1, stats.getRequestCount());
+    assertEquals(1, stats.getResponseCount());
+    assertEquals(1, stats.getNotificationCount());
+    assertEquals(0, stats.getInFlightCount());
+    assertEquals(12, stats.getRequestBytes());
+    assertEquals(70, stats.getResponseBytes());
+    assertEquals(1, stats.getLatencies().getCount());
+    assertEquals(0, stats.getErrorRate(), 0);
+
+    StubOperation failed = new StubOperation();
+    failed.sendRequest(0);
+    failed.fail();
+
+    assertSame(stats, stats(failed));
+    assertEquals(1, stats.getErrorCount());
+    assertEquals(0.5, stats.getErrorRate(), 0);
+  }
+
+  @Test
+  public void testRecordTimeout() {
+    StubOperation op = new StubOperation();
+    op.setTimeout(1);
+    op.sendRequest(0);
+
+    try {
+      op.getResponse();
+      fail("The operation should time out");
+    } catch (NoResponseException e) {
+      assertEquals(1, stats(op).getTimeoutCount());
+      assertEquals(0, stats(op).getInFlightCount());
+    }
+  }
+
+  @Test
+  public void testNoRecordingWhenDisabled() {
+    Metrics.disable();
+
+    StubOperation op = new StubOperation();
+    op.sendRequest(10);
+    op.respond(Response.ResponseStatus.OK, 10);
+
+    assertTrue(recorder.getAllStats().isEmpty());
+  }
+
+  @Test
+  public void testJmxExport() throws Exception {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+    try (JmxMetricsExporter exporter = new JmxMetricsExporter(recorder).start()) {
+      StubOperation op = new StubOperation();
+      op.setMetricsLabels("lamp", "status");
+      op.sendRequest(0);
+      op.respond(Response.ResponseStatus.THING_ERROR, 0);
+
+      ObjectName name = exporter.getObjectName(op.getMetricsKey());
+      assertTrue(server.isRegistered(name));
+      assertEquals("\"readProperty\"", name.getKeyProperty("operation"));
+      assertEquals(1L, server.getAttribute(name, "RequestCount"));
+      assertEquals(1.0, (Double) server.getAttribute(name, "ErrorRate"), 0);
+
+      exporter.close();
+      assertFalse(server.isRegistered(name));
+    }
+  }
+
+  private OperationStats stats(BaseOperation op) {
+    return recorder.getStats(op.getMetricsKey()).get();
+  }
+
+  /**
+   * An operation whose exchanges are driven by the test, so that the metrics of {@link BaseOperation}
+   * are recorded as for the bindings.
+   */
+  private static class StubOperation extends BaseOperation {
+
+    StubOperation() {
+      super(FORM, TD.readProperty);
+    }
+
+    @Override
+    public void sendRequest() {
+      sendRequest(0);
+    }
+
+    void sendRequest(long payloadSize) {
+      onRequestSent(payloadSize);
+    }
+
+    void respond(Response.ResponseStatus status, long payloadSize) {
+      onResponse(response(this, status), payloadSize);
+    }
+
+    void fail() {
+      onError();
+    }
+
+    @Override
+    protected Object getPayload() {
+      return null;
+    }
+
+    @Override
+    protected void setObjectPayload(Map<String, Object> payload) { }
+
+    @Override
+    protected void setArrayPayload(List<Object> payload) { }
+
+    @Override
+    protected void setStringPayload(String payload) { }
+
+    @Override
+    protected void setBooleanPayload(Boolean payload) { }
+
+    @Override
+    protected void setIntegerPayload(Long payload) { }
+
+    @Override
+    protected void setNumberPayload(Double payload) { }
+  }
+
+  private static Response response(Operation operation, Response.ResponseStatus status) {
+    Response response = mock(Response.class);
+    when(response.getOperation()).thenReturn(operation);
+    when(response.getStatus()).thenReturn(status);
+    when(response.getPayload()).thenReturn(Optional.empty());
+    when(response.getRetryAfter()).thenReturn(Optional.empty());
+    when(response.getPhaseTimings()).thenReturn(Optional.empty());
+    return response;
+  }
+}
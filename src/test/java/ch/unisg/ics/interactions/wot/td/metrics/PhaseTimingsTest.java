@@ -0,0 +1,73 @@
+package ch.unisg.ics.interactions.wot.td.metrics;
+
+import ch.unisg.ics.interactions.wot.td.metrics.PhaseTimings.Phase;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class PhaseTimingsTest {
+
+  @Test
+  public void testNotStarted() {
+    PhaseTimings timings = new PhaseTimings();
+    timings.mark(Phase.REQUEST_SENT);
+
+    assertFalse(timings.isStarted());
+    assertTrue(timings.getEvents().isEmpty());
+    assertEquals(0, timings.getElapsed());
+  }
+
+  @Test
+  public void testSnapshot() {
+    PhaseTimings timings = new PhaseTimings();
+    timings.start();
+    timings.mark(Phase.REQUEST_SENT);
+
+    PhaseTimings snapshot = timings.snapshot();
+    timings.mark(Phase.RESPONSE_RECEIVED);
+
+    assertTrue(snapshot.isStarted());
+    assertEquals(2, snapshot.getEvents().size());
+    assertFalse(snapshot.getOffset(Phase.RESPONSE_RECEIVED).isPresent());
+  }
+
+  @Test
+  public void testBreakdown() {
+    PhaseTimings timings = new PhaseTimings();
+    timings.start();
+    timings.mark(Phase.DNS_LOOKUP_STARTED);
+    timings.mark(Phase.DNS_LOOKUP_COMPLETED);
+    timings.mark(Phase.REQUEST_SENT);
+    timings.mark(Phase.REQUEST_RETRANSMITTED);
+    timings.mark(Phase.REQUEST_RETRANSMITTED);
+    timings.mark(Phase.RESPONSE_RECEIVED);
+    timings.mark(Phase.PAYLOAD_DECODED);
+
+    Map<String, Long> breakdown = timings.getBreakdown();
+    assertArrayEquals(new String[] {"dns", "connect", "firstByte", "decode"},
+      breakdown.keySet().toArray());
+    assertEquals(2, timings.getCount(Phase.REQUEST_RETRANSMITTED));
+    assertEquals(timings.getOffset(Phase.PAYLOAD_DECODED).get().longValue(), timings.getElapsed());
+
+    long sum = breakdown.values().stream().mapToLong(Long::longValue).sum();
+    assertTrue(sum <= timings.getElapsed());
+    assertTrue(timings.toString().contains("retransmissions=2"));
+  }
+
+  @Test
+  public void testRestartAndMaxEvents() {
+    PhaseTimings timings = new PhaseTimings();
+    timings.start();
+
+    for (int i = 0; i < 2 * PhaseTimings.MAX_EVENTS; i++) {
+      timings.mark(Phase.RESPONSE_RECEIVED);
+    }
+    assertEquals(PhaseTimings.MAX_EVENTS, timings.getEvents().size());
+
+    timings.start();
+    assertEquals(1, timings.getEvents().size());
+    assertEquals(Phase.STARTED, timings.getEvents().get(0).getPhase());
+  }
+}
@@ -0,0 +1,92 @@
+package ch.unisg.ics.interactions.wot.td.metrics;
+
+import ch.unisg.ics.interactions.wot.td.bindings.Response.ResponseStatus;
+import ch.unisg.ics.interactions.wot.td.metrics.PhaseTimings.Phase;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import static org.junit.Assert.*;
+
+public class SlowOperationLogTest {
+  private static final OperationKey KEY = new OperationKey("lamp", "status", "HTTP",
+    "https://www.w3.org/2019/wot/td#readProperty");
+
+  @Test
+  public void testThreshold() throws InterruptedException {
+    SlowOperationLog log = new SlowOperationLog(50, TimeUnit.MILLISECONDS, 10, Level.FINE);
+
+    log.onTimings(KEY, exchange(0));
+    assertTrue(log.getEntries().isEmpty());
+
+    PhaseTimings slow = exchange(60);
+    log.onTimings(KEY, slow);
+
+    assertEquals(1, log.getEntries().size());
+    assertEquals(slow.getEvents().size(), log.getEntries().get(0).getTimings().getEvents().size());
+    assertEquals(KEY, log.getEntries().get(0).getKey());
+  }
+
+  @Test
+  public void testEntryNotAffectedByNextExchange() throws InterruptedException {
+    SlowOperationLog log = new SlowOperationLog(0, TimeUnit.MILLISECONDS, 10, Level.FINE);
+
+    PhaseTimings timings = exchange(5);
+    log.onTimings(KEY, timings);
+    String recorded = log.getEntries().get(0).toString();
+
+    // The operation is sent again
+    timings.start();
+    timings.mark(Phase.FAILED);
+
+    PhaseTimings entry = log.getEntries().get(0).getTimings();
+    assertEquals(3, entry.getEvents().size());
+    assertFalse(entry.getOffset(Phase.FAILED).isPresent());
+    assertTrue(entry.getElapsed() >= TimeUnit.MILLISECONDS.toNanos(5));
+    assertEquals(recorded, log.getEntries().get(0).toString());
+  }
+
+  @Test
+  public void testCapacity() throws InterruptedException {
+    SlowOperationLog log = new SlowOperationLog(0, TimeUnit.MILLISECONDS, 2, Level.FINE);
+    PhaseTimings last = null;
+
+    for (int i = 0; i < 3; i++) {
+      last = exchange(0);
+      log.onTimings(KEY, last);
+    }
+
+    assertEquals(2, log.getEntries().size());
+    assertEquals(last.toString(), log.getEntries().get(1).getTimings().toString());
+
+    log.clear();
+    assertTrue(log.getEntries().isEmpty());
+  }
+
+  @Test
+  public void testCompose() throws InterruptedException {
+    MetricsRecorder recorder = new MetricsRecorder();
+    SlowOperationLog log = new SlowOperationLog(0, TimeUnit.MILLISECONDS, 10, Level.FINE);
+    OperationMetrics metrics = OperationMetrics.compose(recorder, OperationMetrics.NOOP, log);
+
+    assertTrue(metrics.isEnabled());
+    assertFalse(OperationMetrics.compose(OperationMetrics.NOOP).isEnabled());
+
+    metrics.onRequestSent(KEY, 0);
+    metrics.onFirstResponse(KEY, ResponseStatus.OK, 1000, 0);
+    metrics.onTimings(KEY, exchange(0));
+
+    assertEquals(1, recorder.getStats(KEY).get().getResponseCount());
+    assertEquals(1, log.getEntries().size());
+  }
+
+  private PhaseTimings exchange(long durationMillis) throws InterruptedException {
+    PhaseTimings timings = new PhaseTimings();
+    timings.start();
+    timings.mark(Phase.REQUEST_SENT);
+    Thread.sleep(durationMillis);
+    timings.mark(Phase.RESPONSE_RECEIVED);
+    return timings;
+  }
+}
@@ -280,6 +280,60 @@ public class DataSchemaTest {
     assertEquals("Douglas Adams", userPayload.get("full_name"));
   }
 
+  @Test
+  public void testInstantiateObjectByName() {
+    ObjectSchema schema = new ObjectSchema.Builder()
+      .addProperty("name", new StringSchema.Builder().build())
+      .addProperty("label", new StringSchema.Builder()
+        .addSemanticType("name")
+        .build())
+      .build();
+
+    HashMap<String, Object> values = new HashMap<>();
+    values.put("name", "Lamp");
+    values.put("unknown", "x");
+
+    // Semantic types take precedence over property names
+    Map<String, Object> payload = schema.instantiate(values);
+    assertEquals(1, payload.size());
+    assertEquals("Lamp", payload.get("label"));
+    assertEquals(Optional.of("label"), schema.getFirstPropertyNameBySemnaticType("name"));
+    assertFalse(schema.getFirstPropertyNameBySemnaticType("unknown").isPresent());
+  }
+
+  @Test
+  public void testParseAndInstantiateRoundTrip() {
+    JsonObject admin = new JsonObject();
+    admin.addProperty("id", 42);
+    admin.addProperty("full_name", "Douglas Adams");
+
+    JsonObject group = new JsonObject();
+    group.addProperty("count", 2);
+    group.add("admin", admin);
+
+    @SuppressWarnings("unchecked")
+    Map<String, Object> semantic = (Map<String, Object>) userGroupSchema.parseJson(group);
+    assertEquals(2, semantic.size());
+    assertTrue(semantic.get("http://example.com#User") instanceof Map);
+    assertEquals("Douglas Adams",
+      ((Map<?, ?>) semantic.get("http://example.com#User")).get("http://example.com#FullName"));
+
+    Map<String, Object> payload = userGroupSchema.instantiate(semantic);
+    assertEquals(new Gson().fromJson(group, Map.class),
+      new Gson().fromJson(new Gson().toJson(payload), Map.class));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParseMissingRequiredNestedProperty() {
+    JsonObject admin = new JsonObject();
+    admin.addProperty("full_name", "Douglas Adams");
+
+    JsonObject group = new JsonObject();
+    group.add("admin", admin);
+
+    userGroupSchema.parseJson(group);
+  }
+
   @Test
   public void testArraySchema() {
     IntegerSchema itemSchema = new IntegerSchema.Builder()
@@ -0,0 +1,206 @@
+package ch.unisg.ics.interactions.wot.td.schemas;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParser;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class SchemaSerializerTest {
+
+  private ObjectSchema lampSchema;
+
+  @Before
+  public void init() {
+    lampSchema = new ObjectSchema.Builder()
+      .addProperty("status", new StringSchema.Builder().build())
+      .addProperty("brightness", new IntegerSchema.Builder().build())
+      .addProperty("temperature", new NumberSchema.Builder().build())
+      .addProperty("on", new BooleanSchema.Builder().build())
+      .addProperty("color", new ArraySchema.Builder()
+        .addItem(new IntegerSchema.Builder().build())
+        .build())
+      .addProperty("location", new ObjectSchema.Builder()
+        .addProperty("room", new StringSchema.Builder().build())
+        .addProperty("floor", new IntegerSchema.Builder().build())
+        .build())
+      .build();
+  }
+
+  @Test
+  public void testSerializeObject() {
+    Map<String, Object> location = new HashMap<>();
+    location.put("room", "Kitchen");
+    location.put("floor", 2);
+
+    Map<String, Object> payload = new HashMap<>();
+    payload.put("status", "on");
+    payload.put("brightness", 80L);
+    payload.put("temperature", 21.5);
+    payload.put("on", true);
+    payload.put("color", Arrays.asList(255, 128, 0));
+    payload.put("location", location);
+
+    assertSameJson(payload, lampSchema.getSerializer().toJson(payload));
+  }
+
+  @Test
+  public void testMembersFollowSchema() {
+    Map<String, Object> payload = new HashMap<>();
+    payload.put("status", "off");
+    payload.put("brightness", "unknown");
+    payload.put("label", "Lamp");
+    payload.put("on", null);
+    payload.put("extra", null);
+
+    String json = lampSchema.getSerializer().toJson(payload);
+
+    // Members that do not match the schema are serialized by type, null members are omitted
+    assertSameJson(payload, json);
+    assertFalse(json.contains("null"));
+    assertFalse(json.contains("extra"));
+  }
+
+  @Test
+  public void testSerializeValues() {
+    SchemaSerializer serializer = SchemaSerializer.generic();
+
+    assertEquals("0", serializer.toJson(0));
+    assertEquals("-42", serializer.toJson(-42L));
+    assertEquals(String.valueOf(Long.MIN_VALUE), serializer.toJson(Long.MIN_VALUE));
+    assertEquals(String.valueOf(Long.MAX_VALUE), serializer.toJson(Long.MAX_VALUE));
+    assertEquals("1.0", serializer.toJson(1.0));
+    assertEquals("2.5E-7", serializer.toJson(2.5e-7));
+    assertEquals("1.5", serializer.toJson(1.5f));
+    assertEquals("123456789012345678901234567890",
+      serializer.toJson(new BigInteger("123456789012345678901234567890")));
+    assertEquals("3.14", serializer.toJson(new BigDecimal("3.14")));
+    assertEquals("false", serializer.toJson(false));
+    assertEquals("null", serializer.toJson(null));
+    assertEquals("[1,[\"a\",true],{}]",
+      serializer.toJson(Arrays.asList(1, Arrays.asList("a", true), new HashMap<>())));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNaNNotSerialized() {
+    SchemaSerializer.generic().toJson(Double.NaN);
+  }
+
+  @Test
+  public void testEscapesMatchGson() {
+    String s = "quote\" backslash\\ tab\t newline\n control\u0001 html<>&=' "
+      + "\u00e9 \u00fc \u20ac \ud83d\ude00 \u2028 \u2029";
+
+    String json = new StringSchema.Builder().build().getSerializer().toJson(s);
+    assertEquals(new Gson().toJson(s), json);
+
+    byte[] bytes = SchemaSerializer.generic().toByteArray(s);
+    assertArrayEquals(new Gson().toJson(s).getBytes(StandardCharsets.UTF_8), bytes);
+  }
+
+  @Test
+  public void testTupleItems() {
+    ArraySchema schema = new ArraySchema.Builder()
+      .addItem(new StringSchema.Builder().build())
+      .addItem(new NumberSchema.Builder().build())
+      .build();
+
+    assertEquals("[\"x\",1.5]", schema.getSerializer().toJson(Arrays.asList("x", 1.5)));
+    assertEquals("[\"x\",1.5,2]", schema.getSerializer().toJson(Arrays.asList("x", 1.5, 2)));
+  }
+
+  @Test
+  public void testLargePayload() throws IOException {
+    List<Object> values = new ArrayList<>();
+    for (int i = 0; i < 20000; i++) {
+      values.add(i * 0.25);
+    }
+
+    ArraySchema schema = new ArraySchema.Builder()
+      .addItem(new NumberSchema.Builder().build())
+      .build();
+
+    byte[] bytes = schema.getSerializer().toByteArray(values);
+    assertTrue(bytes.length > SchemaSerializer.MAX_POOLED_BUFFER_SIZE);
+    assertEquals(new Gson().toJson(values), new String(bytes, StandardCharsets.UTF_8));
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    schema.getSerializer().writeTo(values, out);
+    assertArrayEquals(bytes, out.toByteArray());
+
+    // The buffer of the thread is reset after a large payload
+    assertEquals("[1]", schema.getSerializer().toJson(Collections.singletonList(1)));
+  }
+
+  @Test
+  public void testLargeReentrantPayload() {
+    List<Object> values = new ArrayList<>();
+    for (int i = 0; i < 20000; i++) {
+      values.add(i * 0.25);
+    }
+
+    SchemaSerializer.Buffer pooled = SchemaSerializer.getPooledBuffer();
+
+    // The nested call writes a large payload to a buffer of its own
+    byte[] bytes = SchemaSerializer.encode(values, (out, value) -> {
+      out.writeRaw('[');
+      byte[] nested = SchemaSerializer.generic().toByteArray(value);
+      assertTrue(nested.length > SchemaSerializer.MAX_POOLED_BUFFER_SIZE);
+      out.writeLong(nested.length);
+      out.writeRaw(']');
+    });
+
+    assertEquals('[', bytes[0]);
+    assertSame(pooled, SchemaSerializer.getPooledBuffer());
+  }
+
+  @Test
+  public void testEncoder() {
+    byte[] name = SchemaSerializer.JsonOutput.encodeName("color<name>");
+
+    byte[] bytes = SchemaSerializer.encode(new double[] {0.5, 1}, (out, values) -> {
+      out.writeRaw('{');
+      out.writeRaw(name);
+      out.writeString("red & blue");
+      out.writeRaw(',');
+      out.writeRaw(SchemaSerializer.JsonOutput.encodeName("values"));
+      out.writeRaw('[');
+      out.writeDouble(values[0]);
+      out.writeRaw(',');
+      out.writeDouble(values[1]);
+      out.writeRaw(']');
+      out.writeRaw(',');
+      out.writeRaw(SchemaSerializer.JsonOutput.encodeName("count"));
+      out.writeLong(-2);
+      out.writeRaw('}');
+    });
+
+    Map<String, Object> expected = new LinkedHashMap<>();
+    expected.put("color<name>", "red & blue");
+    expected.put("values", Arrays.asList(0.5, 1.0));
+    expected.put("count", -2);
+    assertEquals(new Gson().toJson(expected), new String(bytes, StandardCharsets.UTF_8));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testEncoderRejectsNaN() {
+    SchemaSerializer.encode(Double.NaN, (out, value) -> out.writeDouble(value));
+  }
+
+  @Test
+  public void testSerializerIsCached() {
+    assertSame(lampSchema.getSerializer(), lampSchema.getSerializer());
+  }
+
+  private void assertSameJson(Object payload, String json) {
+    assertEquals(JsonParser.parseString(new Gson().toJson(payload)), JsonParser.parseString(json));
+  }
+}
@@ -0,0 +1,102 @@
+package ch.unisg.ics.interactions.wot.td.store;
+
+import ch.unisg.ics.interactions.wot.td.ThingDescription;
+import ch.unisg.ics.interactions.wot.td.affordances.ActionAffordance;
+import ch.unisg.ics.interactions.wot.td.affordances.Form;
+import ch.unisg.ics.interactions.wot.td.affordances.PropertyAffordance;
+import ch.unisg.ics.interactions.wot.td.schemas.NumberSchema;
+import ch.unisg.ics.interactions.wot.td.security.APIKeySecurityScheme;
+import org.eclipse.rdf4j.repository.sail.SailRepository;
+import org.eclipse.rdf4j.sail.memory.MemoryStore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+public class TDStoreTest {
+  private static final String LAMP_URI = "http://example.org/lamp";
+  private static final String SENSOR_URI = "http://example.org/sensor";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testRestartFromNativeStore() throws IOException {
+    File dataDir = folder.newFolder("tds");
+
+    try (TDStore store = new TDStore(dataDir)) {
+      store.put(lamp("Lamp"));
+      store.put(sensor());
+    }
+
+    try (TDStore store = new TDStore(dataDir)) {
+      assertEquals(2, store.getThingURIs().size());
+      assertTrue(store.contains(LAMP_URI));
+      assertTrue(store.getThingURIs().contains(SENSOR_URI));
+
+      Optional<ThingDescription> td = store.get(LAMP_URI);
+      assertTrue(td.isPresent());
+      assertEquals("Lamp", td.get().getTitle());
+      assertTrue(td.get().getActionByName("toggle").isPresent());
+      assertTrue(td.get().getActionByName("toggle").get().hasSemanticType("http://example.org/#Toggle"));
+      assertEquals("http://example.org/lamp/toggle",
+        td.get().getActionByName("toggle").get().getForms().get(0).getTarget());
+      assertTrue(td.get().getSecuritySchemeByDefinition("apikey").isPresent());
+
+      assertSame(td.get(), store.get(LAMP_URI).get());
+
+      ThingDescription sensor = store.get(SENSOR_URI).get();
+      assertEquals(1, sensor.getProperties().size());
+      assertEquals("temperature", sensor.getProperties().get(0).getName());
+    }
+  }
+
+  @Test
+  public void testReplaceAndRemove() {
+    try (TDStore store = new TDStore(new SailRepository(new MemoryStore()))) {
+      store.put(lamp("Lamp"));
+      store.put(lamp("Renamed Lamp"));
+
+      assertEquals("Renamed Lamp", store.get(LAMP_URI).get().getTitle());
+      assertEquals(1, store.getThingURIs().size());
+
+      store.remove(LAMP_URI);
+      assertFalse(store.contains(LAMP_URI));
+      assertFalse(store.get(LAMP_URI).isPresent());
+      assertTrue(store.getThingURIs().isEmpty());
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTDWithoutThingURI() {
+    try (TDStore store = new TDStore(new SailRepository(new MemoryStore()))) {
+      store.put(new ThingDescription.Builder("Anonymous Thing").build());
+    }
+  }
+
+  private ThingDescription lamp(String title) {
+    return new ThingDescription.Builder(title)
+      .addThingURI(LAMP_URI)
+      .addSecurityScheme("apikey", new APIKeySecurityScheme.Builder().build())
+      .addAction(new ActionAffordance.Builder("toggle",
+        new Form.Builder("http://example.org/lamp/toggle").build())
+        .addSemanticType("http://example.org/#Toggle")
+        .build())
+      .build();
+  }
+
+  private ThingDescription sensor() {
+    return new ThingDescription.Builder("Sensor")
+      .addThingURI(SENSOR_URI)
+      .addProperty(new PropertyAffordance.Builder("temperature",
+        new Form.Builder("http://example.org/sensor/temperature").build())
+        .addDataSchema(new NumberSchema.Builder().build())
+        .build())
+      .build();
+  }
+}